@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Base class of the benchmarks. The Lutece context (with the embedded test database) is initialized once for each trial, the same way as for the junit
+ * tests, then the data of the benchmark are generated
+ */
+@State( Scope.Benchmark )
+public abstract class AbstractBenchmark extends LuteceTestCase
+{
+    /**
+     * Initialize the Lutece context and generate the data of the benchmark
+     * 
+     * @throws Exception
+     *             if the context can't be initialized
+     */
+    @Setup( Level.Trial )
+    public void setUpTrial( ) throws Exception
+    {
+        setUp( );
+        generateData( );
+    }
+
+    /**
+     * Remove the data of the benchmark and shut down the Lutece context
+     * 
+     * @throws Exception
+     *             if the context can't be shut down
+     */
+    @TearDown( Level.Trial )
+    public void tearDownTrial( ) throws Exception
+    {
+        try
+        {
+            removeData( );
+        }
+        finally
+        {
+            tearDown( );
+        }
+    }
+
+    /**
+     * Generate the data of the benchmark
+     */
+    protected abstract void generateData( );
+
+    /**
+     * Remove the data of the benchmark
+     */
+    protected abstract void removeData( );
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.benchmark;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.AppointmentTest;
+import fr.paris.lutece.plugins.appointment.business.SlotTest;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.AppointmentService;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.FormServiceTest;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
+
+/**
+ * Generators of synthetic data for the benchmarks
+ */
+public final class BenchmarkData
+{
+    /**
+     * The opening time of the generated forms
+     */
+    public static final LocalTime STARTING_TIME = LocalTime.parse( "08:00" );
+
+    /**
+     * The closing time of the generated forms
+     */
+    public static final LocalTime ENDING_TIME = LocalTime.parse( "20:00" );
+
+    /**
+     * The duration in minutes of the slots of the generated forms
+     */
+    public static final int DURATION_SLOT = 15;
+
+    private static final String EMAIL_SUFFIX = "@benchmark.fr";
+
+    /**
+     * Private constructor
+     */
+    private BenchmarkData( )
+    {
+    }
+
+    /**
+     * Create a form with a week definition applied every week from a date. The opening hours of the week definitions alternate so that two consecutive
+     * weeks never have the same time slots
+     * 
+     * @param startingDate
+     *            the date of apply of the first week definition
+     * @param nbWeekDefinitions
+     *            the number of week definitions of the form
+     * @return the id of the form created
+     */
+    public static int createForm( LocalDate startingDate, int nbWeekDefinitions )
+    {
+        AppointmentFormDTO appointmentForm = FormServiceTest.buildAppointmentForm( );
+        appointmentForm.setDateStartValidity( Date.valueOf( startingDate ) );
+        appointmentForm.setDateEndValidity( null );
+        appointmentForm.setTimeStart( STARTING_TIME.toString( ) );
+        appointmentForm.setTimeEnd( ENDING_TIME.toString( ) );
+        appointmentForm.setDurationAppointments( DURATION_SLOT );
+        appointmentForm.setIsOpenSaturday( Boolean.TRUE );
+        int nIdForm = FormService.createAppointmentForm( appointmentForm );
+        appointmentForm.setIdForm( nIdForm );
+        for ( int i = 1; i < nbWeekDefinitions; i++ )
+        {
+            appointmentForm.setTimeStart( STARTING_TIME.plusMinutes( ( i % 2 ) * DURATION_SLOT ).toString( ) );
+            FormService.updateAdvancedParameters( appointmentForm, startingDate.plusWeeks( i ) );
+        }
+        return nIdForm;
+    }
+
+    /**
+     * Create a dense grid of slots for a form: a slot for each time slot of the opening hours, every day from Monday to Saturday
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param startingDate
+     *            the first day of the grid
+     * @param nbDays
+     *            the number of days of the grid
+     * @param nMaxCapacity
+     *            the capacity of each slot
+     * @return the slots created
+     */
+    public static List<Slot> createSlots( int nIdForm, LocalDate startingDate, int nbDays, int nMaxCapacity )
+    {
+        List<Slot> listSlot = new ArrayList<>( );
+        for ( LocalDate date = startingDate; date.isBefore( startingDate.plusDays( nbDays ) ); date = date.plusDays( 1 ) )
+        {
+            if ( date.getDayOfWeek( ) == DayOfWeek.SUNDAY )
+            {
+                continue;
+            }
+            for ( LocalTime time = STARTING_TIME; time.isBefore( ENDING_TIME ); time = time.plusMinutes( DURATION_SLOT ) )
+            {
+                LocalDateTime startingDateTime = date.atTime( time );
+                Slot slot = SlotTest.buildSlot( nIdForm, startingDateTime, startingDateTime.plusMinutes( DURATION_SLOT ), nMaxCapacity, nMaxCapacity, 0,
+                        nMaxCapacity, Boolean.TRUE, Boolean.FALSE );
+                listSlot.add( SlotService.saveSlot( slot ) );
+            }
+        }
+        return listSlot;
+    }
+
+    /**
+     * Book appointments on a list of slots, spread on all the slots, each one for a different user
+     * 
+     * @param listSlot
+     *            the slots
+     * @param nbAppointments
+     *            the number of appointments to book
+     * @return the ids of the appointments created
+     */
+    public static List<Integer> createAppointments( List<Slot> listSlot, int nbAppointments )
+    {
+        List<Integer> listIdAppointment = new ArrayList<>( nbAppointments );
+        for ( int i = 0; i < nbAppointments; i++ )
+        {
+            listIdAppointment.add( AppointmentService.saveAppointment( buildAppointmentDTO( listSlot.get( i % listSlot.size( ) ), i ) ) );
+        }
+        return listIdAppointment;
+    }
+
+    /**
+     * Build the appointment of a synthetic user on a slot
+     * 
+     * @param slot
+     *            the slot
+     * @param nNumUser
+     *            the number of the user, used to build its name and email
+     * @return the appointment DTO
+     */
+    public static AppointmentDTO buildAppointmentDTO( Slot slot, int nNumUser )
+    {
+        String strName = "user" + nNumUser;
+        return AppointmentTest.buildAppointmentDTO( slot, strName + EMAIL_SUFFIX, "First" + strName, "Last" + strName, slot.getStartingTime( ),
+                slot.getEndingTime( ), 1 );
+    }
+}
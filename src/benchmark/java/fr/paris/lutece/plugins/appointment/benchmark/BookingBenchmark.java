@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.AppointmentReferenceGenerator;
+import fr.paris.lutece.plugins.appointment.service.AppointmentService;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+
+/**
+ * Benchmark of the booking of an appointment, on a form that already has a given volume of appointments. Each invocation books a new appointment for a
+ * new user on one of the slots of the form
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BookingBenchmark extends AbstractBenchmark
+{
+    private static final int NB_DAYS = 28;
+    private static final int MAX_CAPACITY = 1000000;
+
+    /**
+     * The number of appointments already booked on the form
+     */
+    @Param( {
+            "0", "10000"
+    } )
+    public int _nbAppointments;
+
+    private int _nIdForm;
+    private List<Slot> _listSlot;
+    private final AtomicInteger _nNumUser = new AtomicInteger( );
+
+    @Override
+    protected void generateData( )
+    {
+        LocalDate startingDate = LocalDate.now( ).plusDays( 1 );
+        _nIdForm = BenchmarkData.createForm( startingDate, 1 );
+        _listSlot = BenchmarkData.createSlots( _nIdForm, startingDate, NB_DAYS, MAX_CAPACITY );
+        BenchmarkData.createAppointments( _listSlot, _nbAppointments );
+        _nNumUser.set( _nbAppointments );
+    }
+
+    @Override
+    protected void removeData( )
+    {
+        FormService.removeForm( _nIdForm );
+    }
+
+    /**
+     * Book an appointment, with a single thread
+     * 
+     * @return the id of the appointment
+     */
+    @Benchmark
+    public int saveAppointment( )
+    {
+        int nNumUser = _nNumUser.getAndIncrement( );
+        return AppointmentService.saveAppointment( BenchmarkData.buildAppointmentDTO( _listSlot.get( nNumUser % _listSlot.size( ) ), nNumUser ) );
+    }
+
+    /**
+     * Book appointments with concurrent threads, all on the same few slots to measure the contention on the places of the slots
+     * 
+     * @return the id of the appointment
+     */
+    @Benchmark
+    @Threads( 4 )
+    public int saveAppointmentConcurrently( )
+    {
+        int nNumUser = _nNumUser.getAndIncrement( );
+        return AppointmentService.saveAppointment( BenchmarkData.buildAppointmentDTO( _listSlot.get( nNumUser % 2 ), nNumUser ) );
+    }
+
+    /**
+     * Generate the reference of a new appointment, which is done in the booking request before the insert of the appointment
+     * 
+     * @return the reference
+     */
+    @Benchmark
+    public String generateReference( )
+    {
+        return AppointmentReferenceGenerator.generateReference( _nNumUser.getAndIncrement( ) );
+    }
+}
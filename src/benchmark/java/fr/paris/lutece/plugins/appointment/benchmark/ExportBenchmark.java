@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.benchmark;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.paris.lutece.plugins.appointment.service.AppointmentUtilities;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
+
+/**
+ * Benchmark of the export of the appointments of a form in an excel file. The file is written to a stream that only counts the bytes
+ */
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ExportBenchmark extends AbstractBenchmark
+{
+    private static final int NB_DAYS = 60;
+    private static final int MAX_CAPACITY = 1000;
+
+    /**
+     * The number of appointments to export
+     */
+    @Param( {
+            "1000", "20000"
+    } )
+    public int _nbAppointments;
+
+    private int _nIdForm;
+
+    @Override
+    protected void generateData( )
+    {
+        LocalDate startingDate = LocalDate.now( ).plusDays( 1 );
+        _nIdForm = BenchmarkData.createForm( startingDate, 1 );
+        BenchmarkData.createAppointments( BenchmarkData.createSlots( _nIdForm, startingDate, NB_DAYS, MAX_CAPACITY ), _nbAppointments );
+    }
+
+    @Override
+    protected void removeData( )
+    {
+        FormService.removeForm( _nIdForm );
+    }
+
+    /**
+     * Export all the appointments of the form
+     * 
+     * @return the size of the file
+     * @throws IOException
+     *             if the file can't be written
+     */
+    @Benchmark
+    public long writeExcelFileWithAppointments( ) throws IOException
+    {
+        AppointmentFilterDTO filter = new AppointmentFilterDTO( );
+        filter.setIdForm( _nIdForm );
+        CountingOutputStream os = new CountingOutputStream( NullOutputStream.NULL_OUTPUT_STREAM );
+        AppointmentUtilities.writeExcelFileWithAppointments( Integer.toString( _nIdForm ), os, Locale.FRENCH, filter, null );
+        return os.getByteCount( );
+    }
+}
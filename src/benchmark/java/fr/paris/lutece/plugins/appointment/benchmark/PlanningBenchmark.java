@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.benchmark;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
+
+/**
+ * Benchmark of the build of the calendar of a form: loading of the week definitions and build of the slots of the displayed period
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class PlanningBenchmark extends AbstractBenchmark
+{
+    /**
+     * The number of week definitions of the form
+     */
+    @Param( {
+            "1", "20", "100"
+    } )
+    public int _nbWeekDefinitions;
+
+    /**
+     * The number of days of the period to display
+     */
+    @Param( {
+            "21", "365"
+    } )
+    public int _nbDays;
+
+    private int _nIdForm;
+    private LocalDate _startingDate;
+    private LocalDate _endingDate;
+
+    @Override
+    protected void generateData( )
+    {
+        _startingDate = LocalDate.now( );
+        _endingDate = _startingDate.plusDays( _nbDays - 1L );
+        _nIdForm = BenchmarkData.createForm( _startingDate, _nbWeekDefinitions );
+        // A third of the period is already materialized in database
+        BenchmarkData.createSlots( _nIdForm, _startingDate, _nbDays / 3, 1 );
+    }
+
+    @Override
+    protected void removeData( )
+    {
+        FormService.removeForm( _nIdForm );
+    }
+
+    /**
+     * Load all the week definitions of the form, with their working days and time slots
+     * 
+     * @return the week definitions
+     */
+    @Benchmark
+    public HashMap<LocalDate, WeekDefinition> findAllWeekDefinition( )
+    {
+        return WeekDefinitionService.findAllWeekDefinition( _nIdForm );
+    }
+
+    /**
+     * Build the slots of the period, reading all the rules of the form from the database
+     * 
+     * @return the slots
+     */
+    @Benchmark
+    public List<Slot> buildListSlotFromDatabase( )
+    {
+        return SlotService.buildListSlot( _nIdForm, WeekDefinitionService.findAllWeekDefinition( _nIdForm ), _startingDate, _endingDate );
+    }
+
+    /**
+     * Build the slots of the period with the planning of the form in cache
+     * 
+     * @return the slots
+     */
+    @Benchmark
+    public List<Slot> buildListSlotWithPlanningCache( )
+    {
+        return SlotService.buildListSlot( _nIdForm, _startingDate, _endingDate );
+    }
+}
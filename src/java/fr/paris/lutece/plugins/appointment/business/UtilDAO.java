@@ -33,11 +33,24 @@
  */
 package fr.paris.lutece.plugins.appointment.business;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.sequence.IIdAllocator;
 import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 public abstract class UtilDAO
 {
+    /**
+     * The max number of rows inserted by a single insert query in the inserts of lists
+     */
+    protected static final int MAX_ROWS_PER_INSERT = 100;
+
+    private static final String SQL_VALUES = " VALUES ";
+    private static final String SQL_VALUES_SEPARATOR = ", ";
+    private static final String SQL_PARAMETER = "?";
 
     /**
      * Private constructor - this class does not need to be instantiated
@@ -46,6 +59,31 @@ public abstract class UtilDAO
     {
     }
 
+    /**
+     * Get a new primary key from the id allocator
+     * 
+     * @param strSequenceName
+     *            the name of the sequence (the name of the table)
+     * @param strQueryMaxKey
+     *            the query returning the max primary key of the table, used to initialize the sequence
+     * @param plugin
+     *            the plugin
+     * @return the new primary key
+     */
+    public static int getNewPrimaryKey( String strSequenceName, String strQueryMaxKey, Plugin plugin )
+    {
+        return IdAllocatorHolder._idAllocator.getNewPrimaryKey( strSequenceName, strQueryMaxKey, plugin );
+    }
+
+    /**
+     * Get the max primary key of a table plus one
+     * 
+     * @param query
+     *            the query returning the max primary key of the table
+     * @param plugin
+     *            the plugin
+     * @return the max primary key plus one
+     */
     public static int getNewPrimaryKey( String query, Plugin plugin )
     {
         DAOUtil daoUtil = null;
@@ -69,4 +107,69 @@ public abstract class UtilDAO
         return nKey;
     }
 
+    /**
+     * Build an insert query of several rows from the insert query of a single row
+     * 
+     * @param strQueryInsert
+     *            the insert query of a single row, ending with its VALUES clause
+     * @param nbRows
+     *            the number of rows
+     * @return the insert query of the rows
+     */
+    protected static String getMultipleRowsInsertQuery( String strQueryInsert, int nbRows )
+    {
+        int nIndexValues = strQueryInsert.lastIndexOf( SQL_VALUES ) + SQL_VALUES.length( );
+        String strRowValues = strQueryInsert.substring( nIndexValues ).trim( );
+        StringBuilder sbQuery = new StringBuilder( strQueryInsert.substring( 0, nIndexValues ) ).append( strRowValues );
+        for ( int i = 1; i < nbRows; i++ )
+        {
+            sbQuery.append( SQL_VALUES_SEPARATOR ).append( strRowValues );
+        }
+        return sbQuery.toString( );
+    }
+
+    /**
+     * Split a list of rows to insert in chunks of at most {@link #MAX_ROWS_PER_INSERT} rows
+     * 
+     * @param listRows
+     *            the rows
+     * @param <T>
+     *            the type of the rows
+     * @return the chunks of rows (views of the list)
+     */
+    protected static <T> List<List<T>> partitionRowsToInsert( List<T> listRows )
+    {
+        List<List<T>> listChunks = new ArrayList<>( );
+        for ( int nFrom = 0; nFrom < listRows.size( ); nFrom += MAX_ROWS_PER_INSERT )
+        {
+            listChunks.add( listRows.subList( nFrom, Math.min( nFrom + MAX_ROWS_PER_INSERT, listRows.size( ) ) ) );
+        }
+        return listChunks;
+    }
+
+    /**
+     * Build the list of parameters of an IN clause
+     * 
+     * @param nbParameters
+     *            the number of parameters
+     * @return the parameters, separated by commas
+     */
+    protected static String getInClauseParameters( int nbParameters )
+    {
+        StringBuilder sbParameters = new StringBuilder( SQL_PARAMETER );
+        for ( int i = 1; i < nbParameters; i++ )
+        {
+            sbParameters.append( SQL_VALUES_SEPARATOR ).append( SQL_PARAMETER );
+        }
+        return sbParameters.toString( );
+    }
+
+    /**
+     * Holder of the id allocator, loaded at the first insert (the DAOs are created before the Spring context is ready)
+     */
+    private static final class IdAllocatorHolder
+    {
+        private static final IIdAllocator _idAllocator = SpringContextService.getBean( IIdAllocator.BEAN_NAME );
+    }
+
 }
@@ -34,15 +34,22 @@
 package fr.paris.lutece.plugins.appointment.business.appointment;
 
 import java.sql.Timestamp;
+import java.text.MessageFormat;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 
 import fr.paris.lutece.plugins.appointment.business.UtilDAO;
 import fr.paris.lutece.plugins.appointment.business.slot.Slot;
 import fr.paris.lutece.plugins.appointment.business.user.User;
+import fr.paris.lutece.plugins.appointment.business.user.UserSearchTrigrams;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.sql.DAOUtil;
@@ -56,6 +63,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_appointment";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_appointment) FROM appointment_appointment";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_appointment (id_appointment, reference, nb_places, is_cancelled, id_action_cancelled, notification, id_admin_user, id_user, id_slot) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_appointment SET reference = ?, nb_places = ?, is_cancelled = ?, id_action_cancelled = ?, notification = ?, id_admin_user = ?, id_user = ?, id_slot = ? WHERE id_appointment = ?";
@@ -67,31 +75,80 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
     private static final String SQL_QUERY_SELECT_BY_REFERENCE = SQL_QUERY_SELECT_COLUMNS + " WHERE reference = ?";
     private static final String SQL_QUERY_SELECT_BY_ID_FORM = SQL_QUERY_SELECT_COLUMNS
             + " INNER JOIN appointment_slot slot ON appointment.id_slot = slot.id_slot WHERE slot.id_form = ?";
+    private static final String SQL_FROM_BY_FILTER = "FROM appointment_appointment app " + "INNER JOIN appointment_user user ON app.id_user = user.id_user "
+            + "INNER JOIN appointment_slot slot ON app.id_slot = slot.id_slot " + "WHERE slot.id_form = ?";
     private static final String SQL_QUERY_SELECT_BY_FILTER = "SELECT "
             + "app.id_appointment, app.reference, app.nb_places, app.is_cancelled, app.id_action_cancelled, app.notification, app.id_admin_user, app.id_user, app.id_slot, "
             + "user.id_user, user.guid, user.first_name, user.last_name, user.email, user.phone_number, "
             + "slot.id_slot, slot.starting_date_time, slot.ending_date_time, slot.is_open, slot.is_specific, slot.max_capacity, slot.nb_remaining_places, slot.id_form "
-            + "FROM appointment_appointment app " + "INNER JOIN appointment_user user ON app.id_user = user.id_user "
-            + "INNER JOIN appointment_slot slot ON app.id_slot = slot.id_slot " + "WHERE slot.id_form = ?";
+            + SQL_FROM_BY_FILTER;
+    private static final String SQL_QUERY_COUNT_BY_FILTER = "SELECT COUNT(app.id_appointment) " + SQL_FROM_BY_FILTER;
+    private static final String SQL_QUERY_SELECT_STARTING_DATE_TIME_BY_EMAIL_AND_ID_FORM = "SELECT slot.starting_date_time FROM appointment_user user "
+            + "INNER JOIN appointment_appointment app ON app.id_user = user.id_user " + "INNER JOIN appointment_slot slot ON app.id_slot = slot.id_slot "
+            + "WHERE user.email = ? AND slot.id_form = ? AND app.is_cancelled = ? AND app.id_appointment <> ? "
+            + "AND slot.starting_date_time >= ? AND slot.starting_date_time < ? ORDER BY slot.starting_date_time";
 
-    private static final String SQL_FILTER_FIRST_NAME = "UPPER(user.first_name) LIKE ?";
-    private static final String SQL_FILTER_LAST_NAME = "UPPER(user.last_name) LIKE ?";
-    private static final String SQL_FILTER_EMAIL = "UPPER(user.email) LIKE ?";
+    private static final String SQL_FROM_BY_ID_FORM = "FROM appointment_appointment app INNER JOIN appointment_slot slot ON app.id_slot = slot.id_slot WHERE slot.id_form = ?";
+    private static final String SQL_QUERY_SELECT_IDS_BY_ID_FORM = "SELECT app.id_appointment " + SQL_FROM_BY_ID_FORM
+            + " AND app.id_appointment > ? ORDER BY app.id_appointment LIMIT ?";
+    private static final String SQL_QUERY_COUNT_BY_ID_FORM = "SELECT COUNT(app.id_appointment) " + SQL_FROM_BY_ID_FORM;
+    private static final String SQL_QUERY_SELECT_NB_PLACES_BY_ID_SLOT = "SELECT id_slot, SUM(nb_places) FROM appointment_appointment WHERE is_cancelled = ? AND id_appointment IN ( {0} ) GROUP BY id_slot";
+    private static final String SQL_QUERY_DELETE_LIST = "DELETE FROM appointment_appointment WHERE id_appointment IN ( {0} )";
+    private static final String SQL_FILTER_FIRST_NAME = "UPPER(user.first_name) LIKE ? ESCAPE '!'";
+    private static final String SQL_FILTER_LAST_NAME = "UPPER(user.last_name) LIKE ? ESCAPE '!'";
+    private static final String SQL_FILTER_EMAIL = "UPPER(user.email) LIKE ? ESCAPE '!'";
+    private static final String SQL_FILTER_SEARCH_INDEX = "app.id_user IN ( SELECT id_user FROM appointment_user_search WHERE field = ? AND trigram IN ( {0} ) GROUP BY id_user HAVING COUNT(trigram) >= ? )";
+    private static final String SQL_FILTER_REFERENCE = "app.reference LIKE ? ESCAPE '!'";
     private static final String SQL_FILTER_STATUS = "app.is_cancelled = ?";
     private static final String SQL_FILTER_DATE_APPOINTMENT_MIN = "slot.starting_date_time >= ?";
     private static final String SQL_FILTER_DATE_APPOINTMENT_MAX = "slot.starting_date_time < ?";
 
+    private static final String SQL_ORDER_BY = " ORDER BY ";
+    private static final String SQL_ASC = " ASC";
+    private static final String SQL_DESC = " DESC";
+    private static final String SQL_LIMIT = " LIMIT ?";
+    private static final String SQL_OFFSET = " OFFSET ?";
+    private static final String SQL_ID_APPOINTMENT = "app.id_appointment";
+    private static final String SQL_KEYSET_AFTER = "( {0} > ? OR ( {0} = ? AND app.id_appointment > ? ) )";
+    private static final String SQL_KEYSET_BEFORE = "( {0} < ? OR ( {0} = ? AND app.id_appointment < ? ) )";
+
+    private static final String SQL_SORT_LAST_NAME = "COALESCE(user.last_name, '')";
+    private static final String SQL_SORT_FIRST_NAME = "COALESCE(user.first_name, '')";
+    private static final String SQL_SORT_EMAIL = "COALESCE(user.email, '')";
+    private static final String SQL_SORT_NB_PLACES = "app.nb_places";
+    private static final String SQL_SORT_DATE_APPOINTMENT = "slot.starting_date_time";
+    private static final String SQL_SORT_ADMIN = "COALESCE(app.id_admin_user, 0)";
+    private static final String SQL_SORT_STATUS = "app.is_cancelled";
+
     private static final String CONSTANT_AND = " AND ";
     private static final String CONSTANT_PERCENT = "%";
+    private static final String CONSTANT_LIKE_ESCAPE = "!";
+    private static final String [ ] LIKE_SPECIAL_CHARACTERS = {
+            CONSTANT_LIKE_ESCAPE, CONSTANT_PERCENT, "_"
+    };
+    private static final String [ ] LIKE_ESCAPED_CHARACTERS = {
+            CONSTANT_LIKE_ESCAPE + CONSTANT_LIKE_ESCAPE, CONSTANT_LIKE_ESCAPE + CONSTANT_PERCENT, CONSTANT_LIKE_ESCAPE + "_"
+    };
+    private static final String CONSTANT_QUESTION_MARK = "?";
+    private static final String CONSTANT_COMMA = ", ";
 
     @Override
-    public synchronized void insert( Appointment appointment, Plugin plugin )
+    public void insert( Appointment appointment, Plugin plugin )
     {
-        appointment.setIdAppointment( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        if ( appointment.getIdAppointment( ) == 0 )
+        {
+            appointment.setIdAppointment( newPrimaryKey( plugin ) );
+        }
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, appointment, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public int newPrimaryKey( Plugin plugin )
+    {
+        return getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin );
+    }
+
     @Override
     public void update( Appointment appointment, Plugin plugin )
     {
@@ -222,6 +279,221 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
         return listAppointment;
     }
 
+    @Override
+    public List<Appointment> findPageByFilter( AppointmentFilterDTO appointmentFilter, Plugin plugin )
+    {
+        List<Appointment> listAppointment = new ArrayList<>( );
+        String strOrderBy = appointmentFilter.getOrderBy( );
+        boolean bKeyset = appointmentFilter.isPageAfterCursor( );
+        StringBuilder sbSql = new StringBuilder( getSqlQueryFromFilter( appointmentFilter ) );
+        String strSortColumn = getSortColumn( strOrderBy );
+        if ( bKeyset )
+        {
+            sbSql.append( CONSTANT_AND );
+            sbSql.append( MessageFormat.format( appointmentFilter.isOrderAsc( ) ? SQL_KEYSET_AFTER : SQL_KEYSET_BEFORE, strSortColumn ) );
+        }
+        String strDirection = appointmentFilter.isOrderAsc( ) ? SQL_ASC : SQL_DESC;
+        sbSql.append( SQL_ORDER_BY ).append( strSortColumn ).append( strDirection ).append( ", " ).append( SQL_ID_APPOINTMENT ).append( strDirection );
+        sbSql.append( SQL_LIMIT );
+        if ( !bKeyset )
+        {
+            sbSql.append( SQL_OFFSET );
+        }
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( sbSql.toString( ), plugin );
+            int nIndex = addFilterParametersToDAOUtil( appointmentFilter, daoUtil );
+            if ( bKeyset )
+            {
+                setSortValue( daoUtil, nIndex++, strOrderBy, appointmentFilter.getCursorSortValue( ) );
+                setSortValue( daoUtil, nIndex++, strOrderBy, appointmentFilter.getCursorSortValue( ) );
+                daoUtil.setInt( nIndex++, appointmentFilter.getCursorIdAppointment( ) );
+            }
+            daoUtil.setInt( nIndex++, appointmentFilter.getItemsPerPage( ) );
+            if ( !bKeyset )
+            {
+                daoUtil.setInt( nIndex, ( appointmentFilter.getPageIndex( ) - 1 ) * appointmentFilter.getItemsPerPage( ) );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listAppointment.add( buildAppointmentHeavy( daoUtil ) );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        if ( listAppointment.isEmpty( ) )
+        {
+            appointmentFilter.resetCursor( );
+        }
+        else
+        {
+            Appointment lastAppointment = listAppointment.get( listAppointment.size( ) - 1 );
+            appointmentFilter.setCursor( appointmentFilter.getPageIndex( ), getSortValue( lastAppointment, strOrderBy ), lastAppointment.getIdAppointment( ) );
+        }
+        return listAppointment;
+    }
+
+    @Override
+    public List<LocalDateTime> findStartingDateTimesByEmailAndIdForm( String strEmail, int nIdForm, int nIdAppointmentToExclude, LocalDateTime startingDateTime,
+            LocalDateTime endingDateTime, Plugin plugin )
+    {
+        List<LocalDateTime> listStartingDateTime = new ArrayList<>( );
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( SQL_QUERY_SELECT_STARTING_DATE_TIME_BY_EMAIL_AND_ID_FORM, plugin );
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, strEmail );
+            daoUtil.setInt( nIndex++, nIdForm );
+            daoUtil.setBoolean( nIndex++, Boolean.FALSE );
+            daoUtil.setInt( nIndex++, nIdAppointmentToExclude );
+            daoUtil.setTimestamp( nIndex++, Timestamp.valueOf( startingDateTime ) );
+            daoUtil.setTimestamp( nIndex, Timestamp.valueOf( endingDateTime ) );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listStartingDateTime.add( daoUtil.getTimestamp( 1 ).toLocalDateTime( ) );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return listStartingDateTime;
+    }
+
+    @Override
+    public int countByFilter( AppointmentFilterDTO appointmentFilter, Plugin plugin )
+    {
+        int nCount = 0;
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( SQL_QUERY_COUNT_BY_FILTER + getSqlFiltersFromFilter( appointmentFilter ), plugin );
+            addFilterParametersToDAOUtil( appointmentFilter, daoUtil );
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return nCount;
+    }
+
+    /**
+     * Get the column to sort on for a sort key of the filter
+     * 
+     * @param strOrderBy
+     *            the sort key
+     * @return the sql expression of the column
+     */
+    private String getSortColumn( String strOrderBy )
+    {
+        if ( strOrderBy == null )
+        {
+            return SQL_SORT_DATE_APPOINTMENT;
+        }
+        switch( strOrderBy )
+        {
+            case AppointmentFilterDTO.ORDER_BY_LAST_NAME:
+                return SQL_SORT_LAST_NAME;
+            case AppointmentFilterDTO.ORDER_BY_FIRST_NAME:
+                return SQL_SORT_FIRST_NAME;
+            case AppointmentFilterDTO.ORDER_BY_EMAIL:
+                return SQL_SORT_EMAIL;
+            case AppointmentFilterDTO.ORDER_BY_NB_BOOKED_SEATS:
+                return SQL_SORT_NB_PLACES;
+            case AppointmentFilterDTO.ORDER_BY_ADMIN:
+                return SQL_SORT_ADMIN;
+            case AppointmentFilterDTO.ORDER_BY_STATUS:
+                return SQL_SORT_STATUS;
+            default:
+                return SQL_SORT_DATE_APPOINTMENT;
+        }
+    }
+
+    /**
+     * Get the value of the sort column of an appointment, to be kept as the cursor
+     * 
+     * @param appointment
+     *            the appointment
+     * @param strOrderBy
+     *            the sort key
+     * @return the value of the sort column
+     */
+    private String getSortValue( Appointment appointment, String strOrderBy )
+    {
+        String strSortKey = strOrderBy != null ? strOrderBy : AppointmentFilterDTO.ORDER_BY_DATE_APPOINTMENT;
+        switch( strSortKey )
+        {
+            case AppointmentFilterDTO.ORDER_BY_LAST_NAME:
+                return StringUtils.defaultString( appointment.getUser( ).getLastName( ) );
+            case AppointmentFilterDTO.ORDER_BY_FIRST_NAME:
+                return StringUtils.defaultString( appointment.getUser( ).getFirstName( ) );
+            case AppointmentFilterDTO.ORDER_BY_EMAIL:
+                return StringUtils.defaultString( appointment.getUser( ).getEmail( ) );
+            case AppointmentFilterDTO.ORDER_BY_NB_BOOKED_SEATS:
+                return Integer.toString( appointment.getNbPlaces( ) );
+            case AppointmentFilterDTO.ORDER_BY_ADMIN:
+                return Integer.toString( appointment.getIdAdminUser( ) );
+            case AppointmentFilterDTO.ORDER_BY_STATUS:
+                return Boolean.toString( appointment.getIsCancelled( ) );
+            default:
+                return appointment.getSlot( ).getStartingTimestampDate( ).toString( );
+        }
+    }
+
+    /**
+     * Set the value of the sort column of the cursor to the daoUtil
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nIndex
+     *            the index of the parameter
+     * @param strOrderBy
+     *            the sort key
+     * @param strSortValue
+     *            the value of the sort column of the cursor
+     */
+    private void setSortValue( DAOUtil daoUtil, int nIndex, String strOrderBy, String strSortValue )
+    {
+        String strSortKey = strOrderBy != null ? strOrderBy : AppointmentFilterDTO.ORDER_BY_DATE_APPOINTMENT;
+        switch( strSortKey )
+        {
+            case AppointmentFilterDTO.ORDER_BY_LAST_NAME:
+            case AppointmentFilterDTO.ORDER_BY_FIRST_NAME:
+            case AppointmentFilterDTO.ORDER_BY_EMAIL:
+                daoUtil.setString( nIndex, strSortValue );
+                break;
+            case AppointmentFilterDTO.ORDER_BY_NB_BOOKED_SEATS:
+            case AppointmentFilterDTO.ORDER_BY_ADMIN:
+                daoUtil.setInt( nIndex, Integer.parseInt( strSortValue ) );
+                break;
+            case AppointmentFilterDTO.ORDER_BY_STATUS:
+                daoUtil.setBoolean( nIndex, Boolean.parseBoolean( strSortValue ) );
+                break;
+            default:
+                daoUtil.setTimestamp( nIndex, Timestamp.valueOf( strSortValue ) );
+        }
+    }
+
     /**
      * Add all the filters to the daoUtil
      * 
@@ -229,22 +501,27 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
      *            the filter
      * @param daoUtil
      *            the daoutil
+     * @return the index of the next parameter
      */
-    private void addFilterParametersToDAOUtil( AppointmentFilterDTO appointmentFilter, DAOUtil daoUtil )
+    private int addFilterParametersToDAOUtil( AppointmentFilterDTO appointmentFilter, DAOUtil daoUtil )
     {
         int nIndex = 1;
         daoUtil.setInt( nIndex++, appointmentFilter.getIdForm( ) );
         if ( appointmentFilter.getFirstName( ) != null )
         {
-            daoUtil.setString( nIndex++, CONSTANT_PERCENT + appointmentFilter.getFirstName( ).toUpperCase( ) + CONSTANT_PERCENT );
+            nIndex = addSearchParametersToDAOUtil( appointmentFilter, UserSearchTrigrams.FIELD_FIRST_NAME, appointmentFilter.getFirstName( ), daoUtil, nIndex );
         }
         if ( appointmentFilter.getLastName( ) != null )
         {
-            daoUtil.setString( nIndex++, CONSTANT_PERCENT + appointmentFilter.getLastName( ).toUpperCase( ) + CONSTANT_PERCENT );
+            nIndex = addSearchParametersToDAOUtil( appointmentFilter, UserSearchTrigrams.FIELD_LAST_NAME, appointmentFilter.getLastName( ), daoUtil, nIndex );
         }
         if ( appointmentFilter.getEmail( ) != null )
         {
-            daoUtil.setString( nIndex++, CONSTANT_PERCENT + appointmentFilter.getEmail( ).toUpperCase( ) + CONSTANT_PERCENT );
+            nIndex = addSearchParametersToDAOUtil( appointmentFilter, UserSearchTrigrams.FIELD_EMAIL, appointmentFilter.getEmail( ), daoUtil, nIndex );
+        }
+        if ( StringUtils.isNotEmpty( appointmentFilter.getReference( ) ) )
+        {
+            daoUtil.setString( nIndex++, escapeLike( appointmentFilter.getReference( ).trim( ) ) + CONSTANT_PERCENT );
         }
         if ( appointmentFilter.getStatus( ) != -1 )
         {
@@ -278,6 +555,7 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
             }
             daoUtil.setTimestamp( nIndex++, endingTimestamp );
         }
+        return nIndex;
     }
 
     /**
@@ -289,21 +567,37 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
      */
     private String getSqlQueryFromFilter( AppointmentFilterDTO appointmentFilter )
     {
-        StringBuilder sbSql = new StringBuilder( SQL_QUERY_SELECT_BY_FILTER );
+        return SQL_QUERY_SELECT_BY_FILTER + getSqlFiltersFromFilter( appointmentFilter );
+    }
+
+    /**
+     * Build the conditions of the sql query with the elements of the filter
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @return the conditions to append to the where clause
+     */
+    private String getSqlFiltersFromFilter( AppointmentFilterDTO appointmentFilter )
+    {
+        StringBuilder sbSql = new StringBuilder( );
         if ( appointmentFilter.getFirstName( ) != null )
         {
-            sbSql.append( CONSTANT_AND );
-            sbSql.append( SQL_FILTER_FIRST_NAME );
+            appendSearchFilter( sbSql, appointmentFilter, SQL_FILTER_FIRST_NAME, appointmentFilter.getFirstName( ) );
         }
         if ( appointmentFilter.getLastName( ) != null )
         {
-            sbSql.append( CONSTANT_AND );
-            sbSql.append( SQL_FILTER_LAST_NAME );
+            appendSearchFilter( sbSql, appointmentFilter, SQL_FILTER_LAST_NAME, appointmentFilter.getLastName( ) );
         }
         if ( appointmentFilter.getEmail( ) != null )
         {
+            appendSearchFilter( sbSql, appointmentFilter, SQL_FILTER_EMAIL, appointmentFilter.getEmail( ) );
+        }
+        if ( StringUtils.isNotEmpty( appointmentFilter.getReference( ) ) )
+        {
+            // The reference starts with the id of the appointment, a prefix
+            // search uses the index of the reference
             sbSql.append( CONSTANT_AND );
-            sbSql.append( SQL_FILTER_EMAIL );
+            sbSql.append( SQL_FILTER_REFERENCE );
         }
         if ( appointmentFilter.getStatus( ) != -1 )
         {
@@ -323,6 +617,131 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
         return sbSql.toString( );
     }
 
+    /**
+     * Append the conditions of the search of a name or the email. When the search index can be used, the users are first selected by the trigrams of the
+     * term, and the like condition only checks the candidates. A fuzzy search only uses the trigrams
+     * 
+     * @param sbSql
+     *            the conditions of the sql query
+     * @param appointmentFilter
+     *            the filter
+     * @param strLikeFilter
+     *            the like condition of the field
+     * @param strTerm
+     *            the term searched
+     */
+    private void appendSearchFilter( StringBuilder sbSql, AppointmentFilterDTO appointmentFilter, String strLikeFilter, String strTerm )
+    {
+        Set<String> setTrigrams = getSearchTrigrams( appointmentFilter, strTerm );
+        if ( !setTrigrams.isEmpty( ) )
+        {
+            StringBuilder sbPlaceholders = new StringBuilder( );
+            for ( int i = 0; i < setTrigrams.size( ); i++ )
+            {
+                if ( i > 0 )
+                {
+                    sbPlaceholders.append( CONSTANT_COMMA );
+                }
+                sbPlaceholders.append( CONSTANT_QUESTION_MARK );
+            }
+            sbSql.append( CONSTANT_AND );
+            sbSql.append( MessageFormat.format( SQL_FILTER_SEARCH_INDEX, sbPlaceholders.toString( ) ) );
+        }
+        if ( setTrigrams.isEmpty( ) || !isFuzzySearch( appointmentFilter ) )
+        {
+            sbSql.append( CONSTANT_AND );
+            sbSql.append( strLikeFilter );
+        }
+    }
+
+    /**
+     * Add the parameters of the search of a name or the email to the daoUtil, in the order of the conditions appended by
+     * {@link #appendSearchFilter(StringBuilder, AppointmentFilterDTO, String, String)}
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @param nField
+     *            the field of the search index
+     * @param strTerm
+     *            the term searched
+     * @param daoUtil
+     *            the daoUtil
+     * @param nIndex
+     *            the index of the next parameter
+     * @return the index of the next parameter
+     */
+    private int addSearchParametersToDAOUtil( AppointmentFilterDTO appointmentFilter, int nField, String strTerm, DAOUtil daoUtil, int nIndex )
+    {
+        int nNextIndex = nIndex;
+        Set<String> setTrigrams = getSearchTrigrams( appointmentFilter, strTerm );
+        if ( !setTrigrams.isEmpty( ) )
+        {
+            daoUtil.setInt( nNextIndex++, nField );
+            for ( String strTrigram : setTrigrams )
+            {
+                daoUtil.setString( nNextIndex++, strTrigram );
+            }
+            int nMinimumMatch = isFuzzySearch( appointmentFilter ) ? UserSearchTrigrams.getFuzzyMinimumMatch( setTrigrams.size( ) ) : setTrigrams.size( );
+            daoUtil.setInt( nNextIndex++, nMinimumMatch );
+        }
+        if ( setTrigrams.isEmpty( ) || !isFuzzySearch( appointmentFilter ) )
+        {
+            boolean bPrefix = AppointmentFilterDTO.SEARCH_MODE_PREFIX.equals( appointmentFilter.getSearchMode( ) );
+            daoUtil.setString( nNextIndex++, ( bPrefix ? StringUtils.EMPTY : CONSTANT_PERCENT ) + escapeLike( strTerm.toUpperCase( ) ) + CONSTANT_PERCENT );
+        }
+        return nNextIndex;
+    }
+
+    /**
+     * Escape the wildcards of a term searched with a like condition, so that they match themselves
+     * 
+     * @param strTerm
+     *            the term searched
+     * @return the escaped term
+     */
+    private static String escapeLike( String strTerm )
+    {
+        return StringUtils.replaceEach( strTerm, LIKE_SPECIAL_CHARACTERS, LIKE_ESCAPED_CHARACTERS );
+    }
+
+    /**
+     * Get the trigrams of a term to search in the index
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @param strTerm
+     *            the term searched
+     * @return the trigrams, empty if the index can't be used
+     */
+    private Set<String> getSearchTrigrams( AppointmentFilterDTO appointmentFilter, String strTerm )
+    {
+        if ( !appointmentFilter.isUseSearchIndex( ) )
+        {
+            return Collections.emptySet( );
+        }
+        if ( isFuzzySearch( appointmentFilter ) )
+        {
+            return UserSearchTrigrams.getValueTrigrams( strTerm );
+        }
+        if ( AppointmentFilterDTO.SEARCH_MODE_PREFIX.equals( appointmentFilter.getSearchMode( ) ) )
+        {
+            return UserSearchTrigrams.getPrefixTrigrams( strTerm );
+        }
+        return UserSearchTrigrams.getContainsTrigrams( strTerm );
+    }
+
+    /**
+     * Tell if the filter is a fuzzy search
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @return true for a fuzzy search
+     */
+    private boolean isFuzzySearch( AppointmentFilterDTO appointmentFilter )
+    {
+        return AppointmentFilterDTO.SEARCH_MODE_FUZZY.equals( appointmentFilter.getSearchMode( ) );
+    }
+
     @Override
     public List<Appointment> findByIdForm( int nIdForm, Plugin plugin )
     {
@@ -348,6 +767,108 @@ public final class AppointmentDAO extends UtilDAO implements IAppointmentDAO
         return listAppointment;
     }
 
+    @Override
+    public List<Integer> findIdsByIdForm( int nIdForm, int nIdAppointmentAfter, int nLimit, Plugin plugin )
+    {
+        DAOUtil daoUtil = null;
+        List<Integer> listIdAppointment = new ArrayList<>( );
+        try
+        {
+            daoUtil = new DAOUtil( SQL_QUERY_SELECT_IDS_BY_ID_FORM, plugin );
+            daoUtil.setInt( 1, nIdForm );
+            daoUtil.setInt( 2, nIdAppointmentAfter );
+            daoUtil.setInt( 3, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIdAppointment.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return listIdAppointment;
+    }
+
+    @Override
+    public int countByIdForm( int nIdForm, Plugin plugin )
+    {
+        DAOUtil daoUtil = null;
+        int nCount = 0;
+        try
+        {
+            daoUtil = new DAOUtil( SQL_QUERY_COUNT_BY_ID_FORM, plugin );
+            daoUtil.setInt( 1, nIdForm );
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return nCount;
+    }
+
+    @Override
+    public Map<Integer, Integer> findNbPlacesBookedByIdSlot( List<Integer> listIdAppointment, Plugin plugin )
+    {
+        Map<Integer, Integer> mapNbPlaces = new HashMap<>( );
+        if ( listIdAppointment.isEmpty( ) )
+        {
+            return mapNbPlaces;
+        }
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_SELECT_NB_PLACES_BY_ID_SLOT, getInClauseParameters( listIdAppointment.size( ) ) ), plugin );
+            int nIndex = 1;
+            daoUtil.setBoolean( nIndex++, Boolean.FALSE );
+            for ( Integer nIdAppointment : listIdAppointment )
+            {
+                daoUtil.setInt( nIndex++, nIdAppointment );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                mapNbPlaces.put( daoUtil.getInt( 1 ), daoUtil.getInt( 2 ) );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return mapNbPlaces;
+    }
+
+    @Override
+    public void deleteList( List<Integer> listIdAppointment, Plugin plugin )
+    {
+        if ( listIdAppointment.isEmpty( ) )
+        {
+            return;
+        }
+        DAOUtil daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_DELETE_LIST, getInClauseParameters( listIdAppointment.size( ) ) ), plugin );
+        int nIndex = 1;
+        for ( Integer nIdAppointment : listIdAppointment )
+        {
+            daoUtil.setInt( nIndex++, nIdAppointment );
+        }
+        executeUpdate( daoUtil );
+    }
+
     /**
      * Build an Appointment business object from the resultset
      * 
@@ -33,9 +33,12 @@
  */
 package fr.paris.lutece.plugins.appointment.business.appointment;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
@@ -51,7 +54,8 @@ public final class AppointmentHome
 {
 
     // Static variable pointed at the DAO instance
-    private static IAppointmentDAO _dao = SpringContextService.getBean( IAppointmentDAO.BEAN_NAME );
+    private static IAppointmentDAO _dao = AppointmentMetricsService.instrument( SpringContextService.getBean( IAppointmentDAO.BEAN_NAME ),
+            IAppointmentDAO.class, "appointment" );
     private static Plugin _plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
 
     /**
@@ -75,6 +79,16 @@ public final class AppointmentHome
         return appointment;
     }
 
+    /**
+     * Allocate a new primary key for an appointment
+     * 
+     * @return the new primary key
+     */
+    public static int newPrimaryKey( )
+    {
+        return _dao.newPrimaryKey( _plugin );
+    }
+
     /**
      * Update of the Appointment which is specified in parameter
      * 
@@ -170,4 +184,100 @@ public final class AppointmentHome
     {
         return _dao.findByFilter( appointmentFilter, _plugin );
     }
+
+    /**
+     * Returns one page of the appointments matching the filter
+     * 
+     * @param appointmentFilter
+     *            the filter, with the page size, the page index and the sort
+     * @return the appointments of the page
+     */
+    public static List<Appointment> findPageByFilter( AppointmentFilterDTO appointmentFilter )
+    {
+        return _dao.findPageByFilter( appointmentFilter, _plugin );
+    }
+
+    /**
+     * Returns the number of appointments matching the filter
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @return the number of appointments
+     */
+    public static int countByFilter( AppointmentFilterDTO appointmentFilter )
+    {
+        return _dao.countByFilter( appointmentFilter, _plugin );
+    }
+
+    /**
+     * Returns the starting dates of the slots of the appointments, not cancelled, taken on a form by the users with the given email between two dates
+     * 
+     * @param strEmail
+     *            the email of the users
+     * @param nIdForm
+     *            the form id
+     * @param nIdAppointmentToExclude
+     *            the id of an appointment to ignore, 0 if none
+     * @param startingDateTime
+     *            the lower bound (included) of the period
+     * @param endingDateTime
+     *            the upper bound (excluded) of the period
+     * @return the starting dates of the slots, in ascending order
+     */
+    public static List<LocalDateTime> findStartingDateTimesByEmailAndIdForm( String strEmail, int nIdForm, int nIdAppointmentToExclude,
+            LocalDateTime startingDateTime, LocalDateTime endingDateTime )
+    {
+        return _dao.findStartingDateTimesByEmailAndIdForm( strEmail, nIdForm, nIdAppointmentToExclude, startingDateTime, endingDateTime, _plugin );
+    }
+
+    /**
+     * Returns the ids of the appointments of a form, by ascending id, from a given id
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param nIdAppointmentAfter
+     *            the returned ids are greater than this id
+     * @param nLimit
+     *            the max number of ids returned
+     * @return the ids of the appointments
+     */
+    public static List<Integer> findIdsByIdForm( int nIdForm, int nIdAppointmentAfter, int nLimit )
+    {
+        return _dao.findIdsByIdForm( nIdForm, nIdAppointmentAfter, nLimit, _plugin );
+    }
+
+    /**
+     * Returns the number of appointments of a form
+     * 
+     * @param nIdForm
+     *            the form id
+     * @return the number of appointments
+     */
+    public static int countByIdForm( int nIdForm )
+    {
+        return _dao.countByIdForm( nIdForm, _plugin );
+    }
+
+    /**
+     * Returns the number of places booked by the appointments, not cancelled, of a list, summed by slot
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @return the number of places booked, by slot id
+     */
+    public static Map<Integer, Integer> findNbPlacesBookedByIdSlot( List<Integer> listIdAppointment )
+    {
+        return _dao.findNbPlacesBookedByIdSlot( listIdAppointment, _plugin );
+    }
+
+    /**
+     * Delete a list of appointments with a single query
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     */
+    public static void deleteList( List<Integer> listIdAppointment )
+    {
+        _dao.deleteList( listIdAppointment, _plugin );
+    }
 }
@@ -33,10 +33,16 @@
  */
 package fr.paris.lutece.plugins.appointment.business.appointment;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.plugins.appointment.business.UtilDAO;
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.sql.DAOUtil;
 
@@ -49,10 +55,16 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class AppointmentResponseDAO extends UtilDAO implements IAppointmentResponseDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_appointment_response";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_appointment_response) FROM appointment_appointment_response";
     private static final String SQL_QUERY_INSERT_APPOINTMENT_RESPONSE = "INSERT INTO appointment_appointment_response (id_appointment_response, id_appointment, id_response) VALUES (?,?,?)";
     private static final String SQL_QUERY_REMOVE_FROM_ID_RESPONSE = "DELETE FROM appointment_appointment_response WHERE id_response = ?";
     private static final String SQL_QUERY_SELECT_APPOINTMENT_RESPONSE_LIST = "SELECT id_response FROM appointment_appointment_response WHERE id_appointment = ?";
+    private static final String SQL_QUERY_SELECT_RESPONSE_BY_LIST_ID_APPOINTMENT = "SELECT ar.id_appointment, resp.id_response, resp.id_entry, resp.response_value, resp.id_field, field.title "
+            + "FROM appointment_appointment_response ar INNER JOIN genatt_response resp ON ar.id_response = resp.id_response "
+            + "LEFT JOIN genatt_field field ON resp.id_field = field.id_field WHERE ar.id_appointment IN ( {0} ) ORDER BY ar.id_appointment, ar.id_response";
+    private static final String SQL_QUERY_SELECT_ID_RESPONSE_BY_LIST_ID_APPOINTMENT = "SELECT id_response FROM appointment_appointment_response WHERE id_appointment IN ( {0} )";
+    private static final String SQL_QUERY_REMOVE_FROM_LIST_ID_APPOINTMENT = "DELETE FROM appointment_appointment_response WHERE id_appointment IN ( {0} )";
 
     @Override
     public void insertAppointmentResponse( int nIdAppointment, int nIdResponse, Plugin plugin )
@@ -62,7 +74,7 @@ public final class AppointmentResponseDAO extends UtilDAO implements IAppointmen
         try
         {
             daoUtil = new DAOUtil( SQL_QUERY_INSERT_APPOINTMENT_RESPONSE, plugin );
-            daoUtil.setInt( nIndex++, getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+            daoUtil.setInt( nIndex++, getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
             daoUtil.setInt( nIndex++, nIdAppointment );
             daoUtil.setInt( nIndex++, nIdResponse );
             daoUtil.executeUpdate( );
@@ -120,4 +132,131 @@ public final class AppointmentResponseDAO extends UtilDAO implements IAppointmen
         return listIdResponse;
     }
 
+    @Override
+    public List<Integer> findListIdResponseByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin )
+    {
+        List<Integer> listIdResponse = new ArrayList<>( );
+        if ( listIdAppointment.isEmpty( ) )
+        {
+            return listIdResponse;
+        }
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_SELECT_ID_RESPONSE_BY_LIST_ID_APPOINTMENT, getInClauseParameters( listIdAppointment.size( ) ) ),
+                    plugin );
+            int nIndex = 1;
+            for ( Integer nIdAppointment : listIdAppointment )
+            {
+                daoUtil.setInt( nIndex++, nIdAppointment );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIdResponse.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return listIdResponse;
+    }
+
+    @Override
+    public Map<Integer, List<Response>> findMapResponseByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin )
+    {
+        Map<Integer, List<Response>> mapResponse = new HashMap<>( );
+        if ( listIdAppointment.isEmpty( ) )
+        {
+            return mapResponse;
+        }
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_SELECT_RESPONSE_BY_LIST_ID_APPOINTMENT, getInClauseParameters( listIdAppointment.size( ) ) ),
+                    plugin );
+            int nIndex = 1;
+            for ( Integer nIdAppointment : listIdAppointment )
+            {
+                daoUtil.setInt( nIndex++, nIdAppointment );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                nIndex = 1;
+                int nIdAppointment = daoUtil.getInt( nIndex++ );
+                Response response = new Response( );
+                response.setIdResponse( daoUtil.getInt( nIndex++ ) );
+                Entry entry = new Entry( );
+                entry.setIdEntry( daoUtil.getInt( nIndex++ ) );
+                response.setEntry( entry );
+                response.setResponseValue( daoUtil.getString( nIndex++ ) );
+                Object idField = daoUtil.getObject( nIndex++ );
+                if ( idField != null )
+                {
+                    Field field = new Field( );
+                    field.setIdField( ( (Number) idField ).intValue( ) );
+                    field.setTitle( daoUtil.getString( nIndex ) );
+                    response.setField( field );
+                }
+                mapResponse.computeIfAbsent( nIdAppointment, id -> new ArrayList<>( ) ).add( response );
+            }
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+        return mapResponse;
+    }
+
+    @Override
+    public void removeAppointmentResponsesByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin )
+    {
+        if ( listIdAppointment.isEmpty( ) )
+        {
+            return;
+        }
+        executeUpdateWithListId( MessageFormat.format( SQL_QUERY_REMOVE_FROM_LIST_ID_APPOINTMENT, getInClauseParameters( listIdAppointment.size( ) ) ),
+                listIdAppointment, plugin );
+    }
+
+    /**
+     * Execute an update query whose parameters are a list of ids
+     * 
+     * @param strQuery
+     *            the query
+     * @param listId
+     *            the ids
+     * @param plugin
+     *            the plugin
+     */
+    private void executeUpdateWithListId( String strQuery, List<Integer> listId, Plugin plugin )
+    {
+        DAOUtil daoUtil = null;
+        try
+        {
+            daoUtil = new DAOUtil( strQuery, plugin );
+            int nIndex = 1;
+            for ( Integer nId : listId )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            if ( daoUtil != null )
+            {
+                daoUtil.free( );
+            }
+        }
+    }
+
 }
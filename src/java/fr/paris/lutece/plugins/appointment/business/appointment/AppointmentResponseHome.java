@@ -35,6 +35,7 @@ package fr.paris.lutece.plugins.appointment.business.appointment;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
 import fr.paris.lutece.plugins.genericattributes.business.FieldHome;
@@ -124,4 +125,32 @@ public final class AppointmentResponseHome
         return _dao.findListIdResponse( nIdAppointment, _plugin );
     }
 
+    /**
+     * Get the responses of a list of appointments, with their field title
+     * 
+     * @param listIdAppointment
+     *            the list of id of the appointments
+     * @return the responses of each appointment, by id of appointment
+     */
+    public static Map<Integer, List<Response>> findMapResponseByListIdAppointment( List<Integer> listIdAppointment )
+    {
+        return _dao.findMapResponseByListIdAppointment( listIdAppointment, _plugin );
+    }
+
+    /**
+     * Remove the responses of a list of appointments, with their files, and their association with the appointments
+     * 
+     * @param listIdAppointment
+     *            the list of id of the appointments
+     */
+    public static void removeResponsesByListIdAppointment( List<Integer> listIdAppointment )
+    {
+        List<Integer> listIdResponse = _dao.findListIdResponseByListIdAppointment( listIdAppointment, _plugin );
+        _dao.removeAppointmentResponsesByListIdAppointment( listIdAppointment, _plugin );
+        for ( Integer nIdResponse : listIdResponse )
+        {
+            ResponseHome.remove( nIdResponse );
+        }
+    }
+
 }
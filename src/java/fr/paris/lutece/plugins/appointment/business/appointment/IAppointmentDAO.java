@@ -33,7 +33,9 @@
  */
 package fr.paris.lutece.plugins.appointment.business.appointment;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.portal.service.plugin.Plugin;
@@ -62,6 +64,15 @@ public interface IAppointmentDAO
      */
     void insert( Appointment appointment, Plugin plugin );
 
+    /**
+     * Allocate a new primary key for an appointment, so that the appointment can be built with its id before being inserted
+     * 
+     * @param plugin
+     *            the plugin
+     * @return the new primary key
+     */
+    int newPrimaryKey( Plugin plugin );
+
     /**
      * Update the record in the table
      * 
@@ -147,4 +158,94 @@ public interface IAppointmentDAO
      * @return a list of appointments
      */
     List<Appointment> findByFilter( AppointmentFilterDTO appointmentFilter, Plugin plugin );
+
+    /**
+     * Returns one page of the appointments matching the filter, sorted with the sort key of the filter. If the page directly follows the cursor page of the
+     * filter it is read with a keyset condition, otherwise with an offset. The cursor of the filter is then moved to the last row of the page
+     * 
+     * @param appointmentFilter
+     *            the filter, with the page size, the page index and the sort
+     * @param plugin
+     *            the plugin
+     * @return the appointments of the page
+     */
+    List<Appointment> findPageByFilter( AppointmentFilterDTO appointmentFilter, Plugin plugin );
+
+    /**
+     * Returns the number of appointments matching the filter
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @param plugin
+     *            the plugin
+     * @return the number of appointments
+     */
+    int countByFilter( AppointmentFilterDTO appointmentFilter, Plugin plugin );
+
+    /**
+     * Returns the starting dates of the slots of the appointments, not cancelled, taken on a form by the users with the given email between two dates
+     * 
+     * @param strEmail
+     *            the email of the users
+     * @param nIdForm
+     *            the form id
+     * @param nIdAppointmentToExclude
+     *            the id of an appointment to ignore (the appointment being modified), 0 if none
+     * @param startingDateTime
+     *            the lower bound (included) of the period
+     * @param endingDateTime
+     *            the upper bound (excluded) of the period
+     * @param plugin
+     *            the plugin
+     * @return the starting dates of the slots, in ascending order
+     */
+    List<LocalDateTime> findStartingDateTimesByEmailAndIdForm( String strEmail, int nIdForm, int nIdAppointmentToExclude, LocalDateTime startingDateTime,
+            LocalDateTime endingDateTime, Plugin plugin );
+
+    /**
+     * Returns the ids of the appointments of a form, by ascending id, from a given id
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param nIdAppointmentAfter
+     *            the returned ids are greater than this id
+     * @param nLimit
+     *            the max number of ids returned
+     * @param plugin
+     *            the plugin
+     * @return the ids of the appointments
+     */
+    List<Integer> findIdsByIdForm( int nIdForm, int nIdAppointmentAfter, int nLimit, Plugin plugin );
+
+    /**
+     * Returns the number of appointments of a form
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param plugin
+     *            the plugin
+     * @return the number of appointments
+     */
+    int countByIdForm( int nIdForm, Plugin plugin );
+
+    /**
+     * Returns the number of places booked by the appointments, not cancelled, of a list, summed by slot
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @param plugin
+     *            the plugin
+     * @return the number of places booked, by slot id
+     */
+    Map<Integer, Integer> findNbPlacesBookedByIdSlot( List<Integer> listIdAppointment, Plugin plugin );
+
+    /**
+     * Delete a list of appointments with a single query
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @param plugin
+     *            the plugin
+     */
+    void deleteList( List<Integer> listIdAppointment, Plugin plugin );
 }
@@ -34,7 +34,9 @@
 package fr.paris.lutece.plugins.appointment.business.appointment;
 
 import java.util.List;
+import java.util.Map;
 
+import fr.paris.lutece.plugins.genericattributes.business.Response;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
 /**
@@ -84,4 +86,35 @@ public interface IAppointmentResponseDAO
      */
     List<Integer> findListIdResponse( int nIdAppointment, Plugin plugin );
 
+    /**
+     * Get the responses of a list of appointments with one query. The responses only hold the id of their entry, and their field with its id and title
+     * 
+     * @param listIdAppointment
+     *            the list of id of the appointments
+     * @param plugin
+     *            the plugin
+     * @return the responses of each appointment, by id of appointment
+     */
+    Map<Integer, List<Response>> findMapResponseByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin );
+
+    /**
+     * Get the ids of the responses of a list of appointments with one query
+     * 
+     * @param listIdAppointment
+     *            the list of id of the appointments
+     * @param plugin
+     *            the plugin
+     * @return the ids of the responses
+     */
+    List<Integer> findListIdResponseByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin );
+
+    /**
+     * Remove the association of the responses of a list of appointments with the appointments, with one query
+     * 
+     * @param listIdAppointment
+     *            the list of id of the appointments
+     * @param plugin
+     *            the plugin
+     */
+    void removeAppointmentResponsesByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin );
 }
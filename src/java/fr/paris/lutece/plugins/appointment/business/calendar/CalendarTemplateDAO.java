@@ -48,6 +48,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
  */
 public final class CalendarTemplateDAO extends UtilDAO implements ICalendarTemplateDAO
 {
+    private static final String SEQUENCE_NAME = "appointment_calendar_template";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_calendar_template) FROM appointment_calendar_template";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_calendar_template (id_calendar_template, title, description, template_path) VALUES (?,?,?,?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_calendar_template SET title = ?, description = ?, template_path = ? WHERE id_calendar_template = ?";
@@ -56,9 +57,9 @@ public final class CalendarTemplateDAO extends UtilDAO implements ICalendarTempl
     private static final String SQL_QUERY_SELECT_ALL = "SELECT id_calendar_template, title, description, template_path FROM appointment_calendar_template";
 
     @Override
-    public synchronized void insert( CalendarTemplate calendarTemplate, Plugin plugin )
+    public void insert( CalendarTemplate calendarTemplate, Plugin plugin )
     {
-        calendarTemplate.setIdCalendarTemplate( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        calendarTemplate.setIdCalendarTemplate( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, calendarTemplate, plugin, true );
         executeUpdate( daoUtil );
     }
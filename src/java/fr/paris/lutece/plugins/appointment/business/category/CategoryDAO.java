@@ -49,6 +49,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class CategoryDAO extends UtilDAO implements ICategoryDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_category";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_category) FROM appointment_category";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_category (id_category, label) VALUES (?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_category SET label = ? WHERE id_category = ?";
@@ -59,9 +60,9 @@ public final class CategoryDAO extends UtilDAO implements ICategoryDAO
     private static final String SQL_QUERY_SELECT_BY_LABEL = SQL_QUERY_SELECT_COLUMNS + " WHERE label = ?";
 
     @Override
-    public synchronized void insert( Category category, Plugin plugin )
+    public void insert( Category category, Plugin plugin )
     {
-        category.setIdCategory( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        category.setIdCategory( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, category, plugin, true );
         executeUpdate( daoUtil );
     }
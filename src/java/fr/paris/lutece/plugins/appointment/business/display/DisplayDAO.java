@@ -47,6 +47,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class DisplayDAO extends UtilDAO implements IDisplayDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_display";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_display) FROM appointment_display";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_display (id_display, display_title_fo, icon_form_content, icon_form_mime_type, nb_weeks_to_display, is_displayed_on_portlet, id_calendar_template, id_form) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_display SET display_title_fo = ?, icon_form_content = ?, icon_form_mime_type = ?, nb_weeks_to_display = ?, is_displayed_on_portlet = ?, id_calendar_template = ?, id_form = ? WHERE id_display = ?";
@@ -56,9 +57,9 @@ public final class DisplayDAO extends UtilDAO implements IDisplayDAO
     private static final String SQL_QUERY_SELECT_BY_ID_FORM = SQL_QUERY_SELECT_COLUMNS + " WHERE id_form = ?";
 
     @Override
-    public synchronized void insert( Display display, Plugin plugin )
+    public void insert( Display display, Plugin plugin )
     {
-        display.setIdDisplay( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        display.setIdDisplay( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, display, plugin, true );
         executeUpdate( daoUtil );
     }
@@ -49,6 +49,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class FormDAO extends UtilDAO implements IFormDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_form";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_form) FROM appointment_form";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_form (id_form, title, description, reference, id_category, starting_validity_date, ending_validity_date, is_active, id_workflow, workgroup) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_form SET title = ?, description = ?, reference = ?, id_category = ?, starting_validity_date = ?, ending_validity_date = ?, is_active = ?, id_workflow = ?, workgroup = ? WHERE id_form = ?";
@@ -62,9 +63,9 @@ public final class FormDAO extends UtilDAO implements IFormDAO
             + " INNER JOIN appointment_display display ON form.id_form = display.id_form WHERE form.is_active = 1 AND display.is_displayed_on_portlet = 1";
 
     @Override
-    public synchronized void insert( Form form, Plugin plugin )
+    public void insert( Form form, Plugin plugin )
     {
-        form.setIdForm( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        form.setIdForm( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, form, plugin, true );
         executeUpdate( daoUtil );
     }
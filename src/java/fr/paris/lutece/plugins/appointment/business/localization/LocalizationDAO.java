@@ -40,6 +40,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class LocalizationDAO extends UtilDAO implements ILocalizationDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_localization";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_localization) FROM appointment_localization";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_localization (id_localization, longitude, latitude, address, id_form) VALUES (?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_localization SET longitude = ?, latitude = ?, address = ?, id_form = ? WHERE id_localization = ?";
@@ -49,9 +50,9 @@ public final class LocalizationDAO extends UtilDAO implements ILocalizationDAO
     private static final String SQL_QUERY_SELECT_BY_ID_FORM = SQL_QUERY_SELECT_COLUMNS + " WHERE id_form = ?";
 
     @Override
-    public synchronized void insert( Localization localization, Plugin plugin )
+    public void insert( Localization localization, Plugin plugin )
     {
-        localization.setIdLocalization( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        localization.setIdLocalization( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, localization, plugin, true );
         executeUpdate( daoUtil );
     }
@@ -51,6 +51,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class ClosingDayDAO extends UtilDAO implements IClosingDayDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_closing_day";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_closing_day) FROM appointment_closing_day";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_closing_day (id_closing_day, date_of_closing_day, id_form) VALUES ( ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_closing_day SET date_of_closing_day = ?, id_form = ? WHERE id_closing_day = ?";
@@ -63,13 +64,30 @@ public final class ClosingDayDAO extends UtilDAO implements IClosingDayDAO
             + " AND date_of_closing_day >= ? AND date_of_closing_day <= ?";
 
     @Override
-    public synchronized void insert( ClosingDay closingDay, Plugin plugin )
+    public void insert( ClosingDay closingDay, Plugin plugin )
     {
-        closingDay.setIdClosingDay( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        closingDay.setIdClosingDay( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, closingDay, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void insertList( List<ClosingDay> listClosingDay, Plugin plugin )
+    {
+        for ( List<ClosingDay> listRows : partitionRowsToInsert( listClosingDay ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( ClosingDay closingDay : listRows )
+            {
+                closingDay.setIdClosingDay( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+                daoUtil.setInt( nIndex++, closingDay.getIdClosingDay( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, closingDay );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void update( ClosingDay closingDay, Plugin plugin )
     {
@@ -227,8 +245,7 @@ public final class ClosingDayDAO extends UtilDAO implements IClosingDayDAO
         {
             daoUtil.setInt( nIndex++, closingDay.getIdClosingDay( ) );
         }
-        daoUtil.setDate( nIndex++, closingDay.getSqlDateOfClosingDay( ) );
-        daoUtil.setInt( nIndex++, closingDay.getIdForm( ) );
+        nIndex = setColumnValues( daoUtil, nIndex, closingDay );
         if ( !isInsert )
         {
             daoUtil.setInt( nIndex, closingDay.getIdClosingDay( ) );
@@ -236,6 +253,25 @@ public final class ClosingDayDAO extends UtilDAO implements IClosingDayDAO
         return daoUtil;
     }
 
+    /**
+     * Set the values of the columns of a closingDay, except its id, in a query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nFirstIndex
+     *            the index of the first column
+     * @param closingDay
+     *            the closingDay
+     * @return the index of the parameter following the columns
+     */
+    private int setColumnValues( DAOUtil daoUtil, int nFirstIndex, ClosingDay closingDay )
+    {
+        int nIndex = nFirstIndex;
+        daoUtil.setDate( nIndex++, closingDay.getSqlDateOfClosingDay( ) );
+        daoUtil.setInt( nIndex++, closingDay.getIdForm( ) );
+        return nIndex;
+    }
+
     /**
      * Execute a safe update (Free the connection in case of error when execute the query)
      * 
@@ -75,6 +75,17 @@ public final class ClosingDayHome
         return closingDay;
     }
 
+    /**
+     * Create a list of closing days with batched inserts
+     * 
+     * @param listClosingDay
+     *            the closing days to create
+     */
+    public static void createList( List<ClosingDay> listClosingDay )
+    {
+        _dao.insertList( listClosingDay, _plugin );
+    }
+
     /**
      * Update of the ClosingDay which is specified in parameter
      * 
@@ -62,6 +62,16 @@ public interface IClosingDayDAO
      */
     void insert( ClosingDay closingDay, Plugin plugin );
 
+    /**
+     * Insert a list of new records in the table, with batches of several rows per query
+     * 
+     * @param listClosingDay
+     *            the list of the closing days to insert (their ids are set)
+     * @param plugin
+     *            the plugin
+     */
+    void insertList( List<ClosingDay> listClosingDay, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
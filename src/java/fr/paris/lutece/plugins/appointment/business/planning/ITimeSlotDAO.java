@@ -61,6 +61,16 @@ public interface ITimeSlotDAO
      */
     void insert( TimeSlot timeSlot, Plugin plugin );
 
+    /**
+     * Insert a list of new records in the table, with batches of several rows per query
+     * 
+     * @param listTimeSlot
+     *            the list of the time slots to insert (their ids are set)
+     * @param plugin
+     *            the plugin
+     */
+    void insertList( List<TimeSlot> listTimeSlot, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
@@ -71,6 +81,17 @@ public interface ITimeSlotDAO
      */
     void update( TimeSlot timeSlot, Plugin plugin );
 
+    /**
+     * Update the records of a list of time slots, with a few statements whatever the number of time slots. The time slots can be moved over the previous
+     * times of each other
+     * 
+     * @param listTimeSlot
+     *            the time slots, with their new values
+     * @param plugin
+     *            the plugin
+     */
+    void updateList( List<TimeSlot> listTimeSlot, Plugin plugin );
+
     /**
      * Delete a record from the table
      * 
@@ -62,6 +62,16 @@ public interface IWeekDefinitionDAO
      */
     void insert( WeekDefinition weekDefinition, Plugin plugin );
 
+    /**
+     * Insert a list of new records in the table, with batches of several rows per query
+     * 
+     * @param listWeekDefinition
+     *            the list of the week definitions to insert (their ids are set)
+     * @param plugin
+     *            the plugin
+     */
+    void insertList( List<WeekDefinition> listWeekDefinition, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
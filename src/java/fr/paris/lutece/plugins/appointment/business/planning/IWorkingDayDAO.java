@@ -61,6 +61,16 @@ public interface IWorkingDayDAO
      */
     void insert( WorkingDay workingDay, Plugin plugin );
 
+    /**
+     * Insert a list of new records in the table, with batches of several rows per query
+     * 
+     * @param listWorkingDay
+     *            the list of the working days to insert (their ids are set)
+     * @param plugin
+     *            the plugin
+     */
+    void insertList( List<WorkingDay> listWorkingDay, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
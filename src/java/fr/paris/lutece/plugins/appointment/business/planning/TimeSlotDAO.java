@@ -33,6 +33,7 @@
  */
 package fr.paris.lutece.plugins.appointment.business.planning;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,22 +50,41 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class TimeSlotDAO extends UtilDAO implements ITimeSlotDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_time_slot";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_time_slot) FROM appointment_time_slot";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_time_slot (id_time_slot, starting_time, ending_time, is_open, max_capacity, id_working_day) VALUES (?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_time_slot SET starting_time = ?, ending_time = ?, is_open = ?, max_capacity = ?, id_working_day = ? WHERE id_time_slot = ?";
     private static final String SQL_QUERY_DELETE = "DELETE FROM appointment_time_slot WHERE id_time_slot = ?";
+    private static final String SQL_QUERY_DELETE_LIST = "DELETE FROM appointment_time_slot WHERE id_time_slot IN ( {0} )";
     private static final String SQL_QUERY_SELECT_COLUMNS = "SELECT id_time_slot, starting_time, ending_time, is_open, max_capacity, id_working_day FROM appointment_time_slot";
     private static final String SQL_QUERY_SELECT = SQL_QUERY_SELECT_COLUMNS + " WHERE id_time_slot = ?";
     private static final String SQL_QUERY_SELECT_BY_ID_WORKING_DAY = SQL_QUERY_SELECT_COLUMNS + " WHERE id_working_day = ?";
 
     @Override
-    public synchronized void insert( TimeSlot timeSlot, Plugin plugin )
+    public void insert( TimeSlot timeSlot, Plugin plugin )
     {
-        timeSlot.setIdTimeSlot( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        timeSlot.setIdTimeSlot( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, timeSlot, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void insertList( List<TimeSlot> listTimeSlot, Plugin plugin )
+    {
+        for ( List<TimeSlot> listRows : partitionRowsToInsert( listTimeSlot ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( TimeSlot timeSlot : listRows )
+            {
+                timeSlot.setIdTimeSlot( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+                daoUtil.setInt( nIndex++, timeSlot.getIdTimeSlot( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, timeSlot );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void update( TimeSlot timeSlot, Plugin plugin )
     {
@@ -72,6 +92,37 @@ public final class TimeSlotDAO extends UtilDAO implements ITimeSlotDAO
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void updateList( List<TimeSlot> listTimeSlot, Plugin plugin )
+    {
+        List<List<TimeSlot>> listChunks = partitionRowsToInsert( listTimeSlot );
+        // The times are not nullable : the rows are deleted and inserted again
+        // with their ids, so that the new times of a time slot can not
+        // conflict in the unique indexes with the previous times of another
+        // time slot, whatever the order of the updates
+        for ( List<TimeSlot> listRows : listChunks )
+        {
+            DAOUtil daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_DELETE_LIST, getInClauseParameters( listRows.size( ) ) ), plugin );
+            int nIndex = 1;
+            for ( TimeSlot timeSlot : listRows )
+            {
+                daoUtil.setInt( nIndex++, timeSlot.getIdTimeSlot( ) );
+            }
+            executeUpdate( daoUtil );
+        }
+        for ( List<TimeSlot> listRows : listChunks )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( TimeSlot timeSlot : listRows )
+            {
+                daoUtil.setInt( nIndex++, timeSlot.getIdTimeSlot( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, timeSlot );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void delete( int nIdTimeSlot, Plugin plugin )
     {
@@ -172,11 +223,7 @@ public final class TimeSlotDAO extends UtilDAO implements ITimeSlotDAO
         {
             daoUtil.setInt( nIndex++, timeSlot.getIdTimeSlot( ) );
         }
-        daoUtil.setTime( nIndex++, timeSlot.getStartingTimeSqlTime( ) );
-        daoUtil.setTime( nIndex++, timeSlot.getEndingTimeSqlTime( ) );
-        daoUtil.setBoolean( nIndex++, timeSlot.getIsOpen( ) );
-        daoUtil.setInt( nIndex++, timeSlot.getMaxCapacity( ) );
-        daoUtil.setInt( nIndex++, timeSlot.getIdWorkingDay( ) );
+        nIndex = setColumnValues( daoUtil, nIndex, timeSlot );
         if ( !isInsert )
         {
             daoUtil.setInt( nIndex, timeSlot.getIdTimeSlot( ) );
@@ -184,6 +231,28 @@ public final class TimeSlotDAO extends UtilDAO implements ITimeSlotDAO
         return daoUtil;
     }
 
+    /**
+     * Set the values of the columns of a timeSlot, except its id, in a query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nFirstIndex
+     *            the index of the first column
+     * @param timeSlot
+     *            the timeSlot
+     * @return the index of the parameter following the columns
+     */
+    private int setColumnValues( DAOUtil daoUtil, int nFirstIndex, TimeSlot timeSlot )
+    {
+        int nIndex = nFirstIndex;
+        daoUtil.setTime( nIndex++, timeSlot.getStartingTimeSqlTime( ) );
+        daoUtil.setTime( nIndex++, timeSlot.getEndingTimeSqlTime( ) );
+        daoUtil.setBoolean( nIndex++, timeSlot.getIsOpen( ) );
+        daoUtil.setInt( nIndex++, timeSlot.getMaxCapacity( ) );
+        daoUtil.setInt( nIndex++, timeSlot.getIdWorkingDay( ) );
+        return nIndex;
+    }
+
     /**
      * Execute a safe update (Free the connection in case of error when execute the query)
      * 
@@ -74,6 +74,17 @@ public final class TimeSlotHome
         return timeSlot;
     }
 
+    /**
+     * Create a list of time slots with batched inserts
+     * 
+     * @param listTimeSlot
+     *            the time slots to create
+     */
+    public static void createList( List<TimeSlot> listTimeSlot )
+    {
+        _dao.insertList( listTimeSlot, _plugin );
+    }
+
     /**
      * Update of the TimeSlot which is specified in parameter
      * 
@@ -88,6 +99,18 @@ public final class TimeSlotHome
         return timeSlot;
     }
 
+    /**
+     * Update a list of time slots with set-based statements. The time slots can be moved over the previous times of each other, the update must be done in
+     * a transaction
+     * 
+     * @param listTimeSlot
+     *            the time slots, with their new values
+     */
+    public static void updateList( List<TimeSlot> listTimeSlot )
+    {
+        _dao.updateList( listTimeSlot, _plugin );
+    }
+
     /**
      * Delete the TimeSlot whose identifier is specified in parameter
      * 
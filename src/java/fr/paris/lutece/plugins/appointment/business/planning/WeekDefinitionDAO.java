@@ -51,6 +51,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class WeekDefinitionDAO extends UtilDAO implements IWeekDefinitionDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_week_definition";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_week_definition) FROM appointment_week_definition";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_week_definition (id_week_definition, date_of_apply, id_form) VALUES (?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_week_definition SET date_of_apply = ?, id_form = ? WHERE id_week_definition = ?";
@@ -61,13 +62,30 @@ public final class WeekDefinitionDAO extends UtilDAO implements IWeekDefinitionD
     private static final String SQL_QUERY_SELECT_BY_ID_FORM_AND_DATE_OF_APPLY = SQL_QUERY_SELECT_BY_ID_FORM + " AND date_of_apply = ?";
 
     @Override
-    public synchronized void insert( WeekDefinition weekDefinition, Plugin plugin )
+    public void insert( WeekDefinition weekDefinition, Plugin plugin )
     {
-        weekDefinition.setIdWeekDefinition( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        weekDefinition.setIdWeekDefinition( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, weekDefinition, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void insertList( List<WeekDefinition> listWeekDefinition, Plugin plugin )
+    {
+        for ( List<WeekDefinition> listRows : partitionRowsToInsert( listWeekDefinition ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( WeekDefinition weekDefinition : listRows )
+            {
+                weekDefinition.setIdWeekDefinition( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+                daoUtil.setInt( nIndex++, weekDefinition.getIdWeekDefinition( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, weekDefinition );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void update( WeekDefinition weekDefinition, Plugin plugin )
     {
@@ -198,8 +216,7 @@ public final class WeekDefinitionDAO extends UtilDAO implements IWeekDefinitionD
         {
             daoUtil.setInt( nIndex++, weekDefinition.getIdWeekDefinition( ) );
         }
-        daoUtil.setDate( nIndex++, weekDefinition.getSqlDateOfApply( ) );
-        daoUtil.setInt( nIndex++, weekDefinition.getIdForm( ) );
+        nIndex = setColumnValues( daoUtil, nIndex, weekDefinition );
         if ( !isInsert )
         {
             daoUtil.setInt( nIndex, weekDefinition.getIdWeekDefinition( ) );
@@ -207,6 +224,25 @@ public final class WeekDefinitionDAO extends UtilDAO implements IWeekDefinitionD
         return daoUtil;
     }
 
+    /**
+     * Set the values of the columns of a weekDefinition, except its id, in a query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nFirstIndex
+     *            the index of the first column
+     * @param weekDefinition
+     *            the weekDefinition
+     * @return the index of the parameter following the columns
+     */
+    private int setColumnValues( DAOUtil daoUtil, int nFirstIndex, WeekDefinition weekDefinition )
+    {
+        int nIndex = nFirstIndex;
+        daoUtil.setDate( nIndex++, weekDefinition.getSqlDateOfApply( ) );
+        daoUtil.setInt( nIndex++, weekDefinition.getIdForm( ) );
+        return nIndex;
+    }
+
     /**
      * Execute a safe update (Free the connection in case of error when execute the query)
      * 
@@ -75,6 +75,17 @@ public final class WeekDefinitionHome
         return weekDefinition;
     }
 
+    /**
+     * Create a list of week definitions with batched inserts
+     * 
+     * @param listWeekDefinition
+     *            the week definitions to create
+     */
+    public static void createList( List<WeekDefinition> listWeekDefinition )
+    {
+        _dao.insertList( listWeekDefinition, _plugin );
+    }
+
     /**
      * Update of the WeekDefinition which is specified in parameter
      * 
@@ -49,6 +49,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class WorkingDayDAO extends UtilDAO implements IWorkingDayDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_working_day";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_working_day) FROM appointment_working_day";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_working_day (id_working_day, day_of_week, id_week_definition) VALUES (?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_working_day SET day_of_week = ?, id_week_definition = ? WHERE id_working_day = ?";
@@ -58,13 +59,30 @@ public final class WorkingDayDAO extends UtilDAO implements IWorkingDayDAO
     private static final String SQL_QUERY_SELECT_BY_ID_WEEK_DEFINITION = SQL_QUERY_SELECT_COLUMNS + " WHERE id_week_definition = ?";
 
     @Override
-    public synchronized void insert( WorkingDay workingDay, Plugin plugin )
+    public void insert( WorkingDay workingDay, Plugin plugin )
     {
-        workingDay.setIdWorkingDay( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        workingDay.setIdWorkingDay( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, workingDay, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void insertList( List<WorkingDay> listWorkingDay, Plugin plugin )
+    {
+        for ( List<WorkingDay> listRows : partitionRowsToInsert( listWorkingDay ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( WorkingDay workingDay : listRows )
+            {
+                workingDay.setIdWorkingDay( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+                daoUtil.setInt( nIndex++, workingDay.getIdWorkingDay( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, workingDay );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void update( WorkingDay workingDay, Plugin plugin )
     {
@@ -169,8 +187,7 @@ public final class WorkingDayDAO extends UtilDAO implements IWorkingDayDAO
         {
             daoUtil.setInt( nIndex++, workingDay.getIdWorkingDay( ) );
         }
-        daoUtil.setInt( nIndex++, workingDay.getDayOfWeek( ) );
-        daoUtil.setInt( nIndex++, workingDay.getIdWeekDefinition( ) );
+        nIndex = setColumnValues( daoUtil, nIndex, workingDay );
         if ( !isInsert )
         {
             daoUtil.setInt( nIndex, workingDay.getIdWorkingDay( ) );
@@ -178,6 +195,25 @@ public final class WorkingDayDAO extends UtilDAO implements IWorkingDayDAO
         return daoUtil;
     }
 
+    /**
+     * Set the values of the columns of a workingDay, except its id, in a query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nFirstIndex
+     *            the index of the first column
+     * @param workingDay
+     *            the workingDay
+     * @return the index of the parameter following the columns
+     */
+    private int setColumnValues( DAOUtil daoUtil, int nFirstIndex, WorkingDay workingDay )
+    {
+        int nIndex = nFirstIndex;
+        daoUtil.setInt( nIndex++, workingDay.getDayOfWeek( ) );
+        daoUtil.setInt( nIndex++, workingDay.getIdWeekDefinition( ) );
+        return nIndex;
+    }
+
     /**
      * Execute a safe update (Free the connection in case of error when execute the query)
      * 
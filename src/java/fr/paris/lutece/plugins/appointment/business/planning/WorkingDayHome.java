@@ -74,6 +74,17 @@ public final class WorkingDayHome
         return workingDay;
     }
 
+    /**
+     * Create a list of working days with batched inserts
+     * 
+     * @param listWorkingDay
+     *            the working days to create
+     */
+    public static void createList( List<WorkingDay> listWorkingDay )
+    {
+        _dao.insertList( listWorkingDay, _plugin );
+    }
+
     /**
      * Update of the WorkingDay which is specified in parameter
      * 
@@ -46,6 +46,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class FormRuleDAO extends UtilDAO implements IFormRuleDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_form_rule";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_form_rule) FROM appointment_form_rule";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_form_rule (id_form_rule, is_captcha_enabled, is_mandatory_email_enabled, is_active_authentication, nb_days_before_new_appointment, min_time_before_appointment, nb_max_appointments_per_user, nb_days_for_max_appointments_per_user, id_form) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_form_rule SET is_captcha_enabled = ?, is_mandatory_email_enabled = ?, is_active_authentication = ?, nb_days_before_new_appointment = ?, min_time_before_appointment = ?, nb_max_appointments_per_user = ?, nb_days_for_max_appointments_per_user = ?, id_form = ? WHERE id_form_rule = ?";
@@ -55,9 +56,9 @@ public final class FormRuleDAO extends UtilDAO implements IFormRuleDAO
     private static final String SQL_QUERY_SELECT_BY_ID_FORM = SQL_QUERY_SELECT_COLUMNS + " WHERE id_form = ?";
 
     @Override
-    public synchronized void insert( FormRule formRule, Plugin plugin )
+    public void insert( FormRule formRule, Plugin plugin )
     {
-        formRule.setIdFormRule( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        formRule.setIdFormRule( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, formRule, plugin, true );
         executeUpdate( daoUtil );
     }
@@ -62,6 +62,16 @@ public interface IReservationRuleDAO
      */
     void insert( ReservationRule reservationRule, Plugin plugin );
 
+    /**
+     * Insert a list of new records in the table, with batches of several rows per query
+     * 
+     * @param listReservationRule
+     *            the list of the reservation rules to insert (their ids are set)
+     * @param plugin
+     *            the plugin
+     */
+    void insertList( List<ReservationRule> listReservationRule, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
@@ -51,6 +51,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class ReservationRuleDAO extends UtilDAO implements IReservationRuleDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_reservation_rule";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_reservation_rule) FROM appointment_reservation_rule";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_reservation_rule SET date_of_apply = ?, max_capacity_per_slot = ?, max_people_per_appointment =?, id_form = ? WHERE id_reservation_rule = ?";
     private static final String SQL_QUERY_SELECT_COLUMNS = "SELECT id_reservation_rule, date_of_apply, max_capacity_per_slot, max_people_per_appointment, id_form FROM appointment_reservation_rule";
@@ -61,13 +62,30 @@ public final class ReservationRuleDAO extends UtilDAO implements IReservationRul
     private static final String SQL_QUERY_SELECT_BY_ID_FORM_AND_DATE_OF_APPLY = SQL_QUERY_SELECT_BY_ID_FORM + " AND date_of_apply = ?";
 
     @Override
-    public synchronized void insert( ReservationRule reservationRule, Plugin plugin )
+    public void insert( ReservationRule reservationRule, Plugin plugin )
     {
-        reservationRule.setIdReservationRule( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        reservationRule.setIdReservationRule( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, reservationRule, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void insertList( List<ReservationRule> listReservationRule, Plugin plugin )
+    {
+        for ( List<ReservationRule> listRows : partitionRowsToInsert( listReservationRule ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( ReservationRule reservationRule : listRows )
+            {
+                reservationRule.setIdReservationRule( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+                daoUtil.setInt( nIndex++, reservationRule.getIdReservationRule( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, reservationRule );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void update( ReservationRule reservationRule, Plugin plugin )
     {
@@ -200,10 +218,7 @@ public final class ReservationRuleDAO extends UtilDAO implements IReservationRul
         {
             daoUtil.setInt( nIndex++, reservationRule.getIdReservationRule( ) );
         }
-        daoUtil.setDate( nIndex++, reservationRule.getSqlDateOfApply( ) );
-        daoUtil.setInt( nIndex++, reservationRule.getMaxCapacityPerSlot( ) );
-        daoUtil.setInt( nIndex++, reservationRule.getMaxPeoplePerAppointment( ) );
-        daoUtil.setInt( nIndex++, reservationRule.getIdForm( ) );
+        nIndex = setColumnValues( daoUtil, nIndex, reservationRule );
         if ( !isInsert )
         {
             daoUtil.setInt( nIndex, reservationRule.getIdReservationRule( ) );
@@ -211,6 +226,27 @@ public final class ReservationRuleDAO extends UtilDAO implements IReservationRul
         return daoUtil;
     }
 
+    /**
+     * Set the values of the columns of a reservationRule, except its id, in a query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nFirstIndex
+     *            the index of the first column
+     * @param reservationRule
+     *            the reservationRule
+     * @return the index of the parameter following the columns
+     */
+    private int setColumnValues( DAOUtil daoUtil, int nFirstIndex, ReservationRule reservationRule )
+    {
+        int nIndex = nFirstIndex;
+        daoUtil.setDate( nIndex++, reservationRule.getSqlDateOfApply( ) );
+        daoUtil.setInt( nIndex++, reservationRule.getMaxCapacityPerSlot( ) );
+        daoUtil.setInt( nIndex++, reservationRule.getMaxPeoplePerAppointment( ) );
+        daoUtil.setInt( nIndex++, reservationRule.getIdForm( ) );
+        return nIndex;
+    }
+
     /**
      * Execute a safe update (Free the connection in case of error when execute the query)
      * 
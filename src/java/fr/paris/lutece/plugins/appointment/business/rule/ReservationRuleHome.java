@@ -75,6 +75,17 @@ public final class ReservationRuleHome
         return reservationRule;
     }
 
+    /**
+     * Create a list of reservation rules with batched inserts
+     * 
+     * @param listReservationRule
+     *            the reservation rules to create
+     */
+    public static void createList( List<ReservationRule> listReservationRule )
+    {
+        _dao.insertList( listReservationRule, _plugin );
+    }
+
     /**
      * Update of the ReservationRule which is specified in parameter
      * 
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.sequence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.paris.lutece.plugins.appointment.business.UtilDAO;
+import fr.paris.lutece.portal.service.database.PluginConnectionService;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Hi/lo allocator of primary keys. Each JVM reserves blocks of keys in the table appointment_id_sequence with a conditional update (so that two nodes can
+ * never reserve the same block), then gives the keys of its block without any query. The sequences are initialized with the max primary key of their table
+ * on their first use. With a block size of 1, each key is allocated in database.
+ * 
+ */
+public final class HiLoIdAllocator implements IIdAllocator
+{
+    private static final String PROPERTY_BLOCK_SIZE = "appointment.idAllocator.blockSize";
+    private static final int DEFAULT_BLOCK_SIZE = 20;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private static final String SQL_QUERY_SELECT = "SELECT next_value FROM appointment_id_sequence WHERE sequence_name = ?";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_id_sequence (sequence_name, next_value) VALUES ( ?, ?)";
+    private static final String SQL_QUERY_UPDATE = "UPDATE appointment_id_sequence SET next_value = ? WHERE sequence_name = ? AND next_value = ?";
+
+    private final int _nBlockSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BLOCK_SIZE, DEFAULT_BLOCK_SIZE ) );
+    private final Map<String, Block> _mapBlocks = new ConcurrentHashMap<>( );
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNewPrimaryKey( String strSequenceName, String strQueryMaxKey, Plugin plugin )
+    {
+        Block block = _mapBlocks.computeIfAbsent( strSequenceName, s -> new Block( ) );
+        synchronized( block )
+        {
+            if ( block._nNextValue >= block._nLimit )
+            {
+                block._nNextValue = reserveBlock( strSequenceName, strQueryMaxKey, plugin );
+                block._nLimit = block._nNextValue + _nBlockSize;
+            }
+            return block._nNextValue++;
+        }
+    }
+
+    /**
+     * Reserve a new block of keys in database. The block is reserved with a connection of its own, outside of any transaction in progress : a block must
+     * never be given back by a rollback
+     * 
+     * @param strSequenceName
+     *            the name of the sequence
+     * @param strQueryMaxKey
+     *            the query returning the max primary key of the table
+     * @param plugin
+     *            the plugin
+     * @return the first key of the block
+     */
+    private int reserveBlock( String strSequenceName, String strQueryMaxKey, Plugin plugin )
+    {
+        PluginConnectionService connectionService = plugin.getConnectionService( );
+        Connection connection = connectionService.getConnection( );
+        try
+        {
+            connection.setAutoCommit( true );
+            for ( int nAttempt = 0; nAttempt < MAX_ATTEMPTS; nAttempt++ )
+            {
+                Integer nNextValue = selectNextValue( connection, strSequenceName );
+                if ( nNextValue == null )
+                {
+                    initSequence( connection, strSequenceName, UtilDAO.getNewPrimaryKey( strQueryMaxKey, plugin ) );
+                }
+                else
+                    if ( compareAndSetNextValue( connection, strSequenceName, nNextValue, nNextValue + _nBlockSize ) )
+                    {
+                        return nNextValue;
+                    }
+            }
+        }
+        catch( SQLException e )
+        {
+            throw new AppException( e.getMessage( ), e );
+        }
+        finally
+        {
+            connectionService.freeConnection( connection );
+        }
+        throw new AppException( "Unable to reserve a block of keys for the sequence " + strSequenceName );
+    }
+
+    /**
+     * Get the next value of a sequence
+     * 
+     * @param connection
+     *            the connection
+     * @param strSequenceName
+     *            the name of the sequence
+     * @return the next value, null if the sequence does not exist
+     * @throws SQLException
+     *             if an error occurs
+     */
+    private static Integer selectNextValue( Connection connection, String strSequenceName ) throws SQLException
+    {
+        try ( PreparedStatement statement = connection.prepareStatement( SQL_QUERY_SELECT ) )
+        {
+            statement.setString( 1, strSequenceName );
+            try ( ResultSet resultSet = statement.executeQuery( ) )
+            {
+                return resultSet.next( ) ? resultSet.getInt( 1 ) : null;
+            }
+        }
+    }
+
+    /**
+     * Create a sequence. If another node created it at the same time, the sequence of the other node is kept
+     * 
+     * @param connection
+     *            the connection
+     * @param strSequenceName
+     *            the name of the sequence
+     * @param nFirstValue
+     *            the first value of the sequence
+     */
+    private static void initSequence( Connection connection, String strSequenceName, int nFirstValue )
+    {
+        try ( PreparedStatement statement = connection.prepareStatement( SQL_QUERY_INSERT ) )
+        {
+            statement.setString( 1, strSequenceName );
+            statement.setInt( 2, nFirstValue );
+            statement.executeUpdate( );
+        }
+        catch( SQLException e )
+        {
+            AppLogService.debug( "Sequence " + strSequenceName + " already created", e );
+        }
+    }
+
+    /**
+     * Set the next value of a sequence if it has not been changed since it was read
+     * 
+     * @param connection
+     *            the connection
+     * @param strSequenceName
+     *            the name of the sequence
+     * @param nExpectedValue
+     *            the value read
+     * @param nNewValue
+     *            the new value
+     * @return true if the value has been set
+     * @throws SQLException
+     *             if an error occurs
+     */
+    private static boolean compareAndSetNextValue( Connection connection, String strSequenceName, int nExpectedValue, int nNewValue ) throws SQLException
+    {
+        try ( PreparedStatement statement = connection.prepareStatement( SQL_QUERY_UPDATE ) )
+        {
+            statement.setInt( 1, nNewValue );
+            statement.setString( 2, strSequenceName );
+            statement.setInt( 3, nExpectedValue );
+            return statement.executeUpdate( ) == 1;
+        }
+    }
+
+    /**
+     * Block of keys reserved by this JVM
+     */
+    private static final class Block
+    {
+        private int _nNextValue;
+        private int _nLimit;
+    }
+}
@@ -62,6 +62,16 @@ public interface ISlotDAO
      */
     void insert( Slot slot, Plugin plugin );
 
+    /**
+     * Insert a list of new records in the table, with batches of several rows per query
+     * 
+     * @param listSlot
+     *            the list of the slots to insert (their ids are set)
+     * @param plugin
+     *            the plugin
+     */
+    void insertList( List<Slot> listSlot, Plugin plugin );
+
     /**
      * Update the record in the table
      * 
@@ -72,6 +82,59 @@ public interface ISlotDAO
      */
     void update( Slot slot, Plugin plugin );
 
+    /**
+     * Update the period (starting and ending date times) and the specific flag of a list of slots, with a few statements whatever the number of slots.
+     * The slots can be moved over the previous periods of each other
+     * 
+     * @param listSlot
+     *            the slots, with their new period
+     * @param plugin
+     *            the plugin
+     */
+    void updatePeriodList( List<Slot> listSlot, Plugin plugin );
+
+    /**
+     * Take places on a slot in a single conditional statement. The update is only applied if the slot still has enough remaining places, so that two
+     * concurrent bookings can never overbook the slot
+     * 
+     * @param nIdSlot
+     *            the identifier of the Slot
+     * @param nNbPlacesToTake
+     *            the number of places to take (negative to give back places)
+     * @param nNbPotentialPlacesDelta
+     *            the value to add to the potential remaining places
+     * @param plugin
+     *            the plugin
+     * @return true if the places have been taken, false if the slot is full
+     */
+    boolean updatePlacesIfAvailable( int nIdSlot, int nNbPlacesToTake, int nNbPotentialPlacesDelta, Plugin plugin );
+
+    /**
+     * Add a value to the potential remaining places of a slot in a single statement, without reading the slot. The result is kept between 0 and the
+     * remaining places of the slot
+     * 
+     * @param nIdSlot
+     *            the identifier of the Slot
+     * @param nNbPotentialPlacesDelta
+     *            the value to add to the potential remaining places (negative to hold places)
+     * @param plugin
+     *            the plugin
+     */
+    void updatePotentialRemainingPlaces( int nIdSlot, int nNbPotentialPlacesDelta, Plugin plugin );
+
+    /**
+     * Give back to a slot the places released by deleted appointments in a single statement, without reading the slot. The remaining places are kept
+     * between 0 and the capacity of the slot (less if it is overbooked)
+     * 
+     * @param nIdSlot
+     *            the identifier of the Slot
+     * @param nNbPlacesReleased
+     *            the number of places released
+     * @param plugin
+     *            the plugin
+     */
+    void updatePlacesReleased( int nIdSlot, int nNbPlacesReleased, Plugin plugin );
+
     /**
      * Delete a record from the table
      * 
@@ -82,6 +145,18 @@ public interface ISlotDAO
      */
     void delete( int nIdSlot, Plugin plugin );
 
+    /**
+     * Delete the records of a list that nobody has used : not specific, with no place taken or held and no appointment. The conditions are checked by the
+     * delete statement itself, so a slot booked in the meantime is kept
+     * 
+     * @param listIdSlot
+     *            identifiers of the Slots to delete
+     * @param plugin
+     *            the plugin
+     * @return the number of records deleted
+     */
+    int deleteUnusedList( List<Integer> listIdSlot, Plugin plugin );
+
     /**
      * Load the data from the table
      * 
@@ -130,6 +205,21 @@ public interface ISlotDAO
      */
     List<Slot> findByIdForm( int nIdForm, Plugin plugin );
 
+    /**
+     * Returns the slots of a form, by ascending id, from a given id
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param nIdSlotAfter
+     *            the ids of the returned slots are greater than this id
+     * @param nLimit
+     *            the max number of slots returned
+     * @param plugin
+     *            the plugin
+     * @return the slots
+     */
+    List<Slot> findByIdForm( int nIdForm, int nIdSlotAfter, int nLimit, Plugin plugin );
+
     /**
      * Returns all the open slots for the given date range
      * 
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.slot;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * Slot Hold DAO Interface
+ * 
+ */
+public interface ISlotHoldDAO
+{
+
+    /**
+     * The name of the bean of the DAO
+     */
+    static String BEAN_NAME = "appointment.slotHoldDAO";
+
+    /**
+     * Insert a new record in the table
+     * 
+     * @param slotHold
+     *            instance of the SlotHold object to insert
+     * @param plugin
+     *            the plugin
+     */
+    void insert( SlotHold slotHold, Plugin plugin );
+
+    /**
+     * Delete a record from the table
+     * 
+     * @param nIdSlotHold
+     *            identifier of the SlotHold to delete
+     * @param plugin
+     *            the plugin
+     * @return true if the hold existed and has been deleted
+     */
+    boolean delete( int nIdSlotHold, Plugin plugin );
+
+    /**
+     * Delete a list of records from the table
+     * 
+     * @param listIdSlotHold
+     *            the identifiers of the SlotHolds to delete
+     * @param plugin
+     *            the plugin
+     * @return the number of records deleted
+     */
+    int deleteList( List<Integer> listIdSlotHold, Plugin plugin );
+
+    /**
+     * Returns the holds expired at a given date, in the order of their expiration
+     * 
+     * @param dateTime
+     *            the date
+     * @param nMaxNbHolds
+     *            the maximum number of holds to return
+     * @param plugin
+     *            the plugin
+     * @return the list of the expired holds
+     */
+    List<SlotHold> findExpired( LocalDateTime dateTime, int nMaxNbHolds, Plugin plugin );
+
+    /**
+     * Returns the number of holds in the table
+     * 
+     * @param plugin
+     *            the plugin
+     * @return the number of holds
+     */
+    int count( Plugin plugin );
+}
@@ -34,6 +34,7 @@
 package fr.paris.lutece.plugins.appointment.business.slot;
 
 import java.sql.Timestamp;
+import java.text.MessageFormat;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,14 +52,23 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class SlotDAO extends UtilDAO implements ISlotDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_slot";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_slot) FROM appointment_slot";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_slot (id_slot, starting_date_time, ending_date_time, is_open, is_specific, max_capacity, nb_remaining_places, nb_potential_remaining_places, nb_places_taken, id_form) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_slot SET starting_date_time = ?, ending_date_time = ?, is_open = ?, is_specific = ?, max_capacity = ?, nb_remaining_places = ?, nb_potential_remaining_places = ?, nb_places_taken = ?, id_form = ? WHERE id_slot = ?";
     private static final String SQL_QUERY_DELETE = "DELETE FROM appointment_slot WHERE id_slot = ?";
+    private static final String SQL_QUERY_DELETE_UNUSED_LIST = "DELETE FROM appointment_slot WHERE id_slot IN ( {0} ) AND is_specific = 0 AND nb_places_taken = 0"
+            + " AND nb_remaining_places = max_capacity AND nb_potential_remaining_places = max_capacity"
+            + " AND NOT EXISTS ( SELECT app.id_appointment FROM appointment_appointment app WHERE app.id_slot = appointment_slot.id_slot )";
+    private static final String SQL_QUERY_CLEAR_PERIOD_LIST = "UPDATE appointment_slot SET starting_date_time = NULL, ending_date_time = NULL WHERE id_slot IN ( {0} )";
+    private static final String SQL_QUERY_UPDATE_PERIOD_LIST = "UPDATE appointment_slot SET starting_date_time = CASE id_slot {0} END, ending_date_time = CASE id_slot {0} END,"
+            + " is_specific = CASE id_slot {0} END WHERE id_slot IN ( {1} )";
+    private static final String SQL_WHEN_THEN = " WHEN ? THEN ?";
     private static final String SQL_QUERY_SELECT_COLUMNS = "SELECT id_slot, starting_date_time, ending_date_time, is_open, is_specific, max_capacity, nb_remaining_places, nb_potential_remaining_places, nb_places_taken, id_form ";
     private static final String SQL_FROM_APPOINTMENT_SLOT = "FROM appointment_slot";
     private static final String SQL_QUERY_SELECT = SQL_QUERY_SELECT_COLUMNS + SQL_FROM_APPOINTMENT_SLOT + " WHERE id_slot = ?";
     private static final String SQL_QUERY_SELECT_BY_ID_FORM = SQL_QUERY_SELECT_COLUMNS + SQL_FROM_APPOINTMENT_SLOT + " WHERE id_form = ?";
+    private static final String SQL_QUERY_SELECT_BY_ID_FORM_AFTER_ID = SQL_QUERY_SELECT_BY_ID_FORM + " AND id_slot > ? ORDER BY id_slot LIMIT ?";
     private static final String SQL_QUERY_SELECT_BY_ID_FORM_AND_IS_SPECIFIC = SQL_QUERY_SELECT_BY_ID_FORM + " AND is_specific = 1";
     private static final String SQL_QUERY_SELECT_BY_ID_FORM_AND_DATE_RANGE = SQL_QUERY_SELECT_COLUMNS + SQL_FROM_APPOINTMENT_SLOT
             + " WHERE id_form = ? AND starting_date_time >= ? AND ending_date_time <= ?";
@@ -68,15 +78,38 @@ public final class SlotDAO extends UtilDAO implements ISlotDAO
             + " WHERE id_form = ? AND is_open = 1";
     private static final String SQL_QUERY_SELECT_SLOT_WITH_MAX_DATE = SQL_QUERY_SELECT_COLUMNS + "FROM appointment_slot slot"
             + " WHERE slot.id_form = ? ORDER BY slot.starting_date_time DESC LIMIT 1";
+    private static final String SQL_QUERY_UPDATE_PLACES_IF_AVAILABLE = "UPDATE appointment_slot SET nb_potential_remaining_places = LEAST(nb_potential_remaining_places + ?, nb_remaining_places - ?),"
+            + " nb_remaining_places = nb_remaining_places - ?, nb_places_taken = nb_places_taken + ? WHERE id_slot = ? AND nb_remaining_places >= ?";
+    private static final String SQL_QUERY_UPDATE_POTENTIAL_REMAINING_PLACES = "UPDATE appointment_slot SET nb_potential_remaining_places = GREATEST(0, LEAST(nb_potential_remaining_places + ?, nb_remaining_places)) WHERE id_slot = ?";
+    private static final String SQL_QUERY_UPDATE_PLACES_RELEASED = "UPDATE appointment_slot SET nb_remaining_places = LEAST(max_capacity, nb_remaining_places + ?, GREATEST(0, max_capacity - nb_places_taken + ?)),"
+            + " nb_potential_remaining_places = LEAST(max_capacity, nb_potential_remaining_places + ?, GREATEST(0, max_capacity - nb_places_taken + ?)),"
+            + " nb_places_taken = nb_places_taken - ? WHERE id_slot = ?";
 
     @Override
-    public synchronized void insert( Slot slot, Plugin plugin )
+    public void insert( Slot slot, Plugin plugin )
     {
-        slot.setIdSlot( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        slot.setIdSlot( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, slot, plugin, true );
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void insertList( List<Slot> listSlot, Plugin plugin )
+    {
+        for ( List<Slot> listRows : partitionRowsToInsert( listSlot ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( getMultipleRowsInsertQuery( SQL_QUERY_INSERT, listRows.size( ) ), plugin );
+            int nIndex = 1;
+            for ( Slot slot : listRows )
+            {
+                slot.setIdSlot( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+                daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
+                nIndex = setColumnValues( daoUtil, nIndex, slot );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
     @Override
     public void update( Slot slot, Plugin plugin )
     {
@@ -84,6 +117,108 @@ public final class SlotDAO extends UtilDAO implements ISlotDAO
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public void updatePeriodList( List<Slot> listSlot, Plugin plugin )
+    {
+        List<List<Slot>> listChunks = partitionRowsToInsert( listSlot );
+        // The periods of all the slots are cleared first, so that the new
+        // period of a slot can not conflict in the unique indexes with the
+        // previous period of another slot, whatever the order of the updates
+        for ( List<Slot> listRows : listChunks )
+        {
+            DAOUtil daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_CLEAR_PERIOD_LIST, getInClauseParameters( listRows.size( ) ) ), plugin );
+            int nIndex = 1;
+            for ( Slot slot : listRows )
+            {
+                daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
+            }
+            executeUpdate( daoUtil );
+        }
+        for ( List<Slot> listRows : listChunks )
+        {
+            StringBuilder sbWhenThen = new StringBuilder( );
+            for ( int i = 0; i < listRows.size( ); i++ )
+            {
+                sbWhenThen.append( SQL_WHEN_THEN );
+            }
+            DAOUtil daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_UPDATE_PERIOD_LIST, sbWhenThen.toString( ),
+                    getInClauseParameters( listRows.size( ) ) ), plugin );
+            int nIndex = 1;
+            for ( Slot slot : listRows )
+            {
+                daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
+                daoUtil.setTimestamp( nIndex++, slot.getStartingTimestampDate( ) );
+            }
+            for ( Slot slot : listRows )
+            {
+                daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
+                daoUtil.setTimestamp( nIndex++, slot.getEndingTimestampDate( ) );
+            }
+            for ( Slot slot : listRows )
+            {
+                daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
+                daoUtil.setBoolean( nIndex++, slot.getIsSpecific( ) );
+            }
+            for ( Slot slot : listRows )
+            {
+                daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
+            }
+            executeUpdate( daoUtil );
+        }
+    }
+
+    @Override
+    public boolean updatePlacesIfAvailable( int nIdSlot, int nNbPlacesToTake, int nNbPotentialPlacesDelta, Plugin plugin )
+    {
+        // The potential remaining places are set first so that every
+        // expression of the statement is computed with the previous values
+        // of the row, whatever the evaluation order of the database
+        int nIndex = 1;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_PLACES_IF_AVAILABLE, plugin );
+        daoUtil.setInt( nIndex++, nNbPotentialPlacesDelta );
+        daoUtil.setInt( nIndex++, nNbPlacesToTake );
+        daoUtil.setInt( nIndex++, nNbPlacesToTake );
+        daoUtil.setInt( nIndex++, nNbPlacesToTake );
+        daoUtil.setInt( nIndex++, nIdSlot );
+        daoUtil.setInt( nIndex, nNbPlacesToTake );
+        int nNbRowsUpdated = 0;
+        try
+        {
+            nNbRowsUpdated = daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return nNbRowsUpdated == 1;
+    }
+
+    @Override
+    public void updatePotentialRemainingPlaces( int nIdSlot, int nNbPotentialPlacesDelta, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_POTENTIAL_REMAINING_PLACES, plugin );
+        daoUtil.setInt( 1, nNbPotentialPlacesDelta );
+        daoUtil.setInt( 2, nIdSlot );
+        executeUpdate( daoUtil );
+    }
+
+    @Override
+    public void updatePlacesReleased( int nIdSlot, int nNbPlacesReleased, Plugin plugin )
+    {
+        // Same computation as for a single deleted appointment, the places
+        // taken being set last so that the other expressions use the previous
+        // value of the row
+        int nIndex = 1;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_PLACES_RELEASED, plugin );
+        daoUtil.setInt( nIndex++, nNbPlacesReleased );
+        daoUtil.setInt( nIndex++, nNbPlacesReleased );
+        daoUtil.setInt( nIndex++, nNbPlacesReleased );
+        daoUtil.setInt( nIndex++, nNbPlacesReleased );
+        daoUtil.setInt( nIndex++, nNbPlacesReleased );
+        daoUtil.setInt( nIndex, nIdSlot );
+        executeUpdate( daoUtil );
+    }
+
     @Override
     public void delete( int nIdSlot, Plugin plugin )
     {
@@ -92,6 +227,30 @@ public final class SlotDAO extends UtilDAO implements ISlotDAO
         executeUpdate( daoUtil );
     }
 
+    @Override
+    public int deleteUnusedList( List<Integer> listIdSlot, Plugin plugin )
+    {
+        int nNbRowsDeleted = 0;
+        for ( List<Integer> listRows : partitionRowsToInsert( listIdSlot ) )
+        {
+            DAOUtil daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_DELETE_UNUSED_LIST, getInClauseParameters( listRows.size( ) ) ), plugin );
+            int nIndex = 1;
+            for ( Integer nIdSlot : listRows )
+            {
+                daoUtil.setInt( nIndex++, nIdSlot );
+            }
+            try
+            {
+                nNbRowsDeleted += daoUtil.executeUpdate( );
+            }
+            finally
+            {
+                daoUtil.free( );
+            }
+        }
+        return nNbRowsDeleted;
+    }
+
     @Override
     public Slot select( int nIdSlot, Plugin plugin )
     {
@@ -194,6 +353,29 @@ public final class SlotDAO extends UtilDAO implements ISlotDAO
         return listSlot;
     }
 
+    @Override
+    public List<Slot> findByIdForm( int nIdForm, int nIdSlotAfter, int nLimit, Plugin plugin )
+    {
+        List<Slot> listSlot = new ArrayList<>( );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_ID_FORM_AFTER_ID, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdForm );
+            daoUtil.setInt( 2, nIdSlotAfter );
+            daoUtil.setInt( 3, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listSlot.add( buildSlot( daoUtil ) );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return listSlot;
+    }
+
     @Override
     public List<Slot> findOpenSlotsByIdFormAndDateRange( int nIdForm, LocalDateTime startingDateTime, LocalDateTime endingDateTime, Plugin plugin )
     {
@@ -318,6 +500,28 @@ public final class SlotDAO extends UtilDAO implements ISlotDAO
         {
             daoUtil.setInt( nIndex++, slot.getIdSlot( ) );
         }
+        nIndex = setColumnValues( daoUtil, nIndex, slot );
+        if ( !isInsert )
+        {
+            daoUtil.setInt( nIndex, slot.getIdSlot( ) );
+        }
+        return daoUtil;
+    }
+
+    /**
+     * Set the values of the columns of a slot, except its id, in a query
+     * 
+     * @param daoUtil
+     *            the daoUtil
+     * @param nFirstIndex
+     *            the index of the first column
+     * @param slot
+     *            the slot
+     * @return the index of the parameter following the columns
+     */
+    private int setColumnValues( DAOUtil daoUtil, int nFirstIndex, Slot slot )
+    {
+        int nIndex = nFirstIndex;
         daoUtil.setTimestamp( nIndex++, slot.getStartingTimestampDate( ) );
         daoUtil.setTimestamp( nIndex++, slot.getEndingTimestampDate( ) );
         daoUtil.setBoolean( nIndex++, slot.getIsOpen( ) );
@@ -327,11 +531,7 @@ public final class SlotDAO extends UtilDAO implements ISlotDAO
         daoUtil.setInt( nIndex++, slot.getNbPotentialRemainingPlaces( ) );
         daoUtil.setInt( nIndex++, slot.getNbPlacesTaken( ) );
         daoUtil.setInt( nIndex++, slot.getIdForm( ) );
-        if ( !isInsert )
-        {
-            daoUtil.setInt( nIndex, slot.getIdSlot( ) );
-        }
-        return daoUtil;
+        return nIndex;
     }
 
     /**
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.slot;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * The business class of a hold on places of a slot. The places are held for a user while he is filling the appointment form, and given back to the slot
+ * when the hold expires
+ * 
+ */
+public final class SlotHold implements Serializable
+{
+
+    /**
+     * Serial version UID
+     */
+    private static final long serialVersionUID = -3411548218271553210L;
+
+    /**
+     * Id of the hold
+     */
+    private int _nIdSlotHold;
+
+    /**
+     * Id of the slot the places are held on
+     */
+    private int _nIdSlot;
+
+    /**
+     * Number of places held
+     */
+    private int _nNbPlaces;
+
+    /**
+     * Date of expiration of the hold
+     */
+    private LocalDateTime _expirationDate;
+
+    /**
+     * Get the id of the hold
+     * 
+     * @return the id of the hold
+     */
+    public int getIdSlotHold( )
+    {
+        return _nIdSlotHold;
+    }
+
+    /**
+     * Set the id of the hold
+     * 
+     * @param nIdSlotHold
+     *            the id to set
+     */
+    public void setIdSlotHold( int nIdSlotHold )
+    {
+        this._nIdSlotHold = nIdSlotHold;
+    }
+
+    /**
+     * Get the id of the slot
+     * 
+     * @return the id of the slot
+     */
+    public int getIdSlot( )
+    {
+        return _nIdSlot;
+    }
+
+    /**
+     * Set the id of the slot
+     * 
+     * @param nIdSlot
+     *            the id of the slot to set
+     */
+    public void setIdSlot( int nIdSlot )
+    {
+        this._nIdSlot = nIdSlot;
+    }
+
+    /**
+     * Get the number of places held
+     * 
+     * @return the number of places
+     */
+    public int getNbPlaces( )
+    {
+        return _nNbPlaces;
+    }
+
+    /**
+     * Set the number of places held
+     * 
+     * @param nNbPlaces
+     *            the number of places to set
+     */
+    public void setNbPlaces( int nNbPlaces )
+    {
+        this._nNbPlaces = nNbPlaces;
+    }
+
+    /**
+     * Get the date of expiration of the hold
+     * 
+     * @return the date of expiration
+     */
+    public LocalDateTime getExpirationDate( )
+    {
+        return _expirationDate;
+    }
+
+    /**
+     * Set the date of expiration of the hold
+     * 
+     * @param expirationDate
+     *            the date of expiration to set
+     */
+    public void setExpirationDate( LocalDateTime expirationDate )
+    {
+        this._expirationDate = expirationDate;
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.slot;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.UtilDAO;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for SlotHold objects
+ * 
+ */
+public final class SlotHoldDAO extends UtilDAO implements ISlotHoldDAO
+{
+
+    private static final String SEQUENCE_NAME = "appointment_slot_hold";
+    private static final String SQL_QUERY_NEW_PK = "SELECT max(id_slot_hold) FROM appointment_slot_hold";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_slot_hold (id_slot_hold, id_slot, nb_places, expiration_date) VALUES (?, ?, ?, ?)";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM appointment_slot_hold WHERE id_slot_hold = ?";
+    private static final String SQL_QUERY_DELETE_LIST = "DELETE FROM appointment_slot_hold WHERE id_slot_hold IN ( ";
+    private static final String SQL_QUERY_SELECT_EXPIRED = "SELECT id_slot_hold, id_slot, nb_places, expiration_date FROM appointment_slot_hold WHERE expiration_date <= ? ORDER BY expiration_date LIMIT ?";
+    private static final String SQL_QUERY_COUNT = "SELECT COUNT(id_slot_hold) FROM appointment_slot_hold";
+
+    private static final String CONSTANT_QUESTION_MARK = "?";
+    private static final String CONSTANT_COMMA = ",";
+    private static final String CONSTANT_CLOSE_PARENTHESIS = " )";
+
+    @Override
+    public void insert( SlotHold slotHold, Plugin plugin )
+    {
+        slotHold.setIdSlotHold( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+        int nIndex = 1;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin );
+        try
+        {
+            daoUtil.setInt( nIndex++, slotHold.getIdSlotHold( ) );
+            daoUtil.setInt( nIndex++, slotHold.getIdSlot( ) );
+            daoUtil.setInt( nIndex++, slotHold.getNbPlaces( ) );
+            daoUtil.setTimestamp( nIndex, Timestamp.valueOf( slotHold.getExpirationDate( ) ) );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public boolean delete( int nIdSlotHold, Plugin plugin )
+    {
+        int nNbRowsDeleted = 0;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdSlotHold );
+            nNbRowsDeleted = daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return nNbRowsDeleted == 1;
+    }
+
+    @Override
+    public int deleteList( List<Integer> listIdSlotHold, Plugin plugin )
+    {
+        if ( listIdSlotHold.isEmpty( ) )
+        {
+            return 0;
+        }
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_DELETE_LIST );
+        for ( int i = 0; i < listIdSlotHold.size( ); i++ )
+        {
+            if ( i > 0 )
+            {
+                sbSql.append( CONSTANT_COMMA );
+            }
+            sbSql.append( CONSTANT_QUESTION_MARK );
+        }
+        sbSql.append( CONSTANT_CLOSE_PARENTHESIS );
+        int nNbRowsDeleted = 0;
+        DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin );
+        try
+        {
+            int nIndex = 1;
+            for ( Integer nIdSlotHold : listIdSlotHold )
+            {
+                daoUtil.setInt( nIndex++, nIdSlotHold );
+            }
+            nNbRowsDeleted = daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return nNbRowsDeleted;
+    }
+
+    @Override
+    public List<SlotHold> findExpired( LocalDateTime dateTime, int nMaxNbHolds, Plugin plugin )
+    {
+        List<SlotHold> listSlotHold = new ArrayList<>( );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_EXPIRED, plugin );
+        try
+        {
+            daoUtil.setTimestamp( 1, Timestamp.valueOf( dateTime ) );
+            daoUtil.setInt( 2, nMaxNbHolds );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                SlotHold slotHold = new SlotHold( );
+                slotHold.setIdSlotHold( daoUtil.getInt( nIndex++ ) );
+                slotHold.setIdSlot( daoUtil.getInt( nIndex++ ) );
+                slotHold.setNbPlaces( daoUtil.getInt( nIndex++ ) );
+                slotHold.setExpirationDate( daoUtil.getTimestamp( nIndex ).toLocalDateTime( ) );
+                listSlotHold.add( slotHold );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return listSlotHold;
+    }
+
+    @Override
+    public int count( Plugin plugin )
+    {
+        int nCount = 0;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT, plugin );
+        try
+        {
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return nCount;
+    }
+}
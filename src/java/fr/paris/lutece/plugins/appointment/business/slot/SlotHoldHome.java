@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.slot;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods for SlotHold objects
+ * 
+ */
+public final class SlotHoldHome
+{
+
+    // Static variable pointed at the DAO instance
+    private static ISlotHoldDAO _dao = SpringContextService.getBean( ISlotHoldDAO.BEAN_NAME );
+    private static Plugin _plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private SlotHoldHome( )
+    {
+    }
+
+    /**
+     * Create an instance of the SlotHold class
+     * 
+     * @param slotHold
+     *            The instance of the SlotHold which contains the informations to store
+     * @return The instance of the SlotHold which has been created with its primary key.
+     */
+    public static SlotHold create( SlotHold slotHold )
+    {
+        _dao.insert( slotHold, _plugin );
+
+        return slotHold;
+    }
+
+    /**
+     * Delete the SlotHold whose identifier is specified in parameter
+     * 
+     * @param nIdSlotHold
+     *            The SlotHold Id
+     * @return true if the hold existed and has been deleted
+     */
+    public static boolean delete( int nIdSlotHold )
+    {
+        return _dao.delete( nIdSlotHold, _plugin );
+    }
+
+    /**
+     * Delete a list of SlotHolds
+     * 
+     * @param listIdSlotHold
+     *            The SlotHold Ids
+     * @return the number of holds deleted
+     */
+    public static int deleteList( List<Integer> listIdSlotHold )
+    {
+        return _dao.deleteList( listIdSlotHold, _plugin );
+    }
+
+    /**
+     * Returns the holds expired at a given date
+     * 
+     * @param dateTime
+     *            the date
+     * @param nMaxNbHolds
+     *            the maximum number of holds to return
+     * @return the list of the expired holds
+     */
+    public static List<SlotHold> findExpired( LocalDateTime dateTime, int nMaxNbHolds )
+    {
+        return _dao.findExpired( dateTime, nMaxNbHolds, _plugin );
+    }
+
+    /**
+     * Returns the number of holds
+     * 
+     * @return the number of holds
+     */
+    public static int count( )
+    {
+        return _dao.count( _plugin );
+    }
+}
@@ -37,6 +37,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
@@ -51,7 +52,8 @@ public final class SlotHome
 {
 
     // Static variable pointed at the DAO instance
-    private static ISlotDAO _dao = SpringContextService.getBean( ISlotDAO.BEAN_NAME );
+    private static ISlotDAO _dao = AppointmentMetricsService.instrument( SpringContextService.getBean( ISlotDAO.BEAN_NAME ),
+            ISlotDAO.class, "slot" );
     private static Plugin _plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
 
     /**
@@ -75,6 +77,17 @@ public final class SlotHome
         return slot;
     }
 
+    /**
+     * Create a list of slots with batched inserts
+     * 
+     * @param listSlot
+     *            the slots to create
+     */
+    public static void createList( List<Slot> listSlot )
+    {
+        _dao.insertList( listSlot, _plugin );
+    }
+
     /**
      * Update of the Slot which is specified in parameter
      * 
@@ -89,6 +102,60 @@ public final class SlotHome
         return slot;
     }
 
+    /**
+     * Update the period and the specific flag of a list of slots with set-based statements. The slots can be moved over the previous periods of each other,
+     * the update must be done in a transaction
+     * 
+     * @param listSlot
+     *            the slots, with their new period
+     */
+    public static void updatePeriodList( List<Slot> listSlot )
+    {
+        _dao.updatePeriodList( listSlot, _plugin );
+    }
+
+    /**
+     * Take places on a slot if there are enough remaining places
+     * 
+     * @param nIdSlot
+     *            The Slot Id
+     * @param nNbPlacesToTake
+     *            the number of places to take
+     * @param nNbPotentialPlacesDelta
+     *            the value to add to the potential remaining places
+     * @return true if the places have been taken, false if the slot is full
+     */
+    public static boolean updatePlacesIfAvailable( int nIdSlot, int nNbPlacesToTake, int nNbPotentialPlacesDelta )
+    {
+        return _dao.updatePlacesIfAvailable( nIdSlot, nNbPlacesToTake, nNbPotentialPlacesDelta, _plugin );
+    }
+
+    /**
+     * Add a value to the potential remaining places of a slot
+     * 
+     * @param nIdSlot
+     *            The Slot Id
+     * @param nNbPotentialPlacesDelta
+     *            the value to add to the potential remaining places (negative to hold places)
+     */
+    public static void updatePotentialRemainingPlaces( int nIdSlot, int nNbPotentialPlacesDelta )
+    {
+        _dao.updatePotentialRemainingPlaces( nIdSlot, nNbPotentialPlacesDelta, _plugin );
+    }
+
+    /**
+     * Give back to a slot the places released by deleted appointments
+     * 
+     * @param nIdSlot
+     *            The Slot Id
+     * @param nNbPlacesReleased
+     *            the number of places released
+     */
+    public static void updatePlacesReleased( int nIdSlot, int nNbPlacesReleased )
+    {
+        _dao.updatePlacesReleased( nIdSlot, nNbPlacesReleased, _plugin );
+    }
+
     /**
      * Delete the Slot whose identifier is specified in parameter
      * 
@@ -100,6 +167,18 @@ public final class SlotHome
         _dao.delete( nKey, _plugin );
     }
 
+    /**
+     * Delete the Slots of a list that nobody has used (not specific, no place taken or held, no appointment)
+     * 
+     * @param listIdSlot
+     *            The Slot Ids
+     * @return the number of Slots deleted
+     */
+    public static int deleteUnusedList( List<Integer> listIdSlot )
+    {
+        return _dao.deleteUnusedList( listIdSlot, _plugin );
+    }
+
     /**
      * Returns an instance of the Slot whose identifier is specified in parameter
      * 
@@ -152,6 +231,22 @@ public final class SlotHome
         return _dao.findByIdForm( nIdForm, _plugin );
     }
 
+    /**
+     * Returns the slots of a form, by ascending id, from a given id
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param nIdSlotAfter
+     *            the ids of the returned slots are greater than this id
+     * @param nLimit
+     *            the max number of slots returned
+     * @return the slots
+     */
+    public static List<Slot> findByIdForm( int nIdForm, int nIdSlotAfter, int nLimit )
+    {
+        return _dao.findByIdForm( nIdForm, nIdSlotAfter, nLimit, _plugin );
+    }
+
     /**
      * Returns a list of open slots for a date range
      * 
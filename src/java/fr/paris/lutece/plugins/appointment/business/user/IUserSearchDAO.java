@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.user;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * User Search DAO Interface
+ * 
+ */
+public interface IUserSearchDAO
+{
+
+    /**
+     * The name of the bean of the DAO
+     */
+    String BEAN_NAME = "appointment.userSearchDAO";
+
+    /**
+     * Insert the trigrams of a user
+     * 
+     * @param nIdUser
+     *            the id of the user
+     * @param mapTrigrams
+     *            the trigrams of the user, by field
+     * @param plugin
+     *            the plugin
+     */
+    void insert( int nIdUser, Map<Integer, Set<String>> mapTrigrams, Plugin plugin );
+
+    /**
+     * Delete the trigrams of a user
+     * 
+     * @param nIdUser
+     *            the id of the user
+     * @param plugin
+     *            the plugin
+     */
+    void delete( int nIdUser, Plugin plugin );
+
+    /**
+     * Find the users that have no trigram in the index, by ascending id
+     * 
+     * @param nIdUserAfter
+     *            the id after which the users are searched
+     * @param nLimit
+     *            the maximum number of users to return
+     * @param plugin
+     *            the plugin
+     * @return the users, with their id, names and email
+     */
+    List<User> findUsersNotIndexed( int nIdUserAfter, int nLimit, Plugin plugin );
+}
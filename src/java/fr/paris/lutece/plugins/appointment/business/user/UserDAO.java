@@ -49,6 +49,7 @@ import fr.paris.lutece.util.sql.DAOUtil;
 public final class UserDAO extends UtilDAO implements IUserDAO
 {
 
+    private static final String SEQUENCE_NAME = "appointment_user";
     private static final String SQL_QUERY_NEW_PK = "SELECT max(id_user) FROM appointment_user";
     private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_user (id_user, guid, first_name, last_name, email, phone_number) VALUES (?, ?, ?, ?, ?, ?)";
     private static final String SQL_QUERY_UPDATE = "UPDATE appointment_user SET guid = ?, first_name = ?, last_name = ?, email = ?, phone_number = ? WHERE id_user = ?";
@@ -60,9 +61,9 @@ public final class UserDAO extends UtilDAO implements IUserDAO
             + " WHERE UPPER(first_name) = ? and UPPER(last_name) = ? and UPPER(email) = ?";
 
     @Override
-    public synchronized void insert( User user, Plugin plugin )
+    public void insert( User user, Plugin plugin )
     {
-        user.setIdUser( getNewPrimaryKey( SQL_QUERY_NEW_PK, plugin ) );
+        user.setIdUser( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
         DAOUtil daoUtil = buildDaoUtil( SQL_QUERY_INSERT, user, plugin, true );
         executeUpdate( daoUtil );
     }
@@ -72,6 +72,7 @@ public final class UserHome
     public static User create( User user )
     {
         _dao.insert( user, _plugin );
+        UserSearchHome.index( user );
 
         return user;
     }
@@ -86,6 +87,7 @@ public final class UserHome
     public static User update( User user )
     {
         _dao.update( user, _plugin );
+        UserSearchHome.index( user );
 
         return user;
     }
@@ -98,6 +100,7 @@ public final class UserHome
      */
     public static void delete( int nKey )
     {
+        UserSearchHome.remove( nKey );
         _dao.delete( nKey, _plugin );
     }
 
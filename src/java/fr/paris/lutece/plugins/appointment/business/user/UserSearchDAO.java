@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.user;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for the search index of the users
+ * 
+ */
+public final class UserSearchDAO implements IUserSearchDAO
+{
+
+    private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_user_search (id_user, field, trigram) VALUES ";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM appointment_user_search WHERE id_user = ?";
+    private static final String SQL_QUERY_SELECT_USERS_NOT_INDEXED = "SELECT id_user, first_name, last_name, email FROM appointment_user user "
+            + "WHERE id_user > ? AND NOT EXISTS ( SELECT id_user FROM appointment_user_search search WHERE search.id_user = user.id_user ) "
+            + "ORDER BY id_user LIMIT ?";
+
+    private static final String CONSTANT_VALUES = "(?, ?, ?)";
+    private static final String CONSTANT_COMMA = ", ";
+
+    @Override
+    public void insert( int nIdUser, Map<Integer, Set<String>> mapTrigrams, Plugin plugin )
+    {
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_INSERT );
+        int nNbRows = 0;
+        for ( Set<String> setTrigrams : mapTrigrams.values( ) )
+        {
+            for ( int i = 0; i < setTrigrams.size( ); i++ )
+            {
+                if ( nNbRows++ > 0 )
+                {
+                    sbSql.append( CONSTANT_COMMA );
+                }
+                sbSql.append( CONSTANT_VALUES );
+            }
+        }
+        if ( nNbRows == 0 )
+        {
+            return;
+        }
+        DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin );
+        try
+        {
+            int nIndex = 1;
+            for ( Entry<Integer, Set<String>> entry : mapTrigrams.entrySet( ) )
+            {
+                for ( String strTrigram : entry.getValue( ) )
+                {
+                    daoUtil.setInt( nIndex++, nIdUser );
+                    daoUtil.setInt( nIndex++, entry.getKey( ) );
+                    daoUtil.setString( nIndex++, strTrigram );
+                }
+            }
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public void delete( int nIdUser, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdUser );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public List<User> findUsersNotIndexed( int nIdUserAfter, int nLimit, Plugin plugin )
+    {
+        List<User> listUsers = new ArrayList<>( );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_USERS_NOT_INDEXED, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdUserAfter );
+            daoUtil.setInt( 2, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                User user = new User( );
+                user.setIdUser( daoUtil.getInt( nIndex++ ) );
+                user.setFirstName( daoUtil.getString( nIndex++ ) );
+                user.setLastName( daoUtil.getString( nIndex++ ) );
+                user.setEmail( daoUtil.getString( nIndex ) );
+                listUsers.add( user );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return listUsers;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.user;
+
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods for the search index of the users. The index holds the trigrams of the names and the emails of the
+ * users, so that the search of the appointments by user does not scan the users
+ * 
+ */
+public final class UserSearchHome
+{
+
+    // Static variable pointed at the DAO instance
+    private static IUserSearchDAO _dao = SpringContextService.getBean( IUserSearchDAO.BEAN_NAME );
+    private static Plugin _plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private UserSearchHome( )
+    {
+    }
+
+    /**
+     * Index a user, replacing his previous trigrams
+     * 
+     * @param user
+     *            the user
+     */
+    public static void index( User user )
+    {
+        _dao.delete( user.getIdUser( ), _plugin );
+        _dao.insert( user.getIdUser( ), UserSearchTrigrams.getUserTrigrams( user ), _plugin );
+    }
+
+    /**
+     * Remove a user from the index
+     * 
+     * @param nIdUser
+     *            the id of the user
+     */
+    public static void remove( int nIdUser )
+    {
+        _dao.delete( nIdUser, _plugin );
+    }
+
+    /**
+     * Find the users that are not in the index yet, by ascending id
+     * 
+     * @param nIdUserAfter
+     *            the id after which the users are searched
+     * @param nLimit
+     *            the maximum number of users to return
+     * @return the users, with their id, names and email
+     */
+    public static List<User> findUsersNotIndexed( int nIdUserAfter, int nLimit )
+    {
+        return _dao.findUsersNotIndexed( nIdUserAfter, nLimit, _plugin );
+    }
+}
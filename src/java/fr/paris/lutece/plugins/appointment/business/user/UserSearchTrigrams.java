@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.user;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Trigrams of the names and emails of the users, stored in the search index. The values are upper-cased and stripped of their accents, and padded with two
+ * spaces at the start and one at the end, so that a prefix and a word boundary also give trigrams
+ */
+public final class UserSearchTrigrams
+{
+    /**
+     * Field of the first name
+     */
+    public static final int FIELD_FIRST_NAME = 1;
+
+    /**
+     * Field of the last name
+     */
+    public static final int FIELD_LAST_NAME = 2;
+
+    /**
+     * Field of the email
+     */
+    public static final int FIELD_EMAIL = 3;
+
+    /**
+     * Minimum share of the trigrams of a fuzzy search term that a value must contain
+     */
+    public static final double FUZZY_THRESHOLD = 0.5;
+
+    private static final int LENGTH = 3;
+    private static final String PADDING_START = "  ";
+    private static final String PADDING_END = " ";
+    private static final Pattern PATTERN_DIACRITICS = Pattern.compile( "\\p{M}" );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private UserSearchTrigrams( )
+    {
+    }
+
+    /**
+     * Get the trigrams of a user, by field
+     * 
+     * @param user
+     *            the user
+     * @return the trigrams of the user, by field
+     */
+    public static Map<Integer, Set<String>> getUserTrigrams( User user )
+    {
+        Map<Integer, Set<String>> mapTrigrams = new LinkedHashMap<>( );
+        mapTrigrams.put( FIELD_FIRST_NAME, getValueTrigrams( user.getFirstName( ) ) );
+        mapTrigrams.put( FIELD_LAST_NAME, getValueTrigrams( user.getLastName( ) ) );
+        mapTrigrams.put( FIELD_EMAIL, getValueTrigrams( user.getEmail( ) ) );
+        return mapTrigrams;
+    }
+
+    /**
+     * Get the trigrams of a value, as stored in the index. They are also the trigrams of a fuzzy search term
+     * 
+     * @param strValue
+     *            the value
+     * @return the trigrams, empty if the value is empty
+     */
+    public static Set<String> getValueTrigrams( String strValue )
+    {
+        String strNormalized = normalize( strValue );
+        if ( strNormalized.isEmpty( ) )
+        {
+            return Collections.emptySet( );
+        }
+        return split( PADDING_START + strNormalized + PADDING_END );
+    }
+
+    /**
+     * Get the trigrams that a value containing a search term contains
+     * 
+     * @param strTerm
+     *            the search term
+     * @return the trigrams, empty if the term is too short to use the index
+     */
+    public static Set<String> getContainsTrigrams( String strTerm )
+    {
+        return split( normalize( strTerm ) );
+    }
+
+    /**
+     * Get the trigrams that a value starting with a search term contains
+     * 
+     * @param strTerm
+     *            the search term
+     * @return the trigrams, empty if the term is empty
+     */
+    public static Set<String> getPrefixTrigrams( String strTerm )
+    {
+        String strNormalized = normalize( strTerm );
+        if ( strNormalized.isEmpty( ) )
+        {
+            return Collections.emptySet( );
+        }
+        return split( PADDING_START + strNormalized );
+    }
+
+    /**
+     * Get the minimum number of trigrams that a value must share with a fuzzy search term
+     * 
+     * @param nNbTrigrams
+     *            the number of trigrams of the term
+     * @return the minimum number of trigrams
+     */
+    public static int getFuzzyMinimumMatch( int nNbTrigrams )
+    {
+        return Math.max( 1, (int) Math.ceil( nNbTrigrams * FUZZY_THRESHOLD ) );
+    }
+
+    /**
+     * Upper-case a value and strip its accents
+     * 
+     * @param strValue
+     *            the value, or null
+     * @return the normalized value
+     */
+    private static String normalize( String strValue )
+    {
+        if ( strValue == null )
+        {
+            return "";
+        }
+        return PATTERN_DIACRITICS.matcher( Normalizer.normalize( strValue.trim( ), Normalizer.Form.NFD ) ).replaceAll( "" ).toUpperCase( Locale.ROOT );
+    }
+
+    /**
+     * Split a string in trigrams
+     * 
+     * @param strValue
+     *            the string
+     * @return the distinct trigrams, in their order in the string
+     */
+    private static Set<String> split( String strValue )
+    {
+        Set<String> setTrigrams = new LinkedHashSet<>( );
+        for ( int i = 0; i + LENGTH <= strValue.length( ); i++ )
+        {
+            setTrigrams.add( strValue.substring( i, i + LENGTH ) );
+        }
+        return setTrigrams;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.workflow;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * Workflow Queue Item DAO Interface
+ * 
+ */
+public interface IWorkflowQueueItemDAO
+{
+
+    /**
+     * The name of the bean of the DAO
+     */
+    static String BEAN_NAME = "appointment.workflowQueueItemDAO";
+
+    /**
+     * Insert a new record in the table
+     * 
+     * @param workflowQueueItem
+     *            instance of the WorkflowQueueItem object to insert
+     * @param plugin
+     *            the plugin
+     */
+    void insert( WorkflowQueueItem workflowQueueItem, Plugin plugin );
+
+    /**
+     * Delete a record from the table
+     * 
+     * @param nIdWorkflowQueueItem
+     *            identifier of the WorkflowQueueItem to delete
+     * @param plugin
+     *            the plugin
+     */
+    void delete( int nIdWorkflowQueueItem, Plugin plugin );
+
+    /**
+     * Delete the records of an appointment
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByIdAppointment( int nIdAppointment, Plugin plugin );
+
+    /**
+     * Delete the records of a list of appointments
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin );
+
+    /**
+     * Delete the records of the appointments of a form
+     * 
+     * @param nIdForm
+     *            the id of the form
+     * @param plugin
+     *            the plugin
+     */
+    void deleteByIdForm( int nIdForm, Plugin plugin );
+
+    /**
+     * Returns the items of an appointment
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     * @param plugin
+     *            the plugin
+     * @return the items, the oldest first
+     */
+    List<WorkflowQueueItem> findByIdAppointment( int nIdAppointment, Plugin plugin );
+
+    /**
+     * Returns the items that can be processed at a given date. Only the oldest item of each appointment is returned, so that the items of an appointment are
+     * processed in the order of their creation
+     * 
+     * @param dateTime
+     *            the date
+     * @param nMaxNbItems
+     *            the maximum number of items to return
+     * @param plugin
+     *            the plugin
+     * @return the items, the oldest first
+     */
+    List<WorkflowQueueItem> findReady( LocalDateTime dateTime, int nMaxNbItems, Plugin plugin );
+
+    /**
+     * Claim an item for processing : the number of attempts of the item is incremented and its next attempt is postponed, only if no other attempt has
+     * been made since the item was read
+     * 
+     * @param workflowQueueItem
+     *            the item, as read from the table
+     * @param nextAttemptDate
+     *            the date of the next attempt if the processing does not end before
+     * @param plugin
+     *            the plugin
+     * @return true if the item has been claimed
+     */
+    boolean claim( WorkflowQueueItem workflowQueueItem, LocalDateTime nextAttemptDate, Plugin plugin );
+
+    /**
+     * Update the date of the next attempt of an item
+     * 
+     * @param nIdWorkflowQueueItem
+     *            identifier of the WorkflowQueueItem
+     * @param nextAttemptDate
+     *            the date of the next attempt
+     * @param plugin
+     *            the plugin
+     */
+    void updateNextAttemptDate( int nIdWorkflowQueueItem, LocalDateTime nextAttemptDate, Plugin plugin );
+
+    /**
+     * Returns the number of items in the queue
+     * 
+     * @param plugin
+     *            the plugin
+     * @return the number of items
+     */
+    int count( Plugin plugin );
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.workflow;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * The business class of an item of the workflow queue. An item asks for the automatic actions of the workflow of a form to be executed on an appointment,
+ * outside of the request that saved the appointment
+ * 
+ */
+public final class WorkflowQueueItem implements Serializable
+{
+
+    /**
+     * Serial version UID
+     */
+    private static final long serialVersionUID = 6532873001526478231L;
+
+    /**
+     * Id of the item
+     */
+    private int _nIdWorkflowQueueItem;
+
+    /**
+     * Id of the appointment
+     */
+    private int _nIdAppointment;
+
+    /**
+     * Id of the form of the appointment
+     */
+    private int _nIdForm;
+
+    /**
+     * Id of the workflow of the form
+     */
+    private int _nIdWorkflow;
+
+    /**
+     * Number of attempts already made to process the item
+     */
+    private int _nNbAttempts;
+
+    /**
+     * Date from which the item can be processed
+     */
+    private LocalDateTime _nextAttemptDate;
+
+    /**
+     * Date of creation of the item
+     */
+    private LocalDateTime _creationDate;
+
+    /**
+     * Get the id of the item
+     * 
+     * @return the id of the item
+     */
+    public int getIdWorkflowQueueItem( )
+    {
+        return _nIdWorkflowQueueItem;
+    }
+
+    /**
+     * Set the id of the item
+     * 
+     * @param nIdWorkflowQueueItem
+     *            the id to set
+     */
+    public void setIdWorkflowQueueItem( int nIdWorkflowQueueItem )
+    {
+        this._nIdWorkflowQueueItem = nIdWorkflowQueueItem;
+    }
+
+    /**
+     * Get the id of the appointment
+     * 
+     * @return the id of the appointment
+     */
+    public int getIdAppointment( )
+    {
+        return _nIdAppointment;
+    }
+
+    /**
+     * Set the id of the appointment
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment to set
+     */
+    public void setIdAppointment( int nIdAppointment )
+    {
+        this._nIdAppointment = nIdAppointment;
+    }
+
+    /**
+     * Get the id of the form
+     * 
+     * @return the id of the form
+     */
+    public int getIdForm( )
+    {
+        return _nIdForm;
+    }
+
+    /**
+     * Set the id of the form
+     * 
+     * @param nIdForm
+     *            the id of the form to set
+     */
+    public void setIdForm( int nIdForm )
+    {
+        this._nIdForm = nIdForm;
+    }
+
+    /**
+     * Get the id of the workflow
+     * 
+     * @return the id of the workflow
+     */
+    public int getIdWorkflow( )
+    {
+        return _nIdWorkflow;
+    }
+
+    /**
+     * Set the id of the workflow
+     * 
+     * @param nIdWorkflow
+     *            the id of the workflow to set
+     */
+    public void setIdWorkflow( int nIdWorkflow )
+    {
+        this._nIdWorkflow = nIdWorkflow;
+    }
+
+    /**
+     * Get the number of attempts already made to process the item
+     * 
+     * @return the number of attempts
+     */
+    public int getNbAttempts( )
+    {
+        return _nNbAttempts;
+    }
+
+    /**
+     * Set the number of attempts already made to process the item
+     * 
+     * @param nNbAttempts
+     *            the number of attempts to set
+     */
+    public void setNbAttempts( int nNbAttempts )
+    {
+        this._nNbAttempts = nNbAttempts;
+    }
+
+    /**
+     * Get the date from which the item can be processed
+     * 
+     * @return the date of the next attempt
+     */
+    public LocalDateTime getNextAttemptDate( )
+    {
+        return _nextAttemptDate;
+    }
+
+    /**
+     * Set the date from which the item can be processed
+     * 
+     * @param nextAttemptDate
+     *            the date of the next attempt to set
+     */
+    public void setNextAttemptDate( LocalDateTime nextAttemptDate )
+    {
+        this._nextAttemptDate = nextAttemptDate;
+    }
+
+    /**
+     * Get the date of creation of the item
+     * 
+     * @return the date of creation
+     */
+    public LocalDateTime getCreationDate( )
+    {
+        return _creationDate;
+    }
+
+    /**
+     * Set the date of creation of the item
+     * 
+     * @param creationDate
+     *            the date of creation to set
+     */
+    public void setCreationDate( LocalDateTime creationDate )
+    {
+        this._creationDate = creationDate;
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.workflow;
+
+import java.sql.Timestamp;
+import java.text.MessageFormat;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.UtilDAO;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides Data Access methods for WorkflowQueueItem objects
+ * 
+ */
+public final class WorkflowQueueItemDAO extends UtilDAO implements IWorkflowQueueItemDAO
+{
+
+    private static final String SEQUENCE_NAME = "appointment_workflow_queue";
+    private static final String SQL_QUERY_NEW_PK = "SELECT max(id_workflow_queue_item) FROM appointment_workflow_queue";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO appointment_workflow_queue (id_workflow_queue_item, id_appointment, id_form, id_workflow, nb_attempts, next_attempt_date, creation_date) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM appointment_workflow_queue WHERE id_workflow_queue_item = ?";
+    private static final String SQL_QUERY_DELETE_BY_ID_APPOINTMENT = "DELETE FROM appointment_workflow_queue WHERE id_appointment = ?";
+    private static final String SQL_QUERY_DELETE_BY_LIST_ID_APPOINTMENT = "DELETE FROM appointment_workflow_queue WHERE id_appointment IN ( {0} )";
+    private static final String SQL_QUERY_DELETE_BY_ID_FORM = "DELETE FROM appointment_workflow_queue WHERE id_form = ?";
+    private static final String SQL_QUERY_SELECT_COLUMNS = "SELECT item.id_workflow_queue_item, item.id_appointment, item.id_form, item.id_workflow, item.nb_attempts, item.next_attempt_date, item.creation_date"
+            + " FROM appointment_workflow_queue item";
+    private static final String SQL_QUERY_SELECT_BY_ID_APPOINTMENT = SQL_QUERY_SELECT_COLUMNS
+            + " WHERE item.id_appointment = ? ORDER BY item.creation_date, item.id_workflow_queue_item";
+    private static final String SQL_QUERY_SELECT_READY = SQL_QUERY_SELECT_COLUMNS + " WHERE item.next_attempt_date <= ? AND NOT EXISTS ( SELECT previous.id_workflow_queue_item FROM appointment_workflow_queue previous"
+            + " WHERE previous.id_appointment = item.id_appointment AND ( previous.creation_date < item.creation_date"
+            + " OR ( previous.creation_date = item.creation_date AND previous.id_workflow_queue_item < item.id_workflow_queue_item ) ) )"
+            + " ORDER BY item.creation_date, item.id_workflow_queue_item LIMIT ?";
+    private static final String SQL_QUERY_CLAIM = "UPDATE appointment_workflow_queue SET nb_attempts = nb_attempts + 1, next_attempt_date = ? WHERE id_workflow_queue_item = ? AND nb_attempts = ?";
+    private static final String SQL_QUERY_UPDATE_NEXT_ATTEMPT_DATE = "UPDATE appointment_workflow_queue SET next_attempt_date = ? WHERE id_workflow_queue_item = ?";
+    private static final String SQL_QUERY_COUNT = "SELECT COUNT(id_workflow_queue_item) FROM appointment_workflow_queue";
+
+    @Override
+    public void insert( WorkflowQueueItem workflowQueueItem, Plugin plugin )
+    {
+        workflowQueueItem.setIdWorkflowQueueItem( getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_NEW_PK, plugin ) );
+        int nIndex = 1;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin );
+        try
+        {
+            daoUtil.setInt( nIndex++, workflowQueueItem.getIdWorkflowQueueItem( ) );
+            daoUtil.setInt( nIndex++, workflowQueueItem.getIdAppointment( ) );
+            daoUtil.setInt( nIndex++, workflowQueueItem.getIdForm( ) );
+            daoUtil.setInt( nIndex++, workflowQueueItem.getIdWorkflow( ) );
+            daoUtil.setInt( nIndex++, workflowQueueItem.getNbAttempts( ) );
+            daoUtil.setTimestamp( nIndex++, Timestamp.valueOf( workflowQueueItem.getNextAttemptDate( ) ) );
+            daoUtil.setTimestamp( nIndex, Timestamp.valueOf( workflowQueueItem.getCreationDate( ) ) );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public void delete( int nIdWorkflowQueueItem, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdWorkflowQueueItem );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public void deleteByIdAppointment( int nIdAppointment, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_BY_ID_APPOINTMENT, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdAppointment );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public void deleteByListIdAppointment( List<Integer> listIdAppointment, Plugin plugin )
+    {
+        if ( listIdAppointment.isEmpty( ) )
+        {
+            return;
+        }
+        DAOUtil daoUtil = new DAOUtil( MessageFormat.format( SQL_QUERY_DELETE_BY_LIST_ID_APPOINTMENT, getInClauseParameters( listIdAppointment.size( ) ) ),
+                plugin );
+        try
+        {
+            int nIndex = 1;
+            for ( Integer nIdAppointment : listIdAppointment )
+            {
+                daoUtil.setInt( nIndex++, nIdAppointment );
+            }
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public void deleteByIdForm( int nIdForm, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_BY_ID_FORM, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdForm );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public List<WorkflowQueueItem> findByIdAppointment( int nIdAppointment, Plugin plugin )
+    {
+        List<WorkflowQueueItem> listWorkflowQueueItem = new ArrayList<>( );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_ID_APPOINTMENT, plugin );
+        try
+        {
+            daoUtil.setInt( 1, nIdAppointment );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listWorkflowQueueItem.add( buildWorkflowQueueItem( daoUtil ) );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return listWorkflowQueueItem;
+    }
+
+    @Override
+    public List<WorkflowQueueItem> findReady( LocalDateTime dateTime, int nMaxNbItems, Plugin plugin )
+    {
+        List<WorkflowQueueItem> listWorkflowQueueItem = new ArrayList<>( );
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_READY, plugin );
+        try
+        {
+            daoUtil.setTimestamp( 1, Timestamp.valueOf( dateTime ) );
+            daoUtil.setInt( 2, nMaxNbItems );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listWorkflowQueueItem.add( buildWorkflowQueueItem( daoUtil ) );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return listWorkflowQueueItem;
+    }
+
+    @Override
+    public boolean claim( WorkflowQueueItem workflowQueueItem, LocalDateTime nextAttemptDate, Plugin plugin )
+    {
+        int nNbRowsUpdated = 0;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_CLAIM, plugin );
+        try
+        {
+            daoUtil.setTimestamp( 1, Timestamp.valueOf( nextAttemptDate ) );
+            daoUtil.setInt( 2, workflowQueueItem.getIdWorkflowQueueItem( ) );
+            daoUtil.setInt( 3, workflowQueueItem.getNbAttempts( ) );
+            nNbRowsUpdated = daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return nNbRowsUpdated == 1;
+    }
+
+    @Override
+    public void updateNextAttemptDate( int nIdWorkflowQueueItem, LocalDateTime nextAttemptDate, Plugin plugin )
+    {
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_NEXT_ATTEMPT_DATE, plugin );
+        try
+        {
+            daoUtil.setTimestamp( 1, Timestamp.valueOf( nextAttemptDate ) );
+            daoUtil.setInt( 2, nIdWorkflowQueueItem );
+            daoUtil.executeUpdate( );
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+    }
+
+    @Override
+    public int count( Plugin plugin )
+    {
+        int nCount = 0;
+        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT, plugin );
+        try
+        {
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+        }
+        finally
+        {
+            daoUtil.free( );
+        }
+        return nCount;
+    }
+
+    /**
+     * Build a WorkflowQueueItem business object from the resultset
+     * 
+     * @param daoUtil
+     *            the prepare statement util object
+     * @return a new WorkflowQueueItem business object with all its attributes assigned
+     */
+    private WorkflowQueueItem buildWorkflowQueueItem( DAOUtil daoUtil )
+    {
+        int nIndex = 1;
+        WorkflowQueueItem workflowQueueItem = new WorkflowQueueItem( );
+        workflowQueueItem.setIdWorkflowQueueItem( daoUtil.getInt( nIndex++ ) );
+        workflowQueueItem.setIdAppointment( daoUtil.getInt( nIndex++ ) );
+        workflowQueueItem.setIdForm( daoUtil.getInt( nIndex++ ) );
+        workflowQueueItem.setIdWorkflow( daoUtil.getInt( nIndex++ ) );
+        workflowQueueItem.setNbAttempts( daoUtil.getInt( nIndex++ ) );
+        workflowQueueItem.setNextAttemptDate( daoUtil.getTimestamp( nIndex++ ).toLocalDateTime( ) );
+        workflowQueueItem.setCreationDate( daoUtil.getTimestamp( nIndex ).toLocalDateTime( ) );
+        return workflowQueueItem;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business.workflow;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods for WorkflowQueueItem objects
+ * 
+ */
+public final class WorkflowQueueItemHome
+{
+
+    // Static variable pointed at the DAO instance
+    private static IWorkflowQueueItemDAO _dao = SpringContextService.getBean( IWorkflowQueueItemDAO.BEAN_NAME );
+    private static Plugin _plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private WorkflowQueueItemHome( )
+    {
+    }
+
+    /**
+     * Create an instance of the WorkflowQueueItem class
+     * 
+     * @param workflowQueueItem
+     *            The instance of the WorkflowQueueItem which contains the informations to store
+     * @return The instance of the WorkflowQueueItem which has been created with its primary key.
+     */
+    public static WorkflowQueueItem create( WorkflowQueueItem workflowQueueItem )
+    {
+        _dao.insert( workflowQueueItem, _plugin );
+
+        return workflowQueueItem;
+    }
+
+    /**
+     * Delete the WorkflowQueueItem whose identifier is specified in parameter
+     * 
+     * @param nIdWorkflowQueueItem
+     *            The WorkflowQueueItem Id
+     */
+    public static void delete( int nIdWorkflowQueueItem )
+    {
+        _dao.delete( nIdWorkflowQueueItem, _plugin );
+    }
+
+    /**
+     * Delete the WorkflowQueueItems of an appointment
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     */
+    public static void deleteByIdAppointment( int nIdAppointment )
+    {
+        _dao.deleteByIdAppointment( nIdAppointment, _plugin );
+    }
+
+    /**
+     * Delete the WorkflowQueueItems of a list of appointments
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     */
+    public static void deleteByListIdAppointment( List<Integer> listIdAppointment )
+    {
+        _dao.deleteByListIdAppointment( listIdAppointment, _plugin );
+    }
+
+    /**
+     * Delete the WorkflowQueueItems of the appointments of a form
+     * 
+     * @param nIdForm
+     *            the id of the form
+     */
+    public static void deleteByIdForm( int nIdForm )
+    {
+        _dao.deleteByIdForm( nIdForm, _plugin );
+    }
+
+    /**
+     * Returns the items of an appointment
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     * @return the items, the oldest first
+     */
+    public static List<WorkflowQueueItem> findByIdAppointment( int nIdAppointment )
+    {
+        return _dao.findByIdAppointment( nIdAppointment, _plugin );
+    }
+
+    /**
+     * Returns the items that can be processed at a given date, only the oldest one of each appointment
+     * 
+     * @param dateTime
+     *            the date
+     * @param nMaxNbItems
+     *            the maximum number of items to return
+     * @return the items, the oldest first
+     */
+    public static List<WorkflowQueueItem> findReady( LocalDateTime dateTime, int nMaxNbItems )
+    {
+        return _dao.findReady( dateTime, nMaxNbItems, _plugin );
+    }
+
+    /**
+     * Claim an item for processing, if no other attempt has been made since the item was read
+     * 
+     * @param workflowQueueItem
+     *            the item
+     * @param nextAttemptDate
+     *            the date of the next attempt if the processing does not end before
+     * @return true if the item has been claimed
+     */
+    public static boolean claim( WorkflowQueueItem workflowQueueItem, LocalDateTime nextAttemptDate )
+    {
+        return _dao.claim( workflowQueueItem, nextAttemptDate, _plugin );
+    }
+
+    /**
+     * Update the date of the next attempt of an item
+     * 
+     * @param nIdWorkflowQueueItem
+     *            The WorkflowQueueItem Id
+     * @param nextAttemptDate
+     *            the date of the next attempt
+     */
+    public static void updateNextAttemptDate( int nIdWorkflowQueueItem, LocalDateTime nextAttemptDate )
+    {
+        _dao.updateNextAttemptDate( nIdWorkflowQueueItem, nextAttemptDate, _plugin );
+    }
+
+    /**
+     * Returns the number of items in the queue
+     * 
+     * @return the number of items
+     */
+    public static int count( )
+    {
+        return _dao.count( _plugin );
+    }
+}
@@ -39,6 +39,17 @@ import java.util.Locale;
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.dozer.converters.DateConverter;
 
+import fr.paris.lutece.plugins.appointment.service.availability.FormAvailabilityService;
+import fr.paris.lutece.plugins.appointment.service.form.AppointmentFormCacheService;
+import fr.paris.lutece.plugins.appointment.service.form.FormEntryCacheService;
+import fr.paris.lutece.plugins.appointment.service.listeners.ListenerEventBus;
+import fr.paris.lutece.plugins.appointment.service.lock.SlotHoldService;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanningService;
+import fr.paris.lutece.plugins.appointment.service.planning.SlotMaterializationService;
+import fr.paris.lutece.plugins.appointment.service.search.UserSearchService;
+import fr.paris.lutece.plugins.appointment.service.workflow.WorkflowQueueService;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
 /**
@@ -62,6 +73,28 @@ public final class AppointmentPlugin extends Plugin
     {
         BeanUtilsBean.getInstance( ).getConvertUtils( )
                 .register( new DateConverter( DateFormat.getDateInstance( DateFormat.SHORT, getPluginLocale( Locale.FRANCE ) ) ), java.sql.Date.class );
+        // Register the cache of the form plannings
+        FormPlanningService.getInstance( );
+        // Register the cache of the configurations of the forms
+        AppointmentFormCacheService.getInstance( );
+        // Register the cache of the entries of the forms
+        FormEntryCacheService.getInstance( );
+        // Register the cache of the availability of the forms
+        FormAvailabilityService.getInstance( );
+        // Start the threads notifying the listeners of the events
+        ListenerEventBus.start( );
+        // Start the purge of the expired holds on the slots
+        SlotHoldService.start( );
+        // Start the workers executing the automatic actions of the workflows
+        WorkflowQueueService.start( );
+        // Index the users created before the search index
+        UserSearchService.start( );
+        // Create the slots of the next weeks of the active forms
+        SlotMaterializationService.start( );
+        // Publish the performance metrics
+        AppointmentMetricsService.start( );
+        // Stop the threads above when the webapp is stopped
+        ShutdownServiceManager.registerShutdownService( new AppointmentShutdownService( ) );
     }
 
     /**
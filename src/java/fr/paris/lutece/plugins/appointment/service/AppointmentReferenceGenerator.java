@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service;
+
+import java.security.SecureRandom;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Generator of the references of the appointments. A reference is made of the id of the appointment followed by a random part of a fixed size : the id
+ * makes the reference unique without having to look for an existing one, and the random part, drawn from a secure random generator, prevents from guessing
+ * the reference of another appointment
+ * 
+ */
+public final class AppointmentReferenceGenerator
+{
+
+    private static final String PROPERTY_REF_SIZE_RANDOM_PART = "appointment.refSizeRandomPart";
+
+    /**
+     * Default number of characters of the random part of the reference
+     */
+    private static final int DEFAULT_REF_SIZE_RANDOM_PART = 5;
+
+    private static final char [ ] CHARACTERS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray( );
+    private static final SecureRandom _random = new SecureRandom( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private AppointmentReferenceGenerator( )
+    {
+    }
+
+    /**
+     * Generate the reference of an appointment
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     * @return the reference
+     */
+    public static String generateReference( int nIdAppointment )
+    {
+        int nSizeRandomPart = AppPropertiesService.getPropertyInt( PROPERTY_REF_SIZE_RANDOM_PART, DEFAULT_REF_SIZE_RANDOM_PART );
+        StringBuilder sbReference = new StringBuilder( ).append( nIdAppointment );
+        for ( int i = 0; i < nSizeRandomPart; i++ )
+        {
+            sbReference.append( CHARACTERS [_random.nextInt( CHARACTERS.length )] );
+        }
+        return sbReference.toString( );
+    }
+}
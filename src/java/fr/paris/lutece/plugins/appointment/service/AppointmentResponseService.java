@@ -117,6 +117,18 @@ public final class AppointmentResponseService
         return AppointmentResponseHome.findListIdResponse( nIdAppointment );
     }
 
+    /**
+     * Return the responses of a list of appointments, loaded with one query
+     * 
+     * @param listIdAppointment
+     *            the list of appointment id
+     * @return the responses of each appointment, by appointment id
+     */
+    public static Map<Integer, List<Response>> findMapResponseByListIdAppointment( List<Integer> listIdAppointment )
+    {
+        return AppointmentResponseHome.findMapResponseByListIdAppointment( listIdAppointment );
+    }
+
     /**
      * Find and build all the response of an appointment
      * 
@@ -33,10 +33,12 @@
  */
 package fr.paris.lutece.plugins.appointment.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.StringJoiner;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -46,7 +48,11 @@ import fr.paris.lutece.plugins.appointment.business.appointment.AppointmentHome;
 import fr.paris.lutece.plugins.appointment.business.form.Form;
 import fr.paris.lutece.plugins.appointment.business.slot.Slot;
 import fr.paris.lutece.plugins.appointment.business.user.User;
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItemHome;
 import fr.paris.lutece.plugins.appointment.service.listeners.AppointmentListenerManager;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+import fr.paris.lutece.plugins.appointment.service.search.UserSearchService;
+import fr.paris.lutece.plugins.appointment.service.workflow.WorkflowQueueService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
@@ -54,8 +60,6 @@ import fr.paris.lutece.plugins.genericattributes.business.ResponseHome;
 import fr.paris.lutece.portal.business.user.AdminUser;
 import fr.paris.lutece.portal.business.user.AdminUserHome;
 import fr.paris.lutece.portal.service.util.AppLogService;
-import fr.paris.lutece.portal.service.util.AppPropertiesService;
-import fr.paris.lutece.portal.service.util.CryptoService;
 import fr.paris.lutece.portal.service.workflow.WorkflowService;
 
 /**
@@ -67,16 +71,6 @@ import fr.paris.lutece.portal.service.workflow.WorkflowService;
 public final class AppointmentService
 {
 
-    private static final String PROPERTY_REF_ENCRYPTION_ALGORITHM = "appointment.refEncryptionAlgorithm";
-    private static final String CONSTANT_SHA256 = "SHA-256";
-    private static final String PROPERTY_REF_SIZE_RANDOM_PART = "appointment.refSizeRandomPart";
-    private static final String CONSTANT_SEPARATOR = "$";
-
-    /**
-     * Get the number of characters of the random part of appointment reference
-     */
-    private static final int CONSTANT_REF_SIZE_RANDOM_PART = 5;
-
     /**
      * Private constructor - this class does not need to be instantiated
      */
@@ -144,15 +138,60 @@ public final class AppointmentService
      * @param appointmentDTO
      *            the appointment dto
      * @return the id of the appointment saved
+     * @throws SlotFullException
+     *             if there are not enough remaining places on the slot of the appointment
      */
     public static int saveAppointment( AppointmentDTO appointmentDTO )
     {
+        long lStartTime = System.nanoTime( );
+        int nIdForm = appointmentDTO.getSlot( ).getIdForm( );
+        try
+        {
+            return doSaveAppointment( appointmentDTO );
+        }
+        catch( SlotFullException e )
+        {
+            AppointmentMetricsService.incrementCounter( AppointmentMetricsService.METRIC_BOOKING_REJECTED, nIdForm );
+            throw e;
+        }
+        finally
+        {
+            AppointmentMetricsService.recordTime( AppointmentMetricsService.METRIC_SAVE_APPOINTMENT, nIdForm, lStartTime );
+        }
+    }
+
+    /**
+     * Save an appointment in database
+     * 
+     * @param appointmentDTO
+     *            the appointment dto
+     * @return the id of the appointment saved
+     * @throws SlotFullException
+     *             if there are not enough remaining places on the slot of the appointment
+     */
+    private static int doSaveAppointment( AppointmentDTO appointmentDTO )
+    {
+        // Update of the remaining places of the slot
+        Slot slot = appointmentDTO.getSlot( );
+        if ( slot.getIdSlot( ) != 0 )
+        {
+            slot = takePlacesOnSlot( appointmentDTO );
+        }
+        else
+        {
+            slot.setNbRemainingPlaces( slot.getNbRemainingPlaces( ) - appointmentDTO.getNbBookedSeats( ) );
+            slot.setNbPlacestaken( slot.getNbPlacesTaken( ) + appointmentDTO.getNbBookedSeats( ) );
+            slot.setNbPotentialRemainingPlaces( Math.min( slot.getNbPotentialRemainingPlaces( ) + appointmentDTO.getNbMaxPotentialBookedSeats( )
+                    - appointmentDTO.getNbBookedSeats( ), slot.getNbRemainingPlaces( ) ) );
+            slot = SlotService.saveSlot( slot );
+        }
         // if it's an update for modification of the date of the appointment
+        // (the places of the new slot are taken before those of the old slot
+        // are given back)
         if ( appointmentDTO.getIdAppointment( ) != 0 && appointmentDTO.getSlot( ).getIdSlot( ) != appointmentDTO.getIdSlot( ) )
         {
             // Need to update the old slot
-            Slot oldSlot = SlotService.findSlotById( appointmentDTO.getIdSlot( ) );
-            updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( appointmentDTO.getNbBookedSeats( ), oldSlot );
+            updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( appointmentDTO.getNbBookedSeats( ), appointmentDTO.getIdSlot( ) );
             // Need to remove the workflow resource to reload again the workflow
             // at the first step
             try
@@ -164,52 +203,11 @@ public final class AppointmentService
                 AppLogService.error( "Workflow", e );
             }
         }
-        // Update of the remaining places of the slot
-        Slot slot = appointmentDTO.getSlot( );
-        int oldNbRemainingPLaces = slot.getNbRemainingPlaces( );
-        int nbMaxPotentialBookedSeats = appointmentDTO.getNbMaxPotentialBookedSeats( );
-        int oldNbPotentialRemaningPlaces = slot.getNbPotentialRemainingPlaces( );
-        int oldNbPlacesTaken = slot.getNbPlacesTaken( );
-        int effectiveBookedSeats = appointmentDTO.getNbBookedSeats( );
-        int newNbRemainingPlaces = 0;
-        int newPotentialRemaningPlaces = 0;
-        int newNbPlacesTaken = 0;
-        if ( appointmentDTO.getIdAppointment( ) == 0 || appointmentDTO.getSlot( ).getIdSlot( ) != appointmentDTO.getIdSlot( ) )
-        {
-            newNbRemainingPlaces = oldNbRemainingPLaces - effectiveBookedSeats;
-            newPotentialRemaningPlaces = oldNbPotentialRemaningPlaces + nbMaxPotentialBookedSeats - effectiveBookedSeats;
-            newNbPlacesTaken = oldNbPlacesTaken + effectiveBookedSeats;
-        }
-        else
-        {
-            // It is an update of the appointment
-            Appointment oldAppointment = AppointmentService.findAppointmentById( appointmentDTO.getIdAppointment( ) );
-            newNbRemainingPlaces = oldNbRemainingPLaces + oldAppointment.getNbPlaces( ) - effectiveBookedSeats;
-            newPotentialRemaningPlaces = oldNbPotentialRemaningPlaces + nbMaxPotentialBookedSeats - effectiveBookedSeats;
-            newNbPlacesTaken = oldNbPlacesTaken - oldAppointment.getNbPlaces( ) + effectiveBookedSeats;
-        }
-        slot.setNbRemainingPlaces( newNbRemainingPlaces );
-        slot.setNbPlacestaken( newNbPlacesTaken );
-        slot.setNbPotentialRemainingPlaces( Math.min( newPotentialRemaningPlaces, newNbRemainingPlaces ) );
-
-        slot = SlotService.saveSlot( slot );
         // Create or update the user
         User user = UserService.saveUser( appointmentDTO );
         // Create or update the appointment
         Appointment appointment = buildAndCreateAppointment( appointmentDTO, user, slot );
-        String strEmailLastNameFirstName = new StringJoiner( StringUtils.SPACE ).add( user.getEmail( ) ).add( CONSTANT_SEPARATOR ).add( user.getLastName( ) )
-                .add( CONSTANT_SEPARATOR ).add( user.getFirstName( ) ).toString( );
-        // Create a unique reference for a new appointment
-        if ( appointmentDTO.getIdAppointment( ) == 0 )
-        {
-            String strReference = appointment.getIdAppointment( )
-                    + CryptoService.encrypt( appointment.getIdAppointment( ) + strEmailLastNameFirstName,
-                            AppPropertiesService.getProperty( PROPERTY_REF_ENCRYPTION_ALGORITHM, CONSTANT_SHA256 ) ).substring( 0,
-                            AppPropertiesService.getPropertyInt( PROPERTY_REF_SIZE_RANDOM_PART, CONSTANT_REF_SIZE_RANDOM_PART ) );
-            appointment.setReference( strReference );
-            AppointmentHome.update( appointment );
-        }
-        else
+        if ( appointmentDTO.getIdAppointment( ) != 0 )
         {
             AppointmentResponseService.removeResponsesByIdAppointment( appointment.getIdAppointment( ) );
         }
@@ -224,21 +222,46 @@ public final class AppointmentService
         Form form = FormService.findFormLightByPrimaryKey( slot.getIdForm( ) );
         if ( form.getIdWorkflow( ) > 0 )
         {
-            try
-            {
-                WorkflowService.getInstance( ).getState( appointment.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE, form.getIdWorkflow( ),
-                        form.getIdForm( ) );
-                WorkflowService.getInstance( ).executeActionAutomatic( appointment.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE,
-                        form.getIdWorkflow( ), form.getIdForm( ) );
-            }
-            catch( Exception e )
-            {
-                AppLogService.error( "Error Workflow", e );
-            }
+            // The automatic actions of the workflow (notifications...) are
+            // executed outside of the booking request
+            WorkflowQueueService.enqueue( appointment.getIdAppointment( ), form.getIdForm( ), form.getIdWorkflow( ) );
         }
         return appointment.getIdAppointment( );
     }
 
+    /**
+     * Take the places of the appointment on its slot, with a conditional update that fails if the slot has not enough remaining places
+     * 
+     * @param appointmentDTO
+     *            the appointment dto
+     * @return the slot reloaded after the update
+     * @throws SlotFullException
+     *             if there are not enough remaining places on the slot
+     */
+    private static Slot takePlacesOnSlot( AppointmentDTO appointmentDTO )
+    {
+        int nIdSlot = appointmentDTO.getSlot( ).getIdSlot( );
+        boolean bPlacesTaken;
+        if ( appointmentDTO.getIdAppointment( ) == 0 || nIdSlot != appointmentDTO.getIdSlot( ) )
+        {
+            bPlacesTaken = SlotSafeService.takePlaces( nIdSlot, appointmentDTO.getNbBookedSeats( ), appointmentDTO.getNbMaxPotentialBookedSeats( ) );
+        }
+        else
+        {
+            // It is an update of the appointment
+            Appointment oldAppointment = AppointmentService.findAppointmentById( appointmentDTO.getIdAppointment( ) );
+            bPlacesTaken = SlotSafeService.changePlaces( nIdSlot, oldAppointment.getNbPlaces( ), appointmentDTO.getNbBookedSeats( ),
+                    appointmentDTO.getNbMaxPotentialBookedSeats( ) );
+        }
+        if ( !bPlacesTaken )
+        {
+            throw new SlotFullException( nIdSlot );
+        }
+        Slot slot = SlotService.findSlotById( nIdSlot );
+        appointmentDTO.setSlot( slot );
+        return slot;
+    }
+
     /**
      * Build and create in database an appointment from the dto
      * 
@@ -266,6 +289,11 @@ public final class AppointmentService
         appointment.setIdUser( user.getIdUser( ) );
         if ( appointment.getIdAppointment( ) == 0 )
         {
+            // The reference of a new appointment is built from its id, so
+            // that the appointment is written in a single insert
+            int nIdAppointment = AppointmentHome.newPrimaryKey( );
+            appointment.setIdAppointment( nIdAppointment );
+            appointment.setReference( AppointmentReferenceGenerator.generateReference( nIdAppointment ) );
             appointment = AppointmentHome.create( appointment );
         }
         else
@@ -309,16 +337,117 @@ public final class AppointmentService
      */
     public static List<AppointmentDTO> findListAppointmentsDTOByFilter( AppointmentFilterDTO appointmentFilter )
     {
-        List<AppointmentDTO> listAppointmentsDTO = new ArrayList<>( );
-        for ( Appointment appointment : AppointmentHome.findByFilter( appointmentFilter ) )
+        appointmentFilter.setUseSearchIndex( UserSearchService.isIndexReady( ) );
+        return buildListAppointmentsDTO( AppointmentHome.findByFilter( appointmentFilter ), new HashMap<>( ) );
+    }
+
+    /**
+     * Find one page of the appointments matching the filter. The sort and the paging are done by the database
+     * 
+     * @param appointmentFilter
+     *            the filter, with the page size, the page index and the sort
+     * @return the appointments of the page
+     */
+    public static List<AppointmentDTO> findPageAppointmentsDTOByFilter( AppointmentFilterDTO appointmentFilter )
+    {
+        return findPageAppointmentsDTOByFilter( appointmentFilter, new HashMap<>( ) );
+    }
+
+    /**
+     * Find one page of the appointments matching the filter, sharing the names of the admin users between several pages
+     * 
+     * @param appointmentFilter
+     *            the filter, with the page size, the page index and the sort
+     * @param mapAdminUserName
+     *            the names of the admin users by id, loaded by the first page that needs them
+     * @return the appointments of the page
+     */
+    public static List<AppointmentDTO> findPageAppointmentsDTOByFilter( AppointmentFilterDTO appointmentFilter, Map<Integer, String> mapAdminUserName )
+    {
+        appointmentFilter.setUseSearchIndex( UserSearchService.isIndexReady( ) );
+        return buildListAppointmentsDTO( AppointmentHome.findPageByFilter( appointmentFilter ), mapAdminUserName );
+    }
+
+    /**
+     * Count the appointments matching the filter
+     * 
+     * @param appointmentFilter
+     *            the filter
+     * @return the number of appointments
+     */
+    public static int countAppointmentsByFilter( AppointmentFilterDTO appointmentFilter )
+    {
+        appointmentFilter.setUseSearchIndex( UserSearchService.isIndexReady( ) );
+        return AppointmentHome.countByFilter( appointmentFilter );
+    }
+
+    /**
+     * Find the starting dates of the appointments, not cancelled, taken on a form by the users with the given email between two days
+     * 
+     * @param strEmail
+     *            the email of the users
+     * @param nIdForm
+     *            the form id
+     * @param nIdAppointmentToExclude
+     *            the id of the appointment being modified, 0 if none
+     * @param startingDate
+     *            the first day of the period (included)
+     * @param endingDate
+     *            the last day of the period (included)
+     * @return the starting dates of the appointments, in ascending order
+     */
+    public static List<LocalDateTime> findStartingDateTimesOfUserAppointments( String strEmail, int nIdForm, int nIdAppointmentToExclude,
+            LocalDate startingDate, LocalDate endingDate )
+    {
+        return AppointmentHome.findStartingDateTimesByEmailAndIdForm( strEmail, nIdForm, nIdAppointmentToExclude, startingDate.atStartOfDay( ), endingDate
+                .plusDays( 1 ).atStartOfDay( ) );
+    }
+
+    /**
+     * Build the appointment DTOs of a list of appointments
+     * 
+     * @param listAppointments
+     *            the appointments
+     * @param mapAdminUserName
+     *            the names of the admin users already loaded, by id
+     * @return the appointment DTOs
+     */
+    private static List<AppointmentDTO> buildListAppointmentsDTO( List<Appointment> listAppointments, Map<Integer, String> mapAdminUserName )
+    {
+        List<AppointmentDTO> listAppointmentsDTO = new ArrayList<>( listAppointments.size( ) );
+        for ( Appointment appointment : listAppointments )
         {
-            listAppointmentsDTO.add( buildAppointmentDTO( appointment ) );
+            AppointmentDTO appointmentDTO = buildAppointmentDTOWithoutAdminUser( appointment );
+            appointmentDTO.setAdminUser( getAdminUserName( appointment.getIdAdminUser( ), mapAdminUserName ) );
+            listAppointmentsDTO.add( appointmentDTO );
         }
         return listAppointmentsDTO;
     }
 
+    /**
+     * Get the name of an admin user, loading each admin user only once for a list of appointments
+     * 
+     * @param nIdAdminUser
+     *            the id of the admin user, 0 if none
+     * @param mapAdminUserName
+     *            the names of the admin users already loaded, by id
+     * @return the name of the admin user, empty if none
+     */
+    private static String getAdminUserName( int nIdAdminUser, Map<Integer, String> mapAdminUserName )
+    {
+        if ( nIdAdminUser == 0 )
+        {
+            return StringUtils.EMPTY;
+        }
+        return mapAdminUserName.computeIfAbsent( nIdAdminUser, nId -> {
+            AdminUser adminUser = AdminUserHome.findByPrimaryKey( nId );
+            return adminUser != null ? buildAdminUserName( adminUser ) : StringUtils.EMPTY;
+        } );
+    }
+
     public static List<Appointment> findListAppointmentsByFilter( AppointmentFilterDTO appointmentFilter )
     {
+        appointmentFilter.setUseSearchIndex( UserSearchService.isIndexReady( ) );
         return AppointmentHome.findByFilter( appointmentFilter );
     }
 
@@ -330,6 +459,43 @@ public final class AppointmentService
      * @return the appointment DTO
      */
     private static AppointmentDTO buildAppointmentDTO( Appointment appointment )
+    {
+        AppointmentDTO appointmentDTO = buildAppointmentDTOWithoutAdminUser( appointment );
+        if ( appointment.getIdAdminUser( ) != 0 )
+        {
+            AdminUser adminUser = AdminUserHome.findByPrimaryKey( appointment.getIdAdminUser( ) );
+            if ( adminUser != null )
+            {
+                appointmentDTO.setAdminUser( buildAdminUserName( adminUser ) );
+            }
+        }
+        else
+        {
+            appointmentDTO.setAdminUser( StringUtils.EMPTY );
+        }
+        return appointmentDTO;
+    }
+
+    /**
+     * Build the name of an admin user to display
+     * 
+     * @param adminUser
+     *            the admin user
+     * @return the first name and the last name of the admin user
+     */
+    private static String buildAdminUserName( AdminUser adminUser )
+    {
+        return adminUser.getFirstName( ) + org.apache.commons.lang3.StringUtils.SPACE + adminUser.getLastName( );
+    }
+
+    /**
+     * Build an appointment dto from an appointment business object, without the admin user who created the appointment
+     * 
+     * @param appointment
+     *            the appointment business object
+     * @return the appointment DTO
+     */
+    private static AppointmentDTO buildAppointmentDTOWithoutAdminUser( Appointment appointment )
     {
         AppointmentDTO appointmentDTO = new AppointmentDTO( );
         appointmentDTO.setIdForm( appointment.getSlot( ).getIdForm( ) );
@@ -351,19 +517,6 @@ public final class AppointmentService
         SlotService.addDateAndTimeToSlot( appointment.getSlot( ) );
         appointmentDTO.setSlot( appointment.getSlot( ) );
         appointmentDTO.setUser( appointment.getUser( ) );
-        if ( appointment.getIdAdminUser( ) != 0 )
-        {
-            AdminUser adminUser = AdminUserHome.findByPrimaryKey( appointment.getIdAdminUser( ) );
-            if ( adminUser != null )
-            {
-                appointmentDTO.setAdminUser( new StringBuilder( adminUser.getFirstName( ) + org.apache.commons.lang3.StringUtils.SPACE
-                        + adminUser.getLastName( ) ).toString( ) );
-            }
-        }
-        else
-        {
-            appointmentDTO.setAdminUser( StringUtils.EMPTY );
-        }
         return appointmentDTO;
     }
     
@@ -389,7 +542,6 @@ public final class AppointmentService
     public static void deleteAppointment( int nIdAppointment )
     {
         Appointment appointmentToDelete = AppointmentHome.findByPrimaryKey( nIdAppointment );
-        Slot slotOfTheAppointmentToDelete = SlotService.findSlotById( appointmentToDelete.getIdSlot( ) );
         if ( WorkflowService.getInstance( ).isAvailable( ) )
         {
             try
@@ -403,10 +555,12 @@ public final class AppointmentService
         }
         if ( !appointmentToDelete.getIsCancelled( ) )
         {
-            updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( appointmentToDelete.getNbPlaces( ), slotOfTheAppointmentToDelete );
+            updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( appointmentToDelete.getNbPlaces( ), appointmentToDelete.getIdSlot( ) );
         }
         // Need to delete also the responses linked to this appointment
         AppointmentResponseService.removeResponsesByIdAppointment( nIdAppointment );
+        // and its automatic workflow actions not executed yet
+        WorkflowQueueItemHome.deleteByIdAppointment( nIdAppointment );
         AppointmentService.deleteAppointment( appointmentToDelete );
     }
 
@@ -453,8 +607,7 @@ public final class AppointmentService
         if ( !oldAppointment.getIsCancelled( ) && appointment.getIsCancelled( ) )
         {
             // Need to update the nb remaining places of the related slot
-            Slot slot = SlotService.findSlotById( appointment.getIdSlot( ) );
-            updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( appointment.getNbPlaces( ), slot );
+            updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( appointment.getNbPlaces( ), appointment.getIdSlot( ) );
         }
         AppointmentHome.update( appointment );
     }
@@ -465,32 +618,11 @@ public final class AppointmentService
      * 
      * @param nbPlaces
      *            the nb places taken of the appointment that we want to delete (or cancel, or move)
-     * @param slot
-     *            the related slot
+     * @param nIdSlot
+     *            the id of the related slot
      */
-    private static void updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( int nbPlaces, Slot slot )
+    private static void updateRemaningPlacesWithAppointmentMovedDeletedOrCanceled( int nbPlaces, int nIdSlot )
     {
-        // The capacity of the slot (that can be less than the number of places
-        // taken on the slot --> overbook)
-        int nMaxCapacity = slot.getMaxCapacity( );
-        // The old remaining places of the slot (before we delete or cancel or move the
-        // appointment
-        int nOldRemainingPlaces = slot.getNbRemainingPlaces( );
-        int nOldPotentialRemaningPlaces = slot.getNbPotentialRemainingPlaces( );
-        int nOldPlacesTaken = slot.getNbPlacesTaken( );
-        int nNewPlacesTaken = nOldPlacesTaken - nbPlaces;
-        // The new value of the remaining places of the slot is the minimal
-        // value between :
-        // - the minimal value between the potentially new max capacity and the old remaining places plus the number of places released by the appointment
-        // - and the capacity of the slot minus the new places taken on the slot (0 if negative)
-        int nNewRemainingPlaces = Math.min( Math.min( nMaxCapacity, nOldRemainingPlaces + nbPlaces ), Math.max( 0, nMaxCapacity - nNewPlacesTaken ) );
-
-        int nNewPotentialRemainingPlaces = Math.min( Math.min( nMaxCapacity, nOldPotentialRemaningPlaces + nbPlaces ),
-                Math.max( 0, nMaxCapacity - nNewPlacesTaken ) );
-
-        slot.setNbRemainingPlaces( nNewRemainingPlaces );
-        slot.setNbPotentialRemainingPlaces( nNewPotentialRemainingPlaces );
-        slot.setNbPlacestaken( nNewPlacesTaken );
-        SlotService.updateSlot( slot );
+        SlotSafeService.releasePlaces( nIdSlot, nbPlaces );
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service;
+
+import fr.paris.lutece.plugins.appointment.service.listeners.ListenerEventBus;
+import fr.paris.lutece.plugins.appointment.service.lock.SlotHoldService;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+import fr.paris.lutece.plugins.appointment.service.planning.SlotMaterializationService;
+import fr.paris.lutece.plugins.appointment.service.purge.AppointmentPurgeService;
+import fr.paris.lutece.plugins.appointment.service.search.UserSearchService;
+import fr.paris.lutece.plugins.appointment.service.workflow.WorkflowQueueService;
+import fr.paris.lutece.portal.service.init.ShutdownService;
+
+/**
+ * Stop the threads started by the appointment plugin when the webapp is stopped, in the reverse order of their start
+ * 
+ */
+public final class AppointmentShutdownService implements ShutdownService
+{
+    private static final String NAME = "Appointment Shutdown Service";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process( )
+    {
+        AppointmentPurgeService.shutdown( );
+        SlotMaterializationService.shutdown( );
+        AppointmentMetricsService.shutdown( );
+        UserSearchService.shutdown( );
+        WorkflowQueueService.shutdown( );
+        SlotHoldService.shutdown( );
+        ListenerEventBus.shutdown( );
+    }
+}
@@ -37,13 +37,11 @@ import static java.lang.Math.toIntExact;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.sql.Date;
 import java.text.SimpleDateFormat;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -51,8 +49,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
@@ -63,8 +59,8 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import fr.paris.lutece.plugins.appointment.business.appointment.Appointment;
 import fr.paris.lutece.plugins.appointment.business.form.Form;
@@ -73,27 +69,29 @@ import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
 import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
 import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
 import fr.paris.lutece.plugins.appointment.business.slot.Slot;
-import fr.paris.lutece.plugins.appointment.business.user.User;
-import fr.paris.lutece.plugins.appointment.service.lock.SlotEditTask;
-import fr.paris.lutece.plugins.appointment.service.lock.TimerForLockOnSlot;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHold;
+import fr.paris.lutece.plugins.appointment.service.lock.SlotHoldService;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.ResponseRecapDTO;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryFilter;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
 import fr.paris.lutece.plugins.genericattributes.business.Field;
-import fr.paris.lutece.plugins.genericattributes.business.FieldHome;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
-import fr.paris.lutece.plugins.genericattributes.business.ResponseHome;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.EntryTypeServiceManager;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
 import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceWorkflowService;
 import fr.paris.lutece.plugins.workflowcore.service.state.StateService;
 import fr.paris.lutece.portal.business.user.AdminUser;
 import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.rbac.RBACService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.util.beanvalidation.BeanValidationUtil;
@@ -130,8 +128,11 @@ public final class AppointmentUtilities
     private static final String CONSTANT_COMMA = ",";
     private static final String EXCEL_FILE_EXTENSION = ".xlsx";
     private static final String EXCEL_MIME_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static final int EXCEL_ROW_ACCESS_WINDOW = 100;
+    private static final String PROPERTY_EXPORT_CHUNK_SIZE = "appointment.export.chunkSize";
+    private static final int DEFAULT_EXPORT_CHUNK_SIZE = 500;
 
-    public static final String SESSION_TIMER_SLOT = "appointment.session.timer.slot";
+    public static final String SESSION_SLOT_HOLD = "appointment.session.slotHold";
 
     public static final String PROPERTY_DEFAULT_EXPIRED_TIME_EDIT_APPOINTMENT = "appointment.edit.expired.time";
 
@@ -219,82 +220,22 @@ public final class AppointmentUtilities
     {
         boolean bCheckPassed = true;
         int nbDaysBetweenTwoAppointments = form.getNbDaysBeforeNewAppointment( );
-        if ( nbDaysBetweenTwoAppointments != 0 )
+        if ( nbDaysBetweenTwoAppointments != 0 && StringUtils.isNotEmpty( strEmail ) )
         {
-            List<Slot> listSlots = getSlotsByEmail( strEmail, appointmentDTO.getIdAppointment( ) );
-            if ( CollectionUtils.isNotEmpty( listSlots ) )
+            // Any other appointment of the user on this form closer than the
+            // delay to the date of this appointment breaks the rule
+            LocalDate dateOfTheAppointment = appointmentDTO.getSlot( ).getStartingDateTime( ).toLocalDate( );
+            List<LocalDateTime> listStartingDateTime = AppointmentService.findStartingDateTimesOfUserAppointments( strEmail, form.getIdForm( ),
+                    appointmentDTO.getIdAppointment( ), dateOfTheAppointment.minusDays( nbDaysBetweenTwoAppointments ),
+                    dateOfTheAppointment.plusDays( nbDaysBetweenTwoAppointments ) );
+            if ( CollectionUtils.isNotEmpty( listStartingDateTime ) )
             {
-                // Get the last appointment date for this form
-                listSlots = listSlots.stream( ).filter( s -> s.getIdForm( ) == form.getIdForm( ) ).collect( Collectors.toList( ) );
-                if ( CollectionUtils.isNotEmpty( listSlots ) )
-                {
-                    LocalDate dateOfTheLastAppointment = listSlots.stream( ).map( Slot::getStartingDateTime ).max( LocalDateTime::compareTo ).get( )
-                            .toLocalDate( );
-                    // Check the number of days between this appointment and
-                    // the last appointment the user has taken
-                    LocalDate dateOfTheAppointment = appointmentDTO.getSlot( ).getStartingDateTime( ).toLocalDate( );
-                    if ( Math.abs( dateOfTheLastAppointment.until( dateOfTheAppointment, ChronoUnit.DAYS ) ) <= nbDaysBetweenTwoAppointments )
-                    {
-                        bCheckPassed = false;
-                    }
-                }
+                bCheckPassed = false;
             }
         }
         return bCheckPassed;
     }
 
-    /**
-     * Get the slot of a user appointment
-     * 
-     * @param strEmail
-     *            the user's email
-     * @param idAppointment
-     *            the id of the appointment
-     * @return the list of slots
-     */
-    private static List<Slot> getSlotsByEmail( String strEmail, int idAppointment )
-    {
-        List<Slot> listSlots = new ArrayList<>( );
-        if ( StringUtils.isNotEmpty( strEmail ) )
-        {
-            // Looking for existing users with this email
-            List<User> listUsers = UserService.findUsersByEmail( strEmail );
-            if ( listUsers != null )
-            {
-                List<Appointment> listAppointment = new ArrayList<>( );
-                // For each User
-                for ( User user : listUsers )
-                {
-                    // looking for its appointment
-                    listAppointment.addAll( AppointmentService.findListAppointmentByUserId( user.getIdUser( ) ) );
-                }
-
-                // If we modify an appointment, we remove the
-                // appointment that we currently edit
-                if ( idAppointment != 0 )
-                {
-                    listAppointment = listAppointment.stream( ).filter( a -> a.getIdAppointment( ) != idAppointment ).collect( Collectors.toList( ) );
-                }
-                if ( CollectionUtils.isNotEmpty( listAppointment ) )
-                {
-                    // I know we could have a join sql query, but I don't
-                    // want to join the appointment table with the slot
-                    // table, it's too big and not efficient
-
-                    for ( Appointment appointment : listAppointment )
-                    {
-                        if ( !appointment.getIsCancelled( ) )
-                        {
-                            listSlots.add( SlotService.findSlotById( appointment.getIdSlot( ) ) );
-                        }
-                    }
-
-                }
-            }
-        }
-        return listSlots;
-    }
-
     /**
      * Check that the number of appointments on a defined period is not above the maximum authorized
      * 
@@ -311,65 +252,45 @@ public final class AppointmentUtilities
         boolean bCheckPassed = true;
         int nbMaxAppointmentsPerUser = form.getNbMaxAppointmentsPerUser( );
         int nbDaysForMaxAppointmentsPerUser = form.getNbDaysForMaxAppointmentsPerUser( );
-        if ( nbMaxAppointmentsPerUser != 0 )
+        if ( nbMaxAppointmentsPerUser != 0 && StringUtils.isNotEmpty( strEmail ) )
         {
-            List<Slot> listSlots = getSlotsByEmail( strEmail, appointmentDTO.getIdAppointment( ) );
-            if ( CollectionUtils.isNotEmpty( listSlots ) )
+            // Get the date of the future appointment
+            LocalDate dateOfTheAppointment = appointmentDTO.getSlot( ).getStartingDateTime( ).toLocalDate( );
+            // Only the appointments in the min-max period around the date of
+            // the future appointment are read
+            List<LocalDate> listDates = AppointmentService
+                    .findStartingDateTimesOfUserAppointments( strEmail, form.getIdForm( ), appointmentDTO.getIdAppointment( ),
+                            dateOfTheAppointment.minusDays( nbDaysForMaxAppointmentsPerUser ),
+                            dateOfTheAppointment.plusDays( nbDaysForMaxAppointmentsPerUser ) ).stream( ).map( LocalDateTime::toLocalDate )
+                    .collect( Collectors.toList( ) );
+            LocalDate startingDateOfThePeriod = null;
+            LocalDate endingDateOfThePeriod = null;
+            // For each appointment
+            for ( LocalDate date : listDates )
             {
-                // Filter fot the good form
-                listSlots = listSlots.stream( ).filter( s -> s.getIdForm( ) == form.getIdForm( ) ).collect( Collectors.toList( ) );
-                if ( CollectionUtils.isNotEmpty( listSlots ) )
+                if ( date.isBefore( dateOfTheAppointment ) )
                 {
-                    // Get the date of the future appointment
-                    LocalDate dateOfTheAppointment = appointmentDTO.getSlot( ).getStartingDateTime( ).toLocalDate( );
-                    // Min starting date of the period
-                    LocalDate minStartingDateOfThePeriod = dateOfTheAppointment.minusDays( nbDaysForMaxAppointmentsPerUser );
-                    // Max ending date of the period
-                    LocalDate maxEndingDateOfThePeriod = dateOfTheAppointment.plusDays( nbDaysForMaxAppointmentsPerUser );
-                    // Keep only the slots that are in the min-max period
-                    listSlots = listSlots
-                            .stream( )
-                            .filter(
-                                    s -> s.getStartingDateTime( ).toLocalDate( ).isEqual( minStartingDateOfThePeriod )
-                                            || s.getStartingDateTime( ).toLocalDate( ).isAfter( minStartingDateOfThePeriod ) )
-                            .filter(
-                                    s -> s.getStartingDateTime( ).toLocalDate( ).isEqual( maxEndingDateOfThePeriod )
-                                            || s.getStartingDateTime( ).toLocalDate( ).isBefore( maxEndingDateOfThePeriod ) ).collect( Collectors.toList( ) );
-                    LocalDate startingDateOfThePeriod = null;
-                    LocalDate endingDateOfThePeriod = null;
-                    // For each slot
-                    for ( Slot slot : listSlots )
-                    {
-                        if ( slot.getStartingDateTime( ).toLocalDate( ).isBefore( dateOfTheAppointment ) )
-                        {
-                            startingDateOfThePeriod = slot.getStartingDateTime( ).toLocalDate( );
-                            endingDateOfThePeriod = startingDateOfThePeriod.plusDays( nbDaysForMaxAppointmentsPerUser );
-                        }
-                        if ( slot.getStartingDateTime( ).toLocalDate( ).isAfter( dateOfTheAppointment ) )
-                        {
-                            endingDateOfThePeriod = slot.getStartingDateTime( ).toLocalDate( );
-                            startingDateOfThePeriod = endingDateOfThePeriod.minusDays( nbDaysForMaxAppointmentsPerUser );
-                        }
-                        if ( slot.getStartingDateTime( ).toLocalDate( ).isEqual( dateOfTheAppointment ) )
-                        {
-                            startingDateOfThePeriod = endingDateOfThePeriod = slot.getStartingDateTime( ).toLocalDate( );
-                        }
-                        // Check the number of slots on the period
-                        final LocalDate startingDateOfPeriodToSearch = startingDateOfThePeriod;
-                        final LocalDate endingDateOfPeriodToSearch = endingDateOfThePeriod;
-                        int nbSlots = toIntExact( listSlots
-                                .stream( )
-                                .filter(
-                                        s -> ( s.getStartingDateTime( ).toLocalDate( ).equals( startingDateOfPeriodToSearch ) || s.getStartingDateTime( )
-                                                .toLocalDate( ).isAfter( startingDateOfPeriodToSearch ) )
-                                                && ( s.getStartingDateTime( ).toLocalDate( ).equals( endingDateOfPeriodToSearch ) || s.getStartingDateTime( )
-                                                        .toLocalDate( ).isBefore( endingDateOfPeriodToSearch ) ) ).count( ) );
-                        if ( nbSlots >= nbMaxAppointmentsPerUser )
-                        {
-                            bCheckPassed = false;
-                            break;
-                        }
-                    }
+                    startingDateOfThePeriod = date;
+                    endingDateOfThePeriod = startingDateOfThePeriod.plusDays( nbDaysForMaxAppointmentsPerUser );
+                }
+                if ( date.isAfter( dateOfTheAppointment ) )
+                {
+                    endingDateOfThePeriod = date;
+                    startingDateOfThePeriod = endingDateOfThePeriod.minusDays( nbDaysForMaxAppointmentsPerUser );
+                }
+                if ( date.isEqual( dateOfTheAppointment ) )
+                {
+                    startingDateOfThePeriod = endingDateOfThePeriod = date;
+                }
+                // Check the number of appointments on the period
+                final LocalDate startingDateOfPeriodToSearch = startingDateOfThePeriod;
+                final LocalDate endingDateOfPeriodToSearch = endingDateOfThePeriod;
+                int nbAppointments = toIntExact( listDates.stream( )
+                        .filter( d -> !d.isBefore( startingDateOfPeriodToSearch ) && !d.isAfter( endingDateOfPeriodToSearch ) ).count( ) );
+                if ( nbAppointments >= nbMaxAppointmentsPerUser )
+                {
+                    bCheckPassed = false;
+                    break;
                 }
             }
         }
@@ -543,7 +464,7 @@ public final class AppointmentUtilities
     }
 
     /**
-     * Build the excel fil of the list of the appointments found in the manage appointment viw by filter
+     * Build the excel file of the appointments found in the manage appointment view by filter and send it in the response
      * 
      * @param strIdForm
      *            the form id
@@ -551,18 +472,85 @@ public final class AppointmentUtilities
      *            the response
      * @param locale
      *            the local
-     * @param listAppointmentsDTO
-     *            the list of the appointments to input in the excel file
+     * @param appointmentFilter
+     *            the filter of the appointments to input in the excel file
      * @param stateService
      *            the state service
      */
-    public static void buildExcelFileWithAppointments( String strIdForm, HttpServletResponse response, Locale locale, List<AppointmentDTO> listAppointmentsDTO,
+    public static void buildExcelFileWithAppointments( String strIdForm, HttpServletResponse response, Locale locale, AppointmentFilterDTO appointmentFilter,
             StateService stateService )
+    {
+        String now = new SimpleDateFormat( "yyyyMMdd-hhmm" ).format( GregorianCalendar.getInstance( locale ).getTime( ) ) + "_"
+                + I18nService.getLocalizedString( KEY_RESOURCE_TYPE, locale ) + EXCEL_FILE_EXTENSION;
+        response.setContentType( EXCEL_MIME_TYPE );
+        response.setHeader( "Content-Disposition", "attachment; filename=\"" + now + "\";" );
+        response.setHeader( "Pragma", "public" );
+        response.setHeader( "Expires", "0" );
+        response.setHeader( "Cache-Control", "must-revalidate,post-check=0,pre-check=0" );
+        try
+        {
+            OutputStream os = response.getOutputStream( );
+            writeExcelFileWithAppointments( strIdForm, os, locale, appointmentFilter, stateService );
+            os.close( );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( e );
+        }
+    }
+
+    /**
+     * Build the excel file of the appointments found in the manage appointment view by filter. The appointments are read by chunks with their responses and
+     * their workflow states, and written to a streaming workbook that keeps only a window of rows in memory
+     * 
+     * @param strIdForm
+     *            the form id
+     * @param os
+     *            the stream to write the file to
+     * @param locale
+     *            the local
+     * @param appointmentFilter
+     *            the filter of the appointments to input in the excel file
+     * @param stateService
+     *            the state service
+     * @throws IOException
+     *             if the file can't be written
+     */
+    public static void writeExcelFileWithAppointments( String strIdForm, OutputStream os, Locale locale, AppointmentFilterDTO appointmentFilter,
+            StateService stateService ) throws IOException
+    {
+        long lStartTime = System.nanoTime( );
+        try
+        {
+            doWriteExcelFileWithAppointments( strIdForm, os, locale, appointmentFilter, stateService );
+        }
+        finally
+        {
+            AppointmentMetricsService.recordTime( AppointmentMetricsService.METRIC_EXPORT, Integer.parseInt( strIdForm ), lStartTime );
+        }
+    }
+
+    /**
+     * Write the excel file of the appointments found in the manage appointment view by filter. The appointments are read by chunks with their responses and
+     * their workflow states, and written to a streaming workbook that keeps only a window of rows in memory
+     * 
+     * @param strIdForm
+     *            the form id
+     * @param os
+     *            the stream to write the file to
+     * @param locale
+     *            the local
+     * @param appointmentFilter
+     *            the filter of the appointments to input in the excel file
+     * @param stateService
+     *            the state service
+     * @throws IOException
+     *             if the file can't be written
+     */
+    private static void doWriteExcelFileWithAppointments( String strIdForm, OutputStream os, Locale locale, AppointmentFilterDTO appointmentFilter,
+            StateService stateService ) throws IOException
     {
         AppointmentFormDTO tmpForm = FormService.buildAppointmentFormLight( Integer.parseInt( strIdForm ) );
-        XSSFWorkbook workbook = new XSSFWorkbook( );
-        XSSFSheet sheet = workbook.createSheet( I18nService.getLocalizedString( KEY_RESOURCE_TYPE, locale ) );
-        List<Object [ ]> tmpObj = new ArrayList<Object [ ]>( );
         EntryFilter entryFilter = new EntryFilter( );
         entryFilter.setIdResource( Integer.valueOf( strIdForm ) );
         List<Entry> listEntry = EntryHome.getEntryList( entryFilter );
@@ -590,210 +578,261 @@ public final class AppointmentUtilities
             }
         }
         int nTaille = 10 + ( listEntry.size( ) + 1 );
-        if ( tmpForm != null )
+        SXSSFWorkbook workbook = new SXSSFWorkbook( EXCEL_ROW_ACCESS_WINDOW );
+        workbook.setCompressTempFiles( true );
+        try
         {
-            int nIndex = 0;
-            Object [ ] strWriter = new String [ 1];
-            strWriter [0] = tmpForm.getTitle( );
-            tmpObj.add( strWriter );
-            Object [ ] strInfos = new String [ nTaille];
-            strInfos [0] = I18nService.getLocalizedString( KEY_COLUMN_LAST_NAME, locale );
-            strInfos [1] = I18nService.getLocalizedString( KEY_COLUMN_FISRT_NAME, locale );
-            strInfos [2] = I18nService.getLocalizedString( KEY_COLUMN_EMAIL, locale );
-            strInfos [3] = I18nService.getLocalizedString( KEY_COLUMN_DATE_APPOINTMENT, locale );
-            strInfos [4] = I18nService.getLocalizedString( KEY_TIME_START, locale );
-            strInfos [5] = I18nService.getLocalizedString( KEY_TIME_END, locale );
-            strInfos [6] = I18nService.getLocalizedString( KEY_COLUMN_ADMIN, locale );
-            strInfos [7] = I18nService.getLocalizedString( KEY_COLUMN_STATUS, locale );
-            strInfos [8] = I18nService.getLocalizedString( KEY_COLUMN_STATE, locale );
-            strInfos [9] = I18nService.getLocalizedString( KEY_COLUMN_NB_BOOKED_SEATS, locale );
-            nIndex = 1;
-            if ( listEntry.size( ) > 0 )
+            Sheet sheet = workbook.createSheet( I18nService.getLocalizedString( KEY_RESOURCE_TYPE, locale ) );
+            int nRownum = 0;
+            if ( tmpForm != null )
             {
+                writeExcelRow( sheet, nRownum++, new String [ ] {
+                    tmpForm.getTitle( )
+                } );
+                String [ ] strInfos = new String [ nTaille];
+                strInfos [0] = I18nService.getLocalizedString( KEY_COLUMN_LAST_NAME, locale );
+                strInfos [1] = I18nService.getLocalizedString( KEY_COLUMN_FISRT_NAME, locale );
+                strInfos [2] = I18nService.getLocalizedString( KEY_COLUMN_EMAIL, locale );
+                strInfos [3] = I18nService.getLocalizedString( KEY_COLUMN_DATE_APPOINTMENT, locale );
+                strInfos [4] = I18nService.getLocalizedString( KEY_TIME_START, locale );
+                strInfos [5] = I18nService.getLocalizedString( KEY_TIME_END, locale );
+                strInfos [6] = I18nService.getLocalizedString( KEY_COLUMN_ADMIN, locale );
+                strInfos [7] = I18nService.getLocalizedString( KEY_COLUMN_STATUS, locale );
+                strInfos [8] = I18nService.getLocalizedString( KEY_COLUMN_STATE, locale );
+                strInfos [9] = I18nService.getLocalizedString( KEY_COLUMN_NB_BOOKED_SEATS, locale );
+                int nIndex = 1;
                 for ( Entry e : listEntry )
                 {
                     strInfos [10 + nIndex] = e.getTitle( );
                     nIndex++;
                 }
+                writeExcelRow( sheet, nRownum++, strInfos );
             }
-            tmpObj.add( strInfos );
-        }
-        if ( listAppointmentsDTO != null )
-        {
-            for ( AppointmentDTO appointmentDTO : listAppointmentsDTO )
+            String strStatusReserved = I18nService.getLocalizedString( AppointmentDTO.PROPERTY_APPOINTMENT_STATUS_RESERVED, locale );
+            String strStatusUnreserved = I18nService.getLocalizedString( AppointmentDTO.PROPERTY_APPOINTMENT_STATUS_UNRESERVED, locale );
+            int nIdWorkflow = ( tmpForm != null ) ? tmpForm.getIdWorkflow( ) : 0;
+            Map<Integer, State> mapStates = new HashMap<>( );
+            Map<Integer, String> mapAdminUserName = new HashMap<>( );
+            AppointmentFilterDTO exportFilter = copySearchCriteria( appointmentFilter );
+            exportFilter.setItemsPerPage( AppPropertiesService.getPropertyInt( PROPERTY_EXPORT_CHUNK_SIZE, DEFAULT_EXPORT_CHUNK_SIZE ) );
+            List<AppointmentDTO> listAppointmentsDTO;
+            int nPageIndex = 1;
+            do
             {
-                int nIndex = 0;
-                Object [ ] strWriter = new String [ nTaille];
-                strWriter [0] = appointmentDTO.getLastName( );
-                strWriter [1] = appointmentDTO.getFirstName( );
-                strWriter [2] = appointmentDTO.getEmail( );
-                strWriter [3] = appointmentDTO.getDateOfTheAppointment( );
-                strWriter [4] = appointmentDTO.getStartingTime( ).toString( );
-                strWriter [5] = appointmentDTO.getEndingTime( ).toString( );
-                strWriter [6] = appointmentDTO.getAdminUser( );
-                String status = I18nService.getLocalizedString( AppointmentDTO.PROPERTY_APPOINTMENT_STATUS_RESERVED, locale );
-                if ( appointmentDTO.getIsCancelled( ) )
-                {
-                    status = I18nService.getLocalizedString( AppointmentDTO.PROPERTY_APPOINTMENT_STATUS_UNRESERVED, locale );
-                }
-                strWriter [7] = status;
-                State stateAppointment = stateService.findByResource( appointmentDTO.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE,
-                        tmpForm.getIdWorkflow( ) );
-                String strState = StringUtils.EMPTY;
-                if ( stateAppointment != null )
+                // The chunks after the first one are read after the keyset
+                // cursor of the previous one
+                exportFilter.setPageIndex( nPageIndex++ );
+                listAppointmentsDTO = AppointmentService.findPageAppointmentsDTOByFilter( exportFilter, mapAdminUserName );
+                List<Integer> listIdAppointment = listAppointmentsDTO.stream( ).map( AppointmentDTO::getIdAppointment ).collect( Collectors.toList( ) );
+                Map<Integer, List<Response>> mapResponses = AppointmentResponseService.findMapResponseByListIdAppointment( listIdAppointment );
+                Map<Integer, Integer> mapIdStateByIdAppointment = findMapIdState( listIdAppointment, nIdWorkflow );
+                for ( AppointmentDTO appointmentDTO : listAppointmentsDTO )
                 {
-                    appointmentDTO.setState( stateAppointment );
-                    strState = stateAppointment.getName( );
-                }
-                strWriter [8] = strState;
-                nIndex = 1;
-                strWriter [9] = Integer.toString( appointmentDTO.getNbBookedSeats( ) );
-                List<Integer> listIdResponse = AppointmentResponseService.findListIdResponse( appointmentDTO.getIdAppointment( ) );
-                List<Response> listResponses = new ArrayList<Response>( );
-                for ( int nIdResponse : listIdResponse )
-                {
-                    Response resp = ResponseHome.findByPrimaryKey( nIdResponse );
-                    if ( resp != null )
+                    String [ ] strWriter = new String [ nTaille];
+                    strWriter [0] = appointmentDTO.getLastName( );
+                    strWriter [1] = appointmentDTO.getFirstName( );
+                    strWriter [2] = appointmentDTO.getEmail( );
+                    strWriter [3] = appointmentDTO.getDateOfTheAppointment( );
+                    strWriter [4] = appointmentDTO.getStartingTime( ).toString( );
+                    strWriter [5] = appointmentDTO.getEndingTime( ).toString( );
+                    strWriter [6] = appointmentDTO.getAdminUser( );
+                    strWriter [7] = appointmentDTO.getIsCancelled( ) ? strStatusUnreserved : strStatusReserved;
+                    String strState = StringUtils.EMPTY;
+                    Integer nIdState = mapIdStateByIdAppointment.get( appointmentDTO.getIdAppointment( ) );
+                    if ( nIdState != null )
                     {
-                        listResponses.add( resp );
+                        State stateAppointment = mapStates.computeIfAbsent( nIdState, stateService::findByPrimaryKey );
+                        if ( stateAppointment != null )
+                        {
+                            strState = stateAppointment.getName( );
+                        }
                     }
-                }
-                for ( Entry e : listEntry )
-                {
-                    Integer key = e.getIdEntry( );
-                    StringBuffer strValue = new StringBuffer( StringUtils.EMPTY );
-                    String strPrefix = StringUtils.EMPTY;
-                    for ( Response resp : listResponses )
+                    strWriter [8] = strState;
+                    strWriter [9] = Integer.toString( appointmentDTO.getNbBookedSeats( ) );
+                    List<Response> listResponses = mapResponses.getOrDefault( appointmentDTO.getIdAppointment( ), new ArrayList<>( ) );
+                    int nIndex = 1;
+                    for ( Entry e : listEntry )
                     {
-                        String strRes = StringUtils.EMPTY;
-                        if ( key.equals( resp.getEntry( ).getIdEntry( ) ) )
+                        Integer key = e.getIdEntry( );
+                        StringBuilder strValue = new StringBuilder( );
+                        String strPrefix = StringUtils.EMPTY;
+                        for ( Response resp : listResponses )
                         {
-                            Field f = resp.getField( );
-                            int nfield = 0;
-                            if ( f != null )
+                            String strRes = StringUtils.EMPTY;
+                            if ( key.equals( resp.getEntry( ).getIdEntry( ) ) )
                             {
-                                nfield = f.getIdField( );
-                                Field field = FieldHome.findByPrimaryKey( nfield );
-                                if ( field != null )
+                                Field f = resp.getField( );
+                                if ( f != null )
                                 {
-                                    strRes = field.getTitle( );
+                                    strRes = f.getTitle( );
+                                }
+                                else
+                                {
+                                    strRes = resp.getResponseValue( );
                                 }
                             }
-                            else
+                            if ( ( strRes != null ) && !strRes.isEmpty( ) )
                             {
-                                strRes = resp.getResponseValue( );
+                                strValue.append( strPrefix + strRes );
+                                strPrefix = CONSTANT_COMMA;
                             }
                         }
-                        if ( ( strRes != null ) && !strRes.isEmpty( ) )
+                        if ( strValue.length( ) == 0 && mapDefaultValueGenAttBackOffice.containsKey( key ) )
                         {
-                            strValue.append( strPrefix + strRes );
-                            strPrefix = CONSTANT_COMMA;
+                            strValue.append( mapDefaultValueGenAttBackOffice.get( key ) );
                         }
+                        if ( strValue.length( ) > 0 )
+                        {
+                            strWriter [10 + nIndex] = strValue.toString( );
+                        }
+                        nIndex++;
                     }
-                    if ( strValue.toString( ).isEmpty( ) && mapDefaultValueGenAttBackOffice.containsKey( key ) )
-                    {
-                        strValue.append( mapDefaultValueGenAttBackOffice.get( key ) );
-                    }
-                    if ( !strValue.toString( ).isEmpty( ) )
-                    {
-                        strWriter [10 + nIndex] = strValue.toString( );
-                    }
-                    nIndex++;
+                    writeExcelRow( sheet, nRownum++, strWriter );
                 }
-                tmpObj.add( strWriter );
             }
+            while ( listAppointmentsDTO.size( ) == exportFilter.getItemsPerPage( ) );
+            workbook.write( os );
         }
-        int nRownum = 0;
-        for ( Object [ ] myObj : tmpObj )
+        finally
         {
-            Row row = sheet.createRow( nRownum++ );
-            int nCellnum = 0;
-            for ( Object strLine : myObj )
+            // Delete the temporary files of the streamed rows
+            workbook.dispose( );
+        }
+    }
+
+    /**
+     * Write a row of strings in a sheet
+     * 
+     * @param sheet
+     *            the sheet
+     * @param nRownum
+     *            the number of the row
+     * @param tabValues
+     *            the values of the cells, null for an empty cell
+     */
+    private static void writeExcelRow( Sheet sheet, int nRownum, String [ ] tabValues )
+    {
+        Row row = sheet.createRow( nRownum );
+        int nCellnum = 0;
+        for ( String strValue : tabValues )
+        {
+            Cell cell = row.createCell( nCellnum++ );
+            if ( strValue != null )
             {
-                Cell cell = row.createCell( nCellnum++ );
-                if ( strLine instanceof String )
-                {
-                    cell.setCellValue( (String) strLine );
-                }
-                else
-                    if ( strLine instanceof Boolean )
-                    {
-                        cell.setCellValue( (Boolean) strLine );
-                    }
-                    else
-                        if ( strLine instanceof Date )
-                        {
-                            cell.setCellValue( (Date) strLine );
-                        }
-                        else
-                            if ( strLine instanceof Double )
-                            {
-                                cell.setCellValue( (Double) strLine );
-                            }
+                cell.setCellValue( strValue );
             }
         }
-        try
+    }
+
+    /**
+     * Get the id of the workflow state of a list of appointments with one query
+     * 
+     * @param listIdAppointment
+     *            the list of id of the appointments
+     * @param nIdWorkflow
+     *            the id of the workflow of the form
+     * @return the id of the state by id of appointment
+     */
+    private static Map<Integer, Integer> findMapIdState( List<Integer> listIdAppointment, int nIdWorkflow )
+    {
+        Map<Integer, Integer> mapIdStateByIdAppointment = new HashMap<>( );
+        if ( nIdWorkflow <= 0 || listIdAppointment.isEmpty( ) )
         {
-            String now = new SimpleDateFormat( "yyyyMMdd-hhmm" ).format( GregorianCalendar.getInstance( locale ).getTime( ) ) + "_"
-                    + I18nService.getLocalizedString( KEY_RESOURCE_TYPE, locale ) + EXCEL_FILE_EXTENSION;
-            response.setContentType( EXCEL_MIME_TYPE );
-            response.setHeader( "Content-Disposition", "attachment; filename=\"" + now + "\";" );
-            response.setHeader( "Pragma", "public" );
-            response.setHeader( "Expires", "0" );
-            response.setHeader( "Cache-Control", "must-revalidate,post-check=0,pre-check=0" );
-            OutputStream os = response.getOutputStream( );
-            workbook.write( os );
-            os.close( );
-            workbook.close( );
+            return mapIdStateByIdAppointment;
         }
-        catch( IOException e )
+        ResourceWorkflowService resourceWorkflowService = SpringContextService.getBean( ResourceWorkflowService.BEAN_SERVICE );
+        for ( ResourceWorkflow resourceWorkflow : resourceWorkflowService.getListResourceWorkflowByListIdResource( listIdAppointment,
+                Appointment.APPOINTMENT_RESOURCE_TYPE, nIdWorkflow, null ) )
         {
-            AppLogService.error( e );
+            if ( resourceWorkflow.getState( ) != null )
+            {
+                mapIdStateByIdAppointment.put( resourceWorkflow.getIdResource( ), resourceWorkflow.getState( ).getId( ) );
+            }
         }
+        return mapIdStateByIdAppointment;
     }
 
     /**
-     * Kill the lock timer on a slot
+     * Copy the search criteria of a filter, so that it can be paged without moving the cursor of the original filter
+     * 
+     * @param appointmentFilter
+     *            the filter to copy
+     * @return a new filter with the same search criteria and the same sort
+     */
+    private static AppointmentFilterDTO copySearchCriteria( AppointmentFilterDTO appointmentFilter )
+    {
+        AppointmentFilterDTO copy = new AppointmentFilterDTO( );
+        copy.setIdForm( appointmentFilter.getIdForm( ) );
+        copy.setFirstName( appointmentFilter.getFirstName( ) );
+        copy.setLastName( appointmentFilter.getLastName( ) );
+        copy.setEmail( appointmentFilter.getEmail( ) );
+        copy.setStatus( appointmentFilter.getStatus( ) );
+        copy.setReference( appointmentFilter.getReference( ) );
+        copy.setSearchMode( appointmentFilter.getSearchMode( ) );
+        copy.setStartingDateOfSearch( appointmentFilter.getStartingDateOfSearch( ) );
+        copy.setStartingTimeOfSearch( appointmentFilter.getStartingTimeOfSearch( ) );
+        copy.setEndingDateOfSearch( appointmentFilter.getEndingDateOfSearch( ) );
+        copy.setEndingTimeOfSearch( appointmentFilter.getEndingTimeOfSearch( ) );
+        copy.setOrderBy( appointmentFilter.getOrderBy( ) );
+        copy.setOrderAsc( appointmentFilter.isOrderAsc( ) );
+        return copy;
+    }
+
+    /**
+     * Cancel the hold of places of the user on a slot. The places are not given back, they are taken by the appointment being saved
      * 
      * @param request
      *            the request
      */
-    public static void killTimer( HttpServletRequest request )
+    public static void cancelSlotHold( HttpServletRequest request )
     {
-        Timer timer = (Timer) request.getSession( ).getAttribute( SESSION_TIMER_SLOT );
-        if ( timer != null )
+        Integer nIdSlotHold = (Integer) request.getSession( ).getAttribute( SESSION_SLOT_HOLD );
+        if ( nIdSlotHold != null )
         {
-            timer.cancel( );
-            request.getSession( ).removeAttribute( SESSION_TIMER_SLOT );
+            SlotHoldService.cancel( nIdSlotHold );
+            request.getSession( ).removeAttribute( SESSION_SLOT_HOLD );
         }
     }
 
     /**
-     * Create a timer on a slot
+     * Hold places on a slot for the user while he is filling the form
      * 
+     * @param request
+     *            the request
      * @param slot
      *            the slot
      * @param appointmentDTO
      *            the appointment
      * @param maxPeoplePerAppointment
      *            the max people per appointment
-     * @return the timer
      */
-    public static Timer putTimerInSession( HttpServletRequest request, Slot slot, AppointmentDTO appointmentDTO, int maxPeoplePerAppointment )
+    public static void putSlotHoldInSession( HttpServletRequest request, Slot slot, AppointmentDTO appointmentDTO, int maxPeoplePerAppointment )
     {
-        SlotEditTask slotEditTask = new SlotEditTask( );
         int nbPotentialRemainingPlaces = slot.getNbPotentialRemainingPlaces( );
         int nbPotentialPlacesTaken = Math.min( nbPotentialRemainingPlaces, maxPeoplePerAppointment );
         appointmentDTO.setNbMaxPotentialBookedSeats( nbPotentialPlacesTaken );
-        slot.setNbPotentialRemainingPlaces( nbPotentialRemainingPlaces - nbPotentialPlacesTaken );
-        SlotService.updateSlot( slot );
-        slotEditTask.setNbPlacesTaken( nbPotentialPlacesTaken );
-        slotEditTask.setIdSlot( slot.getIdSlot( ) );
-        TimerForLockOnSlot timer = new TimerForLockOnSlot( );
-        long delay = TimeUnit.MINUTES.toMillis( AppPropertiesService.getPropertyInt( PROPERTY_DEFAULT_EXPIRED_TIME_EDIT_APPOINTMENT, 1 ) );
-        timer.schedule( slotEditTask, delay );
-        request.getSession( ).setAttribute( AppointmentUtilities.SESSION_TIMER_SLOT, timer );
-        return timer;
+        putSlotHoldInSession( request, slot, nbPotentialPlacesTaken );
+    }
+
+    /**
+     * Hold a number of places on a slot for the user while he is filling the form
+     * 
+     * @param request
+     *            the request
+     * @param slot
+     *            the slot
+     * @param nbPlaces
+     *            the number of places to hold
+     */
+    public static void putSlotHoldInSession( HttpServletRequest request, Slot slot, int nbPlaces )
+    {
+        SlotHold slotHold = SlotHoldService.hold( slot.getIdSlot( ), nbPlaces,
+                AppPropertiesService.getPropertyInt( PROPERTY_DEFAULT_EXPIRED_TIME_EDIT_APPOINTMENT, 1 ) );
+        if ( slotHold != null )
+        {
+            slot.setNbPotentialRemainingPlaces( slot.getNbPotentialRemainingPlaces( ) - nbPlaces );
+            request.getSession( ).setAttribute( SESSION_SLOT_HOLD, slotHold.getIdSlotHold( ) );
+        }
     }
 
     /**
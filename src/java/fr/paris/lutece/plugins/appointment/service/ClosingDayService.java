@@ -33,27 +33,38 @@
  */
 package fr.paris.lutece.plugins.appointment.service;
 
-import java.io.FileInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.time.Instant;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import fr.paris.lutece.plugins.appointment.business.planning.ClosingDay;
 import fr.paris.lutece.plugins.appointment.business.planning.ClosingDayHome;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanningService;
+import fr.paris.lutece.plugins.appointment.service.planning.SlotMaterializationService;
 
 /**
  * Service class for the closing day
@@ -65,7 +76,13 @@ public final class ClosingDayService
 {
 
     private static final String MARK_EXCEL_EXTENSION_XLSX = "xlsx";
+    private static final String MARK_CSV_EXTENSION = "csv";
     private static final String MARK_FORMAT_DATE_REGEX = "([0-9]{2})/([0-9]{2})/([0-9]{4})";
+    private static final String CSV_SEPARATOR_REGEX = "[;,]";
+    private static final String CSV_STRIPPED_CHARACTERS = " \"";
+    private static final String FEATURE_DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+    private static final int INDEX_COLUMN_DATE = 3;
+    private static final int INDEX_FIRST_ROW = 2;
 
     /**
      * Private constructor - this class does not need to be instantiated
@@ -141,7 +158,7 @@ public final class ClosingDayService
     }
 
     /**
-     * Save the closing days of a form
+     * Save the closing days of a form, with batched inserts
      * 
      * @param nIdForm
      *            the form id
@@ -150,11 +167,17 @@ public final class ClosingDayService
      */
     public static void saveListClosingDay( int nIdForm, List<LocalDate> listClosingDate )
     {
-
+        List<ClosingDay> listClosingDay = new ArrayList<>( listClosingDate.size( ) );
         for ( LocalDate closingDate : listClosingDate )
         {
-            saveClosingDay( nIdForm, closingDate );
+            ClosingDay closingDay = new ClosingDay( );
+            closingDay.setIdForm( nIdForm );
+            closingDay.setDateOfClosingDay( closingDate );
+            listClosingDay.add( closingDay );
         }
+        ClosingDayHome.createList( listClosingDay );
+        FormPlanningService.getInstance( ).invalidate( nIdForm );
+        SlotMaterializationService.requestMaterialization( nIdForm );
     }
 
     /**
@@ -193,10 +216,13 @@ public final class ClosingDayService
     public static void removeClosingDay( ClosingDay closingDay )
     {
         ClosingDayHome.delete( closingDay.getIdClosingDay( ) );
+        FormPlanningService.getInstance( ).invalidate( closingDay.getIdForm( ) );
+        SlotMaterializationService.requestMaterialization( closingDay.getIdForm( ) );
     }
 
     /**
-     * Import the closing dates of a given file
+     * Import the closing dates of a given file, xlsx or csv. The dates are read in the fourth column, from the third row. The file is read as a stream : the
+     * sheets of a xlsx file are parsed with SAX, and only the cells of the date column are read
      * 
      * @param item
      *            the file in input
@@ -206,69 +232,149 @@ public final class ClosingDayService
      */
     public static List<LocalDate> getImportClosingDays( FileItem item ) throws IOException
     {
-        HashSet<LocalDate> listDays = new HashSet<LocalDate>( );
-        FileInputStream fis = null;
-        Workbook workbook = null;
+        Set<LocalDate> setDays = new HashSet<>( );
         String strExtension = FilenameUtils.getExtension( item.getName( ) );
-        if ( StringUtils.equals( MARK_EXCEL_EXTENSION_XLSX, strExtension ) )
+        if ( StringUtils.equalsIgnoreCase( MARK_EXCEL_EXTENSION_XLSX, strExtension ) )
         {
-            try
+            try ( InputStream inputStream = item.getInputStream( ) )
             {
-                fis = (FileInputStream) item.getInputStream( );
-                // Using XSSF for xlsx format, for xls use HSSF
-                workbook = new XSSFWorkbook( fis );
-                int numberOfSheets = workbook.getNumberOfSheets( );
-                // looping over each workbook sheet
-                for ( int i = 0; i < numberOfSheets; i++ )
+                readXlsxClosingDays( inputStream, setDays );
+            }
+        }
+        else
+            if ( StringUtils.equalsIgnoreCase( MARK_CSV_EXTENSION, strExtension ) )
+            {
+                try ( InputStream inputStream = item.getInputStream( ) )
                 {
-                    Sheet sheet = workbook.getSheetAt( i );
-                    Iterator<Row> rowIterator = sheet.iterator( );
-                    // iterating over each row
-                    while ( rowIterator.hasNext( ) )
-                    {
-                        Row row = (Row) rowIterator.next( );
-                        if ( row.getRowNum( ) > 1 )
-                        {
-                            Iterator<Cell> cellIterator = row.cellIterator( );
-                            // Iterating over each cell (column wise) in a
-                            // particular row.
-                            while ( cellIterator.hasNext( ) )
-                            {
-                                Cell cell = (Cell) cellIterator.next( );
-                                // The Cell Containing String will is name.
-                                if ( cell.getColumnIndex( ) == 3 )
-                                {
-                                    String strdate = StringUtils.EMPTY;
-                                    if ( cell.getCellType( ) == 0 )
-                                    {
-                                        Instant instant = cell.getDateCellValue( ).toInstant( );
-                                        LocalDate localDate = instant.atZone( ZoneId.systemDefault( ) ).toLocalDate( );
-                                        strdate = localDate.format( Utilities.getFormatter( ) );
-                                    }
-                                    if ( StringUtils.isNotEmpty( strdate ) && strdate.matches( MARK_FORMAT_DATE_REGEX ) )
-                                    {
-                                        LocalDate date = LocalDate.parse( strdate, Utilities.getFormatter( ) );
-                                        listDays.add( date );
-                                    }
-                                }
-                            }
-                        }
-                    }
+                    readCsvClosingDays( inputStream, setDays );
                 }
             }
-            finally
+        return new ArrayList<>( setDays );
+    }
+
+    /**
+     * Read the closing dates of a xlsx file, sheet by sheet with a SAX parser
+     * 
+     * @param inputStream
+     *            the content of the file
+     * @param setDays
+     *            the set to fill with the dates
+     * @throws IOException
+     *             if error during reading file
+     */
+    static void readXlsxClosingDays( InputStream inputStream, Set<LocalDate> setDays ) throws IOException
+    {
+        OPCPackage opcPackage = null;
+        try
+        {
+            opcPackage = OPCPackage.open( inputStream );
+            XSSFReader reader = new XSSFReader( opcPackage );
+            SAXParserFactory factory = SAXParserFactory.newInstance( );
+            factory.setNamespaceAware( true );
+            factory.setFeature( XMLConstants.FEATURE_SECURE_PROCESSING, true );
+            factory.setFeature( FEATURE_DISALLOW_DOCTYPE, true );
+            SAXParser parser = factory.newSAXParser( );
+            WorkbookPropertiesHandler workbookPropertiesHandler = new WorkbookPropertiesHandler( );
+            try ( InputStream workbookInputStream = reader.getWorkbookData( ) )
+            {
+                parser.parse( workbookInputStream, workbookPropertiesHandler );
+            }
+            Iterator<InputStream> iteratorSheets = reader.getSheetsData( );
+            while ( iteratorSheets.hasNext( ) )
             {
-                if ( fis != null )
+                try ( InputStream sheetInputStream = iteratorSheets.next( ) )
                 {
-                    fis.close( );
+                    parser.parse( sheetInputStream, new ClosingDaySheetHandler( INDEX_COLUMN_DATE, INDEX_FIRST_ROW, workbookPropertiesHandler.isDate1904( ),
+                            setDays ) );
                 }
-                if ( workbook != null )
+            }
+        }
+        catch( OpenXML4JException | ParserConfigurationException | SAXException e )
+        {
+            throw new IOException( "Unable to read the xlsx file of the closing days", e );
+        }
+        finally
+        {
+            if ( opcPackage != null )
+            {
+                opcPackage.revert( );
+            }
+        }
+    }
+
+    /**
+     * Read the closing dates of a csv file, line by line. The columns are separated by semicolons or commas, and the dates have the format dd/MM/yyyy
+     * 
+     * @param inputStream
+     *            the content of the file
+     * @param setDays
+     *            the set to fill with the dates
+     * @throws IOException
+     *             if error during reading file
+     */
+    static void readCsvClosingDays( InputStream inputStream, Set<LocalDate> setDays ) throws IOException
+    {
+        BufferedReader reader = new BufferedReader( new InputStreamReader( inputStream, StandardCharsets.UTF_8 ) );
+        int nIndexRow = 0;
+        String strLine;
+        while ( ( strLine = reader.readLine( ) ) != null )
+        {
+            if ( nIndexRow++ < INDEX_FIRST_ROW )
+            {
+                continue;
+            }
+            String [ ] tabColumns = strLine.split( CSV_SEPARATOR_REGEX, -1 );
+            if ( tabColumns.length > INDEX_COLUMN_DATE )
+            {
+                String strDate = StringUtils.strip( tabColumns [INDEX_COLUMN_DATE], CSV_STRIPPED_CHARACTERS );
+                if ( strDate.matches( MARK_FORMAT_DATE_REGEX ) )
                 {
-                    workbook.close( );
+                    try
+                    {
+                        setDays.add( LocalDate.parse( strDate, Utilities.getFormatter( ) ) );
+                    }
+                    catch( DateTimeParseException e )
+                    {
+                        // Not a valid date, the line is skipped
+                    }
                 }
             }
         }
-        return new ArrayList<LocalDate>( listDays );
     }
 
+
+    /**
+     * SAX handler of the workbook part of a xlsx file, reading if the dates of the workbook start in 1904
+     */
+    private static final class WorkbookPropertiesHandler extends DefaultHandler
+    {
+        private static final String ELEMENT_WORKBOOK_PROPERTIES = "workbookPr";
+        private static final String ATTRIBUTE_DATE_1904 = "date1904";
+        private static final String VALUE_TRUE = "1";
+
+        private boolean _bDate1904;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startElement( String strUri, String strLocalName, String strQualifiedName, Attributes attributes )
+        {
+            if ( ELEMENT_WORKBOOK_PROPERTIES.equals( strLocalName ) )
+            {
+                String strDate1904 = attributes.getValue( ATTRIBUTE_DATE_1904 );
+                _bDate1904 = VALUE_TRUE.equals( strDate1904 ) || Boolean.parseBoolean( strDate1904 );
+            }
+        }
+
+        /**
+         * Check if the dates of the workbook start in 1904
+         * 
+         * @return true if the dates start in 1904, false if they start in 1900
+         */
+        boolean isDate1904( )
+        {
+            return _bDate1904;
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler of a sheet of a xlsx file of closing days : only the numeric cells of the date column are read, from a given row, and their dates are added to
+ * a set. The position of the rows and cells without reference is deduced from the previous ones. The other cells are skipped without being built, so that the memory used does not depend on the size of the sheet
+ * 
+ */
+final class ClosingDaySheetHandler extends DefaultHandler
+{
+    private static final String ELEMENT_ROW = "row";
+    private static final String ELEMENT_CELL = "c";
+    private static final String ELEMENT_VALUE = "v";
+    private static final String ATTRIBUTE_REFERENCE = "r";
+    private static final String ATTRIBUTE_TYPE = "t";
+    private static final String TYPE_NUMBER = "n";
+
+    private final int _nDateColumn;
+    private final int _nFirstRow;
+    private final boolean _bDate1904;
+    private final Set<LocalDate> _setDates;
+    private final StringBuilder _sbValue = new StringBuilder( );
+    private int _nRow = -1;
+    private int _nColumn = -1;
+    private boolean _bDateCell;
+    private boolean _bInValue;
+
+    /**
+     * Constructor
+     * 
+     * @param nDateColumn
+     *            the index of the date column, from 0
+     * @param nFirstRow
+     *            the index of the first row read, from 0
+     * @param bDate1904
+     *            true if the dates of the workbook start in 1904 instead of 1900
+     * @param setDates
+     *            the set to fill with the dates read
+     */
+    ClosingDaySheetHandler( int nDateColumn, int nFirstRow, boolean bDate1904, Set<LocalDate> setDates )
+    {
+        _nDateColumn = nDateColumn;
+        _nFirstRow = nFirstRow;
+        _bDate1904 = bDate1904;
+        _setDates = setDates;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startElement( String strUri, String strLocalName, String strQualifiedName, Attributes attributes )
+    {
+        if ( ELEMENT_ROW.equals( strLocalName ) )
+        {
+            // The reference of the row is optional, the row follows the
+            // previous one when it is missing
+            String strReference = attributes.getValue( ATTRIBUTE_REFERENCE );
+            _nRow = strReference != null ? Integer.parseInt( strReference ) - 1 : _nRow + 1;
+            _nColumn = -1;
+        }
+        else
+            if ( ELEMENT_CELL.equals( strLocalName ) )
+            {
+                // The reference of the cell is optional too, the cell follows
+                // the previous one of the row when it is missing
+                String strReference = attributes.getValue( ATTRIBUTE_REFERENCE );
+                _nColumn = strReference != null ? new CellReference( strReference ).getCol( ) : _nColumn + 1;
+                String strType = attributes.getValue( ATTRIBUTE_TYPE );
+                _bDateCell = ( strType == null || TYPE_NUMBER.equals( strType ) ) && _nColumn == _nDateColumn && _nRow >= _nFirstRow;
+            }
+            else
+                if ( ELEMENT_VALUE.equals( strLocalName ) && _bDateCell )
+                {
+                    _bInValue = true;
+                    _sbValue.setLength( 0 );
+                }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characters( char [ ] ch, int nStart, int nLength )
+    {
+        if ( _bInValue )
+        {
+            _sbValue.append( ch, nStart, nLength );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endElement( String strUri, String strLocalName, String strQualifiedName )
+    {
+        if ( ELEMENT_VALUE.equals( strLocalName ) && _bInValue )
+        {
+            _bInValue = false;
+            addDate( _sbValue.toString( ) );
+        }
+        else
+            if ( ELEMENT_CELL.equals( strLocalName ) )
+            {
+                _bDateCell = false;
+            }
+    }
+
+    /**
+     * Add the date of the value of a numeric cell
+     * 
+     * @param strValue
+     *            the value, the number of days since the origin of the dates of the workbook
+     */
+    private void addDate( String strValue )
+    {
+        double dValue;
+        try
+        {
+            dValue = Double.parseDouble( strValue );
+        }
+        catch( NumberFormatException e )
+        {
+            return;
+        }
+        if ( DateUtil.isValidExcelDate( dValue ) )
+        {
+            _setDates.add( DateUtil.getJavaDate( dValue, _bDate1904 ).toInstant( ).atZone( ZoneId.systemDefault( ) ).toLocalDate( ) );
+        }
+    }
+}
@@ -35,6 +35,7 @@ package fr.paris.lutece.plugins.appointment.service;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -42,8 +43,11 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
 
 import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.service.form.EntryNode;
+import fr.paris.lutece.plugins.appointment.service.form.FormEntryCacheService;
 import fr.paris.lutece.plugins.appointment.web.AppointmentApp;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
@@ -408,6 +412,7 @@ public final class EntryService extends RemovalListenerService implements Serial
         {
             EntryHome.remove( entry.getIdEntry( ) );
         }
+        FormEntryCacheService.getInstance( ).invalidate( nIdForm );
     }
 
     /**
@@ -573,6 +578,190 @@ public final class EntryService extends RemovalListenerService implements Serial
         stringBuffer.append( template.getHtml( ) );
     }
 
+    /**
+     * Get the html part of the additional entries of a form. The entry tree of the form is read from the cache, and when the user has not given any response
+     * yet, the html part itself is read from the cache
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param locale
+     *            the locale
+     * @param bDisplayFront
+     *            True to get the html part for the front office, false for the back office
+     * @param request
+     *            the request, holding the responses of the user in session
+     * @return the html part of the entries
+     */
+    public static String getHtmlEntries( int nIdForm, Locale locale, boolean bDisplayFront, HttpServletRequest request )
+    {
+        Map<Integer, List<Response>> mapResponses = null;
+        if ( request != null )
+        {
+            AppointmentDTO appointmentDTO = (AppointmentDTO) request.getSession( ).getAttribute( SESSION_NOT_VALIDATED_APPOINTMENT );
+            if ( appointmentDTO != null )
+            {
+                mapResponses = appointmentDTO.getMapResponsesByIdEntry( );
+            }
+        }
+        if ( MapUtils.isEmpty( mapResponses ) )
+        {
+            return FormEntryCacheService.getInstance( ).getHtmlEntries( nIdForm, locale, bDisplayFront );
+        }
+        return getHtmlEntries( FormEntryCacheService.getInstance( ).getEntryTree( nIdForm ), locale, bDisplayFront, mapResponses );
+    }
+
+    /**
+     * Render the html part of the entries of a compiled entry tree
+     * 
+     * @param listEntryNodes
+     *            the nodes of the first level entries
+     * @param locale
+     *            the locale
+     * @param bDisplayFront
+     *            True to render the entries for the front office, false for the back office
+     * @param mapResponses
+     *            the responses of the user by entry Id, null if there is none
+     * @return the html part of the entries
+     */
+    public static String getHtmlEntries( List<EntryNode> listEntryNodes, Locale locale, boolean bDisplayFront, Map<Integer, List<Response>> mapResponses )
+    {
+        // The model is shared by all the entries, as in getHtmlEntry
+        Map<String, Object> model = new HashMap<String, Object>( );
+        StringBuffer stringBuffer = new StringBuffer( );
+        for ( EntryNode entryNode : listEntryNodes )
+        {
+            getHtmlEntry( model, entryNode, stringBuffer, locale, bDisplayFront, mapResponses );
+        }
+        return stringBuffer.toString( );
+    }
+
+    /**
+     * Render the html part of an entry of a compiled entry tree
+     * 
+     * @param model
+     *            the model
+     * @param entryNode
+     *            the node of the entry
+     * @param stringBuffer
+     *            the string buffer
+     * @param locale
+     *            the locale
+     * @param bDisplayFront
+     *            True to render the entry for the front office, false for the back office
+     * @param mapResponses
+     *            the responses of the user by entry Id, null if there is none
+     */
+    private static void getHtmlEntry( Map<String, Object> model, EntryNode entryNode, StringBuffer stringBuffer, Locale locale, boolean bDisplayFront,
+            Map<Integer, List<Response>> mapResponses )
+    {
+        HtmlTemplate template;
+        Entry entry = entryNode.getEntry( );
+        if ( entry.getEntryType( ).getGroup( ) )
+        {
+            StringBuffer strGroupStringBuffer = new StringBuffer( );
+            for ( EntryNode childNode : entryNode.getChildren( ) )
+            {
+                getHtmlEntry( model, childNode, strGroupStringBuffer, locale, bDisplayFront, mapResponses );
+            }
+            model.put( MARK_STR_LIST_CHILDREN, strGroupStringBuffer.toString( ) );
+        }
+        if ( entry.getNumberConditionalQuestion( ) != 0 )
+        {
+            StringBuffer strConditionalQuestionStringBuffer = new StringBuffer( );
+            for ( Field field : entry.getFields( ) )
+            {
+                if ( CollectionUtils.isNotEmpty( field.getConditionalQuestions( ) ) )
+                {
+                    StringBuffer strGroupStringBuffer = new StringBuffer( );
+                    for ( EntryNode conditionalNode : entryNode.getConditionalEntries( field.getIdField( ) ) )
+                    {
+                        getHtmlEntry( model, conditionalNode, strGroupStringBuffer, locale, bDisplayFront, mapResponses );
+                    }
+                    model.put( MARK_STR_LIST_CHILDREN, strGroupStringBuffer.toString( ) );
+                    model.put( MARK_FIELD, field );
+                    template = AppTemplateService.getTemplate( TEMPLATE_DIV_CONDITIONAL_ENTRY, locale, model );
+                    strConditionalQuestionStringBuffer.append( template.getHtml( ) );
+                }
+            }
+            model.put( MARK_STR_LIST_CHILDREN, strConditionalQuestionStringBuffer.toString( ) );
+        }
+        model.put( MARK_ENTRY, entry );
+        model.put( MARK_LOCALE, locale );
+        if ( mapResponses != null )
+        {
+            model.put( MARK_LIST_RESPONSES, mapResponses.get( entry.getIdEntry( ) ) );
+        }
+        IEntryTypeService entryTypeService = EntryTypeServiceManager.getEntryTypeService( entry );
+        // If the entry type is a file, we add the upload handler
+        if ( entryTypeService instanceof AbstractEntryTypeUpload )
+        {
+            model.put( MARK_UPLOAD_HANDLER, ( (AbstractEntryTypeUpload) entryTypeService ).getAsynchronousUploadHandler( ) );
+        }
+        template = AppTemplateService.getTemplate( entryTypeService.getTemplateHtmlForm( entry, bDisplayFront ), locale, model );
+        stringBuffer.append( template.getHtml( ) );
+    }
+
+    /**
+     * Load the compiled tree of the first level entries of a form displayed in front office, with their children, their fields and the conditional questions
+     * of their fields
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @return the nodes of the first level entries
+     */
+    public static List<EntryNode> loadEntryTree( int nIdForm )
+    {
+        List<Entry> listEntryFirstLevel = getFilter( nIdForm, true );
+        List<EntryNode> listEntryNodes = new ArrayList<EntryNode>( listEntryFirstLevel.size( ) );
+        for ( Entry entry : listEntryFirstLevel )
+        {
+            listEntryNodes.add( loadEntryNode( entry.getIdEntry( ) ) );
+        }
+        return listEntryNodes;
+    }
+
+    /**
+     * Load the node of an entry of the compiled entry tree
+     * 
+     * @param nIdEntry
+     *            the entry Id
+     * @return the node of the entry
+     */
+    private static EntryNode loadEntryNode( int nIdEntry )
+    {
+        Entry entry = EntryHome.findByPrimaryKey( nIdEntry );
+        EntryNode entryNode = new EntryNode( entry );
+        if ( entry.getEntryType( ).getGroup( ) )
+        {
+            for ( Entry entryChild : entry.getChildren( ) )
+            {
+                entryNode.addChild( loadEntryNode( entryChild.getIdEntry( ) ) );
+            }
+        }
+        else
+            if ( entry.getNumberConditionalQuestion( ) != 0 )
+            {
+                for ( Field field : entry.getFields( ) )
+                {
+                    field.setConditionalQuestions( FieldHome.findByPrimaryKey( field.getIdField( ) ).getConditionalQuestions( ) );
+                }
+            }
+        if ( entry.getNumberConditionalQuestion( ) != 0 )
+        {
+            for ( Field field : entry.getFields( ) )
+            {
+                if ( CollectionUtils.isNotEmpty( field.getConditionalQuestions( ) ) )
+                {
+                    for ( Entry entryConditional : field.getConditionalQuestions( ) )
+                    {
+                        entryNode.addConditionalEntry( field.getIdField( ), loadEntryNode( entryConditional.getIdEntry( ) ) );
+                    }
+                }
+            }
+        }
+        return entryNode;
+    }
+
     /**
      * Add to the map of the appointment the response of the additional entry of the form
      * 
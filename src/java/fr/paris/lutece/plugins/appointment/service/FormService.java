@@ -41,26 +41,43 @@ import java.util.List;
 
 import org.apache.commons.collections.CollectionUtils;
 
-import fr.paris.lutece.plugins.appointment.business.appointment.Appointment;
 import fr.paris.lutece.plugins.appointment.business.display.Display;
 import fr.paris.lutece.plugins.appointment.business.form.Form;
 import fr.paris.lutece.plugins.appointment.business.form.FormHome;
 import fr.paris.lutece.plugins.appointment.business.localization.Localization;
 import fr.paris.lutece.plugins.appointment.business.message.FormMessage;
 import fr.paris.lutece.plugins.appointment.business.planning.ClosingDay;
+import fr.paris.lutece.plugins.appointment.business.planning.ClosingDayHome;
 import fr.paris.lutece.plugins.appointment.business.planning.TimeSlot;
+import fr.paris.lutece.plugins.appointment.business.planning.TimeSlotHome;
 import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinitionHome;
 import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
+import fr.paris.lutece.plugins.appointment.business.planning.WorkingDayHome;
 import fr.paris.lutece.plugins.appointment.business.rule.FormRule;
 import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
+import fr.paris.lutece.plugins.appointment.business.rule.ReservationRuleHome;
 import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItemHome;
+import fr.paris.lutece.plugins.appointment.service.admission.AdmissionService;
+import fr.paris.lutece.plugins.appointment.service.form.AppointmentFormCacheService;
 import fr.paris.lutece.plugins.appointment.service.listeners.AppointmentListenerManager;
 import fr.paris.lutece.plugins.appointment.service.listeners.FormListenerManager;
+import fr.paris.lutece.plugins.appointment.service.listeners.SlotListenerManager;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanningService;
+import fr.paris.lutece.plugins.appointment.service.purge.AppointmentPurgeJob;
+import fr.paris.lutece.plugins.appointment.service.purge.AppointmentPurgeService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryFilter;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.util.ReferenceList;
+import fr.paris.lutece.util.sql.TransactionManager;
 
 /**
  * Service class for a form
@@ -88,6 +105,41 @@ public final class FormService
      * @return the id of the form created
      */
     public static int copyForm( int nIdForm, String newNameForCopy )
+    {
+        long lStartTime = System.currentTimeMillis( );
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        int nIdNewForm;
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            nIdNewForm = doCopyForm( nIdForm, newNameForCopy );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
+        }
+        // The specific slots have been inserted in batch, their listeners
+        // are notified once they are committed
+        for ( Slot slot : SlotService.findSpecificSlotsByIdForm( nIdNewForm ) )
+        {
+            SlotListenerManager.notifyListenersSlotCreation( slot.getIdSlot( ) );
+        }
+        AppLogService.info( "Appointment form " + nIdForm + " copied to form " + nIdNewForm + " in " + ( System.currentTimeMillis( ) - lStartTime ) + " ms" );
+        return nIdNewForm;
+    }
+
+    /**
+     * Copy a form and all its planning (the caller handles the transaction)
+     * 
+     * @param nIdForm
+     *            the id of the form to copy
+     * @param newNameForCopy
+     *            the new title of the copy
+     * @return the id of the form created
+     */
+    private static int doCopyForm( int nIdForm, String newNameForCopy )
     {
         // Build the simple form to copy with the values of the original form
         AppointmentFormDTO appointmentForm = buildAppointmentForm( nIdForm, 0, 0 );
@@ -105,52 +157,46 @@ public final class FormService
         // Add the form rule
         FormRuleService.createFormRule( appointmentForm, nIdNewForm );
         // Get all the weekDefinitions, WorkingDays and TimeSlots of the
-        // original form and set the new id
-        // of the copy of the form and save them
-        WeekDefinition copyWeekDefinition;
-        int idCopyWeekDefinition;
-        WorkingDay copyWorkingDay;
-        int idCopyWorkingDay;
-        TimeSlot copyTimeSlot;
+        // original form and insert their copies level by level, the ids of
+        // each level being set by the batch insert before the next one
         List<WeekDefinition> listWeekDefinitions = WeekDefinitionService.findListWeekDefinition( nIdForm );
-        List<WorkingDay> listWorkingDays;
-        List<TimeSlot> listTimeSlots;
         for ( WeekDefinition weekDefinition : listWeekDefinitions )
         {
-            copyWeekDefinition = weekDefinition;
-            copyWeekDefinition.setIdWeekDefinition( 0 );
-            copyWeekDefinition.setIdForm( nIdNewForm );
-            copyWeekDefinition = WeekDefinitionService.saveWeekDefinition( copyWeekDefinition );
-            listWorkingDays = weekDefinition.getListWorkingDay( );
-            idCopyWeekDefinition = copyWeekDefinition.getIdWeekDefinition( );
-            for ( WorkingDay workingDay : listWorkingDays )
+            weekDefinition.setIdWeekDefinition( 0 );
+            weekDefinition.setIdForm( nIdNewForm );
+        }
+        WeekDefinitionHome.createList( listWeekDefinitions );
+        List<WorkingDay> listWorkingDays = new ArrayList<>( );
+        for ( WeekDefinition weekDefinition : listWeekDefinitions )
+        {
+            for ( WorkingDay workingDay : weekDefinition.getListWorkingDay( ) )
             {
-                copyWorkingDay = workingDay;
-                copyWorkingDay.setIdWorkingDay( 0 );
-                copyWorkingDay.setIdWeekDefinition( idCopyWeekDefinition );
-                copyWorkingDay = WorkingDayService.saveWorkingDay( copyWorkingDay );
-                idCopyWorkingDay = copyWorkingDay.getIdWorkingDay( );
-                listTimeSlots = workingDay.getListTimeSlot( );
-                for ( TimeSlot timeSlot : listTimeSlots )
-                {
-                    copyTimeSlot = timeSlot;
-                    copyTimeSlot.setIdTimeSlot( 0 );
-                    copyTimeSlot.setIdWorkingDay( idCopyWorkingDay );
-                    TimeSlotService.saveTimeSlot( copyTimeSlot );
-                }
+                workingDay.setIdWorkingDay( 0 );
+                workingDay.setIdWeekDefinition( weekDefinition.getIdWeekDefinition( ) );
+                listWorkingDays.add( workingDay );
+            }
+        }
+        WorkingDayHome.createList( listWorkingDays );
+        List<TimeSlot> listTimeSlots = new ArrayList<>( );
+        for ( WorkingDay workingDay : listWorkingDays )
+        {
+            for ( TimeSlot timeSlot : workingDay.getListTimeSlot( ) )
+            {
+                timeSlot.setIdTimeSlot( 0 );
+                timeSlot.setIdWorkingDay( workingDay.getIdWorkingDay( ) );
+                listTimeSlots.add( timeSlot );
             }
         }
+        TimeSlotHome.createList( listTimeSlots );
         // Get all the reservation rules of the original form and set the new id
         // of the copy of the form and save them
-        ReservationRule copyReservationRule;
         List<ReservationRule> listReservationRules = ReservationRuleService.findListReservationRule( nIdForm );
         for ( ReservationRule reservationRule : listReservationRules )
         {
-            copyReservationRule = reservationRule;
-            copyReservationRule.setIdReservationRule( 0 );
-            copyReservationRule.setIdForm( nIdNewForm );
-            ReservationRuleService.saveReservationRule( copyReservationRule );
+            reservationRule.setIdReservationRule( 0 );
+            reservationRule.setIdForm( nIdNewForm );
         }
+        ReservationRuleHome.createList( listReservationRules );
         // Copy the messages of the original form and add them to the copy
         FormMessage formMessage = FormMessageService.findFormMessageByIdForm( nIdForm );
         FormMessage copyFormMessage = formMessage;
@@ -160,25 +206,21 @@ public final class FormService
         // Get all the closing days of the original form and add them to the
         // copy
         List<ClosingDay> listClosingDays = ClosingDayService.findListClosingDay( nIdForm );
-        ClosingDay copyClosingDay;
         for ( ClosingDay closingDay : listClosingDays )
         {
-            copyClosingDay = closingDay;
-            copyClosingDay.setIdClosingDay( 0 );
-            copyClosingDay.setIdForm( nIdNewForm );
-            ClosingDayService.saveClosingDay( copyClosingDay );
+            closingDay.setIdClosingDay( 0 );
+            closingDay.setIdForm( nIdNewForm );
         }
+        ClosingDayHome.createList( listClosingDays );
         // Get all the specific slots of the original form and copy them for the
         // new form
         List<Slot> listSpecificSlots = SlotService.findSpecificSlotsByIdForm( nIdForm );
-        Slot copySpecificSlot;
         for ( Slot specificSlot : listSpecificSlots )
         {
-            copySpecificSlot = specificSlot;
-            copySpecificSlot.setIdSlot( 0 );
-            copySpecificSlot.setIdForm( nIdNewForm );
-            SlotService.saveSlot( copySpecificSlot );
+            specificSlot.setIdSlot( 0 );
+            specificSlot.setIdForm( nIdNewForm );
         }
+        SlotHome.createList( listSpecificSlots );
         // Copy the entries of the original form
         EntryFilter entryFilter = new EntryFilter( );
         entryFilter.setIdResource( nIdForm );
@@ -250,6 +292,9 @@ public final class FormService
         DisplayService.updateDisplay( appointmentForm, nIdForm );
         LocalizationService.updateLocalization( appointmentForm, nIdForm );
         FormRuleService.updateFormRule( appointmentForm, nIdForm );
+        // The display, the localization and the rule are updated after the
+        // notification of the form change
+        AppointmentFormCacheService.getInstance( ).invalidate( nIdForm );
     }
 
     /**
@@ -279,6 +324,10 @@ public final class FormService
         {
             WorkingDayService.generateWorkingDayAndListTimeSlot( nIdWeekDefinition, dayOfWeek, startingHour, endingHour, nDuration, nMaxCapacity );
         }
+        // The working days are generated after the notification of the week
+        // definition, the planning and the configuration must be built again
+        FormPlanningService.getInstance( ).invalidate( nIdForm );
+        AppointmentFormCacheService.getInstance( ).invalidate( nIdForm );
     }
 
     /**
@@ -375,7 +424,7 @@ public final class FormService
     }
 
     /**
-     * Build an appointmentForm DTO
+     * Build an appointmentForm DTO (from the cache of the configurations of the forms)
      * 
      * @param nIdForm
      *            the Form Id
@@ -386,6 +435,30 @@ public final class FormService
      * @return the apointmentForm DTO built
      */
     public static AppointmentFormDTO buildAppointmentForm( int nIdForm, int nIdReservationRule, int nIdWeekDefinition )
+    {
+        long lStartTime = System.nanoTime( );
+        try
+        {
+            return AppointmentFormCacheService.getInstance( ).getAppointmentForm( nIdForm, nIdReservationRule, nIdWeekDefinition );
+        }
+        finally
+        {
+            AppointmentMetricsService.recordTime( AppointmentMetricsService.METRIC_BUILD_APPOINTMENT_FORM, nIdForm, lStartTime );
+        }
+    }
+
+    /**
+     * Load an appointmentForm DTO from the database, without the cache
+     * 
+     * @param nIdForm
+     *            the Form Id
+     * @param nIdReservationRule
+     *            the Reservation Rule Id
+     * @param nIdWeekDefinition
+     *            the WeekDefinition Id
+     * @return the apointmentForm DTO built
+     */
+    public static AppointmentFormDTO loadAppointmentForm( int nIdForm, int nIdReservationRule, int nIdWeekDefinition )
     {
         AppointmentFormDTO appointmentForm = new AppointmentFormDTO( );
         Form form = FormService.findFormLightByPrimaryKey( nIdForm );
@@ -707,11 +780,25 @@ public final class FormService
      */
     public static void removeForm( int nIdForm )
     {
-        // Delete all the responses linked to all the appointments of the form
-        for ( Appointment appointment : AppointmentService.findListAppointmentByIdForm( nIdForm ) )
-        {
-            AppointmentResponseService.removeResponsesByIdAppointment( appointment.getIdAppointment( ) );
-        }
+        removeForm( nIdForm, null );
+    }
+
+    /**
+     * Remove a Form from the database, reporting the progress of the deletion of its appointments
+     * 
+     * @param nIdForm
+     *            the form id to remove
+     * @param job
+     *            the job to report the progress to, null if none
+     */
+    public static void removeForm( int nIdForm, AppointmentPurgeJob job )
+    {
+        // Delete all the appointments of the form, with their responses and
+        // their workflow resources, by chunks
+        Form form = FormHome.findByPrimaryKey( nIdForm );
+        AppointmentPurgeService.purgeAppointmentsOfForm( nIdForm, form != null ? form.getIdWorkflow( ) : 0, job );
+        WorkflowQueueItemHome.deleteByIdForm( nIdForm );
+        AdmissionService.remove( nIdForm );
         FormListenerManager.notifyListenersFormRemoval( nIdForm );
         AppointmentListenerManager.notifyListenersAppointmentFormRemoval( nIdForm );
         FormHome.delete( nIdForm );
@@ -33,20 +33,28 @@
  */
 package fr.paris.lutece.plugins.appointment.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
@@ -56,12 +64,19 @@ import fr.paris.lutece.plugins.appointment.business.form.Form;
 import fr.paris.lutece.plugins.appointment.business.localization.Localization;
 import fr.paris.lutece.plugins.appointment.business.message.FormMessage;
 import fr.paris.lutece.plugins.appointment.business.planning.ClosingDay;
+import fr.paris.lutece.plugins.appointment.business.planning.ClosingDayHome;
 import fr.paris.lutece.plugins.appointment.business.planning.TimeSlot;
+import fr.paris.lutece.plugins.appointment.business.planning.TimeSlotHome;
 import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinitionHome;
 import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
+import fr.paris.lutece.plugins.appointment.business.planning.WorkingDayHome;
 import fr.paris.lutece.plugins.appointment.business.rule.FormRule;
 import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
+import fr.paris.lutece.plugins.appointment.business.rule.ReservationRuleHome;
 import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.plugins.appointment.service.listeners.FormListenerManager;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
 import fr.paris.lutece.plugins.genericattributes.business.Field;
@@ -73,11 +88,14 @@ import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.regularexpression.RegularExpressionService;
 import fr.paris.lutece.portal.service.util.AppLogService;
-import net.sf.json.JSONArray;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
 import net.sf.json.JSONObject;
 
 /**
- * Import/Export Forms from Json
+ * Import/Export Forms from Json. The json is read and written section by section with the streaming API of Jackson, and the lists of a form (slots, rules,
+ * closing days, week definitions) are saved by batches, so that a form with years of specific slots can be imported and exported in bounded heap. The
+ * import runs in a single transaction.
  * 
  * @author Laurent Payen
  *
@@ -101,6 +119,9 @@ public final class FormTraderService
     private static final String WEEK_DEFINITIONS = "week_definitions";
     private static final String WORKFLOW = "workflow";
 
+    private static final String PROPERTY_BATCH_SIZE = "appointment.trader.batchSize";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
     /**
      * The mapper (need to add the javaTime module for Java 8 date compatibility)l
      */
@@ -116,73 +137,50 @@ public final class FormTraderService
     }
 
     /**
-     * Import a form in database from a json
+     * Import a form in database from a json object
      * 
      * @param jsonObject
      *            the json object
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
     public static void importFormFromJson( JSONObject jsonObject ) throws IOException
     {
-        Form form = null;
-        Category category = null;
-        int nIdWorkflow = 0;
-        Object objectCategory = jsonObject.get( CATEGORY );
-        Object objectWorkflow = jsonObject.get( WORKFLOW );
-        try
+        importFormFromJson( new ByteArrayInputStream( jsonObject.toString( ).getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    /**
+     * Import a form in database from a json stream, in a single transaction. The sections of the form, of its category and of its workflow must precede the
+     * other sections, as in the exported json; the fields must follow the entries
+     * 
+     * @param inputStream
+     *            the json stream, closed at the end of the import
+     * @return the id of the imported form, 0 if the json has no form
+     * @throws IOException
+     *             if the json can not be read, nothing is imported then
+     */
+    public static int importFormFromJson( InputStream inputStream ) throws IOException
+    {
+        long lStartTime = System.currentTimeMillis( );
+        int nIdForm;
+        TransactionManager.beginTransaction( _plugin );
+        try ( JsonParser parser = _mapper.getFactory( ).createParser( inputStream ) )
         {
-            if ( objectCategory != null )
-            {
-                category = _mapper.readValue( objectCategory.toString( ), Category.class );
-                if ( category != null )
-                {
-                    category = CategoryService.saveCategory( category );
-                }
-            }
-            if ( objectWorkflow != null )
-            {
-                nIdWorkflow = WorkflowTraderService.importWorkflowFromJson( JSONObject.fromObject( objectWorkflow ) );
-            }
-            Object objectForm = jsonObject.get( FORM );
-            if ( objectForm != null )
-            {
-                form = _mapper.readValue( objectForm.toString( ), Form.class );
-            }
-            if ( form != null )
-            {
-                // To avoid multiple forms with same name
-                if ( CollectionUtils.isNotEmpty( FormService.findFormsByTitle( form.getTitle( ) ) ) )
-                {
-                    form.setTitle( IMPORT + StringUtils.SPACE + form.getTitle( ) );
-                }
-                if ( category != null )
-                {
-                    form.setIdCategory( category.getIdCategory( ) );
-                }
-                if ( nIdWorkflow != 0 )
-                {
-                    form.setIdWorkflow( nIdWorkflow );
-                }
-                form = FormService.saveForm( form );
-                int nIdForm = form.getIdForm( );
-                importFormRule( jsonObject, nIdForm );
-                importDisplay( jsonObject, nIdForm );
-                importLocalization( jsonObject, nIdForm );
-                importFormMessage( jsonObject, nIdForm );
-                importReservationRules( jsonObject, nIdForm );
-                importClosingDays( jsonObject, nIdForm );
-                importWeekDefinitions( jsonObject, nIdForm );
-                importSlots( jsonObject, nIdForm );
-                importEntries( jsonObject, nIdForm );
-            }
+            nIdForm = importForm( parser );
+            TransactionManager.commitTransaction( _plugin );
         }
-        catch( IOException e )
+        catch( IOException | RuntimeException e )
         {
+            TransactionManager.rollBack( _plugin, e );
             AppLogService.error( "Error during import of the json", e );
             throw e;
         }
+        if ( nIdForm != 0 )
+        {
+            FormListenerManager.notifyListenersFormCreation( nIdForm );
+            AppLogService.info( "Appointment form " + nIdForm + " imported in " + ( System.currentTimeMillis( ) - lStartTime ) + " ms" );
+        }
+        return nIdForm;
     }
 
     /**
@@ -191,64 +189,272 @@ public final class FormTraderService
      * @param nIdForm
      *            the form id
      * @return a json object of the form
-     * @throws JsonProcessingException
      */
     public static JSONObject exportFormToJson( int nIdForm )
     {
-        JSONObject jsObj = new JSONObject( );
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
         try
         {
+            exportFormToJson( nIdForm, outputStream );
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Error during export of the form into json object", e );
+            return new JSONObject( );
+        }
+        return JSONObject.fromObject( new String( outputStream.toByteArray( ), StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Export a form in a json stream. The slots are read from the database and written by batches
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param outputStream
+     *            the json stream, closed at the end of the export
+     * @throws IOException
+     *             if the json can not be written
+     */
+    public static void exportFormToJson( int nIdForm, OutputStream outputStream ) throws IOException
+    {
+        try ( JsonGenerator generator = _mapper.getFactory( ).createGenerator( outputStream ) )
+        {
+            generator.writeStartObject( );
             Form form = FormService.findFormLightByPrimaryKey( nIdForm );
             if ( form != null )
             {
-                jsObj.put( FORM, _mapper.writeValueAsString( form ) );
+                generator.writeObjectField( FORM, form );
                 Category category = CategoryService.findCategoryById( form.getIdCategory( ) );
                 if ( category != null )
                 {
-                    jsObj.put( CATEGORY, _mapper.writeValueAsString( category ) );
+                    generator.writeObjectField( CATEGORY, category );
                 }
                 int nIdWorkflow = form.getIdWorkflow( );
                 if ( nIdWorkflow > 0 )
                 {
-                    jsObj.put( WORKFLOW, WorkflowTraderService.exportWorkflowToJson( nIdWorkflow, Locale.getDefault( ) ) );
+                    generator.writeFieldName( WORKFLOW );
+                    generator.writeRawValue( WorkflowTraderService.exportWorkflowToJson( nIdWorkflow, Locale.getDefault( ) ).toString( ) );
                 }
             }
-            exportFormRule( jsObj, nIdForm );
-            exportDisplay( jsObj, nIdForm );
-            exportLocalization( jsObj, nIdForm );
-            exportFormMessage( jsObj, nIdForm );
-            exportReservationRules( jsObj, nIdForm );
-            exportClosingDays( jsObj, nIdForm );
-            exportWeekDefinitions( jsObj, nIdForm );
-            exportSlots( jsObj, nIdForm );
-            exportEntries( jsObj, nIdForm );
-        }
-        catch( JsonProcessingException e )
+            writeObjectField( generator, FORM_RULE, FormRuleService.findFormRuleWithFormId( nIdForm ) );
+            writeObjectField( generator, DISPLAY, DisplayService.findDisplayWithFormId( nIdForm ) );
+            writeObjectField( generator, LOCALIZATION, LocalizationService.findLocalizationWithFormId( nIdForm ) );
+            writeObjectField( generator, FORM_MESSAGE, FormMessageService.findFormMessageByIdForm( nIdForm ) );
+            writeArrayField( generator, RESERVATION_RULES, ReservationRuleService.findListReservationRule( nIdForm ) );
+            writeArrayField( generator, CLOSING_DAYS, ClosingDayService.findListClosingDay( nIdForm ) );
+            writeArrayField( generator, WEEK_DEFINITIONS, WeekDefinitionService.findListWeekDefinition( nIdForm ) );
+            exportSlots( generator, nIdForm );
+            exportEntries( generator, nIdForm );
+            generator.writeEndObject( );
+        }
+    }
+
+    /**
+     * Read the sections of a form from a json parser and save them
+     * 
+     * @param parser
+     *            the json parser, before the start of the json object
+     * @return the id of the imported form, 0 if the json has no form
+     * @throws IOException
+     *             if the json can not be read
+     */
+    private static int importForm( JsonParser parser ) throws IOException
+    {
+        if ( parser.nextToken( ) != JsonToken.START_OBJECT )
         {
-            AppLogService.error( "Error during export of the form into json object", e );
+            throw new JsonParseException( parser, "The json of a form must be an object" );
         }
-        return jsObj;
+        Form form = null;
+        Category category = null;
+        int nIdWorkflow = 0;
+        int nIdForm = 0;
+        boolean bFormSaved = false;
+        Map<Integer, Integer> mapIdEntry = new HashMap<>( );
+        while ( parser.nextToken( ) == JsonToken.FIELD_NAME )
+        {
+            String strSection = parser.getCurrentName( );
+            parser.nextToken( );
+            if ( FORM.equals( strSection ) || CATEGORY.equals( strSection ) || WORKFLOW.equals( strSection ) )
+            {
+                if ( bFormSaved )
+                {
+                    throw new JsonParseException( parser, "The section " + strSection + " must precede the other sections of the form" );
+                }
+                if ( FORM.equals( strSection ) )
+                {
+                    form = _mapper.readValue( parser, Form.class );
+                }
+                else
+                    if ( CATEGORY.equals( strSection ) )
+                    {
+                        category = importCategory( parser );
+                    }
+                    else
+                    {
+                        nIdWorkflow = importWorkflow( parser );
+                    }
+                continue;
+            }
+            if ( !bFormSaved )
+            {
+                nIdForm = saveForm( form, category, nIdWorkflow );
+                bFormSaved = true;
+            }
+            if ( nIdForm == 0 )
+            {
+                parser.skipChildren( );
+            }
+            else
+            {
+                importSection( parser, strSection, nIdForm, mapIdEntry );
+            }
+        }
+        if ( !bFormSaved )
+        {
+            nIdForm = saveForm( form, category, nIdWorkflow );
+        }
+        return nIdForm;
     }
 
     /**
-     * Import the form rule part of a form from a json object
+     * Import a section of a form, other than the form itself, its category and its workflow
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
+     * @param strSection
+     *            the name of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
+     * @param mapIdEntry
+     *            the ids of the imported entries by id in the json, filled by the entries section and read by the fields section
+     * @throws IOException
+     *             if the json can not be read
+     */
+    private static void importSection( JsonParser parser, String strSection, int nIdForm, Map<Integer, Integer> mapIdEntry ) throws IOException
+    {
+        switch( strSection )
+        {
+            case FORM_RULE:
+                importFormRule( parser, nIdForm );
+                break;
+            case DISPLAY:
+                importDisplay( parser, nIdForm );
+                break;
+            case LOCALIZATION:
+                importLocalization( parser, nIdForm );
+                break;
+            case FORM_MESSAGE:
+                importFormMessage( parser, nIdForm );
+                break;
+            case RESERVATION_RULES:
+                importReservationRules( parser, nIdForm );
+                break;
+            case CLOSING_DAYS:
+                importClosingDays( parser, nIdForm );
+                break;
+            case WEEK_DEFINITIONS:
+                importWeekDefinitions( parser, nIdForm );
+                break;
+            case SLOTS:
+                importSlots( parser, nIdForm );
+                break;
+            case ENTRIES:
+                importEntries( parser, nIdForm, mapIdEntry );
+                break;
+            case FIELDS:
+                importFields( parser, mapIdEntry );
+                break;
+            default:
+                AppLogService.info( "Unknown section " + strSection + " ignored during import of the json" );
+                parser.skipChildren( );
+                break;
+        }
+    }
+
+    /**
+     * Save the imported form
+     * 
+     * @param form
+     *            the form read from the json, null if there is none
+     * @param category
+     *            the imported category, null if there is none
+     * @param nIdWorkflow
+     *            the id of the imported workflow, 0 if there is none
+     * @return the id of the form, 0 if there is no form
+     */
+    private static int saveForm( Form form, Category category, int nIdWorkflow )
+    {
+        if ( form == null )
+        {
+            return 0;
+        }
+        // To avoid multiple forms with same name
+        if ( CollectionUtils.isNotEmpty( FormService.findFormsByTitle( form.getTitle( ) ) ) )
+        {
+            form.setTitle( IMPORT + StringUtils.SPACE + form.getTitle( ) );
+        }
+        if ( category != null )
+        {
+            form.setIdCategory( category.getIdCategory( ) );
+        }
+        if ( nIdWorkflow != 0 )
+        {
+            form.setIdWorkflow( nIdWorkflow );
+        }
+        return FormService.saveForm( form ).getIdForm( );
+    }
+
+    /**
+     * Import the category of a form
+     * 
+     * @param parser
+     *            the json parser, on the value of the section
+     * @return the saved category, null if there is none
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importFormRule( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static Category importCategory( JsonParser parser ) throws IOException
     {
-        FormRule formRule = null;
-        Object objectFormRule = jsonObject.get( FORM_RULE );
-        if ( objectFormRule != null )
+        Category category = _mapper.readValue( parser, Category.class );
+        if ( category != null )
         {
-            formRule = _mapper.readValue( objectFormRule.toString( ), FormRule.class );
+            category = CategoryService.saveCategory( category );
         }
+        return category;
+    }
+
+    /**
+     * Import the workflow of a form
+     * 
+     * @param parser
+     *            the json parser, on the value of the section
+     * @return the id of the imported workflow, 0 if there is none
+     * @throws IOException
+     *             if the json can not be read
+     */
+    private static int importWorkflow( JsonParser parser ) throws IOException
+    {
+        JsonNode nodeWorkflow = _mapper.readTree( parser );
+        if ( nodeWorkflow == null || !nodeWorkflow.isObject( ) )
+        {
+            return 0;
+        }
+        return WorkflowTraderService.importWorkflowFromJson( JSONObject.fromObject( nodeWorkflow.toString( ) ) );
+    }
+
+    /**
+     * Import the form rule part of a form
+     * 
+     * @param parser
+     *            the json parser, on the value of the section
+     * @param nIdForm
+     *            the form id
+     * @throws IOException
+     *             if the json can not be read
+     */
+    private static void importFormRule( JsonParser parser, int nIdForm ) throws IOException
+    {
+        FormRule formRule = _mapper.readValue( parser, FormRule.class );
         if ( formRule != null )
         {
             formRule.setIdForm( nIdForm );
@@ -257,24 +463,18 @@ public final class FormTraderService
     }
 
     /**
-     * Import the display part of a form from a json object
+     * Import the display part of a form
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importDisplay( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importDisplay( JsonParser parser, int nIdForm ) throws IOException
     {
-        Display display = null;
-        Object objectDisplay = jsonObject.get( DISPLAY );
-        if ( objectDisplay != null )
-        {
-            display = _mapper.readValue( objectDisplay.toString( ), Display.class );
-        }
+        Display display = _mapper.readValue( parser, Display.class );
         if ( display != null )
         {
             display.setIdForm( nIdForm );
@@ -283,24 +483,18 @@ public final class FormTraderService
     }
 
     /**
-     * Import the localization part of a form from a json object
+     * Import the localization part of a form
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importLocalization( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importLocalization( JsonParser parser, int nIdForm ) throws IOException
     {
-        Localization localization = null;
-        Object objectLocalization = jsonObject.get( LOCALIZATION );
-        if ( objectLocalization != null )
-        {
-            localization = _mapper.readValue( objectLocalization.toString( ), Localization.class );
-        }
+        Localization localization = _mapper.readValue( parser, Localization.class );
         if ( localization != null )
         {
             localization.setIdForm( nIdForm );
@@ -309,24 +503,18 @@ public final class FormTraderService
     }
 
     /**
-     * Import the form message part of a form from a json object
+     * Import the form message part of a form
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importFormMessage( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importFormMessage( JsonParser parser, int nIdForm ) throws IOException
     {
-        FormMessage formMessage = null;
-        Object objectFormMessage = jsonObject.get( FORM_MESSAGE );
-        if ( objectFormMessage != null )
-        {
-            formMessage = _mapper.readValue( objectFormMessage.toString( ), FormMessage.class );
-        }
+        FormMessage formMessage = _mapper.readValue( parser, FormMessage.class );
         if ( formMessage != null )
         {
             formMessage.setIdForm( nIdForm );
@@ -335,427 +523,386 @@ public final class FormTraderService
     }
 
     /**
-     * Import the reservation rule part of a form from a json object
+     * Import the reservation rules of a form, by batches
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importReservationRules( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importReservationRules( JsonParser parser, int nIdForm ) throws IOException
     {
-        List<ReservationRule> listReservationRules = new ArrayList<>( );
-        JSONArray jsArrayReservationRules = null;
-        if ( jsonObject.containsKey( RESERVATION_RULES ) )
-        {
-            jsArrayReservationRules = jsonObject.getJSONArray( RESERVATION_RULES );
-        }
-        if ( CollectionUtils.isNotEmpty( jsArrayReservationRules ) )
-        {
-            listReservationRules = Arrays.asList( _mapper.readValue( jsArrayReservationRules.toString( ), ReservationRule [ ].class ) );
-        }
-        for ( ReservationRule reservationRule : listReservationRules )
-        {
-            reservationRule.setIdForm( nIdForm );
-            ReservationRuleService.saveReservationRule( reservationRule );
-        }
+        importByBatches( parser, ReservationRule.class, reservationRule -> reservationRule.setIdForm( nIdForm ), ReservationRuleHome::createList, nIdForm,
+                RESERVATION_RULES );
     }
 
     /**
-     * Import the closing days of a form from a json object
+     * Import the closing days of a form, by batches
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importClosingDays( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importClosingDays( JsonParser parser, int nIdForm ) throws IOException
     {
-        List<ClosingDay> listClosingDays = new ArrayList<>( );
-        JSONArray jsArrayClosingDays = null;
-        if ( jsonObject.containsKey( CLOSING_DAYS ) )
-        {
-            jsArrayClosingDays = jsonObject.getJSONArray( CLOSING_DAYS );
-        }
-        if ( CollectionUtils.isNotEmpty( jsArrayClosingDays ) )
-        {
-            listClosingDays = Arrays.asList( _mapper.readValue( jsArrayClosingDays.toString( ), ClosingDay [ ].class ) );
-        }
-        for ( ClosingDay closingDay : listClosingDays )
-        {
-            closingDay.setIdForm( nIdForm );
-            ClosingDayService.saveClosingDay( closingDay );
-        }
+        importByBatches( parser, ClosingDay.class, closingDay -> closingDay.setIdForm( nIdForm ), ClosingDayHome::createList, nIdForm, CLOSING_DAYS );
     }
 
     /**
-     * Import the week definition of a form from a json object
+     * Import the week definitions of a form with their working days and their time slots, by batches inserted level by level
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importWeekDefinitions( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importWeekDefinitions( JsonParser parser, int nIdForm ) throws IOException
     {
-        List<WeekDefinition> listWeekDefinitions = new ArrayList<>( );
-        HashMap<Integer, Integer> mapIdWeekDefinition = new HashMap<>( );
-        HashMap<Integer, Integer> mapIdWorkingDay = new HashMap<>( );
-        JSONArray jsArrayWeekDefinitions = null;
-        int nOldIdWeekDefinition;
-        int nNewIdWeekDefinition;
-        int nOldIdWorkingDay;
-        int nNewIdWorkingDay;
-        if ( jsonObject.containsKey( WEEK_DEFINITIONS ) )
-        {
-            jsArrayWeekDefinitions = jsonObject.getJSONArray( WEEK_DEFINITIONS );
-        }
-        if ( CollectionUtils.isNotEmpty( jsArrayWeekDefinitions ) )
-        {
-            listWeekDefinitions = Arrays.asList( _mapper.readValue( jsArrayWeekDefinitions.toString( ), WeekDefinition [ ].class ) );
-        }
+        importByBatches( parser, WeekDefinition.class, weekDefinition -> {
+            weekDefinition.setIdWeekDefinition( 0 );
+            weekDefinition.setIdForm( nIdForm );
+        }, FormTraderService::saveWeekDefinitions, nIdForm, WEEK_DEFINITIONS );
+    }
+
+    /**
+     * Save a batch of week definitions, then their working days, then their time slots, the ids of each level being set by the batch insert before the next
+     * one
+     * 
+     * @param listWeekDefinitions
+     *            the week definitions
+     */
+    private static void saveWeekDefinitions( List<WeekDefinition> listWeekDefinitions )
+    {
+        WeekDefinitionHome.createList( listWeekDefinitions );
+        List<WorkingDay> listWorkingDays = new ArrayList<>( );
         for ( WeekDefinition weekDefinition : listWeekDefinitions )
         {
-            nOldIdWeekDefinition = weekDefinition.getIdWeekDefinition( );
-            weekDefinition.setIdForm( nIdForm );
-            weekDefinition = WeekDefinitionService.saveWeekDefinition( weekDefinition );
-            mapIdWeekDefinition.put( nOldIdWeekDefinition, weekDefinition.getIdWeekDefinition( ) );
-            for ( WorkingDay workingDay : weekDefinition.getListWorkingDay( ) )
+            if ( weekDefinition.getListWorkingDay( ) != null )
             {
-                nOldIdWorkingDay = workingDay.getIdWorkingDay( );
-                nNewIdWeekDefinition = 0;
-                if ( mapIdWeekDefinition.containsKey( workingDay.getIdWeekDefinition( ) ) )
+                for ( WorkingDay workingDay : weekDefinition.getListWorkingDay( ) )
                 {
-                    nNewIdWeekDefinition = mapIdWeekDefinition.get( workingDay.getIdWeekDefinition( ) );
+                    workingDay.setIdWorkingDay( 0 );
+                    workingDay.setIdWeekDefinition( weekDefinition.getIdWeekDefinition( ) );
+                    listWorkingDays.add( workingDay );
                 }
-                workingDay.setIdWeekDefinition( nNewIdWeekDefinition );
-                workingDay = WorkingDayService.saveWorkingDay( workingDay );
-                mapIdWorkingDay.put( nOldIdWorkingDay, workingDay.getIdWorkingDay( ) );
+            }
+        }
+        WorkingDayHome.createList( listWorkingDays );
+        List<TimeSlot> listTimeSlots = new ArrayList<>( );
+        for ( WorkingDay workingDay : listWorkingDays )
+        {
+            if ( workingDay.getListTimeSlot( ) != null )
+            {
                 for ( TimeSlot timeSlot : workingDay.getListTimeSlot( ) )
                 {
-                    nNewIdWorkingDay = 0;
-                    if ( mapIdWorkingDay.containsKey( timeSlot.getIdWorkingDay( ) ) )
-                    {
-                        nNewIdWorkingDay = mapIdWorkingDay.get( timeSlot.getIdWorkingDay( ) );
-                    }
-                    timeSlot.setIdWorkingDay( nNewIdWorkingDay );
-                    TimeSlotService.saveTimeSlot( timeSlot );
+                    timeSlot.setIdTimeSlot( 0 );
+                    timeSlot.setIdWorkingDay( workingDay.getIdWorkingDay( ) );
+                    listTimeSlots.add( timeSlot );
                 }
             }
         }
+        TimeSlotHome.createList( listTimeSlots );
     }
 
     /**
-     * import the slots of a form from a json object
+     * Import the slots of a form, by batches
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importSlots( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static void importSlots( JsonParser parser, int nIdForm ) throws IOException
     {
-        List<Slot> listSlots = new ArrayList<>( );
-        JSONArray jsArraySlots = null;
-        if ( jsonObject.containsKey( SLOTS ) )
-        {
-            jsArraySlots = jsonObject.getJSONArray( SLOTS );
-        }
-        if ( CollectionUtils.isNotEmpty( jsArraySlots ) )
-        {
-            listSlots = Arrays.asList( _mapper.readValue( jsArraySlots.toString( ), Slot [ ].class ) );
-        }
-        for ( Slot slot : listSlots )
-        {
-            slot.setIdForm( nIdForm );
+        importByBatches( parser, Slot.class, slot -> {
             slot.setIdSlot( 0 );
-            SlotService.saveSlot( slot );
-        }
+            slot.setIdForm( nIdForm );
+        }, SlotHome::createList, nIdForm, SLOTS );
     }
 
     /**
-     * Import the generic attributes of a form from a json object
+     * Import the elements of an array section by batches : the elements are read one by one and saved each time a batch is full
      * 
-     * @param jsonObject
-     *            the json object
+     * @param parser
+     *            the json parser, on the value of the section
+     * @param elementClass
+     *            the class of the elements
+     * @param preparer
+     *            the preparation of an element before its save
+     * @param saver
+     *            the save of a batch of elements
      * @param nIdForm
      *            the form id
-     * @throws JsonParseException
-     * @throws JsonMappingException
+     * @param strSection
+     *            the name of the section
+     * @param <T>
+     *            the type of the elements
      * @throws IOException
+     *             if the json can not be read
      */
-    private static void importEntries( JSONObject jsonObject, int nIdForm ) throws JsonParseException, JsonMappingException, IOException
+    private static <T> void importByBatches( JsonParser parser, Class<T> elementClass, Consumer<T> preparer, Consumer<List<T>> saver, int nIdForm,
+            String strSection ) throws IOException
     {
-        List<Entry> listEntries = new ArrayList<>( );
-        List<Field> listFields = new ArrayList<>( );
-        HashMap<Integer, Integer> mapIdEntry = new HashMap<>( );
-        JSONArray jsArrayEntries = null;
-        JSONArray jsArrayFields = null;
-        int nOldIdEntry;
-        int nNewIdEntry;
-        int nNewIdField;
-        if ( jsonObject.containsKey( ENTRIES ) )
-        {
-            jsArrayEntries = jsonObject.getJSONArray( ENTRIES );
+        int nBatchSize = getBatchSize( );
+        List<T> listBatch = new ArrayList<>( nBatchSize );
+        int nNbElements = 0;
+        while ( nextArrayElement( parser ) )
+        {
+            T element = _mapper.readValue( parser, elementClass );
+            preparer.accept( element );
+            listBatch.add( element );
+            if ( listBatch.size( ) >= nBatchSize )
+            {
+                saver.accept( listBatch );
+                nNbElements += listBatch.size( );
+                listBatch = new ArrayList<>( nBatchSize );
+                AppLogService.info( "Appointment form " + nIdForm + " import : " + nNbElements + " " + strSection + " imported" );
+            }
         }
-        if ( jsonObject.containsKey( FIELDS ) )
+        if ( !listBatch.isEmpty( ) )
         {
-            jsArrayFields = jsonObject.getJSONArray( FIELDS );
+            saver.accept( listBatch );
+            nNbElements += listBatch.size( );
         }
-        if ( CollectionUtils.isNotEmpty( jsArrayEntries ) )
+        if ( nNbElements > 0 )
         {
-            listEntries = Arrays.asList( _mapper.readValue( jsArrayEntries.toString( ), Entry [ ].class ) );
+            AppLogService.info( "Appointment form " + nIdForm + " import : " + nNbElements + " " + strSection + " imported" );
         }
-        for ( Entry entry : listEntries )
+    }
+
+    /**
+     * Import the generic attributes of a form
+     * 
+     * @param parser
+     *            the json parser, on the value of the section
+     * @param nIdForm
+     *            the form id
+     * @param mapIdEntry
+     *            the map to fill with the ids of the imported entries by id in the json
+     * @throws IOException
+     *             if the json can not be read
+     */
+    private static void importEntries( JsonParser parser, int nIdForm, Map<Integer, Integer> mapIdEntry ) throws IOException
+    {
+        while ( nextArrayElement( parser ) )
         {
-            nOldIdEntry = entry.getIdEntry( );
+            Entry entry = _mapper.readValue( parser, Entry.class );
+            int nOldIdEntry = entry.getIdEntry( );
             entry.setIdResource( nIdForm );
-            nNewIdEntry = EntryHome.create( entry );
-            mapIdEntry.put( nOldIdEntry, nNewIdEntry );
+            mapIdEntry.put( nOldIdEntry, EntryHome.create( entry ) );
         }
-        if ( CollectionUtils.isNotEmpty( jsArrayFields ) )
-        {
-            listFields = Arrays.asList( _mapper.readValue( jsArrayFields.toString( ), Field [ ].class ) );
-        }
-        HashMap<String, RegularExpression> mapRegularExpression = new HashMap<>( );
-        List<RegularExpression> listRegularExpressionsInDB = RegularExpressionService.getInstance( ).getAllRegularExpression( );
-        for ( RegularExpression regularExpression : listRegularExpressionsInDB )
+    }
+
+    /**
+     * Import the fields of the generic attributes of a form, with their regular expressions
+     * 
+     * @param parser
+     *            the json parser, on the value of the section
+     * @param mapIdEntry
+     *            the ids of the imported entries by id in the json
+     * @throws IOException
+     *             if the json can not be read
+     */
+    private static void importFields( JsonParser parser, Map<Integer, Integer> mapIdEntry ) throws IOException
+    {
+        Map<String, RegularExpression> mapRegularExpression = null;
+        while ( nextArrayElement( parser ) )
         {
-            if ( !mapRegularExpression.containsKey( regularExpression.getTitle( ) ) )
+            Field field = _mapper.readValue( parser, Field.class );
+            if ( mapRegularExpression == null )
             {
-                mapRegularExpression.put( regularExpression.getTitle( ), regularExpression );
+                mapRegularExpression = new HashMap<>( );
+                for ( RegularExpression regularExpression : RegularExpressionService.getInstance( ).getAllRegularExpression( ) )
+                {
+                    mapRegularExpression.putIfAbsent( regularExpression.getTitle( ), regularExpression );
+                }
             }
-        }
-        for ( Field field : listFields )
-        {
-            nNewIdEntry = 0;
+            int nNewIdEntry = 0;
             if ( field.getParentEntry( ) != null && mapIdEntry.containsKey( field.getParentEntry( ).getIdEntry( ) ) )
             {
                 nNewIdEntry = mapIdEntry.get( field.getParentEntry( ).getIdEntry( ) );
             }
             field.setParentEntry( EntryHome.findByPrimaryKey( nNewIdEntry ) );
-            nNewIdField = FieldHome.create( field );
-            List<RegularExpression> listRegularExpressionsToImport = field.getRegularExpressionList( );
-            int nIdExpressionToGet;
-            for ( RegularExpression regularExpression : listRegularExpressionsToImport )
+            int nNewIdField = FieldHome.create( field );
+            if ( field.getRegularExpressionList( ) != null )
             {
-                if ( mapRegularExpression.containsKey( regularExpression.getTitle( ) ) )
-                {
-                    nIdExpressionToGet = mapRegularExpression.get( regularExpression.getTitle( ) ).getIdExpression( );
-                }
-                else
+                for ( RegularExpression regularExpression : field.getRegularExpressionList( ) )
                 {
-                    RegularExpressionHome.create( regularExpression, _plugin );
-                    nIdExpressionToGet = regularExpression.getIdExpression( );
+                    int nIdExpressionToGet;
+                    if ( mapRegularExpression.containsKey( regularExpression.getTitle( ) ) )
+                    {
+                        nIdExpressionToGet = mapRegularExpression.get( regularExpression.getTitle( ) ).getIdExpression( );
+                    }
+                    else
+                    {
+                        RegularExpressionHome.create( regularExpression, _plugin );
+                        nIdExpressionToGet = regularExpression.getIdExpression( );
+                    }
+                    FieldHome.createVerifyBy( nNewIdField, nIdExpressionToGet );
                 }
-                FieldHome.createVerifyBy( nNewIdField, nIdExpressionToGet );
             }
         }
     }
 
     /**
-     * Export and save in database the form rule of a form from a json object
+     * Move the parser to the next element of the array of a section, the null elements being skipped
      * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
+     * @param parser
+     *            the json parser, on the value of the section or at the end of the previous element
+     * @return true if the parser is on the start of an element, false at the end of the array or if the section is not an array
+     * @throws IOException
+     *             if the json can not be read
      */
-    private static void exportFormRule( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
+    private static boolean nextArrayElement( JsonParser parser ) throws IOException
     {
-        FormRule formRule = FormRuleService.findFormRuleWithFormId( nIdForm );
-        if ( formRule != null )
+        JsonToken token = parser.getCurrentToken( );
+        if ( token != JsonToken.START_ARRAY && token != JsonToken.END_OBJECT )
         {
-            jsObj.put( FORM_RULE, _mapper.writeValueAsString( formRule ) );
+            // A null section or an object section is skipped
+            parser.skipChildren( );
+            return false;
         }
-    }
-
-    /**
-     * Export and save in database the display of a form from a json object
-     * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
-     */
-    private static void exportDisplay( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
-    {
-        Display display = DisplayService.findDisplayWithFormId( nIdForm );
-        if ( display != null )
+        token = parser.nextToken( );
+        while ( token == JsonToken.VALUE_NULL )
         {
-            jsObj.put( DISPLAY, _mapper.writeValueAsString( display ) );
+            token = parser.nextToken( );
         }
-    }
-
-    /**
-     * Export and save in database the localization of a form from a json object
-     * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
-     */
-    private static void exportLocalization( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
-    {
-        Localization localization = LocalizationService.findLocalizationWithFormId( nIdForm );
-        if ( localization != null )
+        if ( token == JsonToken.START_OBJECT )
         {
-            jsObj.put( LOCALIZATION, _mapper.writeValueAsString( localization ) );
+            return true;
         }
-    }
-
-    /**
-     * Export and save in database the form message of a form from a json object
-     * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
-     */
-    private static void exportFormMessage( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
-    {
-        FormMessage formMessage = FormMessageService.findFormMessageByIdForm( nIdForm );
-        if ( formMessage != null )
+        if ( token != JsonToken.END_ARRAY )
         {
-            jsObj.put( FORM_MESSAGE, _mapper.writeValueAsString( formMessage ) );
+            throw new JsonParseException( parser, "The elements of the arrays of a form must be objects" );
         }
+        return false;
     }
 
     /**
-     * Export and save in database the reservation rules of a form from a json object
+     * Get the number of rows inserted by batch
      * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
+     * @return the batch size
      */
-    private static void exportReservationRules( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
+    private static int getBatchSize( )
     {
-        JSONArray jsReservationRules = new JSONArray( );
-        for ( ReservationRule reservationRule : ReservationRuleService.findListReservationRule( nIdForm ) )
-        {
-            jsReservationRules.add( _mapper.writeValueAsString( reservationRule ) );
-        }
-        if ( CollectionUtils.isNotEmpty( jsReservationRules ) )
-        {
-            jsObj.put( RESERVATION_RULES, jsReservationRules );
-        }
+        return AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
     }
 
     /**
-     * Export and save in database the closing days of a form from a json object
+     * Write an object section if the object exists
      * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
+     * @param generator
+     *            the json generator
+     * @param strSection
+     *            the name of the section
+     * @param object
+     *            the object, may be null
+     * @throws IOException
+     *             if the json can not be written
      */
-    private static void exportClosingDays( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
+    private static void writeObjectField( JsonGenerator generator, String strSection, Object object ) throws IOException
     {
-        JSONArray jsClosingDays = new JSONArray( );
-        for ( ClosingDay closingDay : ClosingDayService.findListClosingDay( nIdForm ) )
+        if ( object != null )
         {
-
-            jsClosingDays.add( _mapper.writeValueAsString( closingDay ) );
-        }
-        if ( CollectionUtils.isNotEmpty( jsClosingDays ) )
-        {
-            jsObj.put( CLOSING_DAYS, jsClosingDays );
+            generator.writeObjectField( strSection, object );
         }
     }
 
     /**
-     * Export and save in database the week definition of a form from a json object
+     * Write an array section if the list is not empty
      * 
-     * @param jsObj
-     *            the json object
-     * @param nIdForm
-     *            the form id
-     * @throws JsonProcessingException
+     * @param generator
+     *            the json generator
+     * @param strSection
+     *            the name of the section
+     * @param list
+     *            the list
+     * @throws IOException
+     *             if the json can not be written
      */
-    private static void exportWeekDefinitions( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
+    private static void writeArrayField( JsonGenerator generator, String strSection, List<?> list ) throws IOException
     {
-        JSONArray jsWeekDefinitions = new JSONArray( );
-        for ( WeekDefinition weekDefinition : WeekDefinitionService.findListWeekDefinition( nIdForm ) )
-        {
-            jsWeekDefinitions.add( _mapper.writeValueAsString( weekDefinition ) );
-        }
-        if ( CollectionUtils.isNotEmpty( jsWeekDefinitions ) )
+        if ( CollectionUtils.isNotEmpty( list ) )
         {
-            jsObj.put( WEEK_DEFINITIONS, jsWeekDefinitions );
+            generator.writeArrayFieldStart( strSection );
+            for ( Object object : list )
+            {
+                generator.writeObject( object );
+            }
+            generator.writeEndArray( );
         }
     }
 
     /**
-     * Export and save in database the slots of a form from a json object
+     * Export the slots of a form, read from the database by batches
      * 
-     * @param jsObj
-     *            the json object
+     * @param generator
+     *            the json generator
      * @param nIdForm
      *            the form id
-     * @throws JsonProcessingException
+     * @throws IOException
+     *             if the json can not be written
      */
-    private static void exportSlots( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
+    private static void exportSlots( JsonGenerator generator, int nIdForm ) throws IOException
     {
-        JSONArray jsSlots = new JSONArray( );
-        for ( Slot slot : SlotService.findListSlot( nIdForm ) )
+        int nBatchSize = getBatchSize( );
+        List<Slot> listSlots = SlotHome.findByIdForm( nIdForm, 0, nBatchSize );
+        if ( listSlots.isEmpty( ) )
         {
-
-            jsSlots.add( _mapper.writeValueAsString( slot ) );
+            return;
         }
-        if ( CollectionUtils.isNotEmpty( jsSlots ) )
+        generator.writeArrayFieldStart( SLOTS );
+        while ( !listSlots.isEmpty( ) )
         {
-            jsObj.put( SLOTS, jsSlots );
+            for ( Slot slot : listSlots )
+            {
+                generator.writeObject( slot );
+            }
+            generator.flush( );
+            listSlots = SlotHome.findByIdForm( nIdForm, listSlots.get( listSlots.size( ) - 1 ).getIdSlot( ), nBatchSize );
         }
+        generator.writeEndArray( );
     }
 
     /**
-     * Export and save in database the generic attributes of a form from a json object
+     * Export the generic attributes of a form
      * 
-     * @param jsObj
-     *            the json object
+     * @param generator
+     *            the json generator
      * @param nIdForm
      *            the form id
-     * @throws JsonProcessingException
+     * @throws IOException
+     *             if the json can not be written
      */
-    private static void exportEntries( JSONObject jsObj, int nIdForm ) throws JsonProcessingException
+    private static void exportEntries( JsonGenerator generator, int nIdForm ) throws IOException
     {
-        JSONArray jsEntries = new JSONArray( );
-        JSONArray jsFields = new JSONArray( );
-        for ( Entry entry : EntryService.findListEntry( nIdForm ) )
+        List<Entry> listEntries = EntryService.findListEntry( nIdForm );
+        writeArrayField( generator, ENTRIES, listEntries );
+        boolean bHasFields = false;
+        for ( Entry entry : listEntries )
         {
-            jsEntries.add( _mapper.writeValueAsString( entry ) );
             for ( Field fieldLight : entry.getFields( ) )
             {
-                Field fullField = FieldHome.findByPrimaryKey( fieldLight.getIdField( ) );
-                jsFields.add( _mapper.writeValueAsString( fullField ) );
+                if ( !bHasFields )
+                {
+                    generator.writeArrayFieldStart( FIELDS );
+                    bHasFields = true;
+                }
+                generator.writeObject( FieldHome.findByPrimaryKey( fieldLight.getIdField( ) ) );
             }
         }
-        if ( CollectionUtils.isNotEmpty( jsEntries ) )
-        {
-            jsObj.put( ENTRIES, jsEntries );
-        }
-        if ( CollectionUtils.isNotEmpty( jsFields ) )
+        if ( bHasFields )
         {
-            jsObj.put( FIELDS, jsFields );
+            generator.writeEndArray( );
         }
     }
 }
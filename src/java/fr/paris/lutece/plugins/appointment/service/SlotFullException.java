@@ -31,86 +31,44 @@
  *
  * License 1.0
  */
-package fr.paris.lutece.plugins.appointment.service.lock;
-
-import java.io.Serializable;
-import java.util.TimerTask;
-
-import fr.paris.lutece.plugins.appointment.business.slot.Slot;
-import fr.paris.lutece.plugins.appointment.service.SlotService;
+package fr.paris.lutece.plugins.appointment.service;
 
 /**
- * Timer Task for a slot (Manage a lock the time the user fill the form
+ * Exception thrown when an appointment can not be saved because there are not enough remaining places on its slot
  * 
- * @author Laurent Payen
- *
  */
-public final class SlotEditTask extends TimerTask implements Serializable
+public class SlotFullException extends RuntimeException
 {
 
     /**
      * UID
      */
-    private static final long serialVersionUID = 2397343851302139337L;
-
-    /**
-     * Potentially number of places taken
-     */
-    private int _nbPlacesTaken;
-
-    /**
-     * Id of the slot on which the user is taking an appointment
-     */
-    private int _idSlot;
-
-    @Override
-    public void run( )
-    {
-        Slot slot = SlotService.findSlotById( _idSlot );
-        int nbPotentialRemainingPlaces = slot.getNbPotentialRemainingPlaces( );
-        slot.setNbPotentialRemainingPlaces( nbPotentialRemainingPlaces + _nbPlacesTaken );
-        SlotService.updateSlot( slot );
-    }
+    private static final long serialVersionUID = -2591742405290862125L;
 
     /**
-     * Get the number of places potentially taken
-     * 
-     * @return the number of places
+     * The id of the full slot
      */
-    public int getNbPlacesTaken( )
-    {
-        return _nbPlacesTaken;
-    }
+    private final int _nIdSlot;
 
     /**
-     * Set the number of places potentially taken
+     * Constructor
      * 
-     * @param nbPlacesTaken
+     * @param nIdSlot
+     *            the id of the full slot
      */
-    public void setNbPlacesTaken( int nbPlacesTaken )
+    public SlotFullException( int nIdSlot )
     {
-        this._nbPlacesTaken = nbPlacesTaken;
+        super( "Not enough remaining places on the slot " + nIdSlot );
+        _nIdSlot = nIdSlot;
     }
 
     /**
-     * Get the id of the slot
+     * Get the id of the full slot
      * 
      * @return the id of the slot
      */
     public int getIdSlot( )
     {
-        return _idSlot;
-    }
-
-    /**
-     * Set the id of the slot
-     * 
-     * @param nIdSlot
-     *            the id of the slot
-     */
-    public void setIdSlot( int nIdSlot )
-    {
-        this._idSlot = nIdSlot;
+        return _nIdSlot;
     }
-
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service;
+
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.plugins.appointment.service.listeners.SlotListenerManager;
+
+/**
+ * Service class to take places on a slot safely. The places are taken with a single conditional update in database (compare and set on the remaining
+ * places), there is no read of the slot before the write, so concurrent bookings on the same slot can not overbook it
+ * 
+ */
+public final class SlotSafeService
+{
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private SlotSafeService( )
+    {
+    }
+
+    /**
+     * Take places on a slot
+     * 
+     * @param nIdSlot
+     *            the slot id
+     * @param nNbBookedSeats
+     *            the number of places to take
+     * @param nNbMaxPotentialBookedSeats
+     *            the number of places that were potentially held for the user while he was filling the form
+     * @return true if the places have been taken, false if the slot is full
+     */
+    public static boolean takePlaces( int nIdSlot, int nNbBookedSeats, int nNbMaxPotentialBookedSeats )
+    {
+        return updatePlaces( nIdSlot, nNbBookedSeats, nNbMaxPotentialBookedSeats - nNbBookedSeats );
+    }
+
+    /**
+     * Change the number of places taken by an appointment on its slot
+     * 
+     * @param nIdSlot
+     *            the slot id
+     * @param nOldNbBookedSeats
+     *            the number of places previously taken by the appointment
+     * @param nNewNbBookedSeats
+     *            the new number of places of the appointment
+     * @param nNbMaxPotentialBookedSeats
+     *            the number of places that were potentially held for the user while he was filling the form
+     * @return true if the places have been taken, false if the slot is full
+     */
+    public static boolean changePlaces( int nIdSlot, int nOldNbBookedSeats, int nNewNbBookedSeats, int nNbMaxPotentialBookedSeats )
+    {
+        return updatePlaces( nIdSlot, nNewNbBookedSeats - nOldNbBookedSeats, nNbMaxPotentialBookedSeats - nNewNbBookedSeats );
+    }
+
+    /**
+     * Give back the places of an appointment deleted, cancelled or moved to its slot, without exceeding the capacity of the slot
+     * 
+     * @param nIdSlot
+     *            the slot id
+     * @param nNbPlacesReleased
+     *            the number of places released
+     */
+    public static void releasePlaces( int nIdSlot, int nNbPlacesReleased )
+    {
+        SlotHome.updatePlacesReleased( nIdSlot, nNbPlacesReleased );
+        SlotListenerManager.notifyListenersSlotChange( nIdSlot );
+    }
+
+    /**
+     * Apply the update of places on the slot and notify the listeners if it succeeded
+     * 
+     * @param nIdSlot
+     *            the slot id
+     * @param nNbPlacesToTake
+     *            the number of places to take
+     * @param nNbPotentialPlacesDelta
+     *            the value to add to the potential remaining places
+     * @return true if the places have been taken, false if the slot is full
+     */
+    private static boolean updatePlaces( int nIdSlot, int nNbPlacesToTake, int nNbPotentialPlacesDelta )
+    {
+        boolean bPlacesTaken = SlotHome.updatePlacesIfAvailable( nIdSlot, nNbPlacesToTake, nNbPotentialPlacesDelta );
+        if ( bPlacesTaken )
+        {
+            SlotListenerManager.notifyListenersSlotChange( nIdSlot );
+        }
+        return bPlacesTaken;
+    }
+}
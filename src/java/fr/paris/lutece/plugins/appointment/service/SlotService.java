@@ -33,13 +33,11 @@
  */
 package fr.paris.lutece.plugins.appointment.service;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -54,6 +52,14 @@ import fr.paris.lutece.plugins.appointment.business.slot.Period;
 import fr.paris.lutece.plugins.appointment.business.slot.Slot;
 import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
 import fr.paris.lutece.plugins.appointment.service.listeners.SlotListenerManager;
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanningService;
+import fr.paris.lutece.plugins.appointment.service.planning.PlanningIndex;
+import fr.paris.lutece.plugins.appointment.service.planning.PlanningIndex.IndexedWeekDefinition;
+import fr.paris.lutece.plugins.appointment.service.planning.PlanningIndex.IndexedWorkingDay;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.util.sql.TransactionManager;
 
 /**
  * Service class of a slot
@@ -191,70 +197,152 @@ public final class SlotService
      */
     public static List<Slot> buildListSlot( int nIdForm, HashMap<LocalDate, WeekDefinition> mapWeekDefinition, LocalDate startingDate, LocalDate endingDate )
     {
-        List<Slot> listSlot = new ArrayList<>( );
         // Get all the reservation rules
-        final HashMap<LocalDate, ReservationRule> mapReservationRule = ReservationRuleService.findAllReservationRule( nIdForm );
-        final List<LocalDate> listDateWeekDefinition = new ArrayList<>( mapWeekDefinition.keySet( ) );
-        final List<LocalDate> listDateReservationTule = new ArrayList<>( mapReservationRule.keySet( ) );
-        LocalDate closestDateWeekDefinition;
-        LocalDate closestDateReservationRule;
-        WeekDefinition weekDefinitionToApply;
+        HashMap<LocalDate, ReservationRule> mapReservationRule = ReservationRuleService.findAllReservationRule( nIdForm );
+        LocalDate firstDateOfReservationRule = mapReservationRule.keySet( ).stream( ).min( LocalDate::compareTo ).orElse( null );
+        LocalDate startingDateToUse = startingDate;
+        if ( firstDateOfReservationRule != null && startingDate.isBefore( firstDateOfReservationRule ) )
+        {
+            startingDateToUse = firstDateOfReservationRule;
+        }
+        // Get all the closing day of this period
+        List<LocalDate> listDateOfClosingDay = ClosingDayService.findListDateOfClosingDayByIdFormAndDateRange( nIdForm, startingDateToUse, endingDate );
+        PlanningIndex planningIndex = new PlanningIndex( mapWeekDefinition.values( ), mapReservationRule.values( ), listDateOfClosingDay );
+        return buildListSlot( nIdForm, planningIndex, startingDate, endingDate, true );
+    }
+
+    /**
+     * Build all the slot for a period with the precompiled planning of the form (no query on the rules of the form if the planning is in cache). Only the
+     * slots of the period are read from the database
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param startingDate
+     *            the starting date of the period
+     * @param endingDate
+     *            the ending date of the period
+     * @return a list of all the slots built
+     */
+    public static List<Slot> buildListSlot( int nIdForm, LocalDate startingDate, LocalDate endingDate )
+    {
+        return buildListSlot( nIdForm, FormPlanningService.getInstance( ).getFormPlanning( nIdForm ).getIndex( ), startingDate, endingDate, true );
+    }
+
+    /**
+     * Build all the slot for a period with the rules of the form only : the slots of the period in database are ignored, so that the slots returned are
+     * those the rules give now, whatever the slots already created
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param startingDate
+     *            the starting date of the period
+     * @param endingDate
+     *            the ending date of the period
+     * @return a list of all the slots built, none of them is in database
+     */
+    public static List<Slot> buildListSlotFromRules( int nIdForm, LocalDate startingDate, LocalDate endingDate )
+    {
+        return buildListSlot( nIdForm, FormPlanningService.getInstance( ).getFormPlanning( nIdForm ).getIndex( ), startingDate, endingDate, false );
+    }
+
+    /**
+     * Build all the slot for a period with the given index of the rules of the form. The rules to apply on each day and the time slots are found with
+     * lookups in the index, so the cost does not depend on the number of rules
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param planningIndex
+     *            the index of the rules of the form (the closing days must contain at least those of the period)
+     * @param startingDate
+     *            the starting date of the period
+     * @param endingDate
+     *            the ending date of the period
+     * @param bWithSlotsInDb
+     *            true to return the slots of the period in database instead of those given by the rules
+     * @return a list of all the slots built
+     */
+    private static List<Slot> buildListSlot( int nIdForm, PlanningIndex planningIndex, LocalDate startingDate, LocalDate endingDate, boolean bWithSlotsInDb )
+    {
+        long lStartTime = System.nanoTime( );
+        try
+        {
+            return doBuildListSlot( nIdForm, planningIndex, startingDate, endingDate, bWithSlotsInDb );
+        }
+        finally
+        {
+            AppointmentMetricsService.recordTime( AppointmentMetricsService.METRIC_BUILD_LIST_SLOT, nIdForm, lStartTime );
+        }
+    }
+
+    /**
+     * Build all the slot for a period with the given index of the rules of the form
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param planningIndex
+     *            the index of the rules of the form
+     * @param startingDate
+     *            the starting date of the period
+     * @param endingDate
+     *            the ending date of the period
+     * @param bWithSlotsInDb
+     *            true to return the slots of the period in database instead of those given by the rules
+     * @return a list of all the slots built
+     */
+    private static List<Slot> doBuildListSlot( int nIdForm, PlanningIndex planningIndex, LocalDate startingDate, LocalDate endingDate,
+            boolean bWithSlotsInDb )
+    {
+        List<Slot> listSlot = new ArrayList<>( );
+        IndexedWeekDefinition weekDefinitionToApply;
         ReservationRule reservationRuleToApply;
         LocalDate dateTemp = startingDate;
         int nMaxCapacity;
-        DayOfWeek dayOfWeek;
-        WorkingDay workingDay;
+        IndexedWorkingDay workingDay;
         LocalTime minTimeForThisDay;
         LocalTime maxTimeForThisDay;
         LocalTime timeTemp;
         LocalDateTime dateTimeTemp;
         Slot slotToAdd;
         TimeSlot timeSlot;
-        LocalDate dateToCompare;
         // Need to check if this date is not before the form date creation
-        final LocalDate firstDateOfReservationRule = new ArrayList<>( mapReservationRule.keySet( ) ).stream( ).sorted( ).findFirst( ).orElse( null );
+        final LocalDate firstDateOfReservationRule = planningIndex.getFirstDateOfReservationRule( );
         LocalDate startingDateToUse = startingDate;
         if ( firstDateOfReservationRule != null && startingDate.isBefore( firstDateOfReservationRule ) )
         {
             startingDateToUse = firstDateOfReservationRule;
         }
-        // Get all the closing day of this period
-        List<LocalDate> listDateOfClosingDay = ClosingDayService.findListDateOfClosingDayByIdFormAndDateRange( nIdForm, startingDateToUse, endingDate );
         // Get all the slot between these two dates
-        HashMap<LocalDateTime, Slot> mapSlot = SlotService.buildMapSlotsByIdFormAndDateRangeWithDateForKey( nIdForm, startingDateToUse.atStartOfDay( ),
-                endingDate.atTime( LocalTime.MAX ) );
+        HashMap<LocalDateTime, Slot> mapSlot = new HashMap<>( );
+        if ( bWithSlotsInDb )
+        {
+            mapSlot = SlotService.buildMapSlotsByIdFormAndDateRangeWithDateForKey( nIdForm, startingDateToUse.atStartOfDay( ),
+                    endingDate.atTime( LocalTime.MAX ) );
+        }
 
         // Get or build all the event for the period
         while ( !dateTemp.isAfter( endingDate ) )
         {
-            dateToCompare = dateTemp;
-            // Find the closest date of apply of week definition with the given
-            // date
-            closestDateWeekDefinition = Utilities.getClosestDateInPast( listDateWeekDefinition, dateToCompare );
-            weekDefinitionToApply = mapWeekDefinition.get( closestDateWeekDefinition );
-            // Find the closest date of apply of reservation rule with the given
-            // date
-            closestDateReservationRule = Utilities.getClosestDateInPast( listDateReservationTule, dateToCompare );
-            reservationRuleToApply = mapReservationRule.get( closestDateReservationRule );
+            // Find the week definition and the reservation rule with the
+            // closest date of apply in the past
+            weekDefinitionToApply = planningIndex.getWeekDefinition( dateTemp );
+            reservationRuleToApply = planningIndex.getReservationRule( dateTemp );
             nMaxCapacity = 0;
             if ( reservationRuleToApply != null )
             {
                 nMaxCapacity = reservationRuleToApply.getMaxCapacityPerSlot( );
             }
-            // Get the day of week of the date
-            dayOfWeek = dateTemp.getDayOfWeek( );
-            // Get the working day of this day of week
+            // Get the working day of the day of week of this date
             workingDay = null;
             if ( weekDefinitionToApply != null )
             {
-                workingDay = WorkingDayService.getWorkingDayOfDayOfWeek( weekDefinitionToApply.getListWorkingDay( ), dayOfWeek );
+                workingDay = weekDefinitionToApply.getWorkingDay( dateTemp.getDayOfWeek( ) );
             }
-            if ( workingDay != null )
+            if ( workingDay != null && workingDay.getMinStartingTime( ) != null )
             {
-                minTimeForThisDay = WorkingDayService.getMinStartingTimeOfAWorkingDay( workingDay );
-                maxTimeForThisDay = WorkingDayService.getMaxEndingTimeOfAWorkingDay( workingDay );
+                minTimeForThisDay = workingDay.getMinStartingTime( );
+                maxTimeForThisDay = workingDay.getMaxEndingTime( );
                 // Check if this day is a closing day
-                if ( listDateOfClosingDay.contains( dateTemp ) )
+                if ( planningIndex.isClosingDay( dateTemp ) )
                 {
                     listSlot.add( buildSlot( nIdForm, new Period( dateTemp.atTime( minTimeForThisDay ), dateTemp.atTime( maxTimeForThisDay ) ), nMaxCapacity,
                             nMaxCapacity, nMaxCapacity, 0, Boolean.FALSE, Boolean.FALSE ) );
@@ -268,16 +356,16 @@ public final class SlotService
                         // Get the LocalDateTime
                         dateTimeTemp = dateTemp.atTime( timeTemp );
                         // Search if there is a slot for this datetime
-                        if ( mapSlot.containsKey( dateTimeTemp ) )
+                        slotToAdd = mapSlot.get( dateTimeTemp );
+                        if ( slotToAdd != null )
                         {
-                            slotToAdd = mapSlot.get( dateTimeTemp );
                             timeTemp = slotToAdd.getEndingDateTime( ).toLocalTime( );
                             listSlot.add( slotToAdd );
                         }
                         else
                         {
                             // Search the timeslot
-                            timeSlot = TimeSlotService.getTimeSlotInListOfTimeSlotWithStartingTime( workingDay.getListTimeSlot( ), timeTemp );
+                            timeSlot = workingDay.getTimeSlot( timeTemp );
                             if ( timeSlot != null )
                             {
                                 timeTemp = timeSlot.getEndingTime( );
@@ -304,9 +392,9 @@ public final class SlotService
                 // We build all the slots closed for this day
                 if ( reservationRuleToApply != null && weekDefinitionToApply != null )
                 {
-                    minTimeForThisDay = WorkingDayService.getMinStartingTimeOfAListOfWorkingDay( weekDefinitionToApply.getListWorkingDay( ) );
-                    maxTimeForThisDay = WorkingDayService.getMaxEndingTimeOfAListOfWorkingDay( weekDefinitionToApply.getListWorkingDay( ) );
-                    int nDuration = WorkingDayService.getMinDurationTimeSlotOfAListOfWorkingDay( weekDefinitionToApply.getListWorkingDay( ) );
+                    minTimeForThisDay = weekDefinitionToApply.getMinStartingTime( );
+                    maxTimeForThisDay = weekDefinitionToApply.getMaxEndingTime( );
+                    int nDuration = weekDefinitionToApply.getMinDuration( );
                     if ( minTimeForThisDay != null && maxTimeForThisDay != null )
                     {
                         timeTemp = minTimeForThisDay;
@@ -316,9 +404,9 @@ public final class SlotService
                             // Get the LocalDateTime
                             dateTimeTemp = dateTemp.atTime( timeTemp );
                             // Search if there is a slot for this datetime
-                            if ( mapSlot.containsKey( dateTimeTemp ) )
+                            slotToAdd = mapSlot.get( dateTimeTemp );
+                            if ( slotToAdd != null )
                             {
-                                slotToAdd = mapSlot.get( dateTimeTemp );
                                 timeTemp = slotToAdd.getEndingDateTime( ).toLocalTime( );
                                 listSlot.add( slotToAdd );
                             }
@@ -551,7 +639,8 @@ public final class SlotService
     }
 
     /**
-     * update the current slot and shift the next slots at the end of the current slot
+     * update the current slot and shift the next slots at the end of the current slot. The new periods of the next slots are computed first, and all the
+     * slots of the day are then saved with set-based statements in a transaction : the listeners are notified once of the change of the slots of the day
      * 
      * @param slot
      *            the current slot
@@ -561,10 +650,11 @@ public final class SlotService
     private static void updateSlotWithShift( Slot slot, LocalTime previousEndingTime )
     {
         // We want to shift all the next slots
+        int nIdForm = slot.getIdForm( );
         LocalDate dateOfSlot = slot.getDate( );
-        HashMap<LocalDate, WeekDefinition> mapWeekDefinition = WeekDefinitionService.findAllWeekDefinition( slot.getIdForm( ) );
+        HashMap<LocalDate, WeekDefinition> mapWeekDefinition = WeekDefinitionService.findAllWeekDefinition( nIdForm );
         // Build or get all the slots of the day
-        List<Slot> listAllSlotsOfThisDayToBuildOrInDb = buildListSlot( slot.getIdForm( ), mapWeekDefinition, dateOfSlot, dateOfSlot );
+        List<Slot> listAllSlotsOfThisDayToBuildOrInDb = buildListSlot( nIdForm, mapWeekDefinition, dateOfSlot, dateOfSlot );
         // Remove the current slot and all the slot before it
         listAllSlotsOfThisDayToBuildOrInDb = listAllSlotsOfThisDayToBuildOrInDb.stream( )
                 .filter( slotToKeep -> slotToKeep.getStartingDateTime( ).isAfter( slot.getStartingDateTime( ) ) ).collect( Collectors.toList( ) );
@@ -575,42 +665,28 @@ public final class SlotService
                         slotToDelete -> slotToDelete.getStartingDateTime( ).isAfter( slot.getStartingDateTime( ) )
                                 && !slotToDelete.getEndingDateTime( ).isAfter( slot.getEndingDateTime( ) ) && slotToDelete.getIdSlot( ) != 0 )
                 .collect( Collectors.toList( ) );
-        deleteListSlots( listSlotToDelete );
         listAllSlotsOfThisDayToBuildOrInDb.removeAll( listSlotToDelete );
-        // Need to find all the existing slots
-        List<Slot> listExistingSlots = listAllSlotsOfThisDayToBuildOrInDb.stream( ).filter( existingSlot -> existingSlot.getIdSlot( ) != 0 )
-                .collect( Collectors.toList( ) );
-        // Remove them from the list of slot to build
-        listAllSlotsOfThisDayToBuildOrInDb.removeAll( listExistingSlots );
-        // Save this list
-        createListSlot( listAllSlotsOfThisDayToBuildOrInDb );
-        List<Slot> listSlotToShift = new ArrayList<>( );
-        listSlotToShift.addAll( listExistingSlots );
-        listSlotToShift.addAll( listAllSlotsOfThisDayToBuildOrInDb );
-        // Need to order the list of slot to shift according to the shift
-        // if the new ending time is before the previous ending time,
-        // the list has to be ordered in chronological order ascending
-        // and the first slot to shift is the closest to the current
-        // slot
-        // (because we have an integrity constraint for the slot, it
-        // can't have the same starting or ending time as another slot
-        listSlotToShift = listSlotToShift.stream( ).sorted( ( slot1, slot2 ) -> slot1.getStartingDateTime( ).compareTo( slot2.getStartingDateTime( ) ) )
-                .collect( Collectors.toList( ) );
+        // The slots to shift, existing or not, in chronological order
+        List<Slot> listSlotToShift = listAllSlotsOfThisDayToBuildOrInDb.stream( )
+                .sorted( ( slot1, slot2 ) -> slot1.getStartingDateTime( ).compareTo( slot2.getStartingDateTime( ) ) ).collect( Collectors.toList( ) );
         boolean bNewEndingTimeIsAfterThePreviousTime = false;
-        // Need to know the ending time of the day
-        LocalDateTime endingDateTimeOfTheDay = null;
-        WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionByIdFormAndClosestToDateOfApply( slot.getIdForm( ), dateOfSlot );
+        // Need to know the ending time of the day, and the rules of the day
+        // to know if the shifted slots are specific
+        WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionByIdFormAndClosestToDateOfApply( nIdForm, dateOfSlot );
+        ReservationRule reservationRule = ReservationRuleService.findReservationRuleByIdFormAndClosestToDateOfApply( nIdForm, dateOfSlot );
         WorkingDay workingDay = WorkingDayService.getWorkingDayOfDayOfWeek( weekDefinition.getListWorkingDay( ), dateOfSlot.getDayOfWeek( ) );
         LocalTime endingTimeOfTheDay;
+        List<TimeSlot> listTimeSlot = null;
         if ( workingDay != null )
         {
             endingTimeOfTheDay = WorkingDayService.getMaxEndingTimeOfAWorkingDay( workingDay );
+            listTimeSlot = TimeSlotService.findListTimeSlotByWorkingDay( workingDay.getIdWorkingDay( ) );
         }
         else
         {
             endingTimeOfTheDay = WorkingDayService.getMaxEndingTimeOfAListOfWorkingDay( weekDefinition.getListWorkingDay( ) );
         }
-        endingDateTimeOfTheDay = endingTimeOfTheDay.atDate( dateOfSlot );
+        LocalDateTime endingDateTimeOfTheDay = endingTimeOfTheDay.atDate( dateOfSlot );
         long timeToAdd = 0;
         long timeToSubstract = 0;
         if ( previousEndingTime.isBefore( slot.getEndingTime( ) ) )
@@ -621,7 +697,7 @@ public final class SlotService
             // with the new end of the current slot
             if ( CollectionUtils.isNotEmpty( listSlotToShift ) )
             {
-                Slot nextSlot = listSlotToShift.stream( ).min( ( s1, s2 ) -> s1.getStartingDateTime( ).compareTo( s2.getStartingDateTime( ) ) ).get( );
+                Slot nextSlot = listSlotToShift.get( 0 );
                 if ( slot.getEndingDateTime( ).isAfter( nextSlot.getStartingDateTime( ) ) )
                 {
                     timeToAdd = nextSlot.getStartingDateTime( ).until( slot.getEndingDateTime( ), ChronoUnit.MINUTES );
@@ -630,7 +706,6 @@ public final class SlotService
                 {
                     timeToAdd = slot.getEndingDateTime( ).until( nextSlot.getStartingDateTime( ), ChronoUnit.MINUTES );
                 }
-                Collections.reverse( listSlotToShift );
             }
             else
             {
@@ -641,14 +716,10 @@ public final class SlotService
         {
             timeToSubstract = slot.getEndingTime( ).until( previousEndingTime, ChronoUnit.MINUTES );
         }
-        // If it's an update of an existing slot
-        if ( slot.getIdSlot( ) != 0 )
-        {
-            updateRemainingPlaces( slot );
-        }
-        saveSlot( slot );
         // Need to set the new starting and ending time of all the slots
-        // to shift and update them
+        // to shift
+        List<Slot> listSlotToUpdate = new ArrayList<>( );
+        List<Slot> listSlotToCreate = new ArrayList<>( );
         for ( Slot slotToShift : listSlotToShift )
         {
             // If the new ending time is after the previous time
@@ -670,14 +741,16 @@ public final class SlotService
                     {
                         slotToShift.setEndingDateTime( slotToShift.getEndingDateTime( ).plus( timeToAdd, ChronoUnit.MINUTES ) );
                     }
-                    slotToShift.setIsSpecific( isSpecificSlot( slotToShift ) );
-                    saveSlot( slotToShift );
                 }
                 else
                 {
                     // Delete this slot (the slot can not be after the
                     // ending time of the day)
-                    deleteSlot( slotToShift );
+                    if ( slotToShift.getIdSlot( ) != 0 )
+                    {
+                        listSlotToDelete.add( slotToShift );
+                    }
+                    continue;
                 }
             }
             else
@@ -686,8 +759,15 @@ public final class SlotService
                 // time
                 slotToShift.setStartingDateTime( slotToShift.getStartingDateTime( ).minus( timeToSubstract, ChronoUnit.MINUTES ) );
                 slotToShift.setEndingDateTime( slotToShift.getEndingDateTime( ).minus( timeToSubstract, ChronoUnit.MINUTES ) );
-                slotToShift.setIsSpecific( isSpecificSlot( slotToShift ) );
-                saveSlot( slotToShift );
+            }
+            slotToShift.setIsSpecific( isSpecificSlot( slotToShift, workingDay, listTimeSlot, reservationRule.getMaxCapacityPerSlot( ) ) );
+            if ( slotToShift.getIdSlot( ) != 0 )
+            {
+                listSlotToUpdate.add( slotToShift );
+            }
+            else
+            {
+                listSlotToCreate.add( slotToShift );
             }
         }
         if ( !bNewEndingTimeIsAfterThePreviousTime )
@@ -695,10 +775,38 @@ public final class SlotService
             // If the slots have been shift earlier,
             // there is no slot(s) between the last slot created
             // and the ending time of the day, need to create it(them)
-            List<Slot> listSlotsToAdd = generateListSlotToCreateAfterATime( endingDateTimeOfTheDay.minusMinutes( timeToSubstract ), slot.getIdForm( ) );
-            createListSlot( listSlotsToAdd );
+            listSlotToCreate.addAll( generateListSlotToCreateAfterATime( endingDateTimeOfTheDay.minusMinutes( timeToSubstract ), nIdForm ) );
         }
-
+        // If it's an update of an existing slot
+        if ( slot.getIdSlot( ) != 0 )
+        {
+            updateRemainingPlaces( slot );
+        }
+        // The slots covered by the new period of the current slot are deleted
+        // first, then the current slot and the shifted slots are saved
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            deleteListSlots( listSlotToDelete );
+            if ( slot.getIdSlot( ) == 0 )
+            {
+                SlotHome.create( slot );
+            }
+            else
+            {
+                SlotHome.update( slot );
+            }
+            SlotHome.updatePeriodList( listSlotToUpdate );
+            SlotHome.createList( listSlotToCreate );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
+        }
+        SlotListenerManager.notifyListenersSlotsChange( nIdForm, dateOfSlot );
     }
 
     /**
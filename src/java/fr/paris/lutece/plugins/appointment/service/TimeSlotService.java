@@ -39,7 +39,6 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -51,6 +50,9 @@ import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
 import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
 import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
 import fr.paris.lutece.plugins.appointment.service.listeners.WeekDefinitionManagerListener;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.util.sql.TransactionManager;
 
 /**
  * Service class for the time slot
@@ -230,7 +232,8 @@ public final class TimeSlotService
     }
 
     /**
-     * Update a time slot with shifting the next
+     * Update a time slot with shifting the next. The new times of the next time slots are computed first, and all the time slots of the working day are then
+     * saved with set-based statements in a transaction
      * 
      * @param timeSlot
      *            the time slot modified
@@ -259,22 +262,9 @@ public final class TimeSlotService
                 .filter(
                         timeSlotToDelete -> timeSlotToDelete.getStartingTime( ).isAfter( timeSlot.getStartingTime( ) )
                                 && !timeSlotToDelete.getEndingTime( ).isAfter( timeSlot.getEndingTime( ) ) ).collect( Collectors.toList( ) );
-        deleteListTimeSlot( listTimeSlotToDelete );
         listOfAllTimeSlotsOfThisWorkingDay.removeAll( listTimeSlotToDelete );
-        // Need to order the list of time slot to shift according to the
-        // shift
-        // if the new ending time is before the previous ending time,
-        // the list has to be ordered in chronological order ascending
-        // and the first time slot to shift is the closest to the
-        // current
-        // time slot
-        // (because we have an integrity constraint for the time slot,
-        // it
-        // can't have the same starting or ending time as another time
-        // slot
-        List<TimeSlot> listTimeSlotToShift = new ArrayList<>( );
-        listTimeSlotToShift.addAll( listOfAllTimeSlotsOfThisWorkingDay );
-        listTimeSlotToShift = listTimeSlotToShift.stream( )
+        // The time slots to shift, in chronological order
+        List<TimeSlot> listTimeSlotToShift = listOfAllTimeSlotsOfThisWorkingDay.stream( )
                 .sorted( ( timeSlot1, timeSlot2 ) -> timeSlot1.getStartingTime( ).compareTo( timeSlot2.getStartingTime( ) ) ).collect( Collectors.toList( ) );
         boolean bNewEndingTimeIsAfterThePreviousTime = false;
         // Need to know the ending time of the day
@@ -291,7 +281,7 @@ public final class TimeSlotService
             // the new end of the current time slot
             if ( CollectionUtils.isNotEmpty( listTimeSlotToShift ) )
             {
-                TimeSlot nextTimeSlot = listTimeSlotToShift.stream( ).min( ( t1, t2 ) -> t1.getStartingTime( ).compareTo( t2.getStartingTime( ) ) ).get( );
+                TimeSlot nextTimeSlot = listTimeSlotToShift.get( 0 );
                 if ( timeSlot.getEndingTime( ).isAfter( nextTimeSlot.getStartingTime( ) ) )
                 {
                     timeToAdd = nextTimeSlot.getStartingTime( ).until( timeSlot.getEndingTime( ), ChronoUnit.MINUTES );
@@ -300,7 +290,6 @@ public final class TimeSlotService
                 {
                     timeToAdd = timeSlot.getEndingTime( ).until( nextTimeSlot.getStartingTime( ), ChronoUnit.MINUTES );
                 }
-                Collections.reverse( listTimeSlotToShift );
             }
             else
             {
@@ -312,10 +301,9 @@ public final class TimeSlotService
         {
             timeToSubstract = timeSlot.getEndingTime( ).until( previousEndingTime, ChronoUnit.MINUTES );
         }
-        updateTimeSlot( timeSlot );
         // Need to set the new starting and ending time of all the time
-        // slots
-        // to shift and update them
+        // slots to shift
+        List<TimeSlot> listTimeSlotToUpdate = new ArrayList<>( );
         for ( TimeSlot timeSlotToShift : listTimeSlotToShift )
         {
             // If the new ending time is after the previous time
@@ -337,13 +325,13 @@ public final class TimeSlotService
                     {
                         timeSlotToShift.setEndingTime( timeSlotToShift.getEndingTime( ).plus( timeToAdd, ChronoUnit.MINUTES ) );
                     }
-                    updateTimeSlot( timeSlotToShift );
+                    listTimeSlotToUpdate.add( timeSlotToShift );
                 }
                 else
                 {
                     // Delete this slot (the slot can not be after the
                     // ending time of the day)
-                    deleteTimeSlot( timeSlotToShift );
+                    listTimeSlotToDelete.add( timeSlotToShift );
                 }
             }
             else
@@ -352,20 +340,36 @@ public final class TimeSlotService
                 // time
                 timeSlotToShift.setStartingTime( timeSlotToShift.getStartingTime( ).minus( timeToSubstract, ChronoUnit.MINUTES ) );
                 timeSlotToShift.setEndingTime( timeSlotToShift.getEndingTime( ).minus( timeToSubstract, ChronoUnit.MINUTES ) );
-                updateTimeSlot( timeSlotToShift );
+                listTimeSlotToUpdate.add( timeSlotToShift );
             }
         }
-
+        List<TimeSlot> listTimeSlotToAdd = new ArrayList<>( );
         if ( !bNewEndingTimeIsAfterThePreviousTime )
         {
             // If the slots have been shift earlier,
             // there is no slot(s) between the last slot created
             // and the ending time of the day, need to create it(them)
-            List<TimeSlot> listTimeSlotToAdd = generateListTimeSlot( timeSlot.getIdWorkingDay( ), endingTimeOfTheDay.minusMinutes( timeToSubstract ),
-                    endingTimeOfTheDay, nDuration, reservationRule.getMaxCapacityPerSlot( ), Boolean.TRUE );
-            createListTimeSlot( listTimeSlotToAdd );
+            listTimeSlotToAdd = generateListTimeSlot( timeSlot.getIdWorkingDay( ), endingTimeOfTheDay.minusMinutes( timeToSubstract ), endingTimeOfTheDay,
+                    nDuration, reservationRule.getMaxCapacityPerSlot( ), Boolean.TRUE );
+        }
+        // The current time slot is saved before the shifted time slots, since
+        // its new ending time may be the previous ending time of a shifted
+        // time slot
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            deleteListTimeSlot( listTimeSlotToDelete );
+            updateTimeSlot( timeSlot );
+            TimeSlotHome.updateList( listTimeSlotToUpdate );
+            TimeSlotHome.createList( listTimeSlotToAdd );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
         }
-
     }
 
     /**
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Service to control the admission of the visitors on the front office pages of the forms, to keep the booking load within what the database can sustain
+ * when a popular form opens. Each form has its own waiting room, enabled by setting a rate of admission. The waiting rooms are held in memory, so with
+ * several servers each one admits at the configured rate, and the sessions must be sticky
+ */
+public final class AdmissionService
+{
+    private static final String PROPERTY_RATE = "appointment.admission.rate";
+    private static final String PROPERTY_BURST = "appointment.admission.burst";
+    private static final String PROPERTY_MAX_ADMITTED = "appointment.admission.maxAdmitted";
+    private static final String PROPERTY_IDLE_TIMEOUT = "appointment.admission.idleTimeout";
+    private static final String PROPERTY_POLL_TIMEOUT = "appointment.admission.pollTimeout";
+    private static final String PROPERTY_POLL_INTERVAL = "appointment.admission.pollInterval";
+    private static final int DEFAULT_BURST = 10;
+    private static final int DEFAULT_IDLE_TIMEOUT = 1800;
+    private static final int DEFAULT_POLL_TIMEOUT = 60;
+    private static final int DEFAULT_POLL_INTERVAL = 5;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final String SESSION_ATTRIBUTE_TICKETS = "appointment.session.admissionTickets";
+
+    private static final Map<Integer, FormAdmissionQueue> _mapQueues = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private AdmissionService( )
+    {
+    }
+
+    /**
+     * Check if a visitor is admitted on the pages of a form. A visitor who comes for the first time is put in the waiting room
+     * 
+     * @param session
+     *            the session of the visitor
+     * @param nIdForm
+     *            the id of the form
+     * @return true if the visitor is admitted, or if the admission control of the form is disabled
+     */
+    public static boolean isAdmitted( HttpSession session, int nIdForm )
+    {
+        return getPosition( session, nIdForm, true ) == 0;
+    }
+
+    /**
+     * Get the position of a visitor in the waiting room of a form
+     * 
+     * @param session
+     *            the session of the visitor, or null
+     * @param nIdForm
+     *            the id of the form
+     * @return 0 if the visitor is admitted, his position in the waiting room if he is waiting, -1 if he is not in the waiting room
+     */
+    public static long getPosition( HttpSession session, int nIdForm )
+    {
+        return getPosition( session, nIdForm, false );
+    }
+
+    /**
+     * Give back the place of a visitor, when he has finished booking
+     * 
+     * @param session
+     *            the session of the visitor
+     * @param nIdForm
+     *            the id of the form
+     */
+    public static void release( HttpSession session, int nIdForm )
+    {
+        Map<Integer, Long> mapTickets = getTickets( session );
+        Long lNumber = mapTickets == null ? null : mapTickets.remove( nIdForm );
+        FormAdmissionQueue queue = _mapQueues.get( nIdForm );
+        if ( lNumber != null && queue != null )
+        {
+            queue.leave( lNumber );
+        }
+    }
+
+    /**
+     * Get the interval between two polls of the waiting page
+     * 
+     * @return the interval, in seconds
+     */
+    public static int getPollInterval( )
+    {
+        return AppPropertiesService.getPropertyInt( PROPERTY_POLL_INTERVAL, DEFAULT_POLL_INTERVAL );
+    }
+
+    /**
+     * Get the number of visitors waiting for a form
+     * 
+     * @param nIdForm
+     *            the id of the form
+     * @return the number of visitors waiting
+     */
+    public static int getQueueLength( int nIdForm )
+    {
+        FormAdmissionQueue queue = _mapQueues.get( nIdForm );
+        return queue == null ? 0 : queue.getQueueLength( );
+    }
+
+    /**
+     * Remove the waiting room of a form, and its metric, when the form is removed
+     * 
+     * @param nIdForm
+     *            the id of the form
+     */
+    public static void remove( int nIdForm )
+    {
+        _mapQueues.remove( nIdForm );
+        AppointmentMetricsService.unregisterGauge( AppointmentMetricsService.METRIC_ADMISSION_QUEUE_LENGTH, nIdForm );
+    }
+
+    /**
+     * Remove the waiting rooms and their metrics, so that they are built again with the current configuration
+     */
+    public static void reset( )
+    {
+        for ( Integer nIdForm : _mapQueues.keySet( ) )
+        {
+            remove( nIdForm );
+        }
+    }
+
+    /**
+     * Get the position of a visitor in the waiting room of a form
+     * 
+     * @param session
+     *            the session of the visitor, or null
+     * @param nIdForm
+     *            the id of the form
+     * @param bEnter
+     *            true to put the visitor in the waiting room if he is not in it
+     * @return 0 if the visitor is admitted, his position in the waiting room if he is waiting, -1 if he is not in the waiting room
+     */
+    private static long getPosition( HttpSession session, int nIdForm, boolean bEnter )
+    {
+        double dRate = NumberUtils.toDouble( getProperty( PROPERTY_RATE, nIdForm ) );
+        if ( dRate <= 0 )
+        {
+            return 0;
+        }
+        if ( session == null )
+        {
+            return -1;
+        }
+        long lNow = System.currentTimeMillis( );
+        FormAdmissionQueue queue = _mapQueues.computeIfAbsent( nIdForm, id -> createQueue( id, dRate, lNow ) );
+        Map<Integer, Long> mapTickets = getTickets( session );
+        Long lNumber = mapTickets == null ? null : mapTickets.get( nIdForm );
+        long lPosition = lNumber == null ? -1 : queue.poll( lNumber, lNow );
+        if ( lPosition < 0 && bEnter )
+        {
+            lNumber = queue.enter( lNow );
+            if ( mapTickets == null )
+            {
+                mapTickets = new ConcurrentHashMap<>( );
+            }
+            mapTickets.put( nIdForm, lNumber );
+            // Set the attribute again so that the session is replicated
+            session.setAttribute( SESSION_ATTRIBUTE_TICKETS, mapTickets );
+            lPosition = queue.poll( lNumber, lNow );
+        }
+        return lPosition;
+    }
+
+    /**
+     * Create the waiting room of a form, and register its metric
+     * 
+     * @param nIdForm
+     *            the id of the form
+     * @param dRate
+     *            the number of visitors admitted per second
+     * @param lNow
+     *            the current time, in milliseconds
+     * @return the waiting room
+     */
+    private static FormAdmissionQueue createQueue( int nIdForm, double dRate, long lNow )
+    {
+        int nBurst = NumberUtils.toInt( getProperty( PROPERTY_BURST, nIdForm ), DEFAULT_BURST );
+        int nMaxAdmitted = NumberUtils.toInt( getProperty( PROPERTY_MAX_ADMITTED, nIdForm ) );
+        long lIdleTimeout = NumberUtils.toInt( getProperty( PROPERTY_IDLE_TIMEOUT, nIdForm ), DEFAULT_IDLE_TIMEOUT ) * MILLIS_PER_SECOND;
+        long lPollTimeout = NumberUtils.toInt( getProperty( PROPERTY_POLL_TIMEOUT, nIdForm ), DEFAULT_POLL_TIMEOUT ) * MILLIS_PER_SECOND;
+        FormAdmissionQueue queue = new FormAdmissionQueue( nIdForm, dRate, nBurst, nMaxAdmitted, lIdleTimeout, lPollTimeout, lNow );
+        // The gauge reads the current waiting room of the form, which is
+        // replaced after a reset
+        AppointmentMetricsService.registerGauge( AppointmentMetricsService.METRIC_ADMISSION_QUEUE_LENGTH, nIdForm, ( ) -> getQueueLength( nIdForm ) );
+        return queue;
+    }
+
+    /**
+     * Get the tickets of a visitor, by id of form
+     * 
+     * @param session
+     *            the session of the visitor
+     * @return the tickets, or null if the visitor has no ticket
+     */
+    @SuppressWarnings( "unchecked" )
+    private static Map<Integer, Long> getTickets( HttpSession session )
+    {
+        return (Map<Integer, Long>) session.getAttribute( SESSION_ATTRIBUTE_TICKETS );
+    }
+
+    /**
+     * Get a property of the admission control of a form. The property suffixed by the id of the form overrides the default one
+     * 
+     * @param strKey
+     *            the key of the property
+     * @param nIdForm
+     *            the id of the form
+     * @return the value of the property, or null if it is not defined
+     */
+    private static String getProperty( String strKey, int nIdForm )
+    {
+        return AppPropertiesService.getProperty( strKey + '.' + nIdForm, AppPropertiesService.getProperty( strKey ) );
+    }
+}
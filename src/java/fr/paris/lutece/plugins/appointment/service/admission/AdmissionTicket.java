@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.admission;
+
+/**
+ * Ticket of a visitor in the waiting room of a form
+ */
+final class AdmissionTicket
+{
+    private final long _lNumber;
+    private long _lLastActivity;
+
+    /**
+     * Constructor
+     * 
+     * @param lNumber
+     *            the number of the ticket, in the order of arrival
+     * @param lNow
+     *            the time of arrival, in milliseconds
+     */
+    AdmissionTicket( long lNumber, long lNow )
+    {
+        _lNumber = lNumber;
+        _lLastActivity = lNow;
+    }
+
+    /**
+     * Get the number of the ticket
+     * 
+     * @return the number of the ticket
+     */
+    long getNumber( )
+    {
+        return _lNumber;
+    }
+
+    /**
+     * Get the time of the last request of the visitor
+     * 
+     * @return the time of the last request, in milliseconds
+     */
+    long getLastActivity( )
+    {
+        return _lLastActivity;
+    }
+
+    /**
+     * Set the time of the last request of the visitor
+     * 
+     * @param lLastActivity
+     *            the time of the last request, in milliseconds
+     */
+    void setLastActivity( long lLastActivity )
+    {
+        _lLastActivity = lLastActivity;
+    }
+}
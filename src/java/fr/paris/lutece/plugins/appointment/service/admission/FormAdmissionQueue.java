@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.admission;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.appointment.service.metrics.AppointmentMetricsService;
+
+/**
+ * Waiting room of a form. The visitors are admitted in their order of arrival, at the rate of a token bucket, and the number of visitors admitted at the
+ * same time can be limited. A visitor admitted stays admitted until he is idle for too long, a visitor waiting loses his place if he stops polling
+ */
+final class FormAdmissionQueue
+{
+    private static final double MILLIS_PER_SECOND = 1000d;
+
+    private final int _nIdForm;
+    private final double _dRate;
+    private final int _nBurst;
+    private final int _nMaxAdmitted;
+    private final long _lIdleTimeout;
+    private final long _lPollTimeout;
+    private final Map<Long, AdmissionTicket> _mapWaitingTickets = new LinkedHashMap<>( );
+    // Ordered by access, so that the idle tickets are at the head
+    private final Map<Long, AdmissionTicket> _mapAdmittedTickets = new LinkedHashMap<>( 16, 0.75f, true );
+    private long _lNextNumber;
+    private double _dTokens;
+    private long _lLastRefill;
+
+    /**
+     * Constructor
+     * 
+     * @param nIdForm
+     *            the id of the form
+     * @param dRate
+     *            the number of visitors admitted per second
+     * @param nBurst
+     *            the number of visitors that can be admitted at once after a quiet period
+     * @param nMaxAdmitted
+     *            the maximum number of visitors admitted at the same time, 0 for no limit
+     * @param lIdleTimeout
+     *            the time after which an idle visitor admitted gives back his place, in milliseconds
+     * @param lPollTimeout
+     *            the time after which a waiting visitor who stopped polling loses his place, in milliseconds
+     * @param lNow
+     *            the current time, in milliseconds
+     */
+    FormAdmissionQueue( int nIdForm, double dRate, int nBurst, int nMaxAdmitted, long lIdleTimeout, long lPollTimeout, long lNow )
+    {
+        _nIdForm = nIdForm;
+        _dRate = dRate;
+        _nBurst = Math.max( 1, nBurst );
+        _nMaxAdmitted = nMaxAdmitted;
+        _lIdleTimeout = lIdleTimeout;
+        _lPollTimeout = lPollTimeout;
+        _dTokens = _nBurst;
+        _lLastRefill = lNow;
+    }
+
+    /**
+     * Put a new visitor in the waiting room. He is admitted at once if nobody is waiting and the rate allows it
+     * 
+     * @param lNow
+     *            the current time, in milliseconds
+     * @return the number of the ticket of the visitor
+     */
+    synchronized long enter( long lNow )
+    {
+        long lNumber = _lNextNumber++;
+        _mapWaitingTickets.put( lNumber, new AdmissionTicket( lNumber, lNow ) );
+        advance( lNow );
+        return lNumber;
+    }
+
+    /**
+     * Get the position of a visitor in the waiting room, and record his activity
+     * 
+     * @param lNumber
+     *            the number of the ticket of the visitor
+     * @param lNow
+     *            the current time, in milliseconds
+     * @return 0 if the visitor is admitted, the number of visitors before him plus one if he is waiting, -1 if the ticket is unknown or expired
+     */
+    synchronized long poll( long lNumber, long lNow )
+    {
+        advance( lNow );
+        AdmissionTicket ticket = _mapAdmittedTickets.get( lNumber );
+        if ( ticket != null )
+        {
+            ticket.setLastActivity( lNow );
+            return 0;
+        }
+        ticket = _mapWaitingTickets.get( lNumber );
+        if ( ticket == null )
+        {
+            return -1;
+        }
+        ticket.setLastActivity( lNow );
+        // The abandoned tickets before this one are still counted, the
+        // position is an upper bound
+        return lNumber - _mapWaitingTickets.keySet( ).iterator( ).next( ) + 1;
+    }
+
+    /**
+     * Remove a visitor, who gives back his place
+     * 
+     * @param lNumber
+     *            the number of the ticket of the visitor
+     */
+    synchronized void leave( long lNumber )
+    {
+        if ( _mapAdmittedTickets.remove( lNumber ) == null )
+        {
+            _mapWaitingTickets.remove( lNumber );
+        }
+    }
+
+    /**
+     * Get the number of visitors waiting
+     * 
+     * @return the number of visitors waiting
+     */
+    synchronized int getQueueLength( )
+    {
+        return _mapWaitingTickets.size( );
+    }
+
+    /**
+     * Get the number of visitors admitted and not idle
+     * 
+     * @return the number of visitors admitted
+     */
+    synchronized int getNbAdmitted( )
+    {
+        return _mapAdmittedTickets.size( );
+    }
+
+    /**
+     * Refill the token bucket, remove the idle and abandoned tickets and admit the first visitors waiting while the rate and the limit allow it
+     * 
+     * @param lNow
+     *            the current time, in milliseconds
+     */
+    private void advance( long lNow )
+    {
+        if ( lNow > _lLastRefill )
+        {
+            _dTokens = Math.min( _nBurst, _dTokens + ( lNow - _lLastRefill ) * _dRate / MILLIS_PER_SECOND );
+            _lLastRefill = lNow;
+        }
+        Iterator<AdmissionTicket> iterator = _mapAdmittedTickets.values( ).iterator( );
+        while ( iterator.hasNext( ) && lNow - iterator.next( ).getLastActivity( ) > _lIdleTimeout )
+        {
+            iterator.remove( );
+        }
+        iterator = _mapWaitingTickets.values( ).iterator( );
+        while ( iterator.hasNext( ) )
+        {
+            AdmissionTicket ticket = iterator.next( );
+            if ( lNow - ticket.getLastActivity( ) > _lPollTimeout )
+            {
+                // The visitor left, his place does not cost a token
+                iterator.remove( );
+            }
+            else
+                if ( _dTokens >= 1 && ( _nMaxAdmitted <= 0 || _mapAdmittedTickets.size( ) < _nMaxAdmitted ) )
+                {
+                    iterator.remove( );
+                    _mapAdmittedTickets.put( ticket.getNumber( ), ticket );
+                    _dTokens--;
+                    AppointmentMetricsService.incrementCounter( AppointmentMetricsService.METRIC_ADMISSION_ADMITTED, _nIdForm );
+                }
+                else
+                {
+                    break;
+                }
+        }
+    }
+}
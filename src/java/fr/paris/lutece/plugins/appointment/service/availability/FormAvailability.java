@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.availability;
+
+import java.io.Serializable;
+
+/**
+ * Availability of the slots of a form for a period, as published in JSON
+ * 
+ */
+public final class FormAvailability implements Serializable
+{
+    private static final long serialVersionUID = -2748613903178254116L;
+
+    private final String _strJson;
+    private final String _strETag;
+    private final long _lCreationTime;
+    private final boolean _bAuthenticationRequired;
+
+    /**
+     * Constructor
+     * 
+     * @param strJson
+     *            the JSON of the availability
+     * @param strETag
+     *            the entity tag of the JSON
+     * @param lCreationTime
+     *            the time the availability was built, in milliseconds
+     * @param bAuthenticationRequired
+     *            true if the form requires the user to be authenticated
+     */
+    public FormAvailability( String strJson, String strETag, long lCreationTime, boolean bAuthenticationRequired )
+    {
+        _strJson = strJson;
+        _strETag = strETag;
+        _lCreationTime = lCreationTime;
+        _bAuthenticationRequired = bAuthenticationRequired;
+    }
+
+    /**
+     * Get the JSON of the availability
+     * 
+     * @return the JSON
+     */
+    public String getJson( )
+    {
+        return _strJson;
+    }
+
+    /**
+     * Get the entity tag of the JSON, computed from its content
+     * 
+     * @return the entity tag
+     */
+    public String getETag( )
+    {
+        return _strETag;
+    }
+
+    /**
+     * Get the time the availability was built
+     * 
+     * @return the creation time, in milliseconds
+     */
+    public long getCreationTime( )
+    {
+        return _lCreationTime;
+    }
+
+    /**
+     * Tell if the form requires the user to be authenticated to read the availability
+     * 
+     * @return true if an authentication is required
+     */
+    public boolean isAuthenticationRequired( )
+    {
+        return _bAuthenticationRequired;
+    }
+}
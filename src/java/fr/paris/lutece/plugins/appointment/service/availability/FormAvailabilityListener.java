@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.availability;
+
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
+import fr.paris.lutece.plugins.appointment.service.listeners.IFormListener;
+import fr.paris.lutece.plugins.appointment.service.listeners.ISlotListener;
+import fr.paris.lutece.plugins.appointment.service.listeners.IWeekDefinitionListener;
+
+/**
+ * Listener invalidating the availability of the forms in cache. It reads the form of the slots and of the week definitions, so it is notified
+ * asynchronously : the bookings do not wait for it
+ * 
+ */
+public class FormAvailabilityListener implements ISlotListener, IWeekDefinitionListener, IFormListener
+{
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifySlotChange( int nIdSlot )
+    {
+        invalidateFormOfSlot( nIdSlot );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifySlotCreation( int nIdSlot )
+    {
+        invalidateFormOfSlot( nIdSlot );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifySlotRemoval( int nIdSlot )
+    {
+        invalidateFormOfSlot( nIdSlot );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyWeekDefinitionChange( int nIdWeekDefinition )
+    {
+        invalidateFormOfWeekDefinition( nIdWeekDefinition );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyWeekDefinitionCreation( int nIdWeekDefinition )
+    {
+        invalidateFormOfWeekDefinition( nIdWeekDefinition );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyWeekDefinitionRemoval( int nIdForm )
+    {
+        FormAvailabilityService.getInstance( ).invalidate( nIdForm );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyFormChange( int nIdForm )
+    {
+        FormAvailabilityService.getInstance( ).invalidate( nIdForm );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyFormCreation( int nIdForm )
+    {
+        // Nothing to do, the availability will be built at the first request
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyFormRemoval( int nIdForm )
+    {
+        FormAvailabilityService.getInstance( ).invalidate( nIdForm );
+    }
+
+    /**
+     * Invalidate the availability of the form of a slot
+     * 
+     * @param nIdSlot
+     *            the slot Id
+     */
+    private static void invalidateFormOfSlot( int nIdSlot )
+    {
+        Slot slot = SlotService.findSlotById( nIdSlot );
+        if ( slot != null )
+        {
+            FormAvailabilityService.getInstance( ).invalidate( slot.getIdForm( ) );
+        }
+    }
+
+    /**
+     * Invalidate the availability of the form of a week definition
+     * 
+     * @param nIdWeekDefinition
+     *            the week definition Id
+     */
+    private static void invalidateFormOfWeekDefinition( int nIdWeekDefinition )
+    {
+        WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionLightById( nIdWeekDefinition );
+        if ( weekDefinition != null )
+        {
+            FormAvailabilityService.getInstance( ).invalidate( weekDefinition.getIdForm( ) );
+        }
+    }
+}
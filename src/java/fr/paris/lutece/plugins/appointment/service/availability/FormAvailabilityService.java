@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.availability;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Cache of the availability of the slots of the forms, published in JSON for the front office calendars. As for the configurations of the forms, the cache
+ * keys contain a version of the form incremented at each modification of its slots or of its rules, so that an availability is never read after a
+ * modification made on this server. An availability is also only kept for a short time (appointment.availability.maxAge), which bounds the delay to see the
+ * modifications made on the other servers, and the same delay is given to the HTTP caches. The entity tag of an availability is computed from its content,
+ * so that it is the same on all the servers
+ * 
+ */
+public final class FormAvailabilityService extends AbstractCacheableService
+{
+    private static final String SERVICE_NAME = "Appointment Form Availability Cache Service";
+    private static final String CACHE_KEY_PREFIX = "appointment.formAvailability.";
+    private static final String CACHE_KEY_SEPARATOR = ".";
+    private static final String PROPERTY_MAX_AGE = "appointment.availability.maxAge";
+    private static final int DEFAULT_MAX_AGE = 10;
+    private static final String ETAG_ALGORITHM = "SHA-256";
+    private static final int ETAG_SIZE = 16;
+
+    private static final String JSON_ID_FORM = "idForm";
+    private static final String JSON_FROM = "from";
+    private static final String JSON_TO = "to";
+    private static final String JSON_SLOTS = "slots";
+    private static final String JSON_START = "start";
+    private static final String JSON_END = "end";
+    private static final String JSON_REMAINING = "remaining";
+    private static final String JSON_OPEN = "open";
+
+    private static FormAvailabilityService _singleton = new FormAvailabilityService( );
+
+    private final JsonFactory _jsonFactory = new JsonFactory( );
+    private final Map<Integer, Long> _mapFormVersion = new ConcurrentHashMap<>( );
+    private final AtomicLong _lastVersion = new AtomicLong( );
+    private final AtomicLong _nbHits = new AtomicLong( );
+    private final AtomicLong _nbMisses = new AtomicLong( );
+
+    /**
+     * Private constructor
+     */
+    private FormAvailabilityService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static FormAvailabilityService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Get the availability of the slots of a form, build it if it is not in cache or if it is too old. Only the slots of the period displayed in the front
+     * office calendar can be read, and only those that can still be booked
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param from
+     *            the first day of the period, null for the first day of the calendar
+     * @param to
+     *            the last day of the period, null for the last day of the calendar
+     * @param bUserAuthenticated
+     *            true if the user is authenticated
+     * @return the availability, or null if the form does not exist, is not active, or requires an authentication the user does not have
+     */
+    public FormAvailability getAvailability( int nIdForm, LocalDate from, LocalDate to, boolean bUserAuthenticated )
+    {
+        // The version is read before the build, so that an availability built
+        // during a modification is put in cache with the previous version
+        String strKey = getCacheKey( nIdForm, from, to );
+        long lNow = System.currentTimeMillis( );
+        FormAvailability availability = (FormAvailability) getFromCache( strKey );
+        if ( availability != null && lNow - availability.getCreationTime( ) < getMaxAge( ) * 1000L )
+        {
+            _nbHits.incrementAndGet( );
+        }
+        else
+        {
+            _nbMisses.incrementAndGet( );
+            availability = buildAvailability( nIdForm, from, to, lNow );
+            if ( availability != null )
+            {
+                putInCache( strKey, availability );
+            }
+        }
+        if ( availability != null && availability.isAuthenticationRequired( ) && !bUserAuthenticated )
+        {
+            return null;
+        }
+        return availability;
+    }
+
+    /**
+     * Invalidate the availability of a form in cache, after a modification of its slots or of its rules
+     * 
+     * @param nIdForm
+     *            the form Id
+     */
+    public void invalidate( int nIdForm )
+    {
+        _mapFormVersion.put( nIdForm, _lastVersion.incrementAndGet( ) );
+    }
+
+    /**
+     * Get the number of seconds an availability is kept in cache, and can be kept by the HTTP caches
+     * 
+     * @return the max age, in seconds
+     */
+    public int getMaxAge( )
+    {
+        return AppPropertiesService.getPropertyInt( PROPERTY_MAX_AGE, DEFAULT_MAX_AGE );
+    }
+
+    /**
+     * Get the number of availabilities read from the cache
+     * 
+     * @return the number of hits
+     */
+    public long getNbHits( )
+    {
+        return _nbHits.get( );
+    }
+
+    /**
+     * Get the number of availabilities built
+     * 
+     * @return the number of misses
+     */
+    public long getNbMisses( )
+    {
+        return _nbMisses.get( );
+    }
+
+    /**
+     * Build the availability of the slots of a form
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param from
+     *            the first day of the period, null for the first day of the calendar
+     * @param to
+     *            the last day of the period, null for the last day of the calendar
+     * @param lNow
+     *            the current time, in milliseconds
+     * @return the availability, or null if the form does not exist or is not active
+     */
+    private FormAvailability buildAvailability( int nIdForm, LocalDate from, LocalDate to, long lNow )
+    {
+        Form form = FormService.findFormLightByPrimaryKey( nIdForm );
+        if ( form == null || !form.getIsActive( ) || form.getStartingValidityDate( ) == null )
+        {
+            return null;
+        }
+        AppointmentFormDTO appointmentForm = FormService.buildAppointmentForm( nIdForm, 0, 0 );
+        // Same period as the front office calendar : from today (or the
+        // starting validity date) to the end of the weeks to display
+        LocalDate startingDate = LocalDate.now( );
+        if ( form.getStartingValidityDate( ).isAfter( startingDate ) )
+        {
+            startingDate = form.getStartingValidityDate( );
+        }
+        LocalDate endingDate = startingDate.with( TemporalAdjusters.nextOrSame( DayOfWeek.SUNDAY ) ).plusWeeks( appointmentForm.getNbWeeksToDisplay( ) - 1 );
+        if ( form.getEndingValidityDate( ) != null && endingDate.isAfter( form.getEndingValidityDate( ) ) )
+        {
+            endingDate = form.getEndingValidityDate( );
+        }
+        if ( from != null && from.isAfter( startingDate ) )
+        {
+            startingDate = from;
+        }
+        if ( to != null && to.isBefore( endingDate ) )
+        {
+            endingDate = to;
+        }
+        List<Slot> listSlot = new ArrayList<>( );
+        if ( !startingDate.isAfter( endingDate ) )
+        {
+            LocalDateTime minStartingDateTime = LocalDateTime.now( ).plusHours( appointmentForm.getMinTimeBeforeAppointment( ) );
+            for ( Slot slot : SlotService.buildListSlot( nIdForm, startingDate, endingDate ) )
+            {
+                if ( slot.getStartingDateTime( ).isAfter( minStartingDateTime ) )
+                {
+                    listSlot.add( slot );
+                }
+            }
+        }
+        String strJson = toJson( nIdForm, startingDate, endingDate, listSlot );
+        return new FormAvailability( strJson, computeETag( strJson ), lNow, appointmentForm.getActiveAuthentication( ) );
+    }
+
+    /**
+     * Write the availability of the slots of a form in JSON
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param startingDate
+     *            the first day of the period
+     * @param endingDate
+     *            the last day of the period
+     * @param listSlot
+     *            the slots of the period
+     * @return the JSON
+     */
+    private String toJson( int nIdForm, LocalDate startingDate, LocalDate endingDate, List<Slot> listSlot )
+    {
+        StringWriter writer = new StringWriter( );
+        try ( JsonGenerator generator = _jsonFactory.createGenerator( writer ) )
+        {
+            generator.writeStartObject( );
+            generator.writeNumberField( JSON_ID_FORM, nIdForm );
+            generator.writeStringField( JSON_FROM, startingDate.toString( ) );
+            generator.writeStringField( JSON_TO, endingDate.toString( ) );
+            generator.writeArrayFieldStart( JSON_SLOTS );
+            for ( Slot slot : listSlot )
+            {
+                generator.writeStartObject( );
+                generator.writeStringField( JSON_START, slot.getStartingDateTime( ).toString( ) );
+                generator.writeStringField( JSON_END, slot.getEndingDateTime( ).toString( ) );
+                generator.writeNumberField( JSON_REMAINING, Math.max( 0, slot.getNbPotentialRemainingPlaces( ) ) );
+                generator.writeBooleanField( JSON_OPEN, slot.getIsOpen( ) );
+                generator.writeEndObject( );
+            }
+            generator.writeEndArray( );
+            generator.writeEndObject( );
+        }
+        catch( IOException e )
+        {
+            throw new AppException( "Unable to write the availability of the form " + nIdForm, e );
+        }
+        return writer.toString( );
+    }
+
+    /**
+     * Compute the entity tag of a JSON from its content
+     * 
+     * @param strJson
+     *            the JSON
+     * @return the entity tag
+     */
+    private static String computeETag( String strJson )
+    {
+        try
+        {
+            byte [ ] digest = MessageDigest.getInstance( ETAG_ALGORITHM ).digest( strJson.getBytes( StandardCharsets.UTF_8 ) );
+            return Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( Arrays.copyOf( digest, ETAG_SIZE ) );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            throw new AppException( ETAG_ALGORITHM + " is not available", e );
+        }
+    }
+
+    /**
+     * Get the cache key of an availability. The current date is part of the key, since it is the default first day of the period
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param from
+     *            the first day of the period
+     * @param to
+     *            the last day of the period
+     * @return the cache key
+     */
+    private String getCacheKey( int nIdForm, LocalDate from, LocalDate to )
+    {
+        return new StringBuilder( CACHE_KEY_PREFIX ).append( nIdForm ).append( CACHE_KEY_SEPARATOR ).append( _mapFormVersion.getOrDefault( nIdForm, 0L ) )
+                .append( CACHE_KEY_SEPARATOR ).append( from ).append( CACHE_KEY_SEPARATOR ).append( to ).append( CACHE_KEY_SEPARATOR )
+                .append( LocalDate.now( ) ).toString( );
+    }
+}
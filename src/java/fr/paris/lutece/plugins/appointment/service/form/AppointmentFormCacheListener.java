@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.form;
+
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
+import fr.paris.lutece.plugins.appointment.service.listeners.IFormListener;
+import fr.paris.lutece.plugins.appointment.service.listeners.ISynchronousListener;
+import fr.paris.lutece.plugins.appointment.service.listeners.IWeekDefinitionListener;
+
+/**
+ * Listener invalidating the configurations and the entries of the forms in cache
+ * 
+ */
+public class AppointmentFormCacheListener implements IWeekDefinitionListener, IFormListener, ISynchronousListener
+{
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyWeekDefinitionChange( int nIdWeekDefinition )
+    {
+        invalidateFormOfWeekDefinition( nIdWeekDefinition );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyWeekDefinitionCreation( int nIdWeekDefinition )
+    {
+        invalidateFormOfWeekDefinition( nIdWeekDefinition );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyWeekDefinitionRemoval( int nIdForm )
+    {
+        AppointmentFormCacheService.getInstance( ).invalidate( nIdForm );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyFormChange( int nIdForm )
+    {
+        AppointmentFormCacheService.getInstance( ).invalidate( nIdForm );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyFormCreation( int nIdForm )
+    {
+        // Nothing to do, the configuration will be loaded at the first display of the form
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyFormRemoval( int nIdForm )
+    {
+        AppointmentFormCacheService.getInstance( ).invalidate( nIdForm );
+        FormEntryCacheService.getInstance( ).invalidate( nIdForm );
+    }
+
+    /**
+     * Invalidate the configurations of the form of a week definition
+     * 
+     * @param nIdWeekDefinition
+     *            the week definition Id
+     */
+    private static void invalidateFormOfWeekDefinition( int nIdWeekDefinition )
+    {
+        WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionLightById( nIdWeekDefinition );
+        if ( weekDefinition != null )
+        {
+            AppointmentFormCacheService.getInstance( ).invalidate( weekDefinition.getIdForm( ) );
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.form;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+/**
+ * Read-through cache of the configuration of the forms, assembled from the form, its display, its localization, its rules, its reservation rule and its
+ * week definition. The cache keys contain a version of the form which is incremented at each modification of the form or of its rules : the entries of the
+ * previous versions can no longer be read and are evicted by the cache, and a configuration loaded before a modification can never be read after it. The
+ * cached configurations are never given to the callers, only copies of them.
+ * 
+ */
+public final class AppointmentFormCacheService extends AbstractCacheableService
+{
+    private static final String SERVICE_NAME = "Appointment Form Configuration Cache Service";
+    private static final String CACHE_KEY_PREFIX = "appointment.formConfiguration.";
+    private static final String CACHE_KEY_SEPARATOR = ".";
+
+    private static AppointmentFormCacheService _singleton = new AppointmentFormCacheService( );
+
+    private final Map<Integer, Long> _mapFormVersion = new ConcurrentHashMap<>( );
+    private final AtomicLong _lastVersion = new AtomicLong( );
+    private final AtomicLong _nbHits = new AtomicLong( );
+    private final AtomicLong _nbMisses = new AtomicLong( );
+    private final AtomicLong _nbEvictions = new AtomicLong( );
+
+    /**
+     * Private constructor
+     */
+    private AppointmentFormCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static AppointmentFormCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Get the configuration of a form, load it from the database if it is not in cache
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param nIdReservationRule
+     *            the reservation rule Id, 0 for the reservation rule closest to the date of the week definition or to the current date
+     * @param nIdWeekDefinition
+     *            the week definition Id, 0 for the week definition closest to the date of the reservation rule or to the current date
+     * @return a copy of the configuration of the form, that the caller can modify
+     */
+    public AppointmentFormDTO getAppointmentForm( int nIdForm, int nIdReservationRule, int nIdWeekDefinition )
+    {
+        // The version is read before the load, so that a configuration loaded
+        // during a modification is put in cache with the previous version
+        String strKey = getCacheKey( nIdForm, nIdReservationRule, nIdWeekDefinition );
+        AppointmentFormDTO appointmentForm = (AppointmentFormDTO) getFromCache( strKey );
+        if ( appointmentForm != null )
+        {
+            _nbHits.incrementAndGet( );
+            return (AppointmentFormDTO) appointmentForm.clone( );
+        }
+        _nbMisses.incrementAndGet( );
+        appointmentForm = FormService.loadAppointmentForm( nIdForm, nIdReservationRule, nIdWeekDefinition );
+        putInCache( strKey, appointmentForm.clone( ) );
+        return appointmentForm;
+    }
+
+    /**
+     * Invalidate the configurations of a form in cache, after a modification of the form or of one of its rules
+     * 
+     * @param nIdForm
+     *            the form Id
+     */
+    public void invalidate( int nIdForm )
+    {
+        _mapFormVersion.put( nIdForm, _lastVersion.incrementAndGet( ) );
+        _nbEvictions.incrementAndGet( );
+    }
+
+    /**
+     * Get the number of configurations read from the cache
+     * 
+     * @return the number of hits
+     */
+    public long getNbHits( )
+    {
+        return _nbHits.get( );
+    }
+
+    /**
+     * Get the number of configurations loaded from the database
+     * 
+     * @return the number of misses
+     */
+    public long getNbMisses( )
+    {
+        return _nbMisses.get( );
+    }
+
+    /**
+     * Get the number of invalidations of the configurations of a form
+     * 
+     * @return the number of evictions
+     */
+    public long getNbEvictions( )
+    {
+        return _nbEvictions.get( );
+    }
+
+    /**
+     * Get the cache key of a configuration of a form. When the reservation rule or the week definition is not given, the one to use depends on the current
+     * date, which is then part of the key
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param nIdReservationRule
+     *            the reservation rule Id
+     * @param nIdWeekDefinition
+     *            the week definition Id
+     * @return the cache key
+     */
+    private String getCacheKey( int nIdForm, int nIdReservationRule, int nIdWeekDefinition )
+    {
+        StringBuilder sbKey = new StringBuilder( CACHE_KEY_PREFIX ).append( nIdForm ).append( CACHE_KEY_SEPARATOR )
+                .append( _mapFormVersion.getOrDefault( nIdForm, 0L ) ).append( CACHE_KEY_SEPARATOR ).append( nIdReservationRule )
+                .append( CACHE_KEY_SEPARATOR ).append( nIdWeekDefinition );
+        if ( nIdReservationRule <= 0 || nIdWeekDefinition <= 0 )
+        {
+            sbKey.append( CACHE_KEY_SEPARATOR ).append( LocalDate.now( ) );
+        }
+        return sbKey.toString( );
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.form;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+
+/**
+ * Node of the compiled entry tree of a form : an entry loaded with its fields, the nodes of its children if it is a group and the nodes of the conditional
+ * questions of each of its fields. A tree is built once and shared between the threads rendering the form, it must not be modified after its build
+ * 
+ */
+public final class EntryNode
+{
+    private final Entry _entry;
+    private final List<EntryNode> _listChildren = new ArrayList<>( );
+    private final Map<Integer, List<EntryNode>> _mapConditionalEntries = new HashMap<>( );
+
+    /**
+     * Constructor
+     * 
+     * @param entry
+     *            the entry, loaded with its fields
+     */
+    public EntryNode( Entry entry )
+    {
+        _entry = entry;
+    }
+
+    /**
+     * Get the entry of the node
+     * 
+     * @return the entry
+     */
+    public Entry getEntry( )
+    {
+        return _entry;
+    }
+
+    /**
+     * Get the nodes of the children of the entry, if it is a group
+     * 
+     * @return the nodes of the children, in the order of the entries
+     */
+    public List<EntryNode> getChildren( )
+    {
+        return _listChildren;
+    }
+
+    /**
+     * Add the node of a child of the entry
+     * 
+     * @param child
+     *            the node of the child
+     */
+    public void addChild( EntryNode child )
+    {
+        _listChildren.add( child );
+    }
+
+    /**
+     * Get the nodes of the conditional questions of a field of the entry
+     * 
+     * @param nIdField
+     *            the field Id
+     * @return the nodes of the conditional questions, an empty list if the field has none
+     */
+    public List<EntryNode> getConditionalEntries( int nIdField )
+    {
+        List<EntryNode> listConditionalEntries = _mapConditionalEntries.get( nIdField );
+        return listConditionalEntries != null ? listConditionalEntries : Collections.emptyList( );
+    }
+
+    /**
+     * Add the node of a conditional question of a field of the entry
+     * 
+     * @param nIdField
+     *            the field Id
+     * @param conditionalEntry
+     *            the node of the conditional question
+     */
+    public void addConditionalEntry( int nIdField, EntryNode conditionalEntry )
+    {
+        _mapConditionalEntries.computeIfAbsent( nIdField, k -> new ArrayList<>( ) ).add( conditionalEntry );
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.form;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.appointment.service.EntryService;
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+/**
+ * Read-through cache of the additional entries of the forms : the compiled entry tree of each form, and the HTML code of the entries rendered without any
+ * response, per locale. As for the configuration of the forms, the cache keys contain a version of the form which is incremented at each modification of
+ * one of its entries or fields. The cached trees are shared between the callers and must not be modified.
+ * 
+ */
+public final class FormEntryCacheService extends AbstractCacheableService
+{
+    private static final String SERVICE_NAME = "Appointment Form Entries Cache Service";
+    private static final String CACHE_KEY_PREFIX = "appointment.formEntries.";
+    private static final String CACHE_KEY_TREE = "tree";
+    private static final String CACHE_KEY_HTML = "html";
+    private static final String CACHE_KEY_SEPARATOR = ".";
+
+    private static FormEntryCacheService _singleton = new FormEntryCacheService( );
+
+    private final Map<Integer, Long> _mapFormVersion = new ConcurrentHashMap<>( );
+    private final AtomicLong _lastVersion = new AtomicLong( );
+    private final AtomicLong _nbHits = new AtomicLong( );
+    private final AtomicLong _nbMisses = new AtomicLong( );
+
+    /**
+     * Private constructor
+     */
+    private FormEntryCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static FormEntryCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Get the compiled tree of the first level entries of a form displayed in front office, load it from the database if it is not in cache
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @return the nodes of the first level entries, that must not be modified
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<EntryNode> getEntryTree( int nIdForm )
+    {
+        // The version is read before the load, so that a tree loaded during a
+        // modification is put in cache with the previous version
+        String strKey = getCacheKey( nIdForm, CACHE_KEY_TREE );
+        List<EntryNode> listEntryNodes = (List<EntryNode>) getFromCache( strKey );
+        if ( listEntryNodes != null )
+        {
+            _nbHits.incrementAndGet( );
+            return listEntryNodes;
+        }
+        _nbMisses.incrementAndGet( );
+        listEntryNodes = Collections.unmodifiableList( EntryService.loadEntryTree( nIdForm ) );
+        putInCache( strKey, listEntryNodes );
+        return listEntryNodes;
+    }
+
+    /**
+     * Get the HTML code of the first level entries of a form rendered without any response, render it if it is not in cache
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param locale
+     *            the locale
+     * @param bDisplayFront
+     *            True to render the entries for the front office, false for the back office
+     * @return the HTML code of the entries
+     */
+    public String getHtmlEntries( int nIdForm, Locale locale, boolean bDisplayFront )
+    {
+        String strKey = getCacheKey( nIdForm, CACHE_KEY_HTML ) + CACHE_KEY_SEPARATOR + bDisplayFront + CACHE_KEY_SEPARATOR + locale;
+        String strHtml = (String) getFromCache( strKey );
+        if ( strHtml != null )
+        {
+            _nbHits.incrementAndGet( );
+            return strHtml;
+        }
+        _nbMisses.incrementAndGet( );
+        strHtml = EntryService.getHtmlEntries( getEntryTree( nIdForm ), locale, bDisplayFront, null );
+        putInCache( strKey, strHtml );
+        return strHtml;
+    }
+
+    /**
+     * Invalidate the entries of a form in cache, after a modification of one of its entries or fields
+     * 
+     * @param nIdForm
+     *            the form Id
+     */
+    public void invalidate( int nIdForm )
+    {
+        _mapFormVersion.put( nIdForm, _lastVersion.incrementAndGet( ) );
+    }
+
+    /**
+     * Invalidate the entries in cache of the form of an entry
+     * 
+     * @param nIdEntry
+     *            the entry Id
+     */
+    public void invalidateFormOfEntry( int nIdEntry )
+    {
+        Entry entry = EntryHome.findByPrimaryKey( nIdEntry );
+        if ( entry != null )
+        {
+            invalidate( entry.getIdResource( ) );
+        }
+    }
+
+    /**
+     * Get the number of entry trees and HTML codes read from the cache
+     * 
+     * @return the number of hits
+     */
+    public long getNbHits( )
+    {
+        return _nbHits.get( );
+    }
+
+    /**
+     * Get the number of entry trees loaded from the database and HTML codes rendered
+     * 
+     * @return the number of misses
+     */
+    public long getNbMisses( )
+    {
+        return _nbMisses.get( );
+    }
+
+    /**
+     * Get the cache key of an element of the entries of a form
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param strElement
+     *            the element, the tree or the HTML code
+     * @return the cache key
+     */
+    private String getCacheKey( int nIdForm, String strElement )
+    {
+        return new StringBuilder( CACHE_KEY_PREFIX ).append( nIdForm ).append( CACHE_KEY_SEPARATOR ).append( _mapFormVersion.getOrDefault( nIdForm, 0L ) )
+                .append( CACHE_KEY_SEPARATOR ).append( strElement ).toString( );
+    }
+}
@@ -39,8 +39,6 @@ import java.util.Locale;
 
 import org.apache.commons.lang.StringUtils;
 
-import fr.paris.lutece.portal.service.spring.SpringContextService;
-
 /**
  * Manager for appointment listeners
  */
@@ -62,9 +60,9 @@ public final class AppointmentListenerManager
      */
     public static void notifyListenersAppointmentRemoval( int nIdAppointment )
     {
-        for ( IAppointmentListener appointmentRemovalListener : SpringContextService.getBeansOfType( IAppointmentListener.class ) )
+        for ( IAppointmentListener appointmentRemovalListener : ListenerEventBus.getListeners( IAppointmentListener.class ) )
         {
-            appointmentRemovalListener.notifyAppointmentRemoval( nIdAppointment );
+            ListenerEventBus.notify( appointmentRemovalListener, listener -> listener.notifyAppointmentRemoval( nIdAppointment ) );
         }
     }
 
@@ -83,9 +81,10 @@ public final class AppointmentListenerManager
     {
         List<String> listMessages = new ArrayList<String>( );
 
-        for ( IAppointmentListener appointmentRemovalListener : SpringContextService.getBeansOfType( IAppointmentListener.class ) )
+        for ( IAppointmentListener appointmentRemovalListener : ListenerEventBus.getListeners( IAppointmentListener.class ) )
         {
-            String strMessage = appointmentRemovalListener.appointmentDateChanged( nIdAppointment, nIdSlot, locale );
+            String strMessage = ListenerEventBus.call( appointmentRemovalListener,
+                    listener -> listener.appointmentDateChanged( nIdAppointment, nIdSlot, locale ) );
 
             if ( StringUtils.isNotEmpty( strMessage ) )
             {
@@ -104,9 +103,9 @@ public final class AppointmentListenerManager
      */
     public static void notifyListenersAppointmentFormRemoval( int nIdAppointmentForm )
     {
-        for ( IAppointmentFormRemovalListener appointmentRemovalListener : SpringContextService.getBeansOfType( IAppointmentFormRemovalListener.class ) )
+        for ( IAppointmentFormRemovalListener appointmentRemovalListener : ListenerEventBus.getListeners( IAppointmentFormRemovalListener.class ) )
         {
-            appointmentRemovalListener.notifyAppointmentFormRemoval( nIdAppointmentForm );
+            ListenerEventBus.notify( appointmentRemovalListener, listener -> listener.notifyAppointmentFormRemoval( nIdAppointmentForm ) );
         }
     }
 
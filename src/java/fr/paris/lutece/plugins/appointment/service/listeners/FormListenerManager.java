@@ -33,10 +33,9 @@
  */
 package fr.paris.lutece.plugins.appointment.service.listeners;
 
-import fr.paris.lutece.portal.service.spring.SpringContextService;
-
 public final class FormListenerManager
 {
+    private static final String RESOURCE_TYPE = "form";
 
     /**
      * Private default constructor
@@ -54,10 +53,7 @@ public final class FormListenerManager
      */
     public static void notifyListenersFormCreation( int nIdForm )
     {
-        for ( IFormListener formListener : SpringContextService.getBeansOfType( IFormListener.class ) )
-        {
-            formListener.notifyFormCreation( nIdForm );
-        }
+        ListenerEventBus.publish( IFormListener.class, RESOURCE_TYPE, nIdForm, "formCreation", listener -> listener.notifyFormCreation( nIdForm ) );
     }
 
     /**
@@ -68,10 +64,7 @@ public final class FormListenerManager
      */
     public static void notifyListenersFormChange( int nIdForm )
     {
-        for ( IFormListener formListener : SpringContextService.getBeansOfType( IFormListener.class ) )
-        {
-            formListener.notifyFormChange( nIdForm );
-        }
+        ListenerEventBus.publish( IFormListener.class, RESOURCE_TYPE, nIdForm, "formChange", listener -> listener.notifyFormChange( nIdForm ) );
     }
 
     /**
@@ -82,9 +75,9 @@ public final class FormListenerManager
      */
     public static void notifyListenersFormRemoval( int nIdForm )
     {
-        for ( IFormListener formListener : SpringContextService.getBeansOfType( IFormListener.class ) )
+        for ( IFormListener formListener : ListenerEventBus.getListeners( IFormListener.class ) )
         {
-            formListener.notifyFormRemoval( nIdForm );
+            ListenerEventBus.notify( formListener, listener -> listener.notifyFormRemoval( nIdForm ) );
         }
     }
 
@@ -31,25 +31,13 @@
  *
  * License 1.0
  */
-package fr.paris.lutece.plugins.appointment.service.lock;
+package fr.paris.lutece.plugins.appointment.service.listeners;
 
-import java.io.Serializable;
-import java.util.Timer;
-
-public final class TimerForLockOnSlot extends Timer implements Serializable
+/**
+ * Marker interface for the listeners that must be notified in the thread that triggers the event, even when the listeners are notified asynchronously. It
+ * is meant for the listeners that keep a cache of the data, so that the cache is up to date once the modification is done
+ * 
+ */
+public interface ISynchronousListener
 {
-
-    /**
-     * UID
-     */
-    private static final long serialVersionUID = -5582069386646092271L;
-
-    /**
-     * Constructor
-     */
-    public TimerForLockOnSlot( )
-    {
-        super( );
-    }
-
 }
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.listeners;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Bus delivering the events of the plugin to the listeners. The listeners of a type are looked up once in the Spring context, and looked up again when a
+ * plugin is installed or uninstalled. An event is delivered at once to the listeners that implement {@link ISynchronousListener}, and to the other listeners
+ * by background threads when the asynchronous mode is enabled. The asynchronous events of a resource are always delivered by the same thread, in the order
+ * they were published, and an event identical to the last pending event of its resource is dropped, so that a burst of modifications of a slot only notifies
+ * the listeners once. The duration of the notifications is measured for each listener
+ * 
+ */
+public final class ListenerEventBus
+{
+
+    private static final String PROPERTY_ASYNCHRONOUS = "appointment.listeners.asynchronous";
+    private static final String PROPERTY_NB_THREADS = "appointment.listeners.nbThreads";
+    private static final boolean DEFAULT_ASYNCHRONOUS = true;
+    private static final int DEFAULT_NB_THREADS = 2;
+    private static final String THREAD_NAME = "appointment-listeners-";
+    private static final String RESOURCE_KEY_SEPARATOR = ":";
+
+    private static final Map<Class<?>, List<?>> _mapListeners = new ConcurrentHashMap<>( );
+    private static final Map<String, ListenerStatistics> _mapStatistics = new ConcurrentHashMap<>( );
+    private static final Map<String, Event<?>> _mapLastEvents = new ConcurrentHashMap<>( );
+    private static final AtomicInteger _nNbPendingEvents = new AtomicInteger( );
+    private static final AtomicLong _nNbEventsCoalesced = new AtomicLong( );
+    private static volatile ExecutorService [ ] _executors;
+
+    static
+    {
+        PluginService.registerPluginEventListener( event -> resetListeners( ) );
+    }
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private ListenerEventBus( )
+    {
+    }
+
+    /**
+     * Start the threads delivering the asynchronous events. Until then, every event is delivered in the thread that publishes it
+     */
+    public static synchronized void start( )
+    {
+        if ( _executors == null && AppPropertiesService.getPropertyBoolean( PROPERTY_ASYNCHRONOUS, DEFAULT_ASYNCHRONOUS ) )
+        {
+            ExecutorService [ ] executors = new ExecutorService [ Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_NB_THREADS, DEFAULT_NB_THREADS ) )];
+            for ( int i = 0; i < executors.length; i++ )
+            {
+                String strThreadName = THREAD_NAME + ( i + 1 );
+                executors [i] = Executors.newSingleThreadExecutor( runnable -> {
+                    Thread thread = new Thread( runnable, strThreadName );
+                    thread.setDaemon( true );
+                    return thread;
+                } );
+            }
+            _executors = executors;
+        }
+    }
+
+    /**
+     * Stop the threads delivering the asynchronous events. The pending events are delivered before the threads stop
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _executors != null )
+        {
+            for ( ExecutorService executor : _executors )
+            {
+                executor.shutdown( );
+            }
+            _executors = null;
+        }
+    }
+
+    /**
+     * Get the listeners of a type
+     * 
+     * @param listenerType
+     *            the type of the listeners
+     * @param <T>
+     *            the type of the listeners
+     * @return the listeners declared as Spring beans
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <T> List<T> getListeners( Class<T> listenerType )
+    {
+        return (List<T>) _mapListeners.computeIfAbsent( listenerType, type -> Collections.unmodifiableList( SpringContextService.getBeansOfType( listenerType ) ) );
+    }
+
+    /**
+     * Forget the listeners looked up, so that they are looked up again in the Spring context
+     */
+    public static void resetListeners( )
+    {
+        _mapListeners.clear( );
+    }
+
+    /**
+     * Publish an event to the listeners of a type
+     * 
+     * @param listenerType
+     *            the type of the listeners to notify
+     * @param strResourceType
+     *            the type of the resource concerned by the event
+     * @param nIdResource
+     *            the id of the resource concerned by the event
+     * @param strEventName
+     *            the name of the event, used to recognize the identical events of a resource
+     * @param notification
+     *            the notification of a listener
+     * @param <T>
+     *            the type of the listeners
+     */
+    public static <T> void publish( Class<T> listenerType, String strResourceType, int nIdResource, String strEventName, Consumer<T> notification )
+    {
+        publish( getListeners( listenerType ), strResourceType, nIdResource, strEventName, notification );
+    }
+
+    /**
+     * Publish an event to a list of listeners
+     * 
+     * @param listListeners
+     *            the listeners to notify
+     * @param strResourceType
+     *            the type of the resource concerned by the event
+     * @param nIdResource
+     *            the id of the resource concerned by the event
+     * @param strEventName
+     *            the name of the event, used to recognize the identical events of a resource
+     * @param notification
+     *            the notification of a listener
+     * @param <T>
+     *            the type of the listeners
+     */
+    static <T> void publish( List<T> listListeners, String strResourceType, int nIdResource, String strEventName, Consumer<T> notification )
+    {
+        ExecutorService [ ] executors = _executors;
+        List<T> listAsynchronousListeners = new ArrayList<>( );
+        for ( T listener : listListeners )
+        {
+            if ( executors == null || listener instanceof ISynchronousListener )
+            {
+                notify( listener, notification );
+            }
+            else
+            {
+                listAsynchronousListeners.add( listener );
+            }
+        }
+        if ( !listAsynchronousListeners.isEmpty( ) )
+        {
+            String strResourceKey = strResourceType + RESOURCE_KEY_SEPARATOR + nIdResource;
+            Event<T> event = new Event<>( strResourceKey, strEventName, listAsynchronousListeners, notification );
+            Event<?> lastEvent = _mapLastEvents.compute( strResourceKey, ( key, last ) -> last != null && last.isCoalescable( strEventName ) ? last : event );
+            if ( lastEvent == event )
+            {
+                _nNbPendingEvents.incrementAndGet( );
+                executors [Math.floorMod( strResourceKey.hashCode( ), executors.length )].execute( event );
+            }
+            else
+            {
+                _nNbEventsCoalesced.incrementAndGet( );
+            }
+        }
+    }
+
+    /**
+     * Notify a listener and measure the duration of the notification
+     * 
+     * @param listener
+     *            the listener
+     * @param notification
+     *            the notification of the listener
+     * @param <T>
+     *            the type of the listener
+     */
+    public static <T> void notify( T listener, Consumer<T> notification )
+    {
+        call( listener, l -> {
+            notification.accept( l );
+            return null;
+        } );
+    }
+
+    /**
+     * Notify a listener that returns a result and measure the duration of the notification
+     * 
+     * @param listener
+     *            the listener
+     * @param notification
+     *            the notification of the listener
+     * @param <T>
+     *            the type of the listener
+     * @param <R>
+     *            the type of the result
+     * @return the result of the notification
+     */
+    public static <T, R> R call( T listener, Function<T, R> notification )
+    {
+        long nStart = System.nanoTime( );
+        boolean bFailed = true;
+        try
+        {
+            R result = notification.apply( listener );
+            bFailed = false;
+            return result;
+        }
+        finally
+        {
+            String strListenerName = listener.getClass( ).getName( );
+            _mapStatistics.computeIfAbsent( strListenerName, ListenerStatistics::new ).record( System.nanoTime( ) - nStart, bFailed );
+        }
+    }
+
+    /**
+     * Get the statistics of the notifications of the listeners
+     * 
+     * @return the statistics, one per listener
+     */
+    public static Collection<ListenerStatistics> getListenerStatistics( )
+    {
+        return Collections.unmodifiableCollection( _mapStatistics.values( ) );
+    }
+
+    /**
+     * Get the number of asynchronous events waiting to be delivered
+     * 
+     * @return the number of pending events
+     */
+    public static int getNbPendingEvents( )
+    {
+        return _nNbPendingEvents.get( );
+    }
+
+    /**
+     * Get the number of events dropped because an identical event of the same resource was pending, since the start of the server
+     * 
+     * @return the number of coalesced events
+     */
+    public static long getNbEventsCoalesced( )
+    {
+        return _nNbEventsCoalesced.get( );
+    }
+
+    /**
+     * Event waiting to be delivered to asynchronous listeners
+     * 
+     * @param <T>
+     *            the type of the listeners
+     */
+    private static final class Event<T> implements Runnable
+    {
+        private final String _strResourceKey;
+        private final String _strEventName;
+        private final List<T> _listListeners;
+        private final Consumer<T> _notification;
+        private final AtomicBoolean _bStarted = new AtomicBoolean( );
+
+        /**
+         * Constructor
+         * 
+         * @param strResourceKey
+         *            the key of the resource concerned by the event
+         * @param strEventName
+         *            the name of the event
+         * @param listListeners
+         *            the listeners to notify
+         * @param notification
+         *            the notification of a listener
+         */
+        Event( String strResourceKey, String strEventName, List<T> listListeners, Consumer<T> notification )
+        {
+            _strResourceKey = strResourceKey;
+            _strEventName = strEventName;
+            _listListeners = listListeners;
+            _notification = notification;
+        }
+
+        /**
+         * Check if an event published after this one can be dropped. It is the case if this event has the same name and its delivery has not started yet : the
+         * listeners will then see the state of the resource after the second event
+         * 
+         * @param strEventName
+         *            the name of the event published
+         * @return true if the event published can be dropped, false otherwise
+         */
+        boolean isCoalescable( String strEventName )
+        {
+            return !_bStarted.get( ) && _strEventName.equals( strEventName );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run( )
+        {
+            _bStarted.set( true );
+            _mapLastEvents.remove( _strResourceKey, this );
+            _nNbPendingEvents.decrementAndGet( );
+            for ( T listener : _listListeners )
+            {
+                try
+                {
+                    ListenerEventBus.notify( listener, _notification );
+                }
+                catch( Exception e )
+                {
+                    AppLogService.error( "Error notifying the listener " + listener.getClass( ).getName( ) + " of the event " + _strEventName + " on "
+                            + _strResourceKey, e );
+                }
+            }
+        }
+    }
+}
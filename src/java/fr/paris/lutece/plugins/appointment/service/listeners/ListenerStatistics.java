@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.listeners;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the notifications of a listener
+ * 
+ */
+public final class ListenerStatistics
+{
+    private final String _strListenerName;
+    private final AtomicLong _nNbCalls = new AtomicLong( );
+    private final AtomicLong _nNbFailures = new AtomicLong( );
+    private final AtomicLong _nTotalDuration = new AtomicLong( );
+    private final AtomicLong _nMaxDuration = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param strListenerName
+     *            the name of the listener
+     */
+    public ListenerStatistics( String strListenerName )
+    {
+        _strListenerName = strListenerName;
+    }
+
+    /**
+     * Record a notification of the listener
+     * 
+     * @param nDuration
+     *            the duration of the notification, in nanoseconds
+     * @param bFailed
+     *            true if the listener threw an exception, false otherwise
+     */
+    public void record( long nDuration, boolean bFailed )
+    {
+        _nNbCalls.incrementAndGet( );
+        _nTotalDuration.addAndGet( nDuration );
+        _nMaxDuration.accumulateAndGet( nDuration, Math::max );
+        if ( bFailed )
+        {
+            _nNbFailures.incrementAndGet( );
+        }
+    }
+
+    /**
+     * Get the name of the listener
+     * 
+     * @return the name of the listener
+     */
+    public String getListenerName( )
+    {
+        return _strListenerName;
+    }
+
+    /**
+     * Get the number of notifications of the listener
+     * 
+     * @return the number of notifications
+     */
+    public long getNbCalls( )
+    {
+        return _nNbCalls.get( );
+    }
+
+    /**
+     * Get the number of notifications in which the listener threw an exception
+     * 
+     * @return the number of failures
+     */
+    public long getNbFailures( )
+    {
+        return _nNbFailures.get( );
+    }
+
+    /**
+     * Get the cumulated duration of the notifications of the listener
+     * 
+     * @return the total duration, in nanoseconds
+     */
+    public long getTotalDuration( )
+    {
+        return _nTotalDuration.get( );
+    }
+
+    /**
+     * Get the duration of the longest notification of the listener
+     * 
+     * @return the maximum duration, in nanoseconds
+     */
+    public long getMaxDuration( )
+    {
+        return _nMaxDuration.get( );
+    }
+}
@@ -33,10 +33,15 @@
  */
 package fr.paris.lutece.plugins.appointment.service.listeners;
 
-import fr.paris.lutece.portal.service.spring.SpringContextService;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
 
 public final class SlotListenerManager
 {
+    private static final String RESOURCE_TYPE = "slot";
 
     /**
      * Private default constructor
@@ -54,10 +59,7 @@ public final class SlotListenerManager
      */
     public static void notifyListenersSlotCreation( int nIdSlot )
     {
-        for ( ISlotListener slotListener : SpringContextService.getBeansOfType( ISlotListener.class ) )
-        {
-            slotListener.notifySlotCreation( nIdSlot );
-        }
+        ListenerEventBus.publish( ISlotListener.class, RESOURCE_TYPE, nIdSlot, "slotCreation", listener -> listener.notifySlotCreation( nIdSlot ) );
     }
 
     /**
@@ -68,9 +70,22 @@ public final class SlotListenerManager
      */
     public static void notifyListenersSlotChange( int nIdSlot )
     {
-        for ( ISlotListener slotListener : SpringContextService.getBeansOfType( ISlotListener.class ) )
+        ListenerEventBus.publish( ISlotListener.class, RESOURCE_TYPE, nIdSlot, "slotChange", listener -> listener.notifySlotChange( nIdSlot ) );
+    }
+
+    /**
+     * Notify listeners that the slots of a day of a form have been changed together. The listeners are notified of the change of each slot of the day
+     * 
+     * @param nIdForm
+     *            The id of the form
+     * @param date
+     *            The day of the slots
+     */
+    public static void notifyListenersSlotsChange( int nIdForm, LocalDate date )
+    {
+        for ( Slot slot : SlotService.findSlotsByIdFormAndDateRange( nIdForm, date.atStartOfDay( ), date.atTime( LocalTime.MAX ) ) )
         {
-            slotListener.notifySlotChange( nIdSlot );
+            notifyListenersSlotChange( slot.getIdSlot( ) );
         }
     }
 
@@ -82,9 +97,9 @@ public final class SlotListenerManager
      */
     public static void notifyListenersSlotRemoval( int nIdSlot )
     {
-        for ( ISlotListener slotListener : SpringContextService.getBeansOfType( ISlotListener.class ) )
+        for ( ISlotListener slotListener : ListenerEventBus.getListeners( ISlotListener.class ) )
         {
-            slotListener.notifySlotRemoval( nIdSlot );
+            ListenerEventBus.notify( slotListener, listener -> listener.notifySlotRemoval( nIdSlot ) );
         }
     }
 
@@ -33,10 +33,10 @@
  */
 package fr.paris.lutece.plugins.appointment.service.listeners;
 
-import fr.paris.lutece.portal.service.spring.SpringContextService;
-
 public final class WeekDefinitionManagerListener
 {
+    private static final String RESOURCE_TYPE = "weekDefinition";
+    private static final String RESOURCE_TYPE_FORM = "weekDefinitionsOfForm";
 
     /**
      * Private default constructor
@@ -54,10 +54,8 @@ public final class WeekDefinitionManagerListener
      */
     public static void notifyListenersWeekDefinitionCreation( int nIdWeekDefinition )
     {
-        for ( IWeekDefinitionListener weekDefinitionListener : SpringContextService.getBeansOfType( IWeekDefinitionListener.class ) )
-        {
-            weekDefinitionListener.notifyWeekDefinitionCreation( nIdWeekDefinition );
-        }
+        ListenerEventBus.publish( IWeekDefinitionListener.class, RESOURCE_TYPE, nIdWeekDefinition, "weekDefinitionCreation",
+                listener -> listener.notifyWeekDefinitionCreation( nIdWeekDefinition ) );
     }
 
     /**
@@ -68,10 +66,8 @@ public final class WeekDefinitionManagerListener
      */
     public static void notifyListenersWeekDefinitionChange( int nIdWeekDefinition )
     {
-        for ( IWeekDefinitionListener weekDefinitionListener : SpringContextService.getBeansOfType( IWeekDefinitionListener.class ) )
-        {
-            weekDefinitionListener.notifyWeekDefinitionChange( nIdWeekDefinition );
-        }
+        ListenerEventBus.publish( IWeekDefinitionListener.class, RESOURCE_TYPE, nIdWeekDefinition, "weekDefinitionChange",
+                listener -> listener.notifyWeekDefinitionChange( nIdWeekDefinition ) );
     }
 
     /**
@@ -82,10 +78,8 @@ public final class WeekDefinitionManagerListener
      */
     public static void notifyListenersWeekDefinitionRemoval( int nIdForm )
     {
-        for ( IWeekDefinitionListener weekDefinitionListener : SpringContextService.getBeansOfType( IWeekDefinitionListener.class ) )
-        {
-            weekDefinitionListener.notifyWeekDefinitionRemoval( nIdForm );
-        }
+        ListenerEventBus.publish( IWeekDefinitionListener.class, RESOURCE_TYPE_FORM, nIdForm, "weekDefinitionRemoval",
+                listener -> listener.notifyWeekDefinitionRemoval( nIdForm ) );
     }
 
 }
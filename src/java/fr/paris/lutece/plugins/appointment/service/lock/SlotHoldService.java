@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.lock;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHold;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHoldHome;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.plugins.appointment.service.listeners.SlotListenerManager;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Service to hold places on a slot while a user is filling the appointment form. The holds are stored in database, so they survive a restart of the
+ * server, and a single scheduled task gives back the places of the expired holds, with one update per slot
+ * 
+ */
+public final class SlotHoldService
+{
+
+    private static final String PROPERTY_PURGE_INTERVAL = "appointment.slotHold.purgeInterval";
+    private static final String PROPERTY_PURGE_BATCH_SIZE = "appointment.slotHold.purgeBatchSize";
+    private static final int DEFAULT_PURGE_INTERVAL = 10;
+    private static final int DEFAULT_PURGE_BATCH_SIZE = 500;
+    private static final String THREAD_NAME = "appointment-slot-hold";
+
+    private static ScheduledExecutorService _scheduler;
+    private static volatile int _nNbHolds;
+    private static final AtomicLong _nNbExpiredHolds = new AtomicLong( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private SlotHoldService( )
+    {
+    }
+
+    /**
+     * Start the scheduled task that gives back the places of the expired holds. The holds that expired while the server was stopped are purged at once
+     */
+    public static synchronized void start( )
+    {
+        if ( _scheduler == null )
+        {
+            _scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            _scheduler.scheduleWithFixedDelay( SlotHoldService::purgeExpiredHolds, 0,
+                    AppPropertiesService.getPropertyInt( PROPERTY_PURGE_INTERVAL, DEFAULT_PURGE_INTERVAL ), TimeUnit.SECONDS );
+        }
+    }
+
+    /**
+     * Stop the scheduled task. The holds stay in database and will be purged on the next start
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _scheduler != null )
+        {
+            _scheduler.shutdownNow( );
+            _scheduler = null;
+        }
+    }
+
+    /**
+     * Hold places on a slot. The potential remaining places of the slot are decreased at once, and given back when the hold expires
+     * 
+     * @param nIdSlot
+     *            the id of the slot
+     * @param nNbPlaces
+     *            the number of places to hold
+     * @param nDelayInMinutes
+     *            the duration of the hold
+     * @return the hold, or null if there was no place to hold
+     */
+    public static SlotHold hold( int nIdSlot, int nNbPlaces, int nDelayInMinutes )
+    {
+        if ( nNbPlaces <= 0 )
+        {
+            return null;
+        }
+        SlotHold slotHold = new SlotHold( );
+        slotHold.setIdSlot( nIdSlot );
+        slotHold.setNbPlaces( nNbPlaces );
+        slotHold.setExpirationDate( LocalDateTime.now( ).plusMinutes( nDelayInMinutes ) );
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            SlotHome.updatePotentialRemainingPlaces( nIdSlot, -nNbPlaces );
+            SlotHoldHome.create( slotHold );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
+        }
+        SlotListenerManager.notifyListenersSlotChange( nIdSlot );
+        return slotHold;
+    }
+
+    /**
+     * Remove a hold without giving back its places, because they are taken by the appointment
+     * 
+     * @param nIdSlotHold
+     *            the id of the hold
+     * @return true if the hold was still active, false if it already expired
+     */
+    public static boolean cancel( int nIdSlotHold )
+    {
+        return SlotHoldHome.delete( nIdSlotHold );
+    }
+
+    /**
+     * Give back the places of the expired holds. The holds are read by batches, and the places of a batch are given back with one update per slot
+     */
+    public static void purgeExpiredHolds( )
+    {
+        try
+        {
+            int nBatchSize = AppPropertiesService.getPropertyInt( PROPERTY_PURGE_BATCH_SIZE, DEFAULT_PURGE_BATCH_SIZE );
+            LocalDateTime now = LocalDateTime.now( );
+            List<SlotHold> listExpiredHolds;
+            do
+            {
+                listExpiredHolds = SlotHoldHome.findExpired( now, nBatchSize );
+                if ( !releaseHolds( listExpiredHolds ) )
+                {
+                    // Some holds have been removed concurrently, the batch
+                    // will be read again on the next run
+                    break;
+                }
+            }
+            while ( listExpiredHolds.size( ) == nBatchSize );
+            _nNbHolds = SlotHoldHome.count( );
+        }
+        catch( Exception e )
+        {
+            // Do not let the exception cancel the next runs
+            AppLogService.error( "Error while purging the expired slot holds", e );
+        }
+    }
+
+    /**
+     * Delete a batch of holds and give back their places to their slots, in a single transaction
+     * 
+     * @param listSlotHold
+     *            the holds
+     * @return false if some holds had already been deleted, in which case nothing is done
+     */
+    private static boolean releaseHolds( List<SlotHold> listSlotHold )
+    {
+        if ( listSlotHold.isEmpty( ) )
+        {
+            return true;
+        }
+        List<Integer> listIdSlotHold = new ArrayList<>( listSlotHold.size( ) );
+        Map<Integer, Integer> mapNbPlacesByIdSlot = new HashMap<>( );
+        for ( SlotHold slotHold : listSlotHold )
+        {
+            listIdSlotHold.add( slotHold.getIdSlotHold( ) );
+            mapNbPlacesByIdSlot.merge( slotHold.getIdSlot( ), slotHold.getNbPlaces( ), Integer::sum );
+        }
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            // The delete locks the holds, so that an other server purging
+            // the same holds waits and then deletes nothing
+            if ( SlotHoldHome.deleteList( listIdSlotHold ) != listIdSlotHold.size( ) )
+            {
+                TransactionManager.rollBack( plugin );
+                return false;
+            }
+            for ( Map.Entry<Integer, Integer> entry : mapNbPlacesByIdSlot.entrySet( ) )
+            {
+                SlotHome.updatePotentialRemainingPlaces( entry.getKey( ), entry.getValue( ) );
+            }
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
+        }
+        _nNbExpiredHolds.addAndGet( listSlotHold.size( ) );
+        for ( Integer nIdSlot : mapNbPlacesByIdSlot.keySet( ) )
+        {
+            SlotListenerManager.notifyListenersSlotChange( nIdSlot );
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of active holds, as counted by the last purge
+     * 
+     * @return the number of holds
+     */
+    public static int getNbHolds( )
+    {
+        return _nNbHolds;
+    }
+
+    /**
+     * Get the number of holds that expired and whose places were given back since the start of the server
+     * 
+     * @return the number of expired holds
+     */
+    public static long getNbExpiredHolds( )
+    {
+        return _nNbExpiredHolds.get( );
+    }
+}
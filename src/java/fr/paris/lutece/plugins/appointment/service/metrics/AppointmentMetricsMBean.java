@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * MBean publishing the metrics of the plugin : each metric is a read-only attribute
+ * 
+ */
+public class AppointmentMetricsMBean implements DynamicMBean
+{
+    private static final String DESCRIPTION = "Performance metrics of the appointment plugin";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getAttribute( String strAttribute ) throws AttributeNotFoundException
+    {
+        Double value = AppointmentMetricsService.getValues( ).get( strAttribute );
+        if ( value == null )
+        {
+            throw new AttributeNotFoundException( strAttribute );
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAttribute( Attribute attribute ) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException( "The metrics are read-only" );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AttributeList getAttributes( String [ ] attributes )
+    {
+        Map<String, Double> mapValues = AppointmentMetricsService.getValues( );
+        AttributeList listAttributes = new AttributeList( );
+        for ( String strAttribute : attributes )
+        {
+            Double value = mapValues.get( strAttribute );
+            if ( value != null )
+            {
+                listAttributes.add( new Attribute( strAttribute, value ) );
+            }
+        }
+        return listAttributes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AttributeList setAttributes( AttributeList attributes )
+    {
+        return new AttributeList( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke( String strActionName, Object [ ] params, String [ ] signature ) throws ReflectionException
+    {
+        throw new ReflectionException( new NoSuchMethodException( strActionName ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MBeanInfo getMBeanInfo( )
+    {
+        Map<String, Double> mapValues = AppointmentMetricsService.getValues( );
+        MBeanAttributeInfo [ ] attributesInfo = new MBeanAttributeInfo [ mapValues.size( )];
+        int nIndex = 0;
+        for ( Entry<String, Double> entry : mapValues.entrySet( ) )
+        {
+            attributesInfo [nIndex++] = new MBeanAttributeInfo( entry.getKey( ), Double.class.getName( ), entry.getKey( ), true, false, false );
+        }
+        return new MBeanInfo( getClass( ).getName( ), DESCRIPTION, attributesInfo, null, new MBeanOperationInfo [ 0 ], null );
+    }
+}
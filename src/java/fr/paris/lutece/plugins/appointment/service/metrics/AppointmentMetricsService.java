@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.paris.lutece.plugins.appointment.service.availability.FormAvailabilityService;
+import fr.paris.lutece.plugins.appointment.service.form.AppointmentFormCacheService;
+import fr.paris.lutece.plugins.appointment.service.form.FormEntryCacheService;
+import fr.paris.lutece.plugins.appointment.service.listeners.ListenerEventBus;
+import fr.paris.lutece.plugins.appointment.service.lock.SlotHoldService;
+import fr.paris.lutece.plugins.appointment.service.planning.SlotMaterializationService;
+import fr.paris.lutece.plugins.appointment.service.search.UserSearchService;
+import fr.paris.lutece.plugins.appointment.service.workflow.WorkflowQueueService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Registry of the performance metrics of the plugin : timers (histograms of durations), counters and gauges. The totals which only ever go up are
+ * counters, the gauges are the values which can go down. A metric is identified by its name and its
+ * labels (for example the id of the form), so that the load of each form can be followed. The metrics are published as attributes of an MBean and in the
+ * text format of Prometheus
+ * 
+ */
+public final class AppointmentMetricsService
+{
+    public static final String METRIC_BUILD_LIST_SLOT = "appointment_build_list_slot_seconds";
+    public static final String METRIC_SAVE_APPOINTMENT = "appointment_save_appointment_seconds";
+    public static final String METRIC_BUILD_APPOINTMENT_FORM = "appointment_build_appointment_form_seconds";
+    public static final String METRIC_EXPORT = "appointment_export_seconds";
+    public static final String METRIC_DAO_QUERY = "appointment_dao_query_seconds";
+    public static final String METRIC_BOOKING_REJECTED = "appointment_booking_rejected_total";
+    public static final String METRIC_ADMISSION_ADMITTED = "appointment_admission_admitted_total";
+    public static final String METRIC_ADMISSION_QUEUE_LENGTH = "appointment_admission_queue_length";
+
+    private static final String LABEL_FORM = "form";
+    private static final String LABEL_DAO = "dao";
+    private static final String LABEL_METHOD = "method";
+    private static final String LABEL_BUCKET = "le";
+    private static final String BUCKET_INFINITY = "+Inf";
+    private static final String SUFFIX_BUCKET = "_bucket";
+    private static final String SUFFIX_COUNT = "_count";
+    private static final String SUFFIX_SUM = "_sum";
+    private static final String SUFFIX_MAX = "_max";
+    private static final String TYPE_HISTOGRAM = "histogram";
+    private static final String TYPE_COUNTER = "counter";
+    private static final String TYPE_GAUGE = "gauge";
+    private static final String MBEAN_NAME = "fr.paris.lutece.plugins.appointment:type=Metrics";
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private static final Map<String, Timer> _mapTimers = new ConcurrentHashMap<>( );
+    private static final Map<String, LongAdder> _mapCounters = new ConcurrentHashMap<>( );
+    private static final Map<String, LongSupplier> _mapRegisteredCounters = new ConcurrentHashMap<>( );
+    private static final Map<String, LongSupplier> _mapGauges = new ConcurrentHashMap<>( );
+    private static ObjectName _mbeanName;
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private AppointmentMetricsService( )
+    {
+    }
+
+    /**
+     * Register the gauges of the services of the plugin and publish the metrics in the MBean server of the JVM
+     */
+    public static synchronized void start( )
+    {
+        registerGauge( "appointment_slot_holds", SlotHoldService::getNbHolds );
+        registerCounter( "appointment_slot_holds_expired_total", SlotHoldService::getNbExpiredHolds );
+        registerGauge( "appointment_workflow_queue_items", WorkflowQueueService::getNbItems );
+        registerGauge( "appointment_workflow_queue_items_in_progress", WorkflowQueueService::getNbItemsInProgress );
+        registerCounter( "appointment_workflow_queue_items_processed_total", WorkflowQueueService::getNbItemsProcessed );
+        registerCounter( "appointment_workflow_queue_items_retried_total", WorkflowQueueService::getNbItemsRetried );
+        registerCounter( "appointment_workflow_queue_items_abandoned_total", WorkflowQueueService::getNbItemsAbandoned );
+        registerCounter( "appointment_form_cache_hits_total", ( ) -> AppointmentFormCacheService.getInstance( ).getNbHits( ) );
+        registerCounter( "appointment_form_cache_misses_total", ( ) -> AppointmentFormCacheService.getInstance( ).getNbMisses( ) );
+        registerCounter( "appointment_form_entries_cache_hits_total", ( ) -> FormEntryCacheService.getInstance( ).getNbHits( ) );
+        registerCounter( "appointment_form_entries_cache_misses_total", ( ) -> FormEntryCacheService.getInstance( ).getNbMisses( ) );
+        registerCounter( "appointment_availability_cache_hits_total", ( ) -> FormAvailabilityService.getInstance( ).getNbHits( ) );
+        registerCounter( "appointment_availability_cache_misses_total", ( ) -> FormAvailabilityService.getInstance( ).getNbMisses( ) );
+        registerGauge( "appointment_listener_events_pending", ListenerEventBus::getNbPendingEvents );
+        registerCounter( "appointment_listener_events_coalesced_total", ListenerEventBus::getNbEventsCoalesced );
+        registerGauge( "appointment_search_users_indexed", UserSearchService::getNbUsersIndexed );
+        registerGauge( "appointment_search_index_ready", ( ) -> UserSearchService.isIndexReady( ) ? 1 : 0 );
+        registerGauge( "appointment_slot_materialization_forms_pending", SlotMaterializationService::getNbFormsPending );
+        registerCounter( "appointment_slot_materialization_slots_created_total", SlotMaterializationService::getNbSlotsCreated );
+        registerCounter( "appointment_slot_materialization_slots_removed_total", SlotMaterializationService::getNbSlotsRemoved );
+        if ( _mbeanName == null )
+        {
+            try
+            {
+                MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer( );
+                ObjectName mbeanName = new ObjectName( MBEAN_NAME );
+                if ( !mbeanServer.isRegistered( mbeanName ) )
+                {
+                    mbeanServer.registerMBean( new AppointmentMetricsMBean( ), mbeanName );
+                }
+                _mbeanName = mbeanName;
+            }
+            catch( JMException e )
+            {
+                AppLogService.error( "Unable to register the MBean of the appointment metrics", e );
+            }
+        }
+    }
+
+    /**
+     * Remove the MBean of the metrics from the MBean server of the JVM
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _mbeanName != null )
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer( ).unregisterMBean( _mbeanName );
+            }
+            catch( JMException e )
+            {
+                AppLogService.error( "Unable to unregister the MBean of the appointment metrics", e );
+            }
+            _mbeanName = null;
+        }
+    }
+
+    /**
+     * Record the duration of an operation on a form
+     * 
+     * @param strName
+     *            the name of the timer
+     * @param nIdForm
+     *            the id of the form
+     * @param lStartTime
+     *            the start time of the operation, as given by {@link System#nanoTime()}
+     */
+    public static void recordTime( String strName, int nIdForm, long lStartTime )
+    {
+        getTimer( strName, label( LABEL_FORM, Integer.toString( nIdForm ) ) ).record( System.nanoTime( ) - lStartTime );
+    }
+
+    /**
+     * Increment a counter of a form
+     * 
+     * @param strName
+     *            the name of the counter
+     * @param nIdForm
+     *            the id of the form
+     */
+    public static void incrementCounter( String strName, int nIdForm )
+    {
+        _mapCounters.computeIfAbsent( seriesKey( strName, label( LABEL_FORM, Integer.toString( nIdForm ) ) ), key -> new LongAdder( ) ).increment( );
+    }
+
+    /**
+     * Register a counter kept by a service, whose value is read when the metrics are published. The value must only ever go up
+     * 
+     * @param strName
+     *            the name of the counter
+     * @param value
+     *            the function giving the value of the counter
+     */
+    public static void registerCounter( String strName, LongSupplier value )
+    {
+        _mapRegisteredCounters.put( strName, value );
+    }
+
+    /**
+     * Register a gauge, whose value is read when the metrics are published
+     * 
+     * @param strName
+     *            the name of the gauge
+     * @param value
+     *            the function giving the value of the gauge
+     */
+    public static void registerGauge( String strName, LongSupplier value )
+    {
+        _mapGauges.put( strName, value );
+    }
+
+    /**
+     * Register a gauge of a form, whose value is read when the metrics are published
+     * 
+     * @param strName
+     *            the name of the gauge
+     * @param nIdForm
+     *            the id of the form
+     * @param value
+     *            the function giving the value of the gauge
+     */
+    public static void registerGauge( String strName, int nIdForm, LongSupplier value )
+    {
+        _mapGauges.put( seriesKey( strName, label( LABEL_FORM, Integer.toString( nIdForm ) ) ), value );
+    }
+
+    /**
+     * Unregister a gauge of a form, when the form or the object measured is removed
+     * 
+     * @param strName
+     *            the name of the gauge
+     * @param nIdForm
+     *            the id of the form
+     */
+    public static void unregisterGauge( String strName, int nIdForm )
+    {
+        _mapGauges.remove( seriesKey( strName, label( LABEL_FORM, Integer.toString( nIdForm ) ) ) );
+    }
+
+    /**
+     * Wrap a DAO so that the duration of each of its methods is recorded
+     * 
+     * @param dao
+     *            the DAO
+     * @param daoInterface
+     *            the interface of the DAO
+     * @param strDaoName
+     *            the name of the DAO in the metrics
+     * @param <T>
+     *            the type of the DAO
+     * @return the DAO recording the durations
+     */
+    public static <T> T instrument( T dao, Class<T> daoInterface, String strDaoName )
+    {
+        Map<Method, Timer> mapTimers = new ConcurrentHashMap<>( );
+        Object proxy = Proxy.newProxyInstance( daoInterface.getClassLoader( ), new Class<?> [ ] {
+            daoInterface
+        }, ( Object instance, Method method, Object [ ] args ) -> {
+            long lStartTime = System.nanoTime( );
+            try
+            {
+                return method.invoke( dao, args );
+            }
+            catch( InvocationTargetException e )
+            {
+                throw e.getCause( );
+            }
+            finally
+            {
+                mapTimers.computeIfAbsent( method,
+                        m -> getTimer( METRIC_DAO_QUERY, label( LABEL_DAO, strDaoName ) + ',' + label( LABEL_METHOD, m.getName( ) ) ) ).record(
+                        System.nanoTime( ) - lStartTime );
+            }
+        } );
+        return daoInterface.cast( proxy );
+    }
+
+    /**
+     * Get the current values of the metrics, by name. A timer gives its count, the sum and the maximum of its durations, in seconds
+     * 
+     * @return the values of the metrics, sorted by name
+     */
+    public static Map<String, Double> getValues( )
+    {
+        Map<String, Double> mapValues = new TreeMap<>( );
+        for ( Entry<String, Timer> entry : _mapTimers.entrySet( ) )
+        {
+            Timer timer = entry.getValue( );
+            mapValues.put( entry.getKey( ) + SUFFIX_COUNT, (double) timer.getCount( ) );
+            mapValues.put( entry.getKey( ) + SUFFIX_SUM, timer.getTotalDuration( ) / NANOS_PER_SECOND );
+            mapValues.put( entry.getKey( ) + SUFFIX_MAX, timer.getMaxDuration( ) / NANOS_PER_SECOND );
+        }
+        for ( Entry<String, LongAdder> entry : _mapCounters.entrySet( ) )
+        {
+            mapValues.put( entry.getKey( ), entry.getValue( ).doubleValue( ) );
+        }
+        for ( Entry<String, LongSupplier> entry : _mapRegisteredCounters.entrySet( ) )
+        {
+            mapValues.put( entry.getKey( ), (double) entry.getValue( ).getAsLong( ) );
+        }
+        for ( Entry<String, LongSupplier> entry : _mapGauges.entrySet( ) )
+        {
+            mapValues.put( entry.getKey( ), (double) entry.getValue( ).getAsLong( ) );
+        }
+        return mapValues;
+    }
+
+    /**
+     * Write the metrics in the text format of Prometheus
+     * 
+     * @param writer
+     *            the writer
+     * @throws IOException
+     *             if the metrics can't be written
+     */
+    public static void writeMetrics( Writer writer ) throws IOException
+    {
+        String strLastName = null;
+        for ( Entry<String, Timer> entry : new TreeMap<>( _mapTimers ).entrySet( ) )
+        {
+            String strName = getName( entry.getKey( ) );
+            String strLabels = getLabels( entry.getKey( ) );
+            if ( !strName.equals( strLastName ) )
+            {
+                writeType( writer, strName, TYPE_HISTOGRAM );
+                strLastName = strName;
+            }
+            Timer timer = entry.getValue( );
+            long [ ] bucketCounts = timer.getBucketCounts( );
+            long lCumulatedCount = 0;
+            for ( int i = 0; i < bucketCounts.length; i++ )
+            {
+                lCumulatedCount += bucketCounts [i];
+                String strBound = i < Timer.BUCKET_BOUNDS.length ? Double.toString( Timer.BUCKET_BOUNDS [i] ) : BUCKET_INFINITY;
+                String strBucketLabels = ( strLabels.isEmpty( ) ? strLabels : strLabels + ',' ) + label( LABEL_BUCKET, strBound );
+                writeValue( writer, seriesKey( strName + SUFFIX_BUCKET, strBucketLabels ), Long.toString( lCumulatedCount ) );
+            }
+            writeValue( writer, seriesKey( strName + SUFFIX_SUM, strLabels ), Double.toString( timer.getTotalDuration( ) / NANOS_PER_SECOND ) );
+            writeValue( writer, seriesKey( strName + SUFFIX_COUNT, strLabels ), Long.toString( timer.getCount( ) ) );
+        }
+        for ( Entry<String, LongAdder> entry : new TreeMap<>( _mapCounters ).entrySet( ) )
+        {
+            String strName = getName( entry.getKey( ) );
+            if ( !strName.equals( strLastName ) )
+            {
+                writeType( writer, strName, TYPE_COUNTER );
+                strLastName = strName;
+            }
+            writeValue( writer, entry.getKey( ), Long.toString( entry.getValue( ).sum( ) ) );
+        }
+        strLastName = writeSuppliedMetrics( writer, _mapRegisteredCounters, TYPE_COUNTER, strLastName );
+        writeSuppliedMetrics( writer, _mapGauges, TYPE_GAUGE, strLastName );
+        writer.flush( );
+    }
+
+    /**
+     * Write the metrics whose values are read from functions
+     * 
+     * @param writer
+     *            the writer
+     * @param mapMetrics
+     *            the functions giving the values of the metrics, by key
+     * @param strType
+     *            the type of the metrics
+     * @param strLastName
+     *            the name of the last metric written
+     * @return the name of the last metric written
+     * @throws IOException
+     *             if the metrics can't be written
+     */
+    private static String writeSuppliedMetrics( Writer writer, Map<String, LongSupplier> mapMetrics, String strType, String strLastName ) throws IOException
+    {
+        String strLastNameWritten = strLastName;
+        for ( Entry<String, LongSupplier> entry : new TreeMap<>( mapMetrics ).entrySet( ) )
+        {
+            String strName = getName( entry.getKey( ) );
+            if ( !strName.equals( strLastNameWritten ) )
+            {
+                writeType( writer, strName, strType );
+                strLastNameWritten = strName;
+            }
+            writeValue( writer, entry.getKey( ), Long.toString( entry.getValue( ).getAsLong( ) ) );
+        }
+        return strLastNameWritten;
+    }
+
+    /**
+     * Get a timer, created if needed
+     * 
+     * @param strName
+     *            the name of the timer
+     * @param strLabels
+     *            the labels of the timer
+     * @return the timer
+     */
+    private static Timer getTimer( String strName, String strLabels )
+    {
+        return _mapTimers.computeIfAbsent( seriesKey( strName, strLabels ), key -> new Timer( ) );
+    }
+
+    /**
+     * Build a label of a metric
+     * 
+     * @param strLabel
+     *            the name of the label
+     * @param strValue
+     *            the value of the label
+     * @return the label
+     */
+    private static String label( String strLabel, String strValue )
+    {
+        return strLabel + "=\"" + strValue + '"';
+    }
+
+    /**
+     * Build the key of a metric from its name and its labels
+     * 
+     * @param strName
+     *            the name of the metric
+     * @param strLabels
+     *            the labels of the metric, separated by commas
+     * @return the key of the metric
+     */
+    private static String seriesKey( String strName, String strLabels )
+    {
+        return strLabels.isEmpty( ) ? strName : strName + '{' + strLabels + '}';
+    }
+
+    /**
+     * Get the name of a metric from its key
+     * 
+     * @param strSeriesKey
+     *            the key of the metric
+     * @return the name of the metric
+     */
+    private static String getName( String strSeriesKey )
+    {
+        int nIndex = strSeriesKey.indexOf( '{' );
+        return nIndex < 0 ? strSeriesKey : strSeriesKey.substring( 0, nIndex );
+    }
+
+    /**
+     * Get the labels of a metric from its key
+     * 
+     * @param strSeriesKey
+     *            the key of the metric
+     * @return the labels of the metric, separated by commas
+     */
+    private static String getLabels( String strSeriesKey )
+    {
+        int nIndex = strSeriesKey.indexOf( '{' );
+        return nIndex < 0 ? "" : strSeriesKey.substring( nIndex + 1, strSeriesKey.length( ) - 1 );
+    }
+
+    /**
+     * Write the type of a metric
+     * 
+     * @param writer
+     *            the writer
+     * @param strName
+     *            the name of the metric
+     * @param strType
+     *            the type of the metric
+     * @throws IOException
+     *             if the type can't be written
+     */
+    private static void writeType( Writer writer, String strName, String strType ) throws IOException
+    {
+        writer.write( "# TYPE " + strName + ' ' + strType + '\n' );
+    }
+
+    /**
+     * Write the value of a metric
+     * 
+     * @param writer
+     *            the writer
+     * @param strSeriesKey
+     *            the key of the metric
+     * @param strValue
+     *            the value
+     * @throws IOException
+     *             if the value can't be written
+     */
+    private static void writeValue( Writer writer, String strSeriesKey, String strValue ) throws IOException
+    {
+        writer.write( strSeriesKey + ' ' + strValue + '\n' );
+    }
+}
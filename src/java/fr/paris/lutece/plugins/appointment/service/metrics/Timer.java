@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of the durations of an operation. The durations are counted in fixed buckets, from 1 millisecond to 10 seconds
+ * 
+ */
+public final class Timer
+{
+    /**
+     * Upper bounds of the buckets, in seconds. The last bucket counts the durations above the last bound
+     */
+    static final double [ ] BUCKET_BOUNDS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long [ ] BUCKET_BOUNDS_NANOS = new long [ BUCKET_BOUNDS.length];
+
+    static
+    {
+        for ( int i = 0; i < BUCKET_BOUNDS.length; i++ )
+        {
+            BUCKET_BOUNDS_NANOS [i] = (long) ( BUCKET_BOUNDS [i] * TimeUnit.SECONDS.toNanos( 1 ) );
+        }
+    }
+
+    private final AtomicLongArray _bucketCounts = new AtomicLongArray( BUCKET_BOUNDS.length + 1 );
+    private final LongAdder _nCount = new LongAdder( );
+    private final LongAdder _nTotalDuration = new LongAdder( );
+    private final AtomicLong _nMaxDuration = new AtomicLong( );
+
+    /**
+     * Record a duration
+     * 
+     * @param nDuration
+     *            the duration, in nanoseconds
+     */
+    public void record( long nDuration )
+    {
+        int nBucket = 0;
+        while ( nBucket < BUCKET_BOUNDS_NANOS.length && nDuration > BUCKET_BOUNDS_NANOS [nBucket] )
+        {
+            nBucket++;
+        }
+        _bucketCounts.incrementAndGet( nBucket );
+        _nCount.increment( );
+        _nTotalDuration.add( nDuration );
+        _nMaxDuration.accumulateAndGet( nDuration, Math::max );
+    }
+
+    /**
+     * Get the number of durations recorded
+     * 
+     * @return the number of durations
+     */
+    public long getCount( )
+    {
+        return _nCount.sum( );
+    }
+
+    /**
+     * Get the sum of the durations recorded
+     * 
+     * @return the total duration, in nanoseconds
+     */
+    public long getTotalDuration( )
+    {
+        return _nTotalDuration.sum( );
+    }
+
+    /**
+     * Get the longest duration recorded
+     * 
+     * @return the maximum duration, in nanoseconds
+     */
+    public long getMaxDuration( )
+    {
+        return _nMaxDuration.get( );
+    }
+
+    /**
+     * Get the number of durations recorded in each bucket
+     * 
+     * @return the counts of the buckets, the last one being the count of the durations above the last bound
+     */
+    public long [ ] getBucketCounts( )
+    {
+        long [ ] bucketCounts = new long [ _bucketCounts.length( )];
+        for ( int i = 0; i < bucketCounts.length; i++ )
+        {
+            bucketCounts [i] = _bucketCounts.get( i );
+        }
+        return bucketCounts;
+    }
+}
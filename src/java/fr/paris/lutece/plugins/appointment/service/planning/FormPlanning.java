@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
+
+/**
+ * Precompiled planning of a form : all the week definitions (with their working days and time slots), the reservation rules and the closing days, with
+ * their index. <b>The objects of a planning are shared between threads and must not be modified.</b>
+ */
+public final class FormPlanning implements Serializable
+{
+
+    /**
+     * Serial version UID
+     */
+    private static final long serialVersionUID = -1840387526423185963L;
+
+    /**
+     * The form Id
+     */
+    private final int _nIdForm;
+
+    /**
+     * The week definitions, by date of apply
+     */
+    private final Map<LocalDate, WeekDefinition> _mapWeekDefinition;
+
+    /**
+     * The reservation rules, by date of apply
+     */
+    private final Map<LocalDate, ReservationRule> _mapReservationRule;
+
+    /**
+     * The closing days
+     */
+    private final Set<LocalDate> _setClosingDay;
+
+    /**
+     * The index of the rules of the form
+     */
+    private final PlanningIndex _index;
+
+    /**
+     * Constructor
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param mapWeekDefinition
+     *            the week definitions (with their working days and time slots) by date of apply
+     * @param mapReservationRule
+     *            the reservation rules by date of apply
+     * @param collectionClosingDay
+     *            the closing days
+     */
+    public FormPlanning( int nIdForm, Map<LocalDate, WeekDefinition> mapWeekDefinition, Map<LocalDate, ReservationRule> mapReservationRule,
+            Collection<LocalDate> collectionClosingDay )
+    {
+        _nIdForm = nIdForm;
+        _mapWeekDefinition = Collections.unmodifiableMap( new HashMap<>( mapWeekDefinition ) );
+        _mapReservationRule = Collections.unmodifiableMap( new HashMap<>( mapReservationRule ) );
+        _setClosingDay = Collections.unmodifiableSet( new HashSet<>( collectionClosingDay ) );
+        _index = new PlanningIndex( _mapWeekDefinition.values( ), _mapReservationRule.values( ), _setClosingDay );
+    }
+
+    /**
+     * Get the form Id
+     * 
+     * @return the form Id
+     */
+    public int getIdForm( )
+    {
+        return _nIdForm;
+    }
+
+    /**
+     * Get the week definitions of the form
+     * 
+     * @return the week definitions by date of apply
+     */
+    public Map<LocalDate, WeekDefinition> getMapWeekDefinition( )
+    {
+        return _mapWeekDefinition;
+    }
+
+    /**
+     * Get the index of the rules of the form
+     * 
+     * @return the index
+     */
+    public PlanningIndex getIndex( )
+    {
+        return _index;
+    }
+
+    /**
+     * Build a copy of this planning with a week definition added or replaced
+     * 
+     * @param weekDefinition
+     *            the week definition (with its working days and time slots)
+     * @return the new planning
+     */
+    public FormPlanning withWeekDefinition( WeekDefinition weekDefinition )
+    {
+        Map<LocalDate, WeekDefinition> mapWeekDefinition = new HashMap<>( _mapWeekDefinition );
+        mapWeekDefinition.values( ).removeIf( w -> w.getIdWeekDefinition( ) == weekDefinition.getIdWeekDefinition( ) );
+        mapWeekDefinition.put( weekDefinition.getDateOfApply( ), weekDefinition );
+        return new FormPlanning( _nIdForm, mapWeekDefinition, _mapReservationRule, _setClosingDay );
+    }
+}
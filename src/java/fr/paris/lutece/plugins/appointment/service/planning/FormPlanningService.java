@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.service.ClosingDayService;
+import fr.paris.lutece.plugins.appointment.service.ReservationRuleService;
+import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+/**
+ * Cache of the precompiled planning of the forms. The planning of a form is built once from the database, and then patched or invalidated when the week
+ * definitions, the reservation rules or the closing days of the form change. The slots are never cached : they are read from the database at each display
+ * of the calendar.
+ * 
+ */
+public final class FormPlanningService extends AbstractCacheableService
+{
+    private static final String SERVICE_NAME = "Appointment Form Planning Cache Service";
+    private static final String CACHE_KEY_PREFIX = "appointment.formPlanning.";
+
+    private static FormPlanningService _singleton = new FormPlanningService( );
+
+    /**
+     * Private constructor
+     */
+    private FormPlanningService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return the instance of the service
+     */
+    public static FormPlanningService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Get the planning of a form, build it if it is not in cache
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @return the planning of the form
+     */
+    public FormPlanning getFormPlanning( int nIdForm )
+    {
+        FormPlanning formPlanning = (FormPlanning) getFromCache( getCacheKey( nIdForm ) );
+        if ( formPlanning == null )
+        {
+            formPlanning = loadFormPlanning( nIdForm );
+        }
+        return formPlanning;
+    }
+
+    /**
+     * Patch the planning of a form after the creation or the modification of one of its week definitions
+     * 
+     * @param nIdWeekDefinition
+     *            the week definition Id
+     */
+    public synchronized void patchWeekDefinition( int nIdWeekDefinition )
+    {
+        WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionLightById( nIdWeekDefinition );
+        if ( weekDefinition == null )
+        {
+            return;
+        }
+        String strKey = getCacheKey( weekDefinition.getIdForm( ) );
+        FormPlanning formPlanning = (FormPlanning) getFromCache( strKey );
+        if ( formPlanning != null )
+        {
+            putInCache( strKey, formPlanning.withWeekDefinition( WeekDefinitionService.findWeekDefinitionById( nIdWeekDefinition ) ) );
+        }
+    }
+
+    /**
+     * Remove the planning of a form from the cache. It will be built again at the next display of the calendar
+     * 
+     * @param nIdForm
+     *            the form Id
+     */
+    public synchronized void invalidate( int nIdForm )
+    {
+        removeKey( getCacheKey( nIdForm ) );
+    }
+
+    /**
+     * Load the planning of a form from the database and put it in cache. Synchronized with the invalidation so that a planning loaded before a modification
+     * can not be put in cache after the invalidation
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @return the planning of the form
+     */
+    private synchronized FormPlanning loadFormPlanning( int nIdForm )
+    {
+        String strKey = getCacheKey( nIdForm );
+        FormPlanning formPlanning = (FormPlanning) getFromCache( strKey );
+        if ( formPlanning == null )
+        {
+            formPlanning = new FormPlanning( nIdForm, WeekDefinitionService.findAllWeekDefinition( nIdForm ),
+                    ReservationRuleService.findAllReservationRule( nIdForm ), ClosingDayService.findListDateOfClosingDayByIdForm( nIdForm ) );
+            putInCache( strKey, formPlanning );
+        }
+        return formPlanning;
+    }
+
+    /**
+     * Get the cache key of the planning of a form
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @return the cache key
+     */
+    private static String getCacheKey( int nIdForm )
+    {
+        return CACHE_KEY_PREFIX + nIdForm;
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import fr.paris.lutece.plugins.appointment.business.planning.TimeSlot;
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
+import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
+
+/**
+ * Effective-dated index of the rules of a form, to find the rules to apply on a day without scanning all the rules :
+ * <ul>
+ * <li>the week definitions and the reservation rules are sorted by date of apply (floor lookup)</li>
+ * <li>the working days of a week definition are indexed by day of week</li>
+ * <li>the time slots of a working day are indexed by starting time</li>
+ * <li>the closing days are stored in a bitset per year</li>
+ * </ul>
+ * <b>The indexed objects must not be modified.</b>
+ */
+public final class PlanningIndex implements Serializable
+{
+
+    /**
+     * Serial version UID
+     */
+    private static final long serialVersionUID = 3329467128458736125L;
+
+    /**
+     * The week definitions, by date of apply
+     */
+    private final NavigableMap<LocalDate, IndexedWeekDefinition> _mapWeekDefinition = new TreeMap<>( );
+
+    /**
+     * The reservation rules, by date of apply
+     */
+    private final NavigableMap<LocalDate, ReservationRule> _mapReservationRule = new TreeMap<>( );
+
+    /**
+     * The closing days : one bitset per year, the bit of index the day of year is set if the day is closed
+     */
+    private final Map<Integer, BitSet> _mapClosingDayByYear = new HashMap<>( );
+
+    /**
+     * Constructor
+     * 
+     * @param collectionWeekDefinition
+     *            the week definitions (with their working days and time slots)
+     * @param collectionReservationRule
+     *            the reservation rules
+     * @param collectionClosingDay
+     *            the closing days
+     */
+    public PlanningIndex( Collection<WeekDefinition> collectionWeekDefinition, Collection<ReservationRule> collectionReservationRule,
+            Collection<LocalDate> collectionClosingDay )
+    {
+        for ( WeekDefinition weekDefinition : collectionWeekDefinition )
+        {
+            _mapWeekDefinition.put( weekDefinition.getDateOfApply( ), new IndexedWeekDefinition( weekDefinition ) );
+        }
+        for ( ReservationRule reservationRule : collectionReservationRule )
+        {
+            _mapReservationRule.put( reservationRule.getDateOfApply( ), reservationRule );
+        }
+        for ( LocalDate closingDay : collectionClosingDay )
+        {
+            _mapClosingDayByYear.computeIfAbsent( closingDay.getYear( ), y -> new BitSet( ) ).set( closingDay.getDayOfYear( ) );
+        }
+    }
+
+    /**
+     * Get the week definition to apply on a date (the one with the closest date of apply in the past)
+     * 
+     * @param date
+     *            the date
+     * @return the week definition to apply, null if there is none
+     */
+    public IndexedWeekDefinition getWeekDefinition( LocalDate date )
+    {
+        Entry<LocalDate, IndexedWeekDefinition> entry = _mapWeekDefinition.floorEntry( date );
+        return ( entry != null ) ? entry.getValue( ) : null;
+    }
+
+    /**
+     * Get the week definition with the closest date of apply in the past of a date, or if there is none, the first week definition in the future
+     * 
+     * @param date
+     *            the date
+     * @return the week definition, null if there is no week definition
+     */
+    public IndexedWeekDefinition getClosestWeekDefinition( LocalDate date )
+    {
+        Entry<LocalDate, IndexedWeekDefinition> entry = _mapWeekDefinition.floorEntry( date );
+        if ( entry == null )
+        {
+            entry = _mapWeekDefinition.firstEntry( );
+        }
+        return ( entry != null ) ? entry.getValue( ) : null;
+    }
+
+    /**
+     * Get the reservation rule to apply on a date (the one with the closest date of apply in the past)
+     * 
+     * @param date
+     *            the date
+     * @return the reservation rule to apply, null if there is none
+     */
+    public ReservationRule getReservationRule( LocalDate date )
+    {
+        Entry<LocalDate, ReservationRule> entry = _mapReservationRule.floorEntry( date );
+        return ( entry != null ) ? entry.getValue( ) : null;
+    }
+
+    /**
+     * Get the first date of apply of the reservation rules
+     * 
+     * @return the first date of apply, null if there is no reservation rule
+     */
+    public LocalDate getFirstDateOfReservationRule( )
+    {
+        return _mapReservationRule.isEmpty( ) ? null : _mapReservationRule.firstKey( );
+    }
+
+    /**
+     * Check if a date is a closing day
+     * 
+     * @param date
+     *            the date
+     * @return true if the date is a closing day
+     */
+    public boolean isClosingDay( LocalDate date )
+    {
+        BitSet closingDaysOfYear = _mapClosingDayByYear.get( date.getYear( ) );
+        return closingDaysOfYear != null && closingDaysOfYear.get( date.getDayOfYear( ) );
+    }
+
+    /**
+     * A week definition with its working days indexed by day of week
+     */
+    public static final class IndexedWeekDefinition implements Serializable
+    {
+        private static final long serialVersionUID = -4436093187306574218L;
+
+        private final WeekDefinition _weekDefinition;
+        private final Map<DayOfWeek, IndexedWorkingDay> _mapWorkingDay = new EnumMap<>( DayOfWeek.class );
+        private final LocalTime _minStartingTime;
+        private final LocalTime _maxEndingTime;
+        private final int _nMinDuration;
+
+        /**
+         * Constructor
+         * 
+         * @param weekDefinition
+         *            the week definition (with its working days and time slots)
+         */
+        IndexedWeekDefinition( WeekDefinition weekDefinition )
+        {
+            _weekDefinition = weekDefinition;
+            LocalTime minStartingTime = null;
+            LocalTime maxEndingTime = null;
+            int nMinDuration = 0;
+            if ( weekDefinition.getListWorkingDay( ) != null )
+            {
+                for ( WorkingDay workingDay : weekDefinition.getListWorkingDay( ) )
+                {
+                    IndexedWorkingDay indexedWorkingDay = new IndexedWorkingDay( workingDay );
+                    _mapWorkingDay.putIfAbsent( DayOfWeek.of( workingDay.getDayOfWeek( ) ), indexedWorkingDay );
+                    if ( indexedWorkingDay.getMinStartingTime( ) == null )
+                    {
+                        continue;
+                    }
+                    if ( minStartingTime == null || indexedWorkingDay.getMinStartingTime( ).isBefore( minStartingTime ) )
+                    {
+                        minStartingTime = indexedWorkingDay.getMinStartingTime( );
+                    }
+                    if ( maxEndingTime == null || indexedWorkingDay.getMaxEndingTime( ).isAfter( maxEndingTime ) )
+                    {
+                        maxEndingTime = indexedWorkingDay.getMaxEndingTime( );
+                    }
+                    if ( nMinDuration == 0 || indexedWorkingDay.getMinDuration( ) < nMinDuration )
+                    {
+                        nMinDuration = indexedWorkingDay.getMinDuration( );
+                    }
+                }
+            }
+            _minStartingTime = minStartingTime;
+            _maxEndingTime = maxEndingTime;
+            _nMinDuration = nMinDuration;
+        }
+
+        /**
+         * Get the week definition
+         * 
+         * @return the week definition
+         */
+        public WeekDefinition getWeekDefinition( )
+        {
+            return _weekDefinition;
+        }
+
+        /**
+         * Get the working day of a day of week
+         * 
+         * @param dayOfWeek
+         *            the day of week
+         * @return the working day, null if this day of week is not a working day
+         */
+        public IndexedWorkingDay getWorkingDay( DayOfWeek dayOfWeek )
+        {
+            return _mapWorkingDay.get( dayOfWeek );
+        }
+
+        /**
+         * Get the min starting time of all the working days
+         * 
+         * @return the min starting time, null if there is no time slot
+         */
+        public LocalTime getMinStartingTime( )
+        {
+            return _minStartingTime;
+        }
+
+        /**
+         * Get the max ending time of all the working days
+         * 
+         * @return the max ending time, null if there is no time slot
+         */
+        public LocalTime getMaxEndingTime( )
+        {
+            return _maxEndingTime;
+        }
+
+        /**
+         * Get the min duration of the time slots of all the working days
+         * 
+         * @return the min duration in minutes
+         */
+        public int getMinDuration( )
+        {
+            return _nMinDuration;
+        }
+    }
+
+    /**
+     * A working day with its time slots indexed by starting time
+     */
+    public static final class IndexedWorkingDay implements Serializable
+    {
+        private static final long serialVersionUID = 6010335894541466711L;
+
+        private final WorkingDay _workingDay;
+        private final Map<LocalTime, TimeSlot> _mapTimeSlot = new HashMap<>( );
+        private final LocalTime _minStartingTime;
+        private final LocalTime _maxEndingTime;
+        private final int _nMinDuration;
+
+        /**
+         * Constructor
+         * 
+         * @param workingDay
+         *            the working day (with its time slots)
+         */
+        IndexedWorkingDay( WorkingDay workingDay )
+        {
+            _workingDay = workingDay;
+            LocalTime minStartingTime = null;
+            LocalTime maxEndingTime = null;
+            long lMinDuration = 0;
+            if ( workingDay.getListTimeSlot( ) != null )
+            {
+                for ( TimeSlot timeSlot : workingDay.getListTimeSlot( ) )
+                {
+                    _mapTimeSlot.putIfAbsent( timeSlot.getStartingTime( ), timeSlot );
+                    if ( minStartingTime == null || timeSlot.getStartingTime( ).isBefore( minStartingTime ) )
+                    {
+                        minStartingTime = timeSlot.getStartingTime( );
+                    }
+                    if ( maxEndingTime == null || timeSlot.getEndingTime( ).isAfter( maxEndingTime ) )
+                    {
+                        maxEndingTime = timeSlot.getEndingTime( );
+                    }
+                    long lDuration = timeSlot.getStartingTime( ).until( timeSlot.getEndingTime( ), ChronoUnit.MINUTES );
+                    if ( lMinDuration == 0 || lDuration < lMinDuration )
+                    {
+                        lMinDuration = lDuration;
+                    }
+                }
+            }
+            _minStartingTime = minStartingTime;
+            _maxEndingTime = maxEndingTime;
+            _nMinDuration = Math.toIntExact( lMinDuration );
+        }
+
+        /**
+         * Get the working day
+         * 
+         * @return the working day
+         */
+        public WorkingDay getWorkingDay( )
+        {
+            return _workingDay;
+        }
+
+        /**
+         * Get the time slot starting at a given time
+         * 
+         * @param startingTime
+         *            the starting time
+         * @return the time slot, null if no time slot starts at this time
+         */
+        public TimeSlot getTimeSlot( LocalTime startingTime )
+        {
+            return _mapTimeSlot.get( startingTime );
+        }
+
+        /**
+         * Get the min starting time of the time slots
+         * 
+         * @return the min starting time, null if there is no time slot
+         */
+        public LocalTime getMinStartingTime( )
+        {
+            return _minStartingTime;
+        }
+
+        /**
+         * Get the max ending time of the time slots
+         * 
+         * @return the max ending time, null if there is no time slot
+         */
+        public LocalTime getMaxEndingTime( )
+        {
+            return _maxEndingTime;
+        }
+
+        /**
+         * Get the min duration of the time slots
+         * 
+         * @return the min duration in minutes
+         */
+        public int getMinDuration( )
+        {
+            return _nMinDuration;
+        }
+    }
+}
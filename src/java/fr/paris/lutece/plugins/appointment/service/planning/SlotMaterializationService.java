@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.plugins.appointment.service.availability.FormAvailabilityService;
+import fr.paris.lutece.plugins.appointment.service.listeners.SlotListenerManager;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Creation in background of the slots of the active forms over the next weeks (appointment.slotMaterialization.horizon), so that the bookings find the
+ * slots in database instead of creating them in the request. The slots of all the active forms are created by a scheduled task, and those of a form are
+ * brought up to date as soon as its rules change : the slots nobody has used which do not match the rules any more are removed, and the missing ones are
+ * created. Only the open slots are created, and the slots are created without notifying the slot listeners, since they are the same as the slots built from
+ * the rules
+ * 
+ */
+public final class SlotMaterializationService
+{
+    private static final String PROPERTY_HORIZON = "appointment.slotMaterialization.horizon";
+    private static final String PROPERTY_INTERVAL = "appointment.slotMaterialization.interval";
+    private static final String PROPERTY_BATCH_SIZE = "appointment.slotMaterialization.batchSize";
+    private static final int DEFAULT_HORIZON = 12;
+    private static final int DEFAULT_INTERVAL = 3600;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final String THREAD_NAME = "appointment-slot-materialization";
+
+    private static ScheduledExecutorService _scheduler;
+    private static final Set<Integer> _setIdFormsToUpdate = ConcurrentHashMap.newKeySet( );
+    private static final AtomicLong _nNbSlotsCreated = new AtomicLong( );
+    private static final AtomicLong _nNbSlotsRemoved = new AtomicLong( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private SlotMaterializationService( )
+    {
+    }
+
+    /**
+     * Start the scheduled task creating the slots of the active forms. The task is not started if the horizon is 0
+     */
+    public static synchronized void start( )
+    {
+        if ( _scheduler == null && getHorizon( ) > 0 )
+        {
+            _scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            _scheduler.scheduleWithFixedDelay( SlotMaterializationService::materializeAllForms, 0,
+                    AppPropertiesService.getPropertyInt( PROPERTY_INTERVAL, DEFAULT_INTERVAL ), TimeUnit.SECONDS );
+        }
+    }
+
+    /**
+     * Stop the scheduled task. The forms whose rules have changed will be brought up to date by the first run of the next start
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _scheduler != null )
+        {
+            _scheduler.shutdownNow( );
+            _scheduler = null;
+        }
+    }
+
+    /**
+     * Ask to bring the slots of a form up to date with its rules, after a modification of its rules. The slots are updated right after by the scheduled task
+     * 
+     * @param nIdForm
+     *            the form Id
+     */
+    public static void requestMaterialization( int nIdForm )
+    {
+        _setIdFormsToUpdate.add( nIdForm );
+        wakeUp( );
+    }
+
+    /**
+     * Create the missing slots of all the active forms, after having brought up to date the forms whose rules have changed
+     */
+    public static void materializeAllForms( )
+    {
+        try
+        {
+            materializeRequestedForms( );
+            for ( Form form : FormService.findAllActiveForms( ) )
+            {
+                if ( Thread.currentThread( ).isInterrupted( ) )
+                {
+                    return;
+                }
+                materializeForm( form, false );
+            }
+        }
+        catch( Exception e )
+        {
+            // The scheduled task must not stop
+            AppLogService.error( "Error while creating the slots of the forms", e );
+        }
+    }
+
+    /**
+     * Bring up to date the slots of the forms whose rules have changed
+     */
+    public static void materializeRequestedForms( )
+    {
+        for ( Integer nIdForm : new ArrayList<>( _setIdFormsToUpdate ) )
+        {
+            // Removed before the update, so that a change made during the
+            // update asks for a new one
+            _setIdFormsToUpdate.remove( nIdForm );
+            Form form = FormService.findFormLightByPrimaryKey( nIdForm );
+            if ( form != null && form.getIsActive( ) )
+            {
+                materializeForm( form, true );
+            }
+        }
+    }
+
+    /**
+     * Get the number of forms waiting for the update of their slots
+     * 
+     * @return the number of forms
+     */
+    public static int getNbFormsPending( )
+    {
+        return _setIdFormsToUpdate.size( );
+    }
+
+    /**
+     * Get the number of slots created in background since the start of the server
+     * 
+     * @return the number of slots created
+     */
+    public static long getNbSlotsCreated( )
+    {
+        return _nNbSlotsCreated.get( );
+    }
+
+    /**
+     * Get the number of slots removed because they did not match the rules of their form any more, since the start of the server
+     * 
+     * @return the number of slots removed
+     */
+    public static long getNbSlotsRemoved( )
+    {
+        return _nNbSlotsRemoved.get( );
+    }
+
+    /**
+     * Ask the scheduled task to update the requested forms at once, if it is started
+     */
+    private static synchronized void wakeUp( )
+    {
+        if ( _scheduler != null )
+        {
+            _scheduler.execute( SlotMaterializationService::materializeRequestedForms );
+        }
+    }
+
+    /**
+     * Get the number of weeks, from today, over which the slots are created
+     * 
+     * @return the number of weeks
+     */
+    private static int getHorizon( )
+    {
+        return AppPropertiesService.getPropertyInt( PROPERTY_HORIZON, DEFAULT_HORIZON );
+    }
+
+    /**
+     * Create the missing open slots of a form over the horizon, by batches. Each batch is created in a transaction; if a batch fails (the slot was created
+     * at the same time by a booking or by another server), the other slots are created by the next run
+     * 
+     * @param form
+     *            the form
+     * @param bRemoveStaleSlots
+     *            true to remove first the slots nobody has used which do not match the rules of the form any more
+     */
+    private static void materializeForm( Form form, boolean bRemoveStaleSlots )
+    {
+        int nIdForm = form.getIdForm( );
+        if ( form.getStartingValidityDate( ) == null )
+        {
+            return;
+        }
+        LocalDate startingDate = LocalDate.now( );
+        if ( form.getStartingValidityDate( ).isAfter( startingDate ) )
+        {
+            startingDate = form.getStartingValidityDate( );
+        }
+        LocalDate endingDate = LocalDate.now( ).plusWeeks( getHorizon( ) );
+        if ( form.getEndingValidityDate( ) != null && endingDate.isAfter( form.getEndingValidityDate( ) ) )
+        {
+            endingDate = form.getEndingValidityDate( );
+        }
+        if ( startingDate.isAfter( endingDate ) )
+        {
+            return;
+        }
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        int nNbSlotsChanged = 0;
+        try
+        {
+            if ( bRemoveStaleSlots )
+            {
+                nNbSlotsChanged += removeStaleSlots( nIdForm, startingDate, endingDate, plugin );
+            }
+            // The slots in database are returned instead of those of the rules,
+            // so the slots to create never overlap a slot already created
+            LocalDateTime now = LocalDateTime.now( );
+            List<Slot> listSlotToCreate = new ArrayList<>( );
+            for ( Slot slot : SlotService.buildListSlot( nIdForm, startingDate, endingDate ) )
+            {
+                if ( slot.getIdSlot( ) == 0 && slot.getIsOpen( ) && slot.getStartingDateTime( ).isAfter( now ) )
+                {
+                    listSlotToCreate.add( slot );
+                }
+            }
+            int nBatchSize = AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+            for ( int nIndex = 0; nIndex < listSlotToCreate.size( ); nIndex += nBatchSize )
+            {
+                List<Slot> listBatch = listSlotToCreate.subList( nIndex, Math.min( nIndex + nBatchSize, listSlotToCreate.size( ) ) );
+                TransactionManager.beginTransaction( plugin );
+                try
+                {
+                    SlotHome.createList( listBatch );
+                    TransactionManager.commitTransaction( plugin );
+                }
+                catch( Exception e )
+                {
+                    TransactionManager.rollBack( plugin, e );
+                    throw e;
+                }
+                _nNbSlotsCreated.addAndGet( listBatch.size( ) );
+                nNbSlotsChanged += listBatch.size( );
+            }
+        }
+        catch( Exception e )
+        {
+            // The slots not created are created by the next run, or by the
+            // bookings in the meantime
+            AppLogService.error( "Error while creating the slots of the form " + nIdForm, e );
+        }
+        finally
+        {
+            if ( nNbSlotsChanged > 0 )
+            {
+                FormAvailabilityService.getInstance( ).invalidate( nIdForm );
+            }
+        }
+    }
+
+    /**
+     * Remove the slots of a period nobody has used (not specific, no place taken or held, no appointment) which do not match the slots given by the rules
+     * of the form any more. The slots are checked again by the delete statement, so a slot booked in the meantime is kept
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param startingDate
+     *            the starting date of the period
+     * @param endingDate
+     *            the ending date of the period
+     * @param plugin
+     *            the plugin
+     * @return the number of slots removed
+     */
+    private static int removeStaleSlots( int nIdForm, LocalDate startingDate, LocalDate endingDate, Plugin plugin )
+    {
+        Map<LocalDateTime, Slot> mapSlotFromRules = new HashMap<>( );
+        for ( Slot slot : SlotService.buildListSlotFromRules( nIdForm, startingDate, endingDate ) )
+        {
+            mapSlotFromRules.put( slot.getStartingDateTime( ), slot );
+        }
+        LocalDateTime startingDateTime = startingDate.atStartOfDay( );
+        LocalDateTime endingDateTime = endingDate.atTime( LocalTime.MAX );
+        List<Integer> listIdSlotToRemove = new ArrayList<>( );
+        for ( Slot slot : SlotService.findSlotsByIdFormAndDateRange( nIdForm, startingDateTime, endingDateTime ) )
+        {
+            if ( isUnused( slot ) && !matches( slot, mapSlotFromRules.get( slot.getStartingDateTime( ) ) ) )
+            {
+                listIdSlotToRemove.add( slot.getIdSlot( ) );
+            }
+        }
+        if ( listIdSlotToRemove.isEmpty( ) )
+        {
+            return 0;
+        }
+        int nNbSlotsRemoved;
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            nNbSlotsRemoved = SlotHome.deleteUnusedList( listIdSlotToRemove );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
+        }
+        if ( nNbSlotsRemoved < listIdSlotToRemove.size( ) )
+        {
+            // Some slots have been used since they were read : they are kept
+            for ( Slot slot : SlotService.findSlotsByIdFormAndDateRange( nIdForm, startingDateTime, endingDateTime ) )
+            {
+                listIdSlotToRemove.remove( Integer.valueOf( slot.getIdSlot( ) ) );
+            }
+        }
+        for ( Integer nIdSlot : listIdSlotToRemove )
+        {
+            SlotListenerManager.notifyListenersSlotRemoval( nIdSlot );
+        }
+        _nNbSlotsRemoved.addAndGet( nNbSlotsRemoved );
+        return nNbSlotsRemoved;
+    }
+
+    /**
+     * Tell if nobody has used a slot : it has not been modified in the back office, and it has no place taken or held
+     * 
+     * @param slot
+     *            the slot
+     * @return true if the slot is unused
+     */
+    static boolean isUnused( Slot slot )
+    {
+        return !slot.getIsSpecific( ) && slot.getNbPlacesTaken( ) == 0 && slot.getNbRemainingPlaces( ) == slot.getMaxCapacity( )
+                && slot.getNbPotentialRemainingPlaces( ) == slot.getMaxCapacity( );
+    }
+
+    /**
+     * Tell if a slot in database is the slot given by the rules of the form at its starting date time
+     * 
+     * @param slot
+     *            the slot in database
+     * @param slotFromRules
+     *            the slot given by the rules at the same starting date time, null if there is none
+     * @return true if the slots have the same ending date time, capacity and opening
+     */
+    static boolean matches( Slot slot, Slot slotFromRules )
+    {
+        return slotFromRules != null && slot.getEndingDateTime( ).equals( slotFromRules.getEndingDateTime( ) )
+                && slot.getMaxCapacity( ) == slotFromRules.getMaxCapacity( ) && slot.getIsOpen( ) == slotFromRules.getIsOpen( );
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.purge;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of the removal of a form and of its appointments, run in background
+ * 
+ */
+public final class AppointmentPurgeJob
+{
+    private final int _nIdForm;
+    private final String _strFormTitle;
+    private final int _nNbAppointments;
+    private final AtomicInteger _nNbAppointmentsPurged = new AtomicInteger( );
+    private volatile boolean _bDone;
+    private volatile boolean _bFailed;
+
+    /**
+     * Constructor
+     * 
+     * @param nIdForm
+     *            the id of the form to remove
+     * @param strFormTitle
+     *            the title of the form to remove
+     * @param nNbAppointments
+     *            the number of appointments of the form when the removal starts
+     */
+    public AppointmentPurgeJob( int nIdForm, String strFormTitle, int nNbAppointments )
+    {
+        _nIdForm = nIdForm;
+        _strFormTitle = strFormTitle;
+        _nNbAppointments = nNbAppointments;
+    }
+
+    /**
+     * Get the id of the form to remove
+     * 
+     * @return the id of the form
+     */
+    public int getIdForm( )
+    {
+        return _nIdForm;
+    }
+
+    /**
+     * Get the title of the form to remove
+     * 
+     * @return the title of the form
+     */
+    public String getFormTitle( )
+    {
+        return _strFormTitle;
+    }
+
+    /**
+     * Get the number of appointments of the form when the removal started
+     * 
+     * @return the number of appointments
+     */
+    public int getNbAppointments( )
+    {
+        return _nNbAppointments;
+    }
+
+    /**
+     * Get the number of appointments already deleted
+     * 
+     * @return the number of appointments deleted
+     */
+    public int getNbAppointmentsPurged( )
+    {
+        return _nNbAppointmentsPurged.get( );
+    }
+
+    /**
+     * Add a number of appointments to the appointments already deleted
+     * 
+     * @param nNbAppointments
+     *            the number of appointments deleted
+     */
+    public void addNbAppointmentsPurged( int nNbAppointments )
+    {
+        _nNbAppointmentsPurged.addAndGet( nNbAppointments );
+    }
+
+    /**
+     * Tell if the removal is over, successfully or not
+     * 
+     * @return true if the removal is over
+     */
+    public boolean isDone( )
+    {
+        return _bDone;
+    }
+
+    /**
+     * Tell if the removal failed
+     * 
+     * @return true if the removal failed
+     */
+    public boolean isFailed( )
+    {
+        return _bFailed;
+    }
+
+    /**
+     * Mark the removal as over
+     * 
+     * @param bFailed
+     *            true if the removal failed
+     */
+    public void setDone( boolean bFailed )
+    {
+        _bFailed = bFailed;
+        _bDone = true;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.purge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import fr.paris.lutece.plugins.appointment.business.appointment.Appointment;
+import fr.paris.lutece.plugins.appointment.business.appointment.AppointmentHome;
+import fr.paris.lutece.plugins.appointment.business.appointment.AppointmentResponseHome;
+import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItemHome;
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.plugins.appointment.service.EntryService;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.listeners.AppointmentListenerManager;
+import fr.paris.lutece.plugins.appointment.service.listeners.SlotListenerManager;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Service to delete many appointments at once. The appointments are deleted by chunks, each chunk in its own transaction : the links between the
+ * appointments and the responses, the automatic workflow actions still queued and the appointments themselves with set-based queries, and the responses with
+ * their files one by one through the generic attributes. The places
+ * of the deleted appointments are given back with one update per slot. The removal of a whole form runs in background, and its progress can be read while it runs
+ * 
+ */
+public final class AppointmentPurgeService
+{
+
+    private static final String PROPERTY_CHUNK_SIZE = "appointment.purge.chunkSize";
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final String THREAD_NAME = "appointment-purge";
+
+    private static ExecutorService _executor;
+    private static final Map<Integer, AppointmentPurgeJob> _mapJobs = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private AppointmentPurgeService( )
+    {
+    }
+
+    /**
+     * Stop the removal of the forms running in background. A form being removed keeps the appointments not purged yet, and can be removed again
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _executor != null )
+        {
+            _executor.shutdownNow( );
+            _executor = null;
+        }
+    }
+
+    /**
+     * Delete a list of appointments, with their responses and their workflow resources, and give back their places to their slots
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @param nIdWorkflow
+     *            the id of the workflow of the form of the appointments
+     */
+    public static void purgeAppointments( List<Integer> listIdAppointment, int nIdWorkflow )
+    {
+        int nChunkSize = AppPropertiesService.getPropertyInt( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE );
+        for ( int nFrom = 0; nFrom < listIdAppointment.size( ); nFrom += nChunkSize )
+        {
+            List<Integer> listChunk = listIdAppointment.subList( nFrom, Math.min( nFrom + nChunkSize, listIdAppointment.size( ) ) );
+            for ( Integer nIdAppointment : listChunk )
+            {
+                AppointmentListenerManager.notifyListenersAppointmentRemoval( nIdAppointment );
+            }
+            purgeChunk( listChunk, nIdWorkflow, true );
+        }
+    }
+
+    /**
+     * Delete all the appointments of a form, with their responses and their workflow resources. The places of the slots are not given back, the slots being
+     * deleted with the form
+     * 
+     * @param nIdForm
+     *            the id of the form
+     * @param nIdWorkflow
+     *            the id of the workflow of the form
+     * @param job
+     *            the job to report the progress to, null if none
+     */
+    public static void purgeAppointmentsOfForm( int nIdForm, int nIdWorkflow, AppointmentPurgeJob job )
+    {
+        int nChunkSize = AppPropertiesService.getPropertyInt( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE );
+        int nLastIdAppointment = 0;
+        List<Integer> listIdAppointment = AppointmentHome.findIdsByIdForm( nIdForm, nLastIdAppointment, nChunkSize );
+        while ( !listIdAppointment.isEmpty( ) )
+        {
+            purgeChunk( listIdAppointment, nIdWorkflow, false );
+            if ( job != null )
+            {
+                job.addNbAppointmentsPurged( listIdAppointment.size( ) );
+            }
+            nLastIdAppointment = listIdAppointment.get( listIdAppointment.size( ) - 1 );
+            listIdAppointment = AppointmentHome.findIdsByIdForm( nIdForm, nLastIdAppointment, nChunkSize );
+        }
+    }
+
+    /**
+     * Start the removal of a form, of its appointments and of its entries in background. The form is deactivated first, so that no appointment is made
+     * while it is being removed. Nothing is done if the form is already being removed
+     * 
+     * @param form
+     *            the form to remove
+     * @return the job of the removal of the form
+     */
+    public static synchronized AppointmentPurgeJob submitFormRemoval( Form form )
+    {
+        int nIdForm = form.getIdForm( );
+        AppointmentPurgeJob job = _mapJobs.get( nIdForm );
+        if ( job != null && !job.isDone( ) )
+        {
+            return job;
+        }
+        if ( form.getIsActive( ) )
+        {
+            form.setIsActive( false );
+            FormService.updateForm( form );
+        }
+        AppointmentPurgeJob newJob = new AppointmentPurgeJob( nIdForm, form.getTitle( ), AppointmentHome.countByIdForm( nIdForm ) );
+        _mapJobs.put( nIdForm, newJob );
+        getExecutor( ).execute( ( ) -> removeForm( form, newJob ) );
+        return newJob;
+    }
+
+    /**
+     * Get the jobs of removal of forms, running or over since they were last removed from the list
+     * 
+     * @return the jobs
+     */
+    public static Collection<AppointmentPurgeJob> getJobs( )
+    {
+        return new ArrayList<>( _mapJobs.values( ) );
+    }
+
+    /**
+     * Forget a job which is over
+     * 
+     * @param job
+     *            the job
+     */
+    public static void removeJob( AppointmentPurgeJob job )
+    {
+        if ( job.isDone( ) )
+        {
+            _mapJobs.remove( job.getIdForm( ), job );
+        }
+    }
+
+    /**
+     * Remove a form, its appointments and its entries
+     * 
+     * @param form
+     *            the form
+     * @param job
+     *            the job to report the progress to
+     */
+    private static void removeForm( Form form, AppointmentPurgeJob job )
+    {
+        long lStartTime = System.currentTimeMillis( );
+        try
+        {
+            FormService.removeForm( form.getIdForm( ), job );
+            EntryService.getService( ).removeEntriesByIdAppointmentForm( form.getIdForm( ) );
+            job.setDone( false );
+            AppLogService.info( "Appointment form " + form.getIdForm( ) + " and its " + job.getNbAppointmentsPurged( ) + " appointments removed in "
+                    + ( System.currentTimeMillis( ) - lStartTime ) + " ms" );
+        }
+        catch( Exception e )
+        {
+            job.setDone( true );
+            AppLogService.error( "Error while removing the appointment form " + form.getIdForm( ), e );
+        }
+    }
+
+    /**
+     * Delete a chunk of appointments in a single transaction
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @param nIdWorkflow
+     *            the id of the workflow of the form of the appointments
+     * @param bReleasePlaces
+     *            true to give back the places of the appointments to their slots
+     */
+    private static void purgeChunk( List<Integer> listIdAppointment, int nIdWorkflow, boolean bReleasePlaces )
+    {
+        removeWorkflowResources( listIdAppointment, nIdWorkflow );
+        Map<Integer, Integer> mapNbPlacesReleased = null;
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        TransactionManager.beginTransaction( plugin );
+        try
+        {
+            if ( bReleasePlaces )
+            {
+                mapNbPlacesReleased = AppointmentHome.findNbPlacesBookedByIdSlot( listIdAppointment );
+            }
+            AppointmentResponseHome.removeResponsesByListIdAppointment( listIdAppointment );
+            WorkflowQueueItemHome.deleteByListIdAppointment( listIdAppointment );
+            AppointmentHome.deleteList( listIdAppointment );
+            if ( mapNbPlacesReleased != null )
+            {
+                for ( Map.Entry<Integer, Integer> nbPlacesReleased : mapNbPlacesReleased.entrySet( ) )
+                {
+                    SlotHome.updatePlacesReleased( nbPlacesReleased.getKey( ), nbPlacesReleased.getValue( ) );
+                }
+            }
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( plugin, e );
+            throw e;
+        }
+        if ( mapNbPlacesReleased != null )
+        {
+            for ( Integer nIdSlot : mapNbPlacesReleased.keySet( ) )
+            {
+                SlotListenerManager.notifyListenersSlotChange( nIdSlot );
+            }
+        }
+    }
+
+    /**
+     * Remove the workflow resources of a list of appointments
+     * 
+     * @param listIdAppointment
+     *            the ids of the appointments
+     * @param nIdWorkflow
+     *            the id of the workflow of the form of the appointments
+     */
+    private static void removeWorkflowResources( List<Integer> listIdAppointment, int nIdWorkflow )
+    {
+        if ( nIdWorkflow > 0 && WorkflowService.getInstance( ).isAvailable( ) )
+        {
+            try
+            {
+                WorkflowService.getInstance( ).doRemoveWorkFlowResourceByListId( listIdAppointment, Appointment.APPOINTMENT_RESOURCE_TYPE, nIdWorkflow );
+            }
+            catch( Exception e )
+            {
+                AppLogService.error( "Error Workflow", e );
+            }
+        }
+    }
+
+    /**
+     * Get the executor running the removals of forms, one at a time
+     * 
+     * @return the executor
+     */
+    private static synchronized ExecutorService getExecutor( )
+    {
+        if ( _executor == null )
+        {
+            _executor = Executors.newSingleThreadExecutor( runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME );
+                thread.setDaemon( true );
+                return thread;
+            } );
+        }
+        return _executor;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.search;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.appointment.business.user.User;
+import fr.paris.lutece.plugins.appointment.business.user.UserSearchHome;
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+/**
+ * Service of the search index of the users. The users are indexed when they are created or updated; on start, the users created before the index existed
+ * are indexed in the background, and the search of the appointments only uses the index once they are all indexed
+ */
+public final class UserSearchService
+{
+    private static final String PROPERTY_BATCH_SIZE = "appointment.search.batchSize";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final String THREAD_NAME = "appointment-user-search";
+
+    private static ExecutorService _executor;
+    private static volatile boolean _bIndexReady;
+    private static final AtomicLong _nNbUsersIndexed = new AtomicLong( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private UserSearchService( )
+    {
+    }
+
+    /**
+     * Start the indexing of the users that are not in the index yet
+     */
+    public static synchronized void start( )
+    {
+        if ( _executor == null )
+        {
+            _executor = Executors.newSingleThreadExecutor( runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            _executor.execute( UserSearchService::indexMissingUsers );
+        }
+    }
+
+    /**
+     * Stop the indexing. The users not indexed yet will be indexed on the next start
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _executor != null )
+        {
+            _executor.shutdownNow( );
+            _executor = null;
+        }
+    }
+
+    /**
+     * Tell if all the users are in the index, so that it can be used by the search
+     * 
+     * @return true if the index is complete
+     */
+    public static boolean isIndexReady( )
+    {
+        return _bIndexReady;
+    }
+
+    /**
+     * Get the number of users indexed in the background since the start of the server
+     * 
+     * @return the number of users indexed
+     */
+    public static long getNbUsersIndexed( )
+    {
+        return _nNbUsersIndexed.get( );
+    }
+
+    /**
+     * Index the users that are not in the index yet, by batches of ascending ids. Each batch is indexed in a transaction
+     */
+    public static void indexMissingUsers( )
+    {
+        int nBatchSize = AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+        Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        int nIdUserAfter = 0;
+        try
+        {
+            List<User> listUsers;
+            do
+            {
+                listUsers = UserSearchHome.findUsersNotIndexed( nIdUserAfter, nBatchSize );
+                TransactionManager.beginTransaction( plugin );
+                try
+                {
+                    for ( User user : listUsers )
+                    {
+                        // The user may have been indexed since the read, the
+                        // index replaces his trigrams
+                        UserSearchHome.index( user );
+                    }
+                    TransactionManager.commitTransaction( plugin );
+                }
+                catch( Exception e )
+                {
+                    TransactionManager.rollBack( plugin, e );
+                    throw e;
+                }
+                _nNbUsersIndexed.addAndGet( listUsers.size( ) );
+                if ( !listUsers.isEmpty( ) )
+                {
+                    nIdUserAfter = listUsers.get( listUsers.size( ) - 1 ).getIdUser( );
+                }
+            }
+            while ( listUsers.size( ) == nBatchSize && !Thread.currentThread( ).isInterrupted( ) );
+            _bIndexReady = listUsers.size( ) < nBatchSize;
+        }
+        catch( Exception e )
+        {
+            // The search keeps scanning the users until the next start
+            AppLogService.error( "Error while indexing the users for the search", e );
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.workflow;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.appointment.business.appointment.Appointment;
+import fr.paris.lutece.plugins.appointment.business.appointment.AppointmentHome;
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItem;
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItemHome;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+
+/**
+ * Queue of the automatic workflow actions to execute on the appointments. The items are stored in database by the request that saves the appointment, and
+ * processed afterwards by a pool of workers : the items of an appointment are processed one at a time in the order of their creation, and a failed item is
+ * retried with an increasing delay. An item is claimed in database before being processed, so several servers can share the queue
+ * 
+ */
+public final class WorkflowQueueService
+{
+
+    private static final String PROPERTY_NB_WORKERS = "appointment.workflowQueue.nbWorkers";
+    private static final String PROPERTY_POLL_INTERVAL = "appointment.workflowQueue.pollInterval";
+    private static final String PROPERTY_BATCH_SIZE = "appointment.workflowQueue.batchSize";
+    private static final String PROPERTY_MAX_ATTEMPTS = "appointment.workflowQueue.maxAttempts";
+    private static final String PROPERTY_RETRY_DELAY = "appointment.workflowQueue.retryDelay";
+    private static final String PROPERTY_MAX_RETRY_DELAY = "appointment.workflowQueue.maxRetryDelay";
+    private static final String PROPERTY_PROCESSING_TIMEOUT = "appointment.workflowQueue.processingTimeout";
+    private static final int DEFAULT_NB_WORKERS = 2;
+    private static final int DEFAULT_POLL_INTERVAL = 5;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final int DEFAULT_RETRY_DELAY = 30;
+    private static final int DEFAULT_MAX_RETRY_DELAY = 3600;
+    private static final int DEFAULT_PROCESSING_TIMEOUT = 600;
+    private static final String THREAD_NAME_POLLER = "appointment-workflow-queue";
+    private static final String THREAD_NAME_WORKER = "appointment-workflow-worker-";
+
+    private static ScheduledExecutorService _scheduler;
+    private static ExecutorService _workers;
+    private static final AtomicInteger _nNbItemsInProgress = new AtomicInteger( );
+    private static volatile int _nNbItems;
+    private static final AtomicLong _nNbItemsProcessed = new AtomicLong( );
+    private static final AtomicLong _nNbItemsRetried = new AtomicLong( );
+    private static final AtomicLong _nNbItemsAbandoned = new AtomicLong( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private WorkflowQueueService( )
+    {
+    }
+
+    /**
+     * Start the workers and the scheduled task that gives them the items of the queue. The items left in the queue when the server was stopped are processed
+     * at once
+     */
+    public static synchronized void start( )
+    {
+        if ( _scheduler == null )
+        {
+            AtomicInteger nNbThreads = new AtomicInteger( );
+            _workers = Executors.newFixedThreadPool( AppPropertiesService.getPropertyInt( PROPERTY_NB_WORKERS, DEFAULT_NB_WORKERS ), runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME_WORKER + nNbThreads.incrementAndGet( ) );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            _scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME_POLLER );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            _scheduler.scheduleWithFixedDelay( WorkflowQueueService::dispatchReadyItems, 0,
+                    AppPropertiesService.getPropertyInt( PROPERTY_POLL_INTERVAL, DEFAULT_POLL_INTERVAL ), TimeUnit.SECONDS );
+        }
+    }
+
+    /**
+     * Stop the workers and the scheduled task. The items not processed stay in database and will be processed on the next start
+     */
+    public static synchronized void shutdown( )
+    {
+        if ( _scheduler != null )
+        {
+            _scheduler.shutdownNow( );
+            _scheduler = null;
+            _workers.shutdownNow( );
+            _workers = null;
+        }
+    }
+
+    /**
+     * Add to the queue the execution of the automatic actions of a workflow on an appointment. The item is processed right after by the workers
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     * @param nIdForm
+     *            the id of the form of the appointment
+     * @param nIdWorkflow
+     *            the id of the workflow of the form
+     */
+    public static void enqueue( int nIdAppointment, int nIdForm, int nIdWorkflow )
+    {
+        LocalDateTime now = LocalDateTime.now( );
+        WorkflowQueueItem workflowQueueItem = new WorkflowQueueItem( );
+        workflowQueueItem.setIdAppointment( nIdAppointment );
+        workflowQueueItem.setIdForm( nIdForm );
+        workflowQueueItem.setIdWorkflow( nIdWorkflow );
+        workflowQueueItem.setNextAttemptDate( now );
+        workflowQueueItem.setCreationDate( now );
+        WorkflowQueueItemHome.create( workflowQueueItem );
+        wakeUp( );
+    }
+
+    /**
+     * Process the items of the queue that can be processed now in the current thread
+     */
+    public static void processReadyItems( )
+    {
+        for ( WorkflowQueueItem workflowQueueItem : claimReadyItems( AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) ) )
+        {
+            processItem( workflowQueueItem );
+        }
+    }
+
+    /**
+     * Process in the current thread the items of an appointment that are not being processed by a worker, before an action of a user on the appointment. If
+     * an item can not be processed now, the workflow resource of the appointment is at least initialised
+     * 
+     * @param nIdAppointment
+     *            the id of the appointment
+     */
+    public static void processPendingItems( int nIdAppointment )
+    {
+        LocalDateTime now = LocalDateTime.now( );
+        LocalDateTime timeoutDate = now.plusSeconds( AppPropertiesService.getPropertyInt( PROPERTY_PROCESSING_TIMEOUT, DEFAULT_PROCESSING_TIMEOUT ) );
+        for ( WorkflowQueueItem workflowQueueItem : WorkflowQueueItemHome.findByIdAppointment( nIdAppointment ) )
+        {
+            if ( !workflowQueueItem.getNextAttemptDate( ).isAfter( now ) && WorkflowQueueItemHome.claim( workflowQueueItem, timeoutDate ) )
+            {
+                workflowQueueItem.setNbAttempts( workflowQueueItem.getNbAttempts( ) + 1 );
+                processItem( workflowQueueItem );
+            }
+            else
+            {
+                // Already claimed by a worker, or waiting for its next attempt
+                initWorkflowResource( workflowQueueItem );
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of items in the queue, as counted by the last run of the scheduled task
+     * 
+     * @return the number of items
+     */
+    public static int getNbItems( )
+    {
+        return _nNbItems;
+    }
+
+    /**
+     * Get the number of items being processed by the workers of this server
+     * 
+     * @return the number of items in progress
+     */
+    public static int getNbItemsInProgress( )
+    {
+        return _nNbItemsInProgress.get( );
+    }
+
+    /**
+     * Get the number of items processed successfully since the start of the server
+     * 
+     * @return the number of items processed
+     */
+    public static long getNbItemsProcessed( )
+    {
+        return _nNbItemsProcessed.get( );
+    }
+
+    /**
+     * Get the number of failed attempts that will be retried since the start of the server
+     * 
+     * @return the number of retries
+     */
+    public static long getNbItemsRetried( )
+    {
+        return _nNbItemsRetried.get( );
+    }
+
+    /**
+     * Get the number of items abandoned after their last failed attempt since the start of the server
+     * 
+     * @return the number of items abandoned
+     */
+    public static long getNbItemsAbandoned( )
+    {
+        return _nNbItemsAbandoned.get( );
+    }
+
+    /**
+     * Ask the scheduled task to run at once, if it is started
+     */
+    private static synchronized void wakeUp( )
+    {
+        if ( _scheduler != null )
+        {
+            _scheduler.execute( WorkflowQueueService::dispatchReadyItems );
+        }
+    }
+
+    /**
+     * Give the items that can be processed now to the workers, without giving them more than a batch of items at a time
+     */
+    private static void dispatchReadyItems( )
+    {
+        try
+        {
+            ExecutorService workers = _workers;
+            int nBatchSize = AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+            int nNbItemsToClaim = nBatchSize - _nNbItemsInProgress.get( );
+            if ( workers != null && nNbItemsToClaim > 0 )
+            {
+                for ( WorkflowQueueItem workflowQueueItem : claimReadyItems( nNbItemsToClaim ) )
+                {
+                    _nNbItemsInProgress.incrementAndGet( );
+                    workers.execute( ( ) -> {
+                        try
+                        {
+                            processItem( workflowQueueItem );
+                        }
+                        finally
+                        {
+                            _nNbItemsInProgress.decrementAndGet( );
+                        }
+                    } );
+                }
+            }
+            _nNbItems = WorkflowQueueItemHome.count( );
+        }
+        catch( Exception e )
+        {
+            // Do not let the exception cancel the next runs
+            AppLogService.error( "Error while dispatching the items of the workflow queue", e );
+        }
+    }
+
+    /**
+     * Read and claim the items that can be processed now. An item claimed is not read again until the processing timeout, so it is processed again if the
+     * server stops while processing it
+     * 
+     * @param nMaxNbItems
+     *            the maximum number of items to claim
+     * @return the items claimed
+     */
+    private static List<WorkflowQueueItem> claimReadyItems( int nMaxNbItems )
+    {
+        LocalDateTime now = LocalDateTime.now( );
+        LocalDateTime timeoutDate = now.plusSeconds( AppPropertiesService.getPropertyInt( PROPERTY_PROCESSING_TIMEOUT, DEFAULT_PROCESSING_TIMEOUT ) );
+        List<WorkflowQueueItem> listWorkflowQueueItem = new ArrayList<>( );
+        for ( WorkflowQueueItem workflowQueueItem : WorkflowQueueItemHome.findReady( now, nMaxNbItems ) )
+        {
+            if ( WorkflowQueueItemHome.claim( workflowQueueItem, timeoutDate ) )
+            {
+                workflowQueueItem.setNbAttempts( workflowQueueItem.getNbAttempts( ) + 1 );
+                listWorkflowQueueItem.add( workflowQueueItem );
+            }
+        }
+        return listWorkflowQueueItem;
+    }
+
+    /**
+     * Execute the automatic actions of an item, then remove the item from the queue, or postpone it if the execution failed
+     * 
+     * @param workflowQueueItem
+     *            the item, already claimed
+     */
+    private static void processItem( WorkflowQueueItem workflowQueueItem )
+    {
+        if ( AppointmentHome.findByPrimaryKey( workflowQueueItem.getIdAppointment( ) ) == null )
+        {
+            // The appointment has been deleted since the item was created
+            WorkflowQueueItemHome.delete( workflowQueueItem.getIdWorkflowQueueItem( ) );
+            return;
+        }
+        try
+        {
+            if ( WorkflowService.getInstance( ).isAvailable( ) )
+            {
+                initWorkflowResource( workflowQueueItem );
+                WorkflowService.getInstance( ).executeActionAutomatic( workflowQueueItem.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE,
+                        workflowQueueItem.getIdWorkflow( ), workflowQueueItem.getIdForm( ) );
+            }
+            WorkflowQueueItemHome.delete( workflowQueueItem.getIdWorkflowQueueItem( ) );
+            _nNbItemsProcessed.incrementAndGet( );
+        }
+        catch( Exception e )
+        {
+            int nMaxAttempts = AppPropertiesService.getPropertyInt( PROPERTY_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS );
+            if ( workflowQueueItem.getNbAttempts( ) >= nMaxAttempts )
+            {
+                AppLogService.error( "Error Workflow on the appointment " + workflowQueueItem.getIdAppointment( ) + ", abandoned after "
+                        + workflowQueueItem.getNbAttempts( ) + " attempts", e );
+                WorkflowQueueItemHome.delete( workflowQueueItem.getIdWorkflowQueueItem( ) );
+                _nNbItemsAbandoned.incrementAndGet( );
+            }
+            else
+            {
+                AppLogService.error( "Error Workflow on the appointment " + workflowQueueItem.getIdAppointment( ) + ", attempt "
+                        + workflowQueueItem.getNbAttempts( ) + " of " + nMaxAttempts, e );
+                WorkflowQueueItemHome.updateNextAttemptDate( workflowQueueItem.getIdWorkflowQueueItem( ),
+                        LocalDateTime.now( ).plusSeconds( getRetryDelay( workflowQueueItem.getNbAttempts( ) ) ) );
+                _nNbItemsRetried.incrementAndGet( );
+            }
+        }
+    }
+
+    /**
+     * Initialise the workflow resource of the appointment of an item, if it does not exist yet
+     * 
+     * @param workflowQueueItem
+     *            the item
+     */
+    private static void initWorkflowResource( WorkflowQueueItem workflowQueueItem )
+    {
+        if ( WorkflowService.getInstance( ).isAvailable( ) )
+        {
+            WorkflowService.getInstance( ).getState( workflowQueueItem.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE,
+                    workflowQueueItem.getIdWorkflow( ), workflowQueueItem.getIdForm( ) );
+        }
+    }
+
+    /**
+     * Get the delay before the next attempt to process an item, doubled at each failed attempt
+     * 
+     * @param nNbAttempts
+     *            the number of attempts already made
+     * @return the delay in seconds
+     */
+    private static long getRetryDelay( int nNbAttempts )
+    {
+        long lMaxRetryDelay = AppPropertiesService.getPropertyInt( PROPERTY_MAX_RETRY_DELAY, DEFAULT_MAX_RETRY_DELAY );
+        long lRetryDelay = AppPropertiesService.getPropertyInt( PROPERTY_RETRY_DELAY, DEFAULT_RETRY_DELAY );
+        for ( int i = 1; i < nNbAttempts && lRetryDelay < lMaxRetryDelay; i++ )
+        {
+            lRetryDelay *= 2;
+        }
+        return Math.min( lRetryDelay, lMaxRetryDelay );
+    }
+}
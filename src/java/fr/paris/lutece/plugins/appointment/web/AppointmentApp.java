@@ -77,14 +77,18 @@ import fr.paris.lutece.plugins.appointment.service.FormMessageService;
 import fr.paris.lutece.plugins.appointment.service.FormRuleService;
 import fr.paris.lutece.plugins.appointment.service.FormService;
 import fr.paris.lutece.plugins.appointment.service.ReservationRuleService;
+import fr.paris.lutece.plugins.appointment.service.SlotFullException;
 import fr.paris.lutece.plugins.appointment.service.SlotService;
 import fr.paris.lutece.plugins.appointment.service.UserService;
 import fr.paris.lutece.plugins.appointment.service.Utilities;
 import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
+import fr.paris.lutece.plugins.appointment.service.admission.AdmissionService;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanning;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanningService;
 import fr.paris.lutece.plugins.appointment.service.upload.AppointmentAsynchronousUploadHandler;
+import fr.paris.lutece.plugins.appointment.service.workflow.WorkflowQueueService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
-import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.portal.service.admin.AdminUserService;
 import fr.paris.lutece.portal.service.captcha.CaptchaSecurityService;
@@ -149,6 +153,7 @@ public class AppointmentApp extends MVCApplication
     private static final String TEMPLATE_APPOINTMENT_CANCELED = "skin/plugins/appointment/appointment_canceled.html";
     private static final String TEMPLATE_MY_APPOINTMENTS = "skin/plugins/appointment/my_appointments.html";
     private static final String TEMPLATE_HTML_CODE_FORM = "skin/plugins/appointment/html_code_form.html";
+    private static final String TEMPLATE_WAITING_ROOM = "skin/plugins/appointment/waiting_room.html";
 
     // Views
     public static final String VIEW_APPOINTMENT_FORM = "getViewAppointmentForm";
@@ -232,6 +237,8 @@ public class AppointmentApp extends MVCApplication
     private static final String MARK_ICONS = "icons";
     private static final String MARK_ICON_NULL = "NULL";
     private static final String MARK_ANCHOR = "#";
+    private static final String MARK_POSITION = "position";
+    private static final String MARK_POLL_INTERVAL = "pollInterval";
     private static final String MARK_APPOINTMENT_ALREADY_CANCELLED = "alreadyCancelled";
     private static final String MARK_NO_APPOINTMENT_WITH_THIS_REFERENCE = "noAppointmentWithThisReference";
     private static final String MARK_APPOINTMENT_PASSED = "appointmentPassed";
@@ -255,6 +262,7 @@ public class AppointmentApp extends MVCApplication
     // Messages
     private static final String MESSAGE_CANCEL_APPOINTMENT_PAGE_TITLE = "appointment.cancelAppointment.pageTitle";
     private static final String MESSAGE_MY_APPOINTMENTS_PAGE_TITLE = "appointment.myAppointments.name";
+    private static final String MESSAGE_WAITING_ROOM_PAGE_TITLE = "appointment.appointmentApp.waitingRoom.title";
 
     // Local variables
     private transient CaptchaSecurityService _captchaSecurityService;
@@ -285,6 +293,10 @@ public class AppointmentApp extends MVCApplication
     {
         Locale locale = getLocale( request );
         int nIdForm = Integer.parseInt( request.getParameter( PARAMETER_ID_FORM ) );
+        if ( !AdmissionService.isAdmitted( request.getSession( ), nIdForm ) )
+        {
+            return getWaitingRoom( request, nIdForm );
+        }
         Form form = FormService.findFormLightByPrimaryKey( nIdForm );
         AppointmentFormDTO appointmentForm = FormService.buildAppointmentForm( nIdForm, 0, 0 );
         boolean bError = false;
@@ -342,13 +354,13 @@ public class AppointmentApp extends MVCApplication
             dateOfDisplay = LocalDate.parse( strDateOfDisplay );
         }
         // Get all the week definitions
-        HashMap<LocalDate, WeekDefinition> mapWeekDefinition = WeekDefinitionService.findAllWeekDefinition( nIdForm );
-        List<WeekDefinition> listWeekDefinition = new ArrayList<>( mapWeekDefinition.values( ) );
+        FormPlanning formPlanning = FormPlanningService.getInstance( ).getFormPlanning( nIdForm );
+        List<WeekDefinition> listWeekDefinition = new ArrayList<>( formPlanning.getMapWeekDefinition( ).values( ) );
         // Filter on the list of weekdefinition on the starting date and the
         // ending date of display
         if ( listWeekDefinition.size( ) > 1 )
         {
-            WeekDefinition weekDefinitionClosest = WeekDefinitionService.findWeekDefinitionByIdFormAndClosestToDateOfApply( nIdForm, startingDateOfDisplay );
+            WeekDefinition weekDefinitionClosest = formPlanning.getIndex( ).getClosestWeekDefinition( startingDateOfDisplay ).getWeekDefinition( );
             LocalDate dateOfClosestWeekDefinition = weekDefinitionClosest.getDateOfApply( );
             LocalDate maxEndingDateOfWeekDefinition = endingDateOfDisplay;
             listWeekDefinition = listWeekDefinition
@@ -369,7 +381,7 @@ public class AppointmentApp extends MVCApplication
         List<Slot> listSlots = new ArrayList<>( );
         if ( !bError )
         {
-            listSlots = SlotService.buildListSlot( nIdForm, mapWeekDefinition, startingDateOfDisplay, endingDateOfDisplay );
+            listSlots = SlotService.buildListSlot( nIdForm, startingDateOfDisplay, endingDateOfDisplay );
             // Get the min time from now before a user can take an appointment
             // (in hours)
             FormRule formRule = FormRuleService.findFormRuleWithFormId( nIdForm );
@@ -511,6 +523,10 @@ public class AppointmentApp extends MVCApplication
         AppointmentFormDTO form = (AppointmentFormDTO) request.getSession( ).getAttribute( SESSION_ATTRIBUTE_APPOINTMENT_FORM );
         String strIdForm = request.getParameter( PARAMETER_ID_FORM );
         int nIdForm = Integer.parseInt( strIdForm );
+        if ( !AdmissionService.isAdmitted( request.getSession( ), nIdForm ) )
+        {
+            return getWaitingRoom( request, nIdForm );
+        }
         if ( form == null )
         {
             form = FormService.buildAppointmentForm( nIdForm, 0, 0 );
@@ -644,7 +660,7 @@ public class AppointmentApp extends MVCApplication
             }
             request.getSession( ).setAttribute( SESSION_NOT_VALIDATED_APPOINTMENT, appointmentDTO );
             request.getSession( ).setAttribute( SESSION_ATTRIBUTE_APPOINTMENT_FORM, form );
-            AppointmentUtilities.putTimerInSession( request, slot, appointmentDTO, form.getMaxPeoplePerAppointment( ) );
+            AppointmentUtilities.putSlotHoldInSession( request, slot, appointmentDTO, form.getMaxPeoplePerAppointment( ) );
         }
         else
         {
@@ -662,12 +678,7 @@ public class AppointmentApp extends MVCApplication
         }
         Map<String, Object> model = getModel( );
         Locale locale = getLocale( request );
-        StringBuffer strBuffer = new StringBuffer( );
-        List<Entry> listEntryFirstLevel = EntryService.getFilter( form.getIdForm( ), true );
-        for ( Entry entry : listEntryFirstLevel )
-        {
-            EntryService.getHtmlEntry( model, entry.getIdEntry( ), strBuffer, locale, true, request );
-        }
+        String strHtmlEntries = EntryService.getHtmlEntries( form.getIdForm( ), locale, true, request );
         FormMessage formMessages = FormMessageService.findFormMessageByIdForm( nIdForm );
         List<GenericAttributeError> listErrors = (List<GenericAttributeError>) request.getSession( ).getAttribute( SESSION_APPOINTMENT_FORM_ERRORS );
         if ( listErrors != null )
@@ -679,7 +690,7 @@ public class AppointmentApp extends MVCApplication
         model.put( PARAMETER_DATE_OF_DISPLAY, appointmentDTO.getSlot( ).getDate( ) );
         model.put( MARK_FORM, form );
         model.put( MARK_FORM_MESSAGES, formMessages );
-        model.put( MARK_STR_ENTRY, strBuffer.toString( ) );
+        model.put( MARK_STR_ENTRY, strHtmlEntries );
         model.put( MARK_LOCALE, locale );
         model.put( MARK_PLACES, appointmentDTO.getNbMaxPotentialBookedSeats( ) );
         model.put( MARK_FORM_ERRORS, listErrors );
@@ -711,6 +722,11 @@ public class AppointmentApp extends MVCApplication
     {
         AppointmentFormDTO form = (AppointmentFormDTO) request.getSession( ).getAttribute( SESSION_ATTRIBUTE_APPOINTMENT_FORM );
         checkMyLuteceAuthentication( form, request );
+        if ( !AdmissionService.isAdmitted( request.getSession( ), form.getIdForm( ) ) )
+        {
+            // The waiting room is displayed by the calendar
+            return redirect( request, VIEW_APPOINTMENT_CALENDAR, PARAMETER_ID_FORM, form.getIdForm( ) );
+        }
         String strIdForm = request.getParameter( PARAMETER_ID_FORM );
         AppointmentDTO appointmentDTO = (AppointmentDTO) request.getSession( ).getAttribute( SESSION_NOT_VALIDATED_APPOINTMENT );
         List<GenericAttributeError> listFormErrors = new ArrayList<GenericAttributeError>( );
@@ -829,6 +845,11 @@ public class AppointmentApp extends MVCApplication
         {
             return redirect( request, VIEW_APPOINTMENT_FORM, PARAMETER_ID_FORM, appointment.getIdForm( ) );
         }
+        if ( !AdmissionService.isAdmitted( request.getSession( ), appointment.getIdForm( ) ) )
+        {
+            // The waiting room is displayed by the calendar
+            return redirect( request, VIEW_APPOINTMENT_CALENDAR, PARAMETER_ID_FORM, appointment.getIdForm( ) );
+        }
         if ( form.getEnableCaptcha( ) && getCaptchaService( ).isAvailable( ) )
         {
             if ( !getCaptchaService( ).validate( request ) )
@@ -864,11 +885,22 @@ public class AppointmentApp extends MVCApplication
             addInfo( ERROR_MESSAGE_SLOT_FULL, getLocale( request ) );
             return redirect( request, VIEW_APPOINTMENT_CALENDAR, PARAMETER_ID_FORM, appointment.getIdForm( ) );
         }
-        AppointmentUtilities.killTimer( request );
-        int nIdAppointment = AppointmentService.saveAppointment( appointment );
+        AppointmentUtilities.cancelSlotHold( request );
+        int nIdAppointment;
+        try
+        {
+            nIdAppointment = AppointmentService.saveAppointment( appointment );
+        }
+        catch( SlotFullException e )
+        {
+            // The places have been taken by another user since the check
+            addInfo( ERROR_MESSAGE_SLOT_FULL, getLocale( request ) );
+            return redirect( request, VIEW_APPOINTMENT_CALENDAR, PARAMETER_ID_FORM, appointment.getIdForm( ) );
+        }
         AppLogService.info( LogUtilities.buildLog( ACTION_DO_MAKE_APPOINTMENT, Integer.toString( nIdAppointment ), null ) );
         request.getSession( ).removeAttribute( SESSION_VALIDATED_APPOINTMENT );
         AppointmentAsynchronousUploadHandler.getHandler( ).removeSessionFiles( request.getSession( ).getId( ) );
+        AdmissionService.release( request.getSession( ), appointment.getIdForm( ) );
         XPage xPage = null;
         String anchor = request.getParameter( PARAMETER_ANCHOR );
         if ( StringUtils.isNotEmpty( anchor ) )
@@ -1029,6 +1061,9 @@ public class AppointmentApp extends MVCApplication
                         boolean automaticUpdate = ( AdminUserService.getAdminUser( request ) == null ) ? true : false;
                         try
                         {
+                            // The automatic actions still queued must be
+                            // executed before the cancellation
+                            WorkflowQueueService.processPendingItems( appointment.getIdAppointment( ) );
                             WorkflowService.getInstance( ).doProcessAction( appointment.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE,
                                     appointment.getIdActionCancelled( ), slot.getIdForm( ), request, request.getLocale( ), automaticUpdate );
                         }
@@ -1190,6 +1225,28 @@ public class AppointmentApp extends MVCApplication
         return template.getHtml( );
     }
 
+    /**
+     * Get the waiting room of a form, which polls the position of the visitor and reloads the page once he is admitted
+     * 
+     * @param request
+     *            the request
+     * @param nIdForm
+     *            the id of the form
+     * @return the XPage
+     */
+    private XPage getWaitingRoom( HttpServletRequest request, int nIdForm )
+    {
+        Map<String, Object> model = getModel( );
+        // The form comes from the cache, the waiting visitors must not load the database
+        model.put( MARK_FORM, FormService.buildAppointmentForm( nIdForm, 0, 0 ) );
+        model.put( MARK_POSITION, AdmissionService.getPosition( request.getSession( ), nIdForm ) );
+        model.put( MARK_POLL_INTERVAL, AdmissionService.getPollInterval( ) );
+        Locale locale = getLocale( request );
+        XPage xpage = getXPage( TEMPLATE_WAITING_ROOM, locale, model );
+        xpage.setTitle( I18nService.getLocalizedString( MESSAGE_WAITING_ROOM_PAGE_TITLE, locale ) );
+        return xpage;
+    }
+
     /**
      * Get the captcha security service
      * 
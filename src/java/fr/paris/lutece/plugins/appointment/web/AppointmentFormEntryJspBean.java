@@ -46,6 +46,7 @@ import fr.paris.lutece.plugins.appointment.service.AppointmentResourceIdService;
 import fr.paris.lutece.plugins.appointment.service.EntryService;
 import fr.paris.lutece.plugins.appointment.service.EntryTypeService;
 import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.form.FormEntryCacheService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryFilter;
@@ -272,6 +273,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
                     FieldHome.create( field );
                 }
             }
+            FormEntryCacheService.getInstance( ).invalidate( nIdForm );
             if ( request.getParameter( PARAMETER_APPLY ) != null )
             {
                 return redirect( request, VIEW_GET_MODIFY_ENTRY, PARAMETER_ID_ENTRY, entry.getIdEntry( ) );
@@ -377,6 +379,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
                         }
                     }
                 }
+                FormEntryCacheService.getInstance( ).invalidate( entry.getIdResource( ) );
             }
             if ( request.getParameter( PARAMETER_APPLY ) != null )
             {
@@ -458,6 +461,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
             // TODO
             // OldAppointmentHome.removeResponsesByIdEntry(nIdEntry);
             EntryHome.remove( nIdEntry );
+            FormEntryCacheService.getInstance( ).invalidate( entry.getIdResource( ) );
             if ( entry.getFieldDepend( ) != null )
             {
                 return redirect( request, AppointmentFormFieldJspBean.getUrlModifyField( request, entry.getFieldDepend( ).getIdField( ) ) );
@@ -520,6 +524,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
                     EntryHome.update( entryToMove );
                     entry.setPosition( nNewPosition );
                     EntryHome.update( entry );
+                    FormEntryCacheService.getInstance( ).invalidate( entry.getIdResource( ) );
                 }
             }
             return redirect( request, AppointmentFormFieldJspBean.getUrlModifyField( request, entry.getFieldDepend( ).getIdField( ) ) );
@@ -566,6 +571,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
                 Entry entryParent = EntryHome.findByPrimaryKey( entry.getParent( ).getIdEntry( ) );
                 _entryService.moveUpEntryOrder( entryParent.getPosition( ) + entryParent.getChildren( ).size( ), entry );
             }
+            FormEntryCacheService.getInstance( ).invalidate( entry.getIdResource( ) );
             if ( entry.getFieldDepend( ) != null )
             {
                 return redirect( request, AppointmentFormFieldJspBean.getUrlModifyField( request, entry.getFieldDepend( ).getIdField( ) ) );
@@ -632,6 +638,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
                 }
             }
         }
+        FormEntryCacheService.getInstance( ).invalidate( nIdForm );
         return redirect( request, getURLModifyAppointmentForm( request, nIdForm ) );
     }
 
@@ -653,6 +660,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
             if ( entry.getParent( ) != null )
             {
                 _entryService.moveOutEntryFromGroup( entry );
+                FormEntryCacheService.getInstance( ).invalidate( entry.getIdResource( ) );
             }
             return redirect( request, getURLModifyAppointmentForm( request, entry.getIdResource( ) ) );
         }
@@ -678,6 +686,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
             int nIdExpression = Integer.parseInt( strIdExpression );
             FieldHome.removeVerifyBy( nIdField, nIdExpression );
             Field field = FieldHome.findByPrimaryKey( nIdField );
+            FormEntryCacheService.getInstance( ).invalidateFormOfEntry( field.getParentEntry( ).getIdEntry( ) );
             return redirect( request, VIEW_GET_MODIFY_ENTRY, PARAMETER_ID_ENTRY, field.getParentEntry( ).getIdEntry( ) );
         }
         return redirect( request, AppointmentFormJspBean.getURLManageAppointmentForms( request ) );
@@ -702,6 +711,7 @@ public class AppointmentFormEntryJspBean extends MVCAdminJspBean
             int nIdExpression = Integer.parseInt( strIdExpression );
             FieldHome.createVerifyBy( nIdField, nIdExpression );
             Field field = FieldHome.findByPrimaryKey( nIdField );
+            FormEntryCacheService.getInstance( ).invalidateFormOfEntry( field.getParentEntry( ).getIdEntry( ) );
             return redirect( request, VIEW_GET_MODIFY_ENTRY, PARAMETER_ID_ENTRY, field.getParentEntry( ).getIdEntry( ) );
         }
         return redirect( request, AppointmentFormJspBean.getURLManageAppointmentForms( request ) );
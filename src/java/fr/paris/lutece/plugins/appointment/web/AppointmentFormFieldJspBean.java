@@ -42,6 +42,7 @@ import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.lang.StringUtils;
 
 import fr.paris.lutece.plugins.appointment.service.EntryTypeService;
+import fr.paris.lutece.plugins.appointment.service.form.FormEntryCacheService;
 import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
 import fr.paris.lutece.plugins.genericattributes.business.Field;
@@ -238,6 +239,7 @@ public class AppointmentFormFieldJspBean extends MVCAdminJspBean
             }
 
             FieldHome.create( field );
+            FormEntryCacheService.getInstance( ).invalidateFormOfEntry( nIdEntry );
         }
 
         return redirect( request, AppointmentFormEntryJspBean.getURLModifyEntry( request, nIdEntry ) );
@@ -304,6 +306,7 @@ public class AppointmentFormFieldJspBean extends MVCAdminJspBean
             }
 
             FieldHome.update( field );
+            FormEntryCacheService.getInstance( ).invalidateFormOfEntry( field.getParentEntry( ).getIdEntry( ) );
         }
 
         if ( request.getParameter( PARAMETER_APPLY ) == null )
@@ -365,6 +368,7 @@ public class AppointmentFormFieldJspBean extends MVCAdminJspBean
             if ( field != null )
             {
                 FieldHome.remove( nIdField );
+                FormEntryCacheService.getInstance( ).invalidateFormOfEntry( field.getParentEntry( ).getIdEntry( ) );
 
                 return redirect( request, AppointmentFormEntryJspBean.getURLModifyEntry( request, field.getParentEntry( ).getIdEntry( ) ) );
             }
@@ -434,6 +438,7 @@ public class AppointmentFormFieldJspBean extends MVCAdminJspBean
         field.setPosition( nNewPosition );
         FieldHome.update( field );
         FieldHome.update( fieldToInversePosition );
+        FormEntryCacheService.getInstance( ).invalidateFormOfEntry( field.getParentEntry( ).getIdEntry( ) );
 
         return redirect( request, AppointmentFormEntryJspBean.getURLModifyEntry( request, field.getParentEntry( ).getIdEntry( ) ) );
     }
@@ -39,9 +39,11 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.stream.Collectors;
 
@@ -64,11 +66,12 @@ import fr.paris.lutece.plugins.appointment.service.AppointmentService;
 import fr.paris.lutece.plugins.appointment.service.AppointmentUtilities;
 import fr.paris.lutece.plugins.appointment.service.CategoryService;
 import fr.paris.lutece.plugins.appointment.service.ClosingDayService;
-import fr.paris.lutece.plugins.appointment.service.EntryService;
 import fr.paris.lutece.plugins.appointment.service.FormMessageService;
 import fr.paris.lutece.plugins.appointment.service.FormService;
 import fr.paris.lutece.plugins.appointment.service.SlotService;
 import fr.paris.lutece.plugins.appointment.service.Utilities;
+import fr.paris.lutece.plugins.appointment.service.purge.AppointmentPurgeJob;
+import fr.paris.lutece.plugins.appointment.service.purge.AppointmentPurgeService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
 import fr.paris.lutece.portal.business.user.AdminUser;
 import fr.paris.lutece.portal.service.admin.AccessDeniedException;
@@ -111,7 +114,6 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
     public static final String RIGHT_MANAGEAPPOINTMENTFORM = "APPOINTMENT_FORM_MANAGEMENT";
     private static final long serialVersionUID = -615061018633136997L;
     private static final CaptchaSecurityService _captchaSecurityService = new CaptchaSecurityService( );
-    private final EntryService _entryService = EntryService.getService( );
     private int _nDefaultItemsPerPage;
 
     // templates
@@ -192,7 +194,10 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
     private static final String INFO_APPOINTMENTFORM_CREATED = "appointment.info.appointmentform.created";
     private static final String INFO_APPOINTMENTFORM_UPDATED = "appointment.info.appointmentform.updated";
     private static final String INFO_APPOINTMENTFORM_REMOVED = "appointment.info.appointmentform.removed";
+    private static final String INFO_APPOINTMENTFORM_REMOVAL_IN_PROGRESS = "appointment.info.appointmentform.removalInProgress";
+    private static final String ERROR_APPOINTMENTFORM_REMOVAL = "appointment.error.appointmentform.removal";
     private static final String INFO_APPOINTMENTFORM_MESSAGES_MODIFIED = "appointment.info.appointmentFormMessages.updated";
+    private static final String INFO_APPOINTMENTFORM_COPIED = "appointment.info.appointmentform.copied";
     private static final String ERROR_APPOINTMENTFORM_ENDING_VALIDITY_DATE_BEFORE_NOW = "appointment.error.appointmentform.endingValidityDateBeforeNow";
 
     // Session variable to store working values
@@ -239,6 +244,7 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
         LocalizedPaginator<AppointmentFormDTO> paginator = new LocalizedPaginator<AppointmentFormDTO>( listAppointmentForm, nItemsPerPage, strUrl,
                 PARAMETER_PAGE_INDEX, strCurrentPageIndex, getLocale( ) );
         AdminUser user = AdminUserService.getAdminUser( request );
+        addFormRemovalMessages( );
         Map<String, Object> model = getModel( );
         model.put( MARK_NB_ITEMS_PER_PAGE, Integer.toString( nItemsPerPage ) );
         model.put( MARK_PAGINATOR, paginator );
@@ -252,6 +258,36 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
         return getPage( PROPERTY_PAGE_TITLE_MANAGE_APPOINTMENTFORMS, TEMPLATE_MANAGE_APPOINTMENTFORMS, model );
     }
 
+    /**
+     * Add a message for each removal of form running in background, or over since the last display of the list of the forms
+     */
+    private void addFormRemovalMessages( )
+    {
+        for ( AppointmentPurgeJob job : AppointmentPurgeService.getJobs( ) )
+        {
+            if ( !job.isDone( ) )
+            {
+                addInfo( I18nService.getLocalizedString( INFO_APPOINTMENTFORM_REMOVAL_IN_PROGRESS, new Object [ ] {
+                        job.getFormTitle( ), job.getNbAppointmentsPurged( ), job.getNbAppointments( )
+                }, getLocale( ) ) );
+            }
+            else
+            {
+                if ( job.isFailed( ) )
+                {
+                    addError( I18nService.getLocalizedString( ERROR_APPOINTMENTFORM_REMOVAL, new Object [ ] {
+                            job.getFormTitle( )
+                    }, getLocale( ) ) );
+                }
+                else
+                {
+                    addInfo( INFO_APPOINTMENTFORM_REMOVED, getLocale( ) );
+                }
+                AppointmentPurgeService.removeJob( job );
+            }
+        }
+    }
+
     /**
      * Returns the form to create an appointment form
      *
@@ -374,10 +410,14 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
             throw new AccessDeniedException( AppointmentResourceIdService.PERMISSION_DELETE_FORM );
         }
         int nIdForm = Integer.parseInt( request.getParameter( PARAMETER_ID_FORM ) );
-        FormService.removeForm( nIdForm );
-        AppLogService.info( LogUtilities.buildLog( ACTION_REMOVE_APPOINTMENTFORM, strIdForm, getUser( ) ) );
-        _entryService.removeEntriesByIdAppointmentForm( nIdForm );
-        addInfo( INFO_APPOINTMENTFORM_REMOVED, getLocale( ) );
+        Form form = FormService.findFormLightByPrimaryKey( nIdForm );
+        if ( form != null )
+        {
+            // The appointments, the form and its entries are removed in
+            // background, the progress is displayed on the list of the forms
+            AppointmentPurgeService.submitFormRemoval( form );
+            AppLogService.info( LogUtilities.buildLog( ACTION_REMOVE_APPOINTMENTFORM, strIdForm, getUser( ) ) );
+        }
         return redirectView( request, VIEW_MANAGE_APPOINTMENTFORMS );
     }
 
@@ -558,6 +598,9 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
             String newNameForCopy = I18nService.getLocalizedString( PROPERTY_COPY_OF_FORM, request.getLocale( ) ) + formToCopy.getTitle( );
             int nIdCopyForm = FormService.copyForm( nIdForm, newNameForCopy );
             AppLogService.info( LogUtilities.buildLog( ACTION_DO_COPY_FORM, String.valueOf( nIdCopyForm ), getUser( ) ) );
+            addInfo( I18nService.getLocalizedString( INFO_APPOINTMENTFORM_COPIED, new Object [ ] {
+                    newNameForCopy
+            }, getLocale( ) ) );
         }
         return getManageAppointmentForms( request );
     }
@@ -749,7 +792,7 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
         }
         if ( StringUtils.isNotEmpty( strPathFile ) )
         {
-            List<LocalDate> listClosingDaysDb = ClosingDayService.findListDateOfClosingDayByIdForm( nIdForm );
+            Set<LocalDate> setClosingDaysDb = new HashSet<>( ClosingDayService.findListDateOfClosingDayByIdForm( nIdForm ) );
             List<LocalDate> listDateImported = new ArrayList<>( );
             List<LocalDate> listDateToSave = new ArrayList<>( );
             try
@@ -771,7 +814,7 @@ public class AppointmentFormJspBean extends AbstractAppointmentFormAndSlotJspBea
                 List<Appointment> listAppointmentsImpacted;
                 for ( LocalDate closingDate : listDateImported )
                 {
-                    if ( !listClosingDaysDb.contains( closingDate ) )
+                    if ( !setClosingDaysDb.contains( closingDate ) )
                     {
                         listSlotsImpacted = SlotService
                                 .findSlotsByIdFormAndDateRange( nIdForm, closingDate.atStartOfDay( ), closingDate.atTime( LocalTime.MAX ) );
@@ -38,15 +38,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -54,6 +51,7 @@ import javax.servlet.http.HttpSession;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 import fr.paris.lutece.plugins.appointment.business.appointment.Appointment;
 import fr.paris.lutece.plugins.appointment.business.display.Display;
@@ -73,23 +71,27 @@ import fr.paris.lutece.plugins.appointment.service.EntryService;
 import fr.paris.lutece.plugins.appointment.service.FormMessageService;
 import fr.paris.lutece.plugins.appointment.service.FormService;
 import fr.paris.lutece.plugins.appointment.service.ReservationRuleService;
+import fr.paris.lutece.plugins.appointment.service.SlotFullException;
 import fr.paris.lutece.plugins.appointment.service.SlotService;
 import fr.paris.lutece.plugins.appointment.service.Utilities;
 import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
 import fr.paris.lutece.plugins.appointment.service.addon.AppointmentAddOnManager;
 import fr.paris.lutece.plugins.appointment.service.listeners.AppointmentListenerManager;
-import fr.paris.lutece.plugins.appointment.service.lock.SlotEditTask;
-import fr.paris.lutece.plugins.appointment.service.lock.TimerForLockOnSlot;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanning;
+import fr.paris.lutece.plugins.appointment.service.planning.FormPlanningService;
+import fr.paris.lutece.plugins.appointment.service.purge.AppointmentPurgeService;
 import fr.paris.lutece.plugins.appointment.service.upload.AppointmentAsynchronousUploadHandler;
+import fr.paris.lutece.plugins.appointment.service.workflow.WorkflowQueueService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
-import fr.paris.lutece.plugins.genericattributes.business.Entry;
 import fr.paris.lutece.plugins.genericattributes.business.EntryHome;
 import fr.paris.lutece.plugins.genericattributes.business.GenericAttributeError;
 import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
 import fr.paris.lutece.plugins.workflowcore.business.state.State;
 import fr.paris.lutece.plugins.workflowcore.business.state.StateFilter;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceWorkflowService;
 import fr.paris.lutece.plugins.workflowcore.service.state.StateService;
 import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
 import fr.paris.lutece.plugins.workflowcore.service.task.ITaskService;
@@ -115,7 +117,7 @@ import fr.paris.lutece.portal.util.mvc.admin.annotations.Controller;
 import fr.paris.lutece.portal.util.mvc.commons.annotations.Action;
 import fr.paris.lutece.portal.util.mvc.commons.annotations.View;
 import fr.paris.lutece.portal.util.mvc.utils.MVCUtils;
-import fr.paris.lutece.portal.web.util.LocalizedPaginator;
+import fr.paris.lutece.portal.web.util.LocalizedDelegatePaginator;
 import fr.paris.lutece.util.ReferenceList;
 import fr.paris.lutece.util.html.HtmlTemplate;
 import fr.paris.lutece.util.html.Paginator;
@@ -281,22 +283,15 @@ public class AppointmentJspBean extends MVCAdminJspBean
     private static final String SESSION_APPOINTMENT_FORM_ERRORS = "appointment.session.formErrors";
     private static final String SESSION_ATTRIBUTE_APPOINTMENT_FORM = "appointment.session.appointmentForm";
     private static final String SESSION_APPOINTMENT_FILTER = "appointment.session.filter";
-    private static final String SESSION_LIST_APPOINTMENTS = "appointment.session.listAppointments";
 
     // Constants
     private static final String DEFAULT_CURRENT_PAGE = "1";
     public static final String ACTIVATEWORKFLOW = AppPropertiesService.getProperty( "appointment.activate.workflow" );
     public static final String PREVIOUS_FORM = "calendar";
-    private static final String LAST_NAME = "last_name";
-    private static final String FIRST_NAME = "first_name";
-    private static final String EMAIL = "email";
-    private static final String NB_BOOKED_SEATS = "nbBookedSeats";
-    private static final String DATE_APPOINTMENT = "date_appointment";
-    private static final String ADMIN = "admin";
-    private static final String STATUS = "status";
-    private static final int MAX_NB_APPOINTMENTS_TO_EXPORT = 8000;
+    private static final int MAX_NB_APPOINTMENTS_TO_EXPORT = 200000;
     // services
     private final transient StateService _stateService = SpringContextService.getBean( StateService.BEAN_SERVICE );
+    private final transient ResourceWorkflowService _resourceWorkflowService = SpringContextService.getBean( ResourceWorkflowService.BEAN_SERVICE );
     private final transient ITaskService _taskService = SpringContextService.getBean( TaskService.BEAN_SERVICE );
 
     // Session variable to store working values
@@ -368,14 +363,14 @@ public class AppointmentJspBean extends MVCAdminJspBean
             dateOfDisplay = LocalDate.parse( strDateOfDisplay );
         }
         List<Slot> listSlot = new ArrayList<>( );
-        HashMap<LocalDate, WeekDefinition> mapWeekDefinition = WeekDefinitionService.findAllWeekDefinition( nIdForm );
-        List<WeekDefinition> listWeekDefinition = new ArrayList<WeekDefinition>( mapWeekDefinition.values( ) );
+        FormPlanning formPlanning = FormPlanningService.getInstance( ).getFormPlanning( nIdForm );
+        List<WeekDefinition> listWeekDefinition = new ArrayList<>( formPlanning.getMapWeekDefinition( ).values( ) );
         LocalTime maxEndingTime = WeekDefinitionService.getMaxEndingTimeOfAListOfWeekDefinition( listWeekDefinition );
         LocalTime minStartingTime = WeekDefinitionService.getMinStartingTimeOfAListOfWeekDefinition( listWeekDefinition );
         List<String> listDayOfWeek = new ArrayList<>( WeekDefinitionService.getSetDaysOfWeekOfAListOfWeekDefinitionForFullCalendar( listWeekDefinition ) );
         if ( !bError )
         {
-            listSlot = SlotService.buildListSlot( nIdForm, mapWeekDefinition, startingDateOfDisplay, endingDateOfDisplay );
+            listSlot = SlotService.buildListSlot( nIdForm, startingDateOfDisplay, endingDateOfDisplay );
             // Tag as passed the slots passed
             List<Slot> listSlotsPassed = listSlot.stream( ).filter( s -> s.getEndingDateTime( ).isBefore( LocalDateTime.now( ) ) )
                     .collect( Collectors.toList( ) );
@@ -428,7 +423,6 @@ public class AppointmentJspBean extends MVCAdminJspBean
      * @throws AccessDeniedException
      * @throws SiteMessageException
      */
-    @SuppressWarnings( "unchecked" )
     @View( value = VIEW_MANAGE_APPOINTMENTS )
     public String getManageAppointments( HttpServletRequest request ) throws AccessDeniedException, SiteMessageException
     {
@@ -452,7 +446,6 @@ public class AppointmentJspBean extends MVCAdminJspBean
         if ( request.getParameter( PARAMETER_RESET ) != null )
         {
             request.getSession( ).removeAttribute( SESSION_APPOINTMENT_FILTER );
-            request.getSession( ).removeAttribute( SESSION_LIST_APPOINTMENTS );
         }
         // Get the appointment filter in session
         AppointmentFilterDTO filter = (AppointmentFilterDTO) request.getSession( ).getAttribute( SESSION_APPOINTMENT_FILTER );
@@ -475,25 +468,22 @@ public class AppointmentJspBean extends MVCAdminJspBean
             }
             request.getSession( ).setAttribute( SESSION_APPOINTMENT_FILTER, filter );
         }
-        // Get the list in session
-        // If it is an order by or a navigation page, no need to search again
-        List<AppointmentDTO> listAppointmentsDTO = (List<AppointmentDTO>) request.getSession( ).getAttribute( SESSION_LIST_APPOINTMENTS );
-        if ( listAppointmentsDTO == null )
-        {
-            listAppointmentsDTO = AppointmentService.findListAppointmentsDTOByFilter( filter );
-        }
+        // Only the filter is kept in session, with the cursor of the last
+        // page read. The sort and the paging are done by the database
         // If it is a new search
         if ( request.getParameter( PARAMETER_SEARCH ) != null )
         {
             // Populate the filter
             populate( filter, request );
-            listAppointmentsDTO = AppointmentService.findListAppointmentsDTOByFilter( filter );
+            filter.resetCursor( );
         }
         // If it is an order by
         String strOrderBy = request.getParameter( PARAMETER_ORDER_BY );
-        String strOrderAsc = request.getParameter( PARAMETER_ORDER_ASC );
-        listAppointmentsDTO = orderList( listAppointmentsDTO, strOrderBy, strOrderAsc );
-        request.getSession( ).setAttribute( SESSION_LIST_APPOINTMENTS, listAppointmentsDTO );
+        if ( strOrderBy != null )
+        {
+            filter.setOrderBy( strOrderBy );
+            filter.setOrderAsc( Boolean.parseBoolean( request.getParameter( PARAMETER_ORDER_ASC ) ) );
+        }
         if ( StringUtils.isNotEmpty( request.getParameter( PARAMETER_DELETE_AND_BACK ) ) )
         {
             String [ ] tabIdAppointmentToDelete = request.getParameterValues( PARAMETER_ID_APPOINTMENT_DELETE );
@@ -509,16 +499,27 @@ public class AppointmentJspBean extends MVCAdminJspBean
         {
             strCurrentPageIndex = DEFAULT_CURRENT_PAGE;
         }
-        request.getSession( ).setAttribute( SESSION_CURRENT_PAGE_INDEX, strCurrentPageIndex );
         int nItemsPerPage = Paginator.getItemsPerPage( request, Paginator.PARAMETER_ITEMS_PER_PAGE,
                 getIntSessionAttribute( request.getSession( ), SESSION_ITEMS_PER_PAGE ), _nDefaultItemsPerPage );
         request.getSession( ).setAttribute( SESSION_ITEMS_PER_PAGE, nItemsPerPage );
+        int nItemsCount = AppointmentService.countAppointmentsByFilter( filter );
+        int nPageIndex = NumberUtils.toInt( strCurrentPageIndex, 1 );
+        int nPagesCount = Math.max( 1, ( nItemsCount + nItemsPerPage - 1 ) / nItemsPerPage );
+        if ( nPageIndex < 1 || nPageIndex > nPagesCount )
+        {
+            nPageIndex = 1;
+        }
+        strCurrentPageIndex = Integer.toString( nPageIndex );
+        request.getSession( ).setAttribute( SESSION_CURRENT_PAGE_INDEX, strCurrentPageIndex );
+        filter.setItemsPerPage( nItemsPerPage );
+        filter.setPageIndex( nPageIndex );
+        List<AppointmentDTO> listAppointmentsDTO = AppointmentService.findPageAppointmentsDTOByFilter( filter );
         UrlItem url = new UrlItem( JSP_MANAGE_APPOINTMENTS );
         url.addParameter( MVCUtils.PARAMETER_VIEW, VIEW_MANAGE_APPOINTMENTS );
         url.addParameter( PARAMETER_ID_FORM, strIdForm );
         String strUrl = url.getUrl( );
-        LocalizedPaginator<AppointmentDTO> paginator = new LocalizedPaginator<AppointmentDTO>( listAppointmentsDTO, nItemsPerPage, strUrl,
-                PARAMETER_PAGE_INDEX, strCurrentPageIndex, getLocale( ) );
+        LocalizedDelegatePaginator<AppointmentDTO> paginator = new LocalizedDelegatePaginator<>( listAppointmentsDTO, nItemsPerPage, strUrl,
+                PARAMETER_PAGE_INDEX, strCurrentPageIndex, nItemsCount, getLocale( ) );
         AppointmentFormDTO form = FormService.buildAppointmentFormLight( nIdForm );
         Map<String, Object> model = getModel( );
         model.put( MARK_FORM, form );
@@ -529,19 +530,7 @@ public class AppointmentJspBean extends MVCAdminJspBean
         model.put( MARK_ACTIVATE_WORKFLOW, ACTIVATEWORKFLOW );
         if ( ( form.getIdWorkflow( ) > 0 ) && WorkflowService.getInstance( ).isAvailable( ) )
         {
-            int nIdWorkflow = form.getIdWorkflow( );
-            StateFilter stateFilter = new StateFilter( );
-            stateFilter.setIdWorkflow( nIdWorkflow );
-            for ( AppointmentDTO appointment : paginator.getPageItems( ) )
-            {
-                State stateAppointment = _stateService.findByResource( appointment.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE, nIdWorkflow );
-                if ( stateAppointment != null )
-                {
-                    appointment.setState( stateAppointment );
-                }
-                appointment.setListWorkflowActions( WorkflowService.getInstance( ).getActions( appointment.getIdAppointment( ),
-                        Appointment.APPOINTMENT_RESOURCE_TYPE, form.getIdWorkflow( ), getUser( ) ) );
-            }
+            fillWorkflowStatesAndActions( paginator.getPageItems( ), form.getIdWorkflow( ), getUser( ) );
         }
         AdminUser user = getUser( );
         model.put( MARK_APPOINTMENT_LIST, paginator.getPageItems( ) );
@@ -562,6 +551,56 @@ public class AppointmentJspBean extends MVCAdminJspBean
         return getPage( PROPERTY_PAGE_TITLE_MANAGE_APPOINTMENTS, TEMPLATE_MANAGE_APPOINTMENTS, model );
     }
 
+    /**
+     * Set the workflow state and the workflow actions of a list of appointments. The states of all the appointments are read with one query, and the actions
+     * are computed once for each state
+     * 
+     * @param listAppointmentsDTO
+     *            the appointments
+     * @param nIdWorkflow
+     *            the workflow id of the form
+     * @param user
+     *            the admin user
+     */
+    private void fillWorkflowStatesAndActions( List<AppointmentDTO> listAppointmentsDTO, int nIdWorkflow, AdminUser user )
+    {
+        if ( CollectionUtils.isEmpty( listAppointmentsDTO ) )
+        {
+            return;
+        }
+        List<Integer> listIdAppointment = listAppointmentsDTO.stream( ).map( AppointmentDTO::getIdAppointment ).collect( Collectors.toList( ) );
+        Map<Integer, Integer> mapIdStateByIdAppointment = new HashMap<>( );
+        for ( ResourceWorkflow resourceWorkflow : _resourceWorkflowService.getListResourceWorkflowByListIdResource( listIdAppointment,
+                Appointment.APPOINTMENT_RESOURCE_TYPE, nIdWorkflow, null ) )
+        {
+            if ( resourceWorkflow.getState( ) != null )
+            {
+                mapIdStateByIdAppointment.put( resourceWorkflow.getIdResource( ), resourceWorkflow.getState( ).getId( ) );
+            }
+        }
+        Map<Integer, State> mapStates = new HashMap<>( );
+        Map<Integer, Collection<fr.paris.lutece.plugins.workflowcore.business.action.Action>> mapActionsByIdState = new HashMap<>( );
+        for ( AppointmentDTO appointment : listAppointmentsDTO )
+        {
+            Integer nIdState = mapIdStateByIdAppointment.get( appointment.getIdAppointment( ) );
+            if ( nIdState == null )
+            {
+                appointment.setListWorkflowActions( WorkflowService.getInstance( ).getActions( appointment.getIdAppointment( ),
+                        Appointment.APPOINTMENT_RESOURCE_TYPE, nIdWorkflow, user ) );
+                continue;
+            }
+            State state = mapStates.computeIfAbsent( nIdState, _stateService::findByPrimaryKey );
+            if ( state != null )
+            {
+                appointment.setState( state );
+            }
+            // The actions available for a user only depend on the state of the
+            // resource
+            appointment.setListWorkflowActions( mapActionsByIdState.computeIfAbsent( nIdState, id -> WorkflowService.getInstance( ).getActions(
+                    appointment.getIdAppointment( ), Appointment.APPOINTMENT_RESOURCE_TYPE, nIdWorkflow, user ) ) );
+        }
+    }
+
     /**
      * Manages the removal form of a appointment whose identifier is in the HTTP request
      * 
@@ -588,9 +627,6 @@ public class AppointmentJspBean extends MVCAdminJspBean
      * @throws AccessDeniedException
      *             If the user is not authorized to access this feature
      */
-    @SuppressWarnings( {
-        "unchecked"
-    } )
     @Action( ACTION_REMOVE_APPOINTMENT )
     public String doRemoveAppointment( HttpServletRequest request ) throws AccessDeniedException
     {
@@ -604,13 +640,8 @@ public class AppointmentJspBean extends MVCAdminJspBean
         AppointmentService.deleteAppointment( nIdAppointment );
         AppLogService.info( LogUtilities.buildLog( ACTION_REMOVE_APPOINTMENT, Integer.toString( nIdAppointment ), getUser( ) ) );
         addInfo( INFO_APPOINTMENT_REMOVED, getLocale( ) );
-        // Need to update the list of the appointments in session
-        List<AppointmentDTO> listAppointmentsDTO = (List<AppointmentDTO>) request.getSession( ).getAttribute( SESSION_LIST_APPOINTMENTS );
-        if ( listAppointmentsDTO != null )
-        {
-            listAppointmentsDTO = listAppointmentsDTO.stream( ).filter( a -> a.getIdAppointment( ) != nIdAppointment ).collect( Collectors.toList( ) );
-            request.getSession( ).setAttribute( SESSION_LIST_APPOINTMENTS, listAppointmentsDTO );
-        }
+        // The rows after the cursor have moved
+        resetFilterCursor( request );
         return redirect( request, VIEW_MANAGE_APPOINTMENTS, PARAMETER_ID_FORM, idForm );
     }
 
@@ -640,7 +671,6 @@ public class AppointmentJspBean extends MVCAdminJspBean
      * @throws AccessDeniedException
      *             If the user is not authorized to access this feature
      */
-    @SuppressWarnings( "unchecked" )
     @Action( ACTION_REMOVE_MASSAPPOINTMENT )
     public String doRemoveMassAppointment( HttpServletRequest request ) throws AccessDeniedException
     {
@@ -652,25 +682,23 @@ public class AppointmentJspBean extends MVCAdminJspBean
         {
             throw new AccessDeniedException( AppointmentResourceIdService.PERMISSION_DELETE_APPOINTMENT );
         }
-        ArrayList<String> listStringIdAppointment = new ArrayList<>( );
         if ( tabIdAppointmentToDelete != null )
         {
+            List<Integer> listIdAppointment = new ArrayList<>( tabIdAppointmentToDelete.length );
+            for ( String strIdAppointment : tabIdAppointmentToDelete )
+            {
+                listIdAppointment.add( Integer.valueOf( strIdAppointment ) );
+            }
+            Form form = FormService.findFormLightByPrimaryKey( idForm );
+            AppointmentPurgeService.purgeAppointments( listIdAppointment, form != null ? form.getIdWorkflow( ) : 0 );
             for ( String strIdAppointment : tabIdAppointmentToDelete )
             {
-                AppointmentService.deleteAppointment( Integer.valueOf( strIdAppointment ) );
                 AppLogService.info( LogUtilities.buildLog( ACTION_REMOVE_APPOINTMENT, strIdAppointment, getUser( ) ) );
             }
             addInfo( INFO_APPOINTMENT_MASSREMOVED, getLocale( ) );
-            listStringIdAppointment.addAll( Arrays.asList( tabIdAppointmentToDelete ) );
-        }
-        // Need to update the list of the appointments in session
-        List<AppointmentDTO> listAppointmentsDTO = (List<AppointmentDTO>) request.getSession( ).getAttribute( SESSION_LIST_APPOINTMENTS );
-        if ( listAppointmentsDTO != null )
-        {
-            listAppointmentsDTO = listAppointmentsDTO.stream( ).filter( a -> !listStringIdAppointment.contains( Integer.toString( a.getIdAppointment( ) ) ) )
-                    .collect( Collectors.toList( ) );
-            request.getSession( ).setAttribute( SESSION_LIST_APPOINTMENTS, listAppointmentsDTO );
         }
+        // The rows after the cursor have moved
+        resetFilterCursor( request );
         return redirect( request, VIEW_MANAGE_APPOINTMENTS, PARAMETER_ID_FORM, idForm );
     }
 
@@ -768,7 +796,6 @@ public class AppointmentJspBean extends MVCAdminJspBean
      * @throws AccessDeniedException
      *             If the user is not authorized to access this feature
      */
-    @SuppressWarnings( "unchecked" )
     public String getDownloadFileAppointment( HttpServletRequest request, HttpServletResponse response ) throws AccessDeniedException
     {
         String strIdForm = request.getParameter( PARAMETER_ID_FORM );
@@ -781,8 +808,13 @@ public class AppointmentJspBean extends MVCAdminJspBean
             throw new AccessDeniedException( AppointmentResourceIdService.PERMISSION_VIEW_APPOINTMENT );
         }
         Locale locale = getLocale( );
-        List<AppointmentDTO> listAppointmentsDTO = (List<AppointmentDTO>) request.getSession( ).getAttribute( SESSION_LIST_APPOINTMENTS );
-        if ( listAppointmentsDTO.size( ) > AppPropertiesService.getPropertyInt( PROPERTY_NB_MAX_APPOINTMENTS_TO_EXPORT, MAX_NB_APPOINTMENTS_TO_EXPORT ) )
+        AppointmentFilterDTO filter = (AppointmentFilterDTO) request.getSession( ).getAttribute( SESSION_APPOINTMENT_FILTER );
+        if ( filter == null )
+        {
+            filter = new AppointmentFilterDTO( );
+            filter.setIdForm( Integer.parseInt( strIdForm ) );
+        }
+        if ( AppointmentService.countAppointmentsByFilter( filter ) > AppPropertiesService.getPropertyInt( PROPERTY_NB_MAX_APPOINTMENTS_TO_EXPORT, MAX_NB_APPOINTMENTS_TO_EXPORT ) )
         {
             addError( ERROR_MESSAGE_NB_MAX_APPOINTMENTS_FOR_EXPORT, locale );
             UrlItem urlItem = new UrlItem( AppPathService.getBaseUrl( request ) + JSP_MANAGE_APPOINTMENTS );
@@ -792,7 +824,7 @@ public class AppointmentJspBean extends MVCAdminJspBean
         }
         else
         {
-            AppointmentUtilities.buildExcelFileWithAppointments( strIdForm, response, locale, listAppointmentsDTO, _stateService );
+            AppointmentUtilities.buildExcelFileWithAppointments( strIdForm, response, locale, filter, _stateService );
         }
         return null;
     }
@@ -834,19 +866,9 @@ public class AppointmentJspBean extends MVCAdminJspBean
         int nbMaxPeoplePerAppointment = form.getMaxPeoplePerAppointment( );
         if ( ( nbAlreadyBookedSeats < nbMaxPeoplePerAppointment ) && ( slot.getNbPotentialRemainingPlaces( ) > 0 ) )
         {
-            SlotEditTask slotEditTask = new SlotEditTask( );
             int nbPotentialPlacesToTake = form.getMaxPeoplePerAppointment( ) - nbAlreadyBookedSeats;
-            int nbPotentialRemainingPlaces = slot.getNbPotentialRemainingPlaces( );
             appointmentDTO.setNbMaxPotentialBookedSeats( nbAlreadyBookedSeats + nbPotentialPlacesToTake );
-            slot.setNbPotentialRemainingPlaces( nbPotentialRemainingPlaces - nbPotentialPlacesToTake );
-            SlotService.updateSlot( slot );
-            slotEditTask.setNbPlacesTaken( nbPotentialPlacesToTake );
-            slotEditTask.setIdSlot( slot.getIdSlot( ) );
-            TimerForLockOnSlot timer = new TimerForLockOnSlot( );
-            long delay = TimeUnit.MINUTES.toMillis( AppPropertiesService
-                    .getPropertyInt( AppointmentUtilities.PROPERTY_DEFAULT_EXPIRED_TIME_EDIT_APPOINTMENT, 1 ) );
-            timer.schedule( slotEditTask, delay );
-            request.getSession( ).setAttribute( AppointmentUtilities.SESSION_TIMER_SLOT, timer );
+            AppointmentUtilities.putSlotHoldInSession( request, slot, nbPotentialPlacesToTake );
         }
         else
         {
@@ -941,18 +963,12 @@ public class AppointmentJspBean extends MVCAdminJspBean
                 WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionByIdFormAndClosestToDateOfApply( nIdForm, slot.getDate( ) );
                 form = FormService.buildAppointmentForm( nIdForm, reservationRule.getIdReservationRule( ), weekDefinition.getIdWeekDefinition( ) );
                 request.getSession( ).setAttribute( SESSION_ATTRIBUTE_APPOINTMENT_FORM, form );
-                AppointmentUtilities.putTimerInSession( request, slot, appointmentDTO, form.getMaxPeoplePerAppointment( ) );
+                AppointmentUtilities.putSlotHoldInSession( request, slot, appointmentDTO, form.getMaxPeoplePerAppointment( ) );
 
             }
         }
         Map<String, Object> model = getModel( );
-        List<Entry> listEntryFirstLevel = EntryService.getFilter( form.getIdForm( ), true );
-        StringBuffer strBuffer = new StringBuffer( );
-        for ( Entry entry : listEntryFirstLevel )
-        {
-            EntryService.getHtmlEntry( model, entry.getIdEntry( ), strBuffer, locale, false, request );
-        }
-        model.put( MARK_STR_ENTRY, strBuffer.toString( ) );
+        model.put( MARK_STR_ENTRY, EntryService.getHtmlEntries( form.getIdForm( ), locale, false, request ) );
         model.put( MARK_FORM, form );
         model.put( MARK_APPOINTMENT, appointmentDTO );
         model.put( PARAMETER_DATE_OF_DISPLAY, appointmentDTO.getSlot( ).getDate( ) );
@@ -1067,7 +1083,7 @@ public class AppointmentJspBean extends MVCAdminJspBean
         WeekDefinition weekDefinition = WeekDefinitionService.findWeekDefinitionByIdFormAndClosestToDateOfApply( nIdForm, dateOfSlot );
         AppointmentFormDTO form = FormService.buildAppointmentForm( nIdForm, reservationRule.getIdReservationRule( ), weekDefinition.getIdWeekDefinition( ) );
         request.getSession( ).setAttribute( SESSION_ATTRIBUTE_APPOINTMENT_FORM, form );
-        AppointmentUtilities.putTimerInSession( request, slot, appointmentDTO, form.getMaxPeoplePerAppointment( ) );
+        AppointmentUtilities.putSlotHoldInSession( request, slot, appointmentDTO, form.getMaxPeoplePerAppointment( ) );
         Map<String, String> additionalParameters = new HashMap<>( );
         additionalParameters.put( PARAMETER_ID_FORM, Integer.toString( form.getIdForm( ) ) );
         additionalParameters.put( PARAMETER_COME_FROM_CALENDAR, Boolean.TRUE.toString( ) );
@@ -1179,8 +1195,18 @@ public class AppointmentJspBean extends MVCAdminJspBean
                 addError( ERROR_MESSAGE_SLOT_FULL, getLocale( ) );
                 return redirect( request, VIEW_CALENDAR_MANAGE_APPOINTMENTS, PARAMETER_ID_FORM, appointmentDTO.getIdForm( ) );
             }
-        AppointmentUtilities.killTimer( request );
-        int nIdAppointment = AppointmentService.saveAppointment( appointmentDTO );
+        AppointmentUtilities.cancelSlotHold( request );
+        int nIdAppointment;
+        try
+        {
+            nIdAppointment = AppointmentService.saveAppointment( appointmentDTO );
+        }
+        catch( SlotFullException e )
+        {
+            // The places have been taken by another user since the check
+            addError( ERROR_MESSAGE_SLOT_FULL, getLocale( ) );
+            return redirect( request, VIEW_CALENDAR_MANAGE_APPOINTMENTS, PARAMETER_ID_FORM, appointmentDTO.getIdForm( ) );
+        }
         AppLogService.info( LogUtilities.buildLog( ACTION_DO_MAKE_APPOINTMENT, Integer.toString( nIdAppointment ), getUser( ) ) );
         request.getSession( ).removeAttribute( SESSION_VALIDATED_APPOINTMENT );
         addInfo( INFO_APPOINTMENT_CREATED, getLocale( ) );
@@ -1221,7 +1247,6 @@ public class AppointmentJspBean extends MVCAdminJspBean
     private void cleanSession( HttpSession session )
     {
         session.removeAttribute( SESSION_APPOINTMENT_FILTER );
-        session.removeAttribute( SESSION_LIST_APPOINTMENTS );
         session.removeAttribute( SESSION_CURRENT_PAGE_INDEX );
         session.removeAttribute( SESSION_CURRENT_PAGE_INDEX );
         session.removeAttribute( SESSION_NOT_VALIDATED_APPOINTMENT );
@@ -1246,64 +1271,18 @@ public class AppointmentJspBean extends MVCAdminJspBean
     }
 
     /**
-     * Order the list of the appointment in the result tab with the order by and order asc given
+     * Forget the cursor of the appointment filter in session, so that the next page is read with an offset
      * 
-     * @param listAppointmentsDTO
-     *            the llist of appointments
-     * @param strOrderBy
-     *            the order by
-     * @param strOrderAsc
-     *            the order asc
+     * @param request
+     *            the request
      */
-    private List<AppointmentDTO> orderList( List<AppointmentDTO> listAppointmentsDTO, String strOrderBy, String strOrderAsc )
+    private void resetFilterCursor( HttpServletRequest request )
     {
-        List<AppointmentDTO> sortedList = new ArrayList<>( );
-        if ( CollectionUtils.isNotEmpty( listAppointmentsDTO ) )
-        {
-            sortedList.addAll( listAppointmentsDTO );
-        }
-        if ( strOrderBy == null )
-        {
-            strOrderBy = DATE_APPOINTMENT;
-        }
-        boolean bAsc = Boolean.FALSE;
-        if ( strOrderAsc != null )
-        {
-            bAsc = Boolean.parseBoolean( strOrderAsc );
-        }
-        Stream<AppointmentDTO> stream = null;
-        switch( strOrderBy )
-        {
-            case LAST_NAME:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> a1.getLastName( ).compareTo( a2.getLastName( ) ) );
-                break;
-            case FIRST_NAME:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> a1.getFirstName( ).compareTo( a2.getFirstName( ) ) );
-                break;
-            case EMAIL:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> a1.getEmail( ).compareTo( a2.getEmail( ) ) );
-                break;
-            case NB_BOOKED_SEATS:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> Integer.compare( a1.getNbBookedSeats( ), a2.getNbBookedSeats( ) ) );
-                break;
-            case DATE_APPOINTMENT:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> a1.getStartingDateTime( ).compareTo( a2.getStartingDateTime( ) ) );
-                break;
-            case ADMIN:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> a1.getAdminUser( ).compareTo( a2.getAdminUser( ) ) );
-                break;
-            case STATUS:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> Boolean.compare( a1.getIsCancelled( ), a2.getIsCancelled( ) ) );
-                break;
-            default:
-                stream = sortedList.stream( ).sorted( ( a1, a2 ) -> a1.getStartingDateTime( ).compareTo( a2.getStartingDateTime( ) ) );
-        }
-        sortedList = stream.collect( Collectors.toList( ) );
-        if ( !bAsc )
+        AppointmentFilterDTO filter = (AppointmentFilterDTO) request.getSession( ).getAttribute( SESSION_APPOINTMENT_FILTER );
+        if ( filter != null )
         {
-            Collections.reverse( sortedList );
+            filter.resetCursor( );
         }
-        return sortedList;
     }
 
     /**
@@ -1384,6 +1363,9 @@ public class AppointmentJspBean extends MVCAdminJspBean
                 AppointmentFormDTO form = FormService.buildAppointmentFormLight( slot.getIdForm( ) );
                 try
                 {
+                    // The automatic actions still queued must be executed
+                    // before the action of the user
+                    WorkflowQueueService.processPendingItems( nIdAppointment );
                     if ( WorkflowService.getInstance( ).isDisplayTasksForm( nIdAction, getLocale( ) ) )
                     {
                         String strError = WorkflowService.getInstance( ).doSaveTasksForm( nIdAppointment, Appointment.APPOINTMENT_RESOURCE_TYPE, nIdAction,
@@ -1415,7 +1397,7 @@ public class AppointmentJspBean extends MVCAdminJspBean
                 }
                 Map<String, String> mapParams = new HashMap<String, String>( );
                 mapParams.put( PARAMETER_ID_FORM, Integer.toString( form.getIdForm( ) ) );
-                request.getSession( ).removeAttribute( SESSION_LIST_APPOINTMENTS );
+                resetFilterCursor( request );
                 return redirect( request, VIEW_MANAGE_APPOINTMENTS, mapParams );
             }
             return redirect( request, VIEW_MANAGE_APPOINTMENTS, PARAMETER_ID_FORM, slot.getIdForm( ) );
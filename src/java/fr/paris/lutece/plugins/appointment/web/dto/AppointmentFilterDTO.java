@@ -41,6 +41,56 @@ import fr.paris.lutece.plugins.appointment.business.user.User;
 public final class AppointmentFilterDTO extends User implements Serializable
 {
 
+    /**
+     * Order by the last name of the user
+     */
+    public static final String ORDER_BY_LAST_NAME = "last_name";
+
+    /**
+     * Order by the first name of the user
+     */
+    public static final String ORDER_BY_FIRST_NAME = "first_name";
+
+    /**
+     * Order by the email of the user
+     */
+    public static final String ORDER_BY_EMAIL = "email";
+
+    /**
+     * Order by the number of booked seats
+     */
+    public static final String ORDER_BY_NB_BOOKED_SEATS = "nbBookedSeats";
+
+    /**
+     * Order by the date of the appointment
+     */
+    public static final String ORDER_BY_DATE_APPOINTMENT = "date_appointment";
+
+    /**
+     * Order by the admin user who took the appointment
+     */
+    public static final String ORDER_BY_ADMIN = "admin";
+
+    /**
+     * Order by the status of the appointment
+     */
+    public static final String ORDER_BY_STATUS = "status";
+
+    /**
+     * Search the names and the email containing the terms
+     */
+    public static final String SEARCH_MODE_CONTAINS = "contains";
+
+    /**
+     * Search the names and the email starting with the terms
+     */
+    public static final String SEARCH_MODE_PREFIX = "prefix";
+
+    /**
+     * Search the names and the email close to the terms, tolerating typing errors
+     */
+    public static final String SEARCH_MODE_FUZZY = "fuzzy";
+
     /**
      * Serial version UID
      */
@@ -76,11 +126,56 @@ public final class AppointmentFilterDTO extends User implements Serializable
      */
     private String _strReference;
 
+    /**
+     * The mode of search of the names and the email
+     */
+    private String _strSearchMode = SEARCH_MODE_CONTAINS;
+
+    /**
+     * True if the search index of the users can be used
+     */
+    private boolean _bUseSearchIndex;
+
     /**
      * The status
      */
     private int _status = -1;
 
+    /**
+     * The sort key
+     */
+    private String _strOrderBy = ORDER_BY_DATE_APPOINTMENT;
+
+    /**
+     * True for an ascending sort
+     */
+    private boolean _bOrderAsc;
+
+    /**
+     * The number of appointments per page
+     */
+    private int _nItemsPerPage;
+
+    /**
+     * The index of the page to get (starting at 1)
+     */
+    private int _nPageIndex = 1;
+
+    /**
+     * The index of the page whose last row is the cursor (0 if there is no cursor)
+     */
+    private int _nCursorPageIndex;
+
+    /**
+     * The sort value of the last row of the cursor page
+     */
+    private String _strCursorSortValue;
+
+    /**
+     * The id of the last appointment of the cursor page
+     */
+    private int _nCursorIdAppointment;
+
     /**
      * Get the form id
      * 
@@ -236,6 +331,48 @@ public final class AppointmentFilterDTO extends User implements Serializable
         this._strReference = strReference;
     }
 
+    /**
+     * Get the mode of search of the names and the email
+     * 
+     * @return the search mode
+     */
+    public String getSearchMode( )
+    {
+        return _strSearchMode;
+    }
+
+    /**
+     * Set the mode of search of the names and the email
+     * 
+     * @param strSearchMode
+     *            the search mode to set
+     */
+    public void setSearchMode( String strSearchMode )
+    {
+        this._strSearchMode = strSearchMode;
+    }
+
+    /**
+     * Tell if the search index of the users can be used
+     * 
+     * @return true if the index can be used
+     */
+    public boolean isUseSearchIndex( )
+    {
+        return _bUseSearchIndex;
+    }
+
+    /**
+     * Set if the search index of the users can be used
+     * 
+     * @param bUseSearchIndex
+     *            true if the index can be used
+     */
+    public void setUseSearchIndex( boolean bUseSearchIndex )
+    {
+        this._bUseSearchIndex = bUseSearchIndex;
+    }
+
     /**
      * Get the status entered in the filter
      * 
@@ -257,4 +394,159 @@ public final class AppointmentFilterDTO extends User implements Serializable
         this._status = status;
     }
 
+    /**
+     * Get the sort key
+     * 
+     * @return the sort key
+     */
+    public String getOrderBy( )
+    {
+        return _strOrderBy;
+    }
+
+    /**
+     * Set the sort key. The cursor is reset
+     * 
+     * @param strOrderBy
+     *            the sort key to set
+     */
+    public void setOrderBy( String strOrderBy )
+    {
+        this._strOrderBy = strOrderBy;
+        resetCursor( );
+    }
+
+    /**
+     * Tell if the sort is ascending
+     * 
+     * @return true if the sort is ascending
+     */
+    public boolean isOrderAsc( )
+    {
+        return _bOrderAsc;
+    }
+
+    /**
+     * Set the direction of the sort. The cursor is reset
+     * 
+     * @param bOrderAsc
+     *            true for an ascending sort
+     */
+    public void setOrderAsc( boolean bOrderAsc )
+    {
+        this._bOrderAsc = bOrderAsc;
+        resetCursor( );
+    }
+
+    /**
+     * Get the number of appointments per page
+     * 
+     * @return the number of appointments per page (0 if the results are not paginated)
+     */
+    public int getItemsPerPage( )
+    {
+        return _nItemsPerPage;
+    }
+
+    /**
+     * Set the number of appointments per page. The cursor is reset if the value changes
+     * 
+     * @param nItemsPerPage
+     *            the number of appointments per page
+     */
+    public void setItemsPerPage( int nItemsPerPage )
+    {
+        if ( nItemsPerPage != _nItemsPerPage )
+        {
+            resetCursor( );
+        }
+        this._nItemsPerPage = nItemsPerPage;
+    }
+
+    /**
+     * Get the index of the page to get
+     * 
+     * @return the page index (starting at 1)
+     */
+    public int getPageIndex( )
+    {
+        return _nPageIndex;
+    }
+
+    /**
+     * Set the index of the page to get
+     * 
+     * @param nPageIndex
+     *            the page index (starting at 1)
+     */
+    public void setPageIndex( int nPageIndex )
+    {
+        this._nPageIndex = nPageIndex;
+    }
+
+    /**
+     * Get the index of the page whose last row is the cursor
+     * 
+     * @return the page index of the cursor, 0 if there is no cursor
+     */
+    public int getCursorPageIndex( )
+    {
+        return _nCursorPageIndex;
+    }
+
+    /**
+     * Get the sort value of the last row of the cursor page
+     * 
+     * @return the sort value
+     */
+    public String getCursorSortValue( )
+    {
+        return _strCursorSortValue;
+    }
+
+    /**
+     * Get the id of the last appointment of the cursor page
+     * 
+     * @return the id of the appointment
+     */
+    public int getCursorIdAppointment( )
+    {
+        return _nCursorIdAppointment;
+    }
+
+    /**
+     * Set the cursor on the last row of a page
+     * 
+     * @param nCursorPageIndex
+     *            the index of the page
+     * @param strCursorSortValue
+     *            the sort value of the last row of the page
+     * @param nCursorIdAppointment
+     *            the id of the last appointment of the page
+     */
+    public void setCursor( int nCursorPageIndex, String strCursorSortValue, int nCursorIdAppointment )
+    {
+        this._nCursorPageIndex = nCursorPageIndex;
+        this._strCursorSortValue = strCursorSortValue;
+        this._nCursorIdAppointment = nCursorIdAppointment;
+    }
+
+    /**
+     * Forget the cursor. The next page will be read with an offset
+     */
+    public void resetCursor( )
+    {
+        setCursor( 0, null, 0 );
+    }
+
+    /**
+     * Tell if the page to get directly follows the cursor page, in which case it can be read with a keyset condition instead of an offset
+     * 
+     * @return true if the page follows the cursor
+     */
+    public boolean isPageAfterCursor( )
+    {
+        return _nCursorPageIndex > 0 && _nCursorPageIndex == _nPageIndex - 1;
+    }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.web.rs;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fr.paris.lutece.plugins.appointment.service.admission.AdmissionService;
+import net.sf.json.JSONObject;
+
+/**
+ * REST service polled by the waiting room of the forms. It only reads the state of the waiting room in memory, so that the waiting visitors do not load the
+ * database
+ */
+@Path( Constants.BASE_REST_PATH + Constants.PLUGIN_PATH + Constants.ADMISSION_PATH )
+public class AdmissionRest
+{
+    private static final String KEY_ADMITTED = "admitted";
+    private static final String KEY_POSITION = "position";
+
+    /**
+     * Get the position of the visitor in the waiting room of a form
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param request
+     *            the request, to get the session of the visitor
+     * @return the admission of the visitor and his position in the waiting room, in JSON
+     */
+    @GET
+    @Path( "{" + Constants.ID_FORM + "}" )
+    @Produces( MediaType.APPLICATION_JSON )
+    public Response getAdmission( @PathParam( Constants.ID_FORM ) int nIdForm, @Context HttpServletRequest request )
+    {
+        long lPosition = AdmissionService.getPosition( request.getSession( false ), nIdForm );
+        JSONObject json = new JSONObject( );
+        json.put( KEY_ADMITTED, lPosition == 0 );
+        json.put( KEY_POSITION, lPosition );
+        CacheControl cacheControl = new CacheControl( );
+        cacheControl.setNoStore( true );
+        return Response.ok( json.toString( ) ).cacheControl( cacheControl ).build( );
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.web.rs;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.appointment.service.availability.FormAvailability;
+import fr.paris.lutece.plugins.appointment.service.availability.FormAvailabilityService;
+import fr.paris.lutece.portal.service.security.SecurityService;
+
+/**
+ * REST service for the availability of the slots of the forms. The responses carry an entity tag and a max age so that they can be cached by the reverse
+ * proxies and the browsers
+ */
+@Path( Constants.BASE_REST_PATH + Constants.PLUGIN_PATH + Constants.AVAILABILITY_PATH )
+public class AvailabilityRest
+{
+    private static final String PARAMETER_FROM = "from";
+    private static final String PARAMETER_TO = "to";
+
+    /**
+     * Get the availability of the slots of a form, for the period of its front office calendar
+     * 
+     * @param nIdForm
+     *            the form Id
+     * @param strFrom
+     *            the first day of the period (ISO format), optional
+     * @param strTo
+     *            the last day of the period (ISO format), optional
+     * @param request
+     *            the request, to check its preconditions
+     * @param httpServletRequest
+     *            the http request, to check the authentication of the user
+     * @return the availability in JSON, a not modified response if the client has the same entity tag, a not found response if the form does not exist, is
+     *         not active or requires an authentication the user does not have
+     */
+    @GET
+    @Path( "{" + Constants.ID_FORM + "}" )
+    @Produces( MediaType.APPLICATION_JSON )
+    public Response getAvailability( @PathParam( Constants.ID_FORM ) int nIdForm, @QueryParam( PARAMETER_FROM ) String strFrom,
+            @QueryParam( PARAMETER_TO ) String strTo, @Context Request request, @Context HttpServletRequest httpServletRequest )
+    {
+        LocalDate from;
+        LocalDate to;
+        try
+        {
+            from = StringUtils.isEmpty( strFrom ) ? null : LocalDate.parse( strFrom );
+            to = StringUtils.isEmpty( strTo ) ? null : LocalDate.parse( strTo );
+        }
+        catch( DateTimeParseException e )
+        {
+            return Response.status( Status.BAD_REQUEST ).build( );
+        }
+        FormAvailabilityService availabilityService = FormAvailabilityService.getInstance( );
+        FormAvailability availability = availabilityService.getAvailability( nIdForm, from, to, isUserAuthenticated( httpServletRequest ) );
+        if ( availability == null )
+        {
+            return Response.status( Status.NOT_FOUND ).build( );
+        }
+        EntityTag entityTag = new EntityTag( availability.getETag( ) );
+        CacheControl cacheControl = new CacheControl( );
+        int nAge = (int) ( ( System.currentTimeMillis( ) - availability.getCreationTime( ) ) / 1000 );
+        cacheControl.setMaxAge( Math.max( 0, availabilityService.getMaxAge( ) - nAge ) );
+        // The availability of a form requiring an authentication must not be
+        // served by the shared caches to the anonymous users
+        cacheControl.setPrivate( availability.isAuthenticationRequired( ) );
+        ResponseBuilder responseBuilder = request.evaluatePreconditions( entityTag );
+        if ( responseBuilder == null )
+        {
+            responseBuilder = Response.ok( availability.getJson( ) );
+        }
+        return responseBuilder.tag( entityTag ).cacheControl( cacheControl ).build( );
+    }
+
+    /**
+     * Tell if the user of a request is authenticated, the same way as the front office checks the forms requiring an authentication
+     * 
+     * @param request
+     *            the request
+     * @return true if the user is authenticated, or if the authentication is not enabled on the portal
+     */
+    private static boolean isUserAuthenticated( HttpServletRequest request )
+    {
+        if ( !SecurityService.isAuthenticationEnable( ) || SecurityService.getInstance( ).getRegisteredUser( request ) != null )
+        {
+            return true;
+        }
+        return SecurityService.getInstance( ).isExternalAuthentication( ) && SecurityService.getInstance( ).getRemoteUser( request ) != null;
+    }
+}
@@ -39,6 +39,9 @@ public final class Constants
     public static final String FORM_PATH = "form/";
     public static final String IMPORT_PATH = "import/";
     public static final String PLUGIN_PATH = "rdv/";
+    public static final String AVAILABILITY_PATH = "availability/";
+    public static final String ADMISSION_PATH = "admission/";
+    public static final String ID_FORM = "id_form";
 
     /**
      * Default constructor
@@ -34,6 +34,7 @@
 package fr.paris.lutece.plugins.appointment.web.rs;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -43,7 +44,6 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import fr.paris.lutece.plugins.appointment.service.FormTraderService;
-import net.sf.json.JSONObject;
 
 /**
  * REST service for import form
@@ -60,15 +60,22 @@ public class FormRest
         super( );
     }
 
+    /**
+     * Import a form, the json being read as a stream
+     * 
+     * @param inputStream
+     *            the json of the form
+     * @return the response
+     */
     @POST
     @Path( Constants.IMPORT_PATH )
     @Consumes( MediaType.APPLICATION_JSON )
-    public Response importForm( String strInputJson )
+    public Response importForm( InputStream inputStream )
     {
         Response response = Response.ok( ).build( );
         try
         {
-            FormTraderService.importFormFromJson( JSONObject.fromObject( strInputJson ) );
+            FormTraderService.importFormFromJson( inputStream );
         }
         catch( IOException e )
         {
@@ -0,0 +1,56 @@
+-- -----------------------------------------------------
+-- Table appointment_id_sequence
+-- -----------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS appointment_id_sequence (
+  sequence_name VARCHAR(100) NOT NULL,
+  next_value INT NOT NULL,
+  PRIMARY KEY (sequence_name))
+ENGINE = InnoDB;
+
+-- -----------------------------------------------------
+-- Table appointment_slot_hold
+-- -----------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS appointment_slot_hold (
+  id_slot_hold INT NOT NULL,
+  id_slot INT NOT NULL,
+  nb_places INT NOT NULL DEFAULT 0,
+  expiration_date TIMESTAMP NOT NULL,
+  PRIMARY KEY (id_slot_hold))
+ENGINE = InnoDB;
+
+CREATE INDEX expiration_date_idx ON appointment_slot_hold (expiration_date ASC);
+
+CREATE INDEX id_user_is_cancelled_id_slot_idx ON appointment_appointment (id_user ASC, is_cancelled ASC, id_slot ASC);
+
+-- -----------------------------------------------------
+-- Table appointment_workflow_queue
+-- -----------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS appointment_workflow_queue (
+  id_workflow_queue_item INT NOT NULL,
+  id_appointment INT NOT NULL,
+  id_form INT NOT NULL,
+  id_workflow INT NOT NULL,
+  nb_attempts INT NOT NULL DEFAULT 0,
+  next_attempt_date TIMESTAMP NOT NULL,
+  creation_date TIMESTAMP NOT NULL,
+  PRIMARY KEY (id_workflow_queue_item))
+ENGINE = InnoDB;
+
+CREATE INDEX next_attempt_date_idx ON appointment_workflow_queue (next_attempt_date ASC);
+CREATE INDEX id_appointment_creation_date_idx ON appointment_workflow_queue (id_appointment ASC, creation_date ASC);
+
+-- -----------------------------------------------------
+-- Table appointment_user_search
+-- -----------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS appointment_user_search (
+  id_user INT NOT NULL,
+  field INT NOT NULL,
+  trigram VARCHAR(3) NOT NULL,
+  PRIMARY KEY (field, trigram, id_user))
+ENGINE = InnoDB;
+
+CREATE INDEX id_user_idx ON appointment_user_search (id_user ASC);
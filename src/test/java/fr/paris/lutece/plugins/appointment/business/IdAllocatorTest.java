@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.paris.lutece.plugins.appointment.business.category.Category;
+import fr.paris.lutece.plugins.appointment.business.category.CategoryHome;
+import fr.paris.lutece.plugins.appointment.service.AppointmentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the Id Allocator
+ *
+ */
+public final class IdAllocatorTest extends LuteceTestCase
+{
+
+    private static final String SEQUENCE_NAME = "appointment_category";
+    private static final String SQL_QUERY_MAX_KEY = "SELECT max(id_category) FROM appointment_category";
+    private static final int NB_THREADS = 20;
+    private static final int NB_KEYS = 2000;
+
+    /**
+     * The keys allocated concurrently must all be different, and greater than the keys of the table
+     * 
+     * @throws Exception
+     *             if an allocating thread failed
+     */
+    public void testConcurrentAllocation( ) throws Exception
+    {
+        Category category = CategoryTest.buildCategory( CategoryTest.LABEL_1 );
+        CategoryHome.create( category );
+
+        final Plugin plugin = PluginService.getPlugin( AppointmentPlugin.PLUGIN_NAME );
+        ExecutorService executor = Executors.newFixedThreadPool( NB_THREADS );
+        List<Callable<Integer>> listAllocations = new ArrayList<>( );
+        for ( int i = 0; i < NB_KEYS; i++ )
+        {
+            listAllocations.add( ( ) -> UtilDAO.getNewPrimaryKey( SEQUENCE_NAME, SQL_QUERY_MAX_KEY, plugin ) );
+        }
+        Set<Integer> setKeys = new HashSet<>( );
+        for ( Future<Integer> key : executor.invokeAll( listAllocations ) )
+        {
+            assertTrue( key.get( ) > category.getIdCategory( ) );
+            setKeys.add( key.get( ) );
+        }
+        executor.shutdown( );
+        assertEquals( NB_KEYS, setKeys.size( ) );
+
+        CategoryHome.delete( category.getIdCategory( ) );
+    }
+}
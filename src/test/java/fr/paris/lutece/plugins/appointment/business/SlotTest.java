@@ -34,6 +34,8 @@
 package fr.paris.lutece.plugins.appointment.business;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import fr.paris.lutece.plugins.appointment.business.form.Form;
@@ -206,6 +208,75 @@ public final class SlotTest extends LuteceTestCase
 
     }
 
+    /**
+     * Test of updatePeriodList : the slots are shifted over the previous periods of each other
+     */
+    public void testUpdatePeriodList( )
+    {
+        Form form = FormTest.buildForm1( );
+        FormHome.create( form );
+
+        LocalDateTime startingDateTime = LocalDateTime.parse( "2018-12-03T09:00" );
+        List<Slot> listSlot = new ArrayList<>( );
+        for ( int i = 0; i < 3; i++ )
+        {
+            listSlot.add( buildSlot( form.getIdForm( ), startingDateTime.plusMinutes( 30L * i ), startingDateTime.plusMinutes( 30L * ( i + 1 ) ), 1, 1, 0, 1,
+                    Boolean.TRUE, Boolean.FALSE ) );
+        }
+        SlotHome.createList( listSlot );
+        // Shift the slots 30 minutes later, in chronological order
+        for ( Slot slot : listSlot )
+        {
+            slot.setStartingDateTime( slot.getStartingDateTime( ).plusMinutes( 30 ) );
+            slot.setEndingDateTime( slot.getEndingDateTime( ).plusMinutes( 30 ) );
+            slot.setIsSpecific( Boolean.TRUE );
+        }
+        SlotHome.updatePeriodList( listSlot );
+        for ( Slot slot : listSlot )
+        {
+            Slot slotStored = SlotHome.findByPrimaryKey( slot.getIdSlot( ) );
+            checkAsserts( slotStored, slot );
+            assertTrue( slotStored.getIsSpecific( ) );
+        }
+
+        // Clean
+        FormHome.delete( form.getIdForm( ) );
+    }
+
+    /**
+     * Test of deleteUnusedList : only the slots nobody has used are deleted
+     */
+    public void testDeleteUnusedList( )
+    {
+        Form form = FormTest.buildForm1( );
+        FormHome.create( form );
+
+        LocalDateTime startingDateTime = LocalDateTime.parse( "2018-12-03T09:00" );
+        Slot slotUnused = buildSlot( form.getIdForm( ), startingDateTime, startingDateTime.plusMinutes( 30 ), 2, 2, 0, 2, Boolean.TRUE, Boolean.FALSE );
+        Slot slotTaken = buildSlot( form.getIdForm( ), startingDateTime.plusMinutes( 30 ), startingDateTime.plusMinutes( 60 ), 1, 1, 1, 2, Boolean.TRUE,
+                Boolean.FALSE );
+        Slot slotHeld = buildSlot( form.getIdForm( ), startingDateTime.plusMinutes( 60 ), startingDateTime.plusMinutes( 90 ), 2, 1, 0, 2, Boolean.TRUE,
+                Boolean.FALSE );
+        Slot slotSpecific = buildSlot( form.getIdForm( ), startingDateTime.plusMinutes( 90 ), startingDateTime.plusMinutes( 120 ), 2, 2, 0, 2, Boolean.TRUE,
+                Boolean.TRUE );
+        List<Slot> listSlot = Arrays.asList( slotUnused, slotTaken, slotHeld, slotSpecific );
+        SlotHome.createList( listSlot );
+        List<Integer> listIdSlot = new ArrayList<>( );
+        for ( Slot slot : listSlot )
+        {
+            listIdSlot.add( slot.getIdSlot( ) );
+        }
+
+        assertEquals( 1, SlotHome.deleteUnusedList( listIdSlot ) );
+        assertNull( SlotHome.findByPrimaryKey( slotUnused.getIdSlot( ) ) );
+        assertNotNull( SlotHome.findByPrimaryKey( slotTaken.getIdSlot( ) ) );
+        assertNotNull( SlotHome.findByPrimaryKey( slotHeld.getIdSlot( ) ) );
+        assertNotNull( SlotHome.findByPrimaryKey( slotSpecific.getIdSlot( ) ) );
+
+        // Clean
+        FormHome.delete( form.getIdForm( ) );
+    }
+
     /**
      * Build a SLot Business Object
      * 
@@ -34,6 +34,7 @@
 package fr.paris.lutece.plugins.appointment.business;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import fr.paris.lutece.plugins.appointment.business.form.Form;
@@ -179,6 +180,42 @@ public final class TimeSlotTest extends LuteceTestCase
 
     }
 
+    /**
+     * Test of updateList : the time slots are shifted over the previous times of each other
+     */
+    public void testUpdateList( )
+    {
+        Form form = FormTest.buildForm1( );
+        FormHome.create( form );
+
+        WeekDefinition weekDefinition = WeekDefinitionTest.buildWeekDefinition( );
+        weekDefinition.setIdForm( form.getIdForm( ) );
+        WeekDefinitionHome.create( weekDefinition );
+
+        WorkingDay workingDay = WorkingDayTest.buildWorkingDay( );
+        workingDay.setIdWeekDefinition( weekDefinition.getIdWeekDefinition( ) );
+        WorkingDayHome.create( workingDay );
+
+        List<TimeSlot> listTimeSlot = new ArrayList<>( );
+        listTimeSlot.add( buildTimeSlot( STARTING_TIME_1, ENDING_TIME_1, IS_OPEN_1, MAX_CAPACITY_1, workingDay.getIdWorkingDay( ) ) );
+        listTimeSlot.add( buildTimeSlot( STARTING_TIME_2, ENDING_TIME_2, IS_OPEN_2, MAX_CAPACITY_2, workingDay.getIdWorkingDay( ) ) );
+        TimeSlotHome.createList( listTimeSlot );
+        // Shift the time slots 30 minutes later, in chronological order
+        for ( TimeSlot timeSlot : listTimeSlot )
+        {
+            timeSlot.setStartingTime( timeSlot.getStartingTime( ).plusMinutes( 30 ) );
+            timeSlot.setEndingTime( timeSlot.getEndingTime( ).plusMinutes( 30 ) );
+        }
+        TimeSlotHome.updateList( listTimeSlot );
+        for ( TimeSlot timeSlot : listTimeSlot )
+        {
+            checkAsserts( TimeSlotHome.findByPrimaryKey( timeSlot.getIdTimeSlot( ) ), timeSlot );
+        }
+
+        // Clean
+        FormHome.delete( form.getIdForm( ) );
+    }
+
     /**
      * build a TimeSlot Business Object
      * 
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.business;
+
+import java.util.Set;
+
+import fr.paris.lutece.plugins.appointment.business.user.UserSearchTrigrams;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test class for the trigrams of the search index of the users
+ * 
+ */
+public final class UserSearchTrigramsTest extends LuteceTestCase
+{
+
+    /**
+     * Test that the trigrams of a term searched are a subset of the trigrams of the values matching it
+     */
+    public void testContainsAndPrefix( )
+    {
+        Set<String> setValueTrigrams = UserSearchTrigrams.getValueTrigrams( "H\u00e9l\u00e8ne Dupont" );
+        assertTrue( setValueTrigrams.containsAll( UserSearchTrigrams.getContainsTrigrams( "l\u00e8ne du" ) ) );
+        assertTrue( setValueTrigrams.containsAll( UserSearchTrigrams.getContainsTrigrams( "HELE" ) ) );
+        assertTrue( setValueTrigrams.containsAll( UserSearchTrigrams.getPrefixTrigrams( "he" ) ) );
+        assertFalse( setValueTrigrams.containsAll( UserSearchTrigrams.getPrefixTrigrams( "dupont" ) ) );
+
+        // A term too short gives no trigram, the search does not use the
+        // index
+        assertTrue( UserSearchTrigrams.getContainsTrigrams( "du" ).isEmpty( ) );
+        assertTrue( UserSearchTrigrams.getValueTrigrams( null ).isEmpty( ) );
+    }
+
+    /**
+     * Test that a value with a typing error shares enough trigrams with the fuzzy term
+     */
+    public void testFuzzy( )
+    {
+        Set<String> setTermTrigrams = UserSearchTrigrams.getValueTrigrams( "dupond" );
+        int nMinimumMatch = UserSearchTrigrams.getFuzzyMinimumMatch( setTermTrigrams.size( ) );
+
+        Set<String> setValueTrigrams = UserSearchTrigrams.getValueTrigrams( "Dupont" );
+        setValueTrigrams.retainAll( setTermTrigrams );
+        assertTrue( setValueTrigrams.size( ) >= nMinimumMatch );
+
+        setValueTrigrams = UserSearchTrigrams.getValueTrigrams( "Martin" );
+        setValueTrigrams.retainAll( setTermTrigrams );
+        assertTrue( setValueTrigrams.size( ) < nMinimumMatch );
+    }
+}
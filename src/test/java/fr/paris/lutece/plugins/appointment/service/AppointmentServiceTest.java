@@ -1,7 +1,9 @@
 package fr.paris.lutece.plugins.appointment.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.List;
 
 import fr.paris.lutece.plugins.appointment.business.AppointmentTest;
 import fr.paris.lutece.plugins.appointment.business.SlotTest;
@@ -11,6 +13,7 @@ import fr.paris.lutece.plugins.appointment.service.AppointmentService;
 import fr.paris.lutece.plugins.appointment.service.FormService;
 import fr.paris.lutece.plugins.appointment.service.SlotService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentDTO;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFilterDTO;
 import fr.paris.lutece.test.LuteceTestCase;
 
 /**
@@ -522,4 +525,135 @@ public class AppointmentServiceTest extends LuteceTestCase
 
     }
 
+    public void testFindPageAppointmentsByFilter( )
+    {
+        // Build the form
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 5, 5, 0, 5,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+
+        String [ ] tabLastName = {
+                "Durand", "Dupont", "Martin", "Bernard", "Petit"
+        };
+        for ( String strLastName : tabLastName )
+        {
+            AppointmentDTO appointmentDTO = AppointmentTest.buildAppointmentDTO( slot, strLastName.toLowerCase( ) + "@mdp.fr", "Jean", strLastName,
+                    LocalTime.parse( "10:00" ), LocalTime.parse( "10:30" ), 1 );
+            AppointmentService.saveAppointment( appointmentDTO );
+        }
+
+        AppointmentFilterDTO filter = new AppointmentFilterDTO( );
+        filter.setIdForm( nIdForm );
+        filter.setOrderBy( AppointmentFilterDTO.ORDER_BY_LAST_NAME );
+        filter.setOrderAsc( true );
+        filter.setItemsPerPage( 2 );
+        assertEquals( 5, AppointmentService.countAppointmentsByFilter( filter ) );
+
+        // First page, read with an offset
+        filter.setPageIndex( 1 );
+        List<AppointmentDTO> listPage = AppointmentService.findPageAppointmentsDTOByFilter( filter );
+        assertEquals( 2, listPage.size( ) );
+        assertEquals( "Bernard", listPage.get( 0 ).getLastName( ) );
+        assertEquals( "Dupont", listPage.get( 1 ).getLastName( ) );
+        assertEquals( 1, filter.getCursorPageIndex( ) );
+
+        // Next page, read after the cursor
+        filter.setPageIndex( 2 );
+        assertTrue( filter.isPageAfterCursor( ) );
+        listPage = AppointmentService.findPageAppointmentsDTOByFilter( filter );
+        assertEquals( 2, listPage.size( ) );
+        assertEquals( "Durand", listPage.get( 0 ).getLastName( ) );
+        assertEquals( "Martin", listPage.get( 1 ).getLastName( ) );
+
+        // Jump to the last page, read with an offset
+        filter.resetCursor( );
+        filter.setPageIndex( 3 );
+        listPage = AppointmentService.findPageAppointmentsDTOByFilter( filter );
+        assertEquals( 1, listPage.size( ) );
+        assertEquals( "Petit", listPage.get( 0 ).getLastName( ) );
+
+        // Descending order
+        filter.setOrderAsc( false );
+        filter.setPageIndex( 1 );
+        listPage = AppointmentService.findPageAppointmentsDTOByFilter( filter );
+        assertEquals( "Petit", listPage.get( 0 ).getLastName( ) );
+        filter.setPageIndex( 2 );
+        listPage = AppointmentService.findPageAppointmentsDTOByFilter( filter );
+        assertEquals( "Durand", listPage.get( 0 ).getLastName( ) );
+        assertEquals( "Dupont", listPage.get( 1 ).getLastName( ) );
+
+        // The wildcards of the terms searched match themselves
+        AppointmentFilterDTO filterWildcard = new AppointmentFilterDTO( );
+        filterWildcard.setIdForm( nIdForm );
+        filterWildcard.setLastName( "D_" );
+        assertEquals( 0, AppointmentService.countAppointmentsByFilter( filterWildcard ) );
+        filterWildcard.setLastName( "%" );
+        assertEquals( 0, AppointmentService.countAppointmentsByFilter( filterWildcard ) );
+        filterWildcard.setLastName( "Du" );
+        assertEquals( 2, AppointmentService.countAppointmentsByFilter( filterWildcard ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    public void testFindStartingDateTimesOfUserAppointments( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+
+        String [ ] tabDay = {
+                "2018-12-03", "2018-12-05", "2018-12-20"
+        };
+        int nIdLastAppointment = 0;
+        for ( String strDay : tabDay )
+        {
+            Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( strDay + "T10:00" ), LocalDateTime.parse( strDay + "T10:30" ), 1, 1, 0, 1,
+                    Boolean.TRUE, Boolean.TRUE );
+            slot = SlotService.saveSlot( slot );
+            AppointmentDTO appointmentDTO = AppointmentTest.buildAppointmentDTO( slot, "jean.dupont@mdp.fr", "Jean", "Dupont", LocalTime.parse( "10:00" ),
+                    LocalTime.parse( "10:30" ), 1 );
+            nIdLastAppointment = AppointmentService.saveAppointment( appointmentDTO );
+        }
+
+        List<LocalDateTime> listStartingDateTime = AppointmentService.findStartingDateTimesOfUserAppointments( "jean.dupont@mdp.fr", nIdForm, 0,
+                LocalDate.parse( "2018-12-01" ), LocalDate.parse( "2018-12-05" ) );
+        assertEquals( 2, listStartingDateTime.size( ) );
+        assertEquals( LocalDateTime.parse( "2018-12-03T10:00" ), listStartingDateTime.get( 0 ) );
+        assertEquals( LocalDateTime.parse( "2018-12-05T10:00" ), listStartingDateTime.get( 1 ) );
+
+        // The appointment being modified is ignored
+        listStartingDateTime = AppointmentService.findStartingDateTimesOfUserAppointments( "jean.dupont@mdp.fr", nIdForm, nIdLastAppointment,
+                LocalDate.parse( "2018-12-01" ), LocalDate.parse( "2018-12-31" ) );
+        assertEquals( 2, listStartingDateTime.size( ) );
+
+        assertTrue( AppointmentService.findStartingDateTimesOfUserAppointments( "gerard.durand@mdp.fr", nIdForm, 0, LocalDate.parse( "2018-12-01" ),
+                LocalDate.parse( "2018-12-31" ) ).isEmpty( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    public void testAppointmentReference( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 2, 2, 0, 2,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+
+        int nIdAppointment1 = AppointmentService.saveAppointment( AppointmentTest.buildAppointmentDTO( slot, "mdp@mdp.fr", "Jean", "Dupont",
+                LocalTime.parse( "10:00" ), LocalTime.parse( "10:30" ), 1 ) );
+        int nIdAppointment2 = AppointmentService.saveAppointment( AppointmentTest.buildAppointmentDTO( slot, "mdp@mdp.fr", "Jean", "Dupont",
+                LocalTime.parse( "10:00" ), LocalTime.parse( "10:30" ), 1 ) );
+
+        // The reference is stored with the appointment : the id followed by
+        // the random part
+        Appointment appointment1 = AppointmentService.findAppointmentById( nIdAppointment1 );
+        Appointment appointment2 = AppointmentService.findAppointmentById( nIdAppointment2 );
+        assertTrue( appointment1.getReference( ).matches( nIdAppointment1 + "[0-9a-z]{5}" ) );
+        assertTrue( appointment2.getReference( ).matches( nIdAppointment2 + "[0-9a-z]{5}" ) );
+        assertEquals( nIdAppointment1, AppointmentService.findAppointmentByReference( appointment1.getReference( ) ).getIdAppointment( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
 }
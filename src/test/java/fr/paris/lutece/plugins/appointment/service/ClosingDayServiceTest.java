@@ -1,8 +1,24 @@
 package fr.paris.lutece.plugins.appointment.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbookPr;
 
 import fr.paris.lutece.test.LuteceTestCase;
 
@@ -30,4 +46,100 @@ public class ClosingDayServiceTest extends LuteceTestCase
         FormService.removeForm( nIdForm );
     }
 
+    /**
+     * Read the closing dates of a csv file, from the third row
+     */
+    public void testReadCsvClosingDays( ) throws IOException
+    {
+        String strCsv = "Closing days\nForm;Label;Comment;Date\n1;Labour day;;01/05/2018\n1,Victory day,,\"08/05/2018\"\n1;Invalid;;2018-02-01\n1;Empty;;\n";
+        Set<LocalDate> setDays = new HashSet<>( );
+        ClosingDayService.readCsvClosingDays( new ByteArrayInputStream( strCsv.getBytes( StandardCharsets.UTF_8 ) ), setDays );
+
+        assertEquals( 2, setDays.size( ) );
+        assertTrue( setDays.contains( LocalDate.parse( "2018-05-01" ) ) );
+        assertTrue( setDays.contains( LocalDate.parse( "2018-05-08" ) ) );
+    }
+
+    /**
+     * Read the closing dates of the date column of all the sheets of a xlsx file, from the third row
+     */
+    public void testReadXlsxClosingDays( ) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+        try ( XSSFWorkbook workbook = new XSSFWorkbook( ) )
+        {
+            Sheet sheet = workbook.createSheet( "2018" );
+            // The first two rows are headers
+            sheet.createRow( 0 ).createCell( 3 ).setCellValue( toDate( LocalDate.parse( "2018-01-01" ) ) );
+            sheet.createRow( 1 ).createCell( 3 ).setCellValue( "Date" );
+            Row row = sheet.createRow( 2 );
+            row.createCell( 0 ).setCellValue( 12 );
+            row.createCell( 3 ).setCellValue( toDate( LocalDate.parse( "2018-05-01" ) ) );
+            sheet.createRow( 3 ).createCell( 3 ).setCellValue( "Not a date" );
+            sheet.createRow( 4 ).createCell( 3 ).setCellValue( toDate( LocalDate.parse( "2018-05-01" ) ) );
+            Sheet sheet2019 = workbook.createSheet( "2019" );
+            sheet2019.createRow( 2 ).createCell( 3 ).setCellValue( toDate( LocalDate.parse( "2019-07-14" ) ) );
+            workbook.write( outputStream );
+        }
+        Set<LocalDate> setDays = new HashSet<>( );
+        ClosingDayService.readXlsxClosingDays( new ByteArrayInputStream( outputStream.toByteArray( ) ), setDays );
+
+        assertEquals( 2, setDays.size( ) );
+        assertTrue( setDays.contains( LocalDate.parse( "2018-05-01" ) ) );
+        assertTrue( setDays.contains( LocalDate.parse( "2019-07-14" ) ) );
+    }
+
+    /**
+     * Read the closing dates of a xlsx file whose dates start in 1904
+     */
+    public void testReadXlsxClosingDaysDate1904( ) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+        try ( XSSFWorkbook workbook = new XSSFWorkbook( ) )
+        {
+            CTWorkbook ctWorkbook = workbook.getCTWorkbook( );
+            CTWorkbookPr workbookPr = ctWorkbook.isSetWorkbookPr( ) ? ctWorkbook.getWorkbookPr( ) : ctWorkbook.addNewWorkbookPr( );
+            workbookPr.setDate1904( true );
+            Sheet sheet = workbook.createSheet( "2018" );
+            sheet.createRow( 2 ).createCell( 3 ).setCellValue( toDate( LocalDate.parse( "2018-05-01" ) ) );
+            workbook.write( outputStream );
+        }
+        Set<LocalDate> setDays = new HashSet<>( );
+        ClosingDayService.readXlsxClosingDays( new ByteArrayInputStream( outputStream.toByteArray( ) ), setDays );
+
+        assertEquals( 1, setDays.size( ) );
+        assertTrue( setDays.contains( LocalDate.parse( "2018-05-01" ) ) );
+    }
+
+    /**
+     * Read the closing dates of a sheet whose rows and cells have no reference
+     */
+    public void testSheetHandlerWithoutReferences( ) throws Exception
+    {
+        // 43221 is the 1st of May 2018 in the 1900 date system
+        String strSheet = "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>"
+                + "<row><c><v>43221</v></c><c/><c/><c><v>43221</v></c></row><row/>"
+                + "<row><c><v>12</v></c><c/><c t=\"s\"><v>0</v></c><c><v>43221</v></c></row></sheetData></worksheet>";
+        SAXParserFactory factory = SAXParserFactory.newInstance( );
+        factory.setNamespaceAware( true );
+        Set<LocalDate> setDays = new HashSet<>( );
+        factory.newSAXParser( ).parse( new ByteArrayInputStream( strSheet.getBytes( StandardCharsets.UTF_8 ) ),
+                new ClosingDaySheetHandler( 3, 2, false, setDays ) );
+
+        assertEquals( 1, setDays.size( ) );
+        assertTrue( setDays.contains( LocalDate.parse( "2018-05-01" ) ) );
+    }
+
+    /**
+     * Convert a local date to a date at the start of the day
+     * 
+     * @param localDate
+     *            the local date
+     * @return the date
+     */
+    private static Date toDate( LocalDate localDate )
+    {
+        return Date.from( localDate.atStartOfDay( ZoneId.systemDefault( ) ).toInstant( ) );
+    }
+
 }
@@ -8,6 +8,8 @@ import java.util.List;
 import fr.paris.lutece.plugins.appointment.business.calendar.CalendarTemplate;
 import fr.paris.lutece.plugins.appointment.business.calendar.CalendarTemplateHome;
 import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
+import fr.paris.lutece.plugins.appointment.service.form.AppointmentFormCacheService;
 import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
 import fr.paris.lutece.portal.service.image.ImageResource;
 import fr.paris.lutece.test.LuteceTestCase;
@@ -123,6 +125,11 @@ public class FormServiceTest extends LuteceTestCase
         List<DayOfWeek> listopenDays = WorkingDayService.getOpenDays( appointmentForm );
         AppointmentFormDTO copyAppointmentForm = FormService.buildAppointmentForm( nIdCopyForm, 0, 0 );
         assertEquals( WeekDefinitionService.findListWeekDefinition( nIdForm ).size( ), WeekDefinitionService.findListWeekDefinition( nIdCopyForm ).size( ) );
+        WorkingDay workingDay = WeekDefinitionService.findListWeekDefinition( nIdForm ).get( 0 ).getListWorkingDay( ).get( 0 );
+        WorkingDay copyWorkingDay = WeekDefinitionService.findListWeekDefinition( nIdCopyForm ).get( 0 ).getListWorkingDay( ).get( 0 );
+        assertTrue( copyWorkingDay.getIdWorkingDay( ) != workingDay.getIdWorkingDay( ) );
+        assertEquals( workingDay.getListTimeSlot( ).size( ), copyWorkingDay.getListTimeSlot( ).size( ) );
+        assertEquals( copyWorkingDay.getIdWorkingDay( ), copyWorkingDay.getListTimeSlot( ).get( 0 ).getIdWorkingDay( ) );
         assertEquals( WorkingDayService.getOpenDays( appointmentForm ), WorkingDayService.getOpenDays( copyAppointmentForm ) );
         assertEquals( "Copie", copyAppointmentForm.getTitle( ) );
 
@@ -131,4 +138,34 @@ public class FormServiceTest extends LuteceTestCase
         FormService.removeForm( nIdForm );
     }
 
+    /**
+     * Read the configuration of a form from the cache, before and after a modification of the form
+     */
+    public void testBuildAppointmentFormFromCache( )
+    {
+        AppointmentFormCacheService cacheService = AppointmentFormCacheService.getInstance( );
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+
+        AppointmentFormDTO appointmentForm = FormService.buildAppointmentForm( nIdForm, 0, 0 );
+        long nbHits = cacheService.getNbHits( );
+        // The copy given to the caller can be modified without changing the cache
+        appointmentForm.setTitle( "Modified" );
+        AppointmentFormDTO appointmentFormFromCache = FormService.buildAppointmentForm( nIdForm, 0, 0 );
+        assertEquals( TITLE_FORM, appointmentFormFromCache.getTitle( ) );
+        if ( cacheService.isCacheEnable( ) )
+        {
+            assertEquals( nbHits + 1, cacheService.getNbHits( ) );
+        }
+
+        // The modification of the form invalidates the configuration in cache
+        appointmentForm.setMaxCapacityPerSlot( 10 );
+        FormService.updateGlobalParameters( appointmentForm );
+        FormService.updateAdvancedParameters( appointmentForm, LocalDate.now( ) );
+        appointmentFormFromCache = FormService.buildAppointmentForm( nIdForm, 0, 0 );
+        assertEquals( "Modified", appointmentFormFromCache.getTitle( ) );
+        assertEquals( 10, appointmentFormFromCache.getMaxCapacityPerSlot( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
 }
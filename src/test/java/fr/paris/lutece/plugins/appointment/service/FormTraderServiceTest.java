@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import fr.paris.lutece.plugins.appointment.business.SlotTest;
+import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHome;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the import and the export of the forms
+ * 
+ */
+public class FormTraderServiceTest extends LuteceTestCase
+{
+
+    /**
+     * Export a form with its specific slots and import it back
+     * 
+     * @throws IOException
+     */
+    public void testExportAndImportForm( ) throws IOException
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+        LocalDateTime startingDateTime = LocalDateTime.parse( "2018-12-03T10:00" );
+        for ( int i = 0; i < 3; i++ )
+        {
+            Slot slot = SlotTest.buildSlot( nIdForm, startingDateTime.plusDays( i ), startingDateTime.plusDays( i ).plusMinutes( 30 ), 3, 3, 0, 3,
+                    Boolean.TRUE, Boolean.TRUE );
+            SlotService.saveSlot( slot );
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
+        FormTraderService.exportFormToJson( nIdForm, outputStream );
+        int nIdImportedForm = FormTraderService.importFormFromJson( new ByteArrayInputStream( outputStream.toByteArray( ) ) );
+
+        assertTrue( nIdImportedForm != 0 );
+        assertTrue( nIdImportedForm != nIdForm );
+        Form importedForm = FormService.findFormLightByPrimaryKey( nIdImportedForm );
+        // The title already exists, the imported form is renamed
+        assertEquals( "Import " + FormServiceTest.TITLE_FORM, importedForm.getTitle( ) );
+        assertEquals( 3, SlotHome.findByIdForm( nIdImportedForm ).size( ) );
+        assertEquals( WeekDefinitionService.findListWeekDefinition( nIdForm ).size( ), WeekDefinitionService.findListWeekDefinition( nIdImportedForm ).size( ) );
+        assertEquals( ReservationRuleService.findListReservationRule( nIdForm ).size( ), ReservationRuleService.findListReservationRule( nIdImportedForm )
+                .size( ) );
+
+        FormService.removeForm( nIdImportedForm );
+        FormService.removeForm( nIdForm );
+    }
+
+    /**
+     * Import a json cut in the middle of the slots : nothing is imported
+     */
+    public void testImportInvalidJson( )
+    {
+        int nNbForms = FormService.findAllForms( ).size( );
+        String strJson = "{\"form\":{\"title\":\"Invalid\"},\"slots\":[{},";
+        try
+        {
+            FormTraderService.importFormFromJson( new ByteArrayInputStream( strJson.getBytes( StandardCharsets.UTF_8 ) ) );
+            fail( "The import of an invalid json must fail" );
+        }
+        catch( IOException e )
+        {
+            // The transaction is rolled back
+            assertEquals( nNbForms, FormService.findAllForms( ).size( ) );
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.appointment.business.SlotTest;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the Slot Safe Service
+ *
+ */
+public class SlotSafeServiceTest extends LuteceTestCase
+{
+
+    private static final int NB_THREADS = 50;
+    private static final int NB_BOOKINGS = 5000;
+    private static final int MAX_CAPACITY = 40;
+
+    public void testTakePlaces( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 2, 2, 0, 2,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+
+        assertTrue( SlotSafeService.takePlaces( slot.getIdSlot( ), 1, 0 ) );
+        assertTrue( SlotSafeService.takePlaces( slot.getIdSlot( ), 1, 0 ) );
+        assertFalse( SlotSafeService.takePlaces( slot.getIdSlot( ), 1, 0 ) );
+
+        slot = SlotService.findSlotById( slot.getIdSlot( ) );
+        assertEquals( 0, slot.getNbRemainingPlaces( ) );
+        assertEquals( 0, slot.getNbPotentialRemainingPlaces( ) );
+        assertEquals( 2, slot.getNbPlacesTaken( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    /**
+     * Load test : a lot of concurrent bookings on the same slot must never overbook it
+     * 
+     * @throws Exception
+     *             if a booking thread failed
+     */
+    public void testConcurrentBookingsOnOneSlot( ) throws Exception
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), MAX_CAPACITY,
+                MAX_CAPACITY, 0, MAX_CAPACITY, Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+        final int nIdSlot = slot.getIdSlot( );
+
+        ExecutorService executor = Executors.newFixedThreadPool( NB_THREADS );
+        List<Callable<Boolean>> listBookings = new ArrayList<>( );
+        for ( int i = 0; i < NB_BOOKINGS; i++ )
+        {
+            listBookings.add( ( ) -> SlotSafeService.takePlaces( nIdSlot, 1, 0 ) );
+        }
+        List<Future<Boolean>> listResults = executor.invokeAll( listBookings );
+        executor.shutdown( );
+        assertTrue( executor.awaitTermination( 1, TimeUnit.MINUTES ) );
+
+        int nNbSuccess = 0;
+        for ( Future<Boolean> result : listResults )
+        {
+            if ( result.get( ) )
+            {
+                nNbSuccess++;
+            }
+        }
+        slot = SlotService.findSlotById( nIdSlot );
+        assertEquals( MAX_CAPACITY, nNbSuccess );
+        assertEquals( 0, slot.getNbRemainingPlaces( ) );
+        assertEquals( MAX_CAPACITY, slot.getNbPlacesTaken( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.admission;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the waiting room of the forms
+ * 
+ */
+public class FormAdmissionQueueTest extends LuteceTestCase
+{
+
+    private static final int ID_FORM = 1;
+    private static final long IDLE_TIMEOUT = 60000;
+    private static final long POLL_TIMEOUT = 10000;
+
+    public void testRateAndOrder( )
+    {
+        // One visitor per second, two at once after a quiet period
+        FormAdmissionQueue queue = new FormAdmissionQueue( ID_FORM, 1, 2, 0, IDLE_TIMEOUT, POLL_TIMEOUT, 0 );
+        long lFirst = queue.enter( 0 );
+        long lSecond = queue.enter( 0 );
+        long lThird = queue.enter( 0 );
+        long lFourth = queue.enter( 0 );
+
+        assertEquals( 0, queue.poll( lFirst, 0 ) );
+        assertEquals( 0, queue.poll( lSecond, 0 ) );
+        assertEquals( 1, queue.poll( lThird, 0 ) );
+        assertEquals( 2, queue.poll( lFourth, 0 ) );
+        assertEquals( 2, queue.getQueueLength( ) );
+
+        // The visitors are admitted in their order of arrival
+        assertEquals( 1, queue.poll( lFourth, 1000 ) );
+        assertEquals( 0, queue.poll( lThird, 1000 ) );
+        assertEquals( 0, queue.poll( lFourth, 2000 ) );
+        assertEquals( 0, queue.getQueueLength( ) );
+    }
+
+    public void testMaxAdmitted( )
+    {
+        // The waiting visitors keep their place while the admitted ones are idle
+        FormAdmissionQueue queue = new FormAdmissionQueue( ID_FORM, 100, 100, 1, IDLE_TIMEOUT, 2 * IDLE_TIMEOUT, 0 );
+        long lFirst = queue.enter( 0 );
+        long lSecond = queue.enter( 0 );
+        assertEquals( 0, queue.poll( lFirst, 0 ) );
+        assertEquals( 1, queue.poll( lSecond, 1000 ) );
+
+        // The first visitor gives back his place when he leaves
+        queue.leave( lFirst );
+        assertEquals( -1, queue.poll( lFirst, 1000 ) );
+        assertEquals( 0, queue.poll( lSecond, 1000 ) );
+        assertEquals( 1, queue.getNbAdmitted( ) );
+
+        // Or when he is idle for too long
+        long lThird = queue.enter( 2000 );
+        assertEquals( 1, queue.poll( lThird, 2000 ) );
+        assertEquals( 0, queue.poll( lThird, 2000 + IDLE_TIMEOUT + 1 ) );
+        assertEquals( -1, queue.poll( lSecond, 2000 + IDLE_TIMEOUT + 1 ) );
+    }
+
+    public void testAbandonedTickets( )
+    {
+        FormAdmissionQueue queue = new FormAdmissionQueue( ID_FORM, 0.1, 1, 0, IDLE_TIMEOUT, POLL_TIMEOUT, 0 );
+        long lFirst = queue.enter( 0 );
+        long lSecond = queue.enter( 0 );
+        long lThird = queue.enter( 0 );
+        assertEquals( 0, queue.poll( lFirst, 0 ) );
+
+        // The second visitor stops polling : he loses his place, which does
+        // not cost a token
+        assertEquals( 2, queue.poll( lThird, POLL_TIMEOUT / 2 ) );
+        assertEquals( 0, queue.poll( lThird, POLL_TIMEOUT + 1 ) );
+        assertEquals( -1, queue.poll( lSecond, POLL_TIMEOUT + 1 ) );
+    }
+}
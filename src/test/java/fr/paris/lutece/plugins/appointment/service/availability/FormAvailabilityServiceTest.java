@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.availability;
+
+import fr.paris.lutece.plugins.appointment.business.form.Form;
+import fr.paris.lutece.plugins.appointment.business.form.FormHome;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.FormServiceTest;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the availability of the forms
+ *
+ */
+public class FormAvailabilityServiceTest extends LuteceTestCase
+{
+
+    public void testAvailability( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+        FormAvailabilityService availabilityService = FormAvailabilityService.getInstance( );
+
+        // The availability of an inactive form can't be read
+        assertNull( availabilityService.getAvailability( nIdForm, null, null, false ) );
+
+        Form form = FormHome.findByPrimaryKey( nIdForm );
+        form.setIsActive( true );
+        form.setEndingValidityDate( null );
+        FormHome.update( form );
+        availabilityService.invalidate( nIdForm );
+
+        FormAvailability availability = availabilityService.getAvailability( nIdForm, null, null, false );
+        assertNotNull( availability );
+        assertTrue( availability.getJson( ).startsWith( "{\"idForm\":" + nIdForm + "," ) );
+        assertTrue( availability.getJson( ).contains( "\"open\":true" ) );
+
+        // An availability rebuilt without modification of the slots has the
+        // same entity tag
+        availabilityService.invalidate( nIdForm );
+        FormAvailability availabilityRebuilt = availabilityService.getAvailability( nIdForm, null, null, false );
+        assertEquals( availability.getETag( ), availabilityRebuilt.getETag( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    public void testAvailabilityWithAuthentication( )
+    {
+        AppointmentFormDTO appointmentForm = FormServiceTest.buildAppointmentForm( );
+        appointmentForm.setActiveAuthentication( true );
+        int nIdForm = FormService.createAppointmentForm( appointmentForm );
+        FormAvailabilityService availabilityService = FormAvailabilityService.getInstance( );
+
+        Form form = FormHome.findByPrimaryKey( nIdForm );
+        form.setIsActive( true );
+        form.setEndingValidityDate( null );
+        FormHome.update( form );
+        availabilityService.invalidate( nIdForm );
+
+        // Only an authenticated user can read the availability, even when it
+        // is in cache
+        assertNotNull( availabilityService.getAvailability( nIdForm, null, null, true ) );
+        assertNull( availabilityService.getAvailability( nIdForm, null, null, false ) );
+        assertTrue( availabilityService.getAvailability( nIdForm, null, null, true ).isAuthenticationRequired( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.form;
+
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the nodes of the compiled entry trees
+ * 
+ */
+public class EntryNodeTest extends LuteceTestCase
+{
+
+    public void testChildren( )
+    {
+        EntryNode group = new EntryNode( buildEntry( 1 ) );
+        group.addChild( new EntryNode( buildEntry( 2 ) ) );
+        group.addChild( new EntryNode( buildEntry( 3 ) ) );
+
+        assertEquals( 1, group.getEntry( ).getIdEntry( ) );
+        assertEquals( 2, group.getChildren( ).size( ) );
+        assertEquals( 2, group.getChildren( ).get( 0 ).getEntry( ).getIdEntry( ) );
+        assertEquals( 3, group.getChildren( ).get( 1 ).getEntry( ).getIdEntry( ) );
+    }
+
+    public void testConditionalEntries( )
+    {
+        EntryNode entryNode = new EntryNode( buildEntry( 1 ) );
+        entryNode.addConditionalEntry( 10, new EntryNode( buildEntry( 2 ) ) );
+        entryNode.addConditionalEntry( 10, new EntryNode( buildEntry( 3 ) ) );
+        entryNode.addConditionalEntry( 11, new EntryNode( buildEntry( 4 ) ) );
+
+        assertEquals( 2, entryNode.getConditionalEntries( 10 ).size( ) );
+        assertEquals( 2, entryNode.getConditionalEntries( 10 ).get( 0 ).getEntry( ).getIdEntry( ) );
+        assertEquals( 3, entryNode.getConditionalEntries( 10 ).get( 1 ).getEntry( ).getIdEntry( ) );
+        assertEquals( 1, entryNode.getConditionalEntries( 11 ).size( ) );
+        // A field without conditional question has an empty list
+        assertTrue( entryNode.getConditionalEntries( 12 ).isEmpty( ) );
+        assertTrue( entryNode.getChildren( ).isEmpty( ) );
+    }
+
+    /**
+     * Build an entry
+     * 
+     * @param nIdEntry
+     *            the entry Id
+     * @return the entry
+     */
+    private static Entry buildEntry( int nIdEntry )
+    {
+        Entry entry = new Entry( );
+        entry.setIdEntry( nIdEntry );
+        return entry;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.listeners;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the bus delivering the events to the listeners
+ * 
+ */
+public class ListenerEventBusTest extends LuteceTestCase
+{
+
+    private static final String RESOURCE_TYPE = "slot";
+    private static final String EVENT_CHANGE = "slotChange";
+    private static final String EVENT_REMOVAL = "slotRemoval";
+
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        ListenerEventBus.start( );
+    }
+
+    public void testSynchronousListener( )
+    {
+        SynchronousSlotListener listener = new SynchronousSlotListener( );
+        ListenerEventBus.publish( Collections.singletonList( listener ), RESOURCE_TYPE, 1, EVENT_CHANGE, l -> l.notifySlotChange( 1 ) );
+
+        // The listener has been notified in the current thread
+        assertEquals( Collections.singletonList( EVENT_CHANGE + 1 ), listener.getEvents( ) );
+        assertTrue( ListenerEventBus.getListenerStatistics( ).stream( )
+                .anyMatch( statistics -> statistics.getListenerName( ).equals( SynchronousSlotListener.class.getName( ) ) && statistics.getNbCalls( ) > 0 ) );
+    }
+
+    public void testCoalesceAndOrder( ) throws InterruptedException
+    {
+        BlockingSlotListener listener = new BlockingSlotListener( );
+        List<ISlotListener> listListeners = Collections.singletonList( listener );
+        long lNbEventsCoalesced = ListenerEventBus.getNbEventsCoalesced( );
+
+        // The first event is being delivered : the next one can't be dropped
+        ListenerEventBus.publish( listListeners, RESOURCE_TYPE, 2, EVENT_CHANGE, l -> l.notifySlotChange( 2 ) );
+        assertTrue( listener._started.await( 10, TimeUnit.SECONDS ) );
+        for ( int i = 0; i < 5; i++ )
+        {
+            ListenerEventBus.publish( listListeners, RESOURCE_TYPE, 2, EVENT_CHANGE, l -> l.notifySlotChange( 2 ) );
+        }
+        ListenerEventBus.publish( listListeners, RESOURCE_TYPE, 2, EVENT_REMOVAL, l -> l.notifySlotRemoval( 2 ) );
+        assertEquals( lNbEventsCoalesced + 4, ListenerEventBus.getNbEventsCoalesced( ) );
+
+        listener._release.countDown( );
+        long lEnd = System.currentTimeMillis( ) + 10000;
+        while ( listener.getEvents( ).size( ) < 3 && System.currentTimeMillis( ) < lEnd )
+        {
+            Thread.sleep( 10 );
+        }
+
+        // The events of the slot are delivered in the order of their publication
+        List<String> listExpectedEvents = new ArrayList<>( );
+        listExpectedEvents.add( EVENT_CHANGE + 2 );
+        listExpectedEvents.add( EVENT_CHANGE + 2 );
+        listExpectedEvents.add( EVENT_REMOVAL + 2 );
+        assertEquals( listExpectedEvents, listener.getEvents( ) );
+    }
+
+    /**
+     * Listener recording the events it receives
+     */
+    private static class RecordingSlotListener implements ISlotListener
+    {
+        private final List<String> _listEvents = Collections.synchronizedList( new ArrayList<>( ) );
+
+        @Override
+        public void notifySlotChange( int nIdSlot )
+        {
+            _listEvents.add( EVENT_CHANGE + nIdSlot );
+        }
+
+        @Override
+        public void notifySlotCreation( int nIdSlot )
+        {
+            _listEvents.add( "slotCreation" + nIdSlot );
+        }
+
+        @Override
+        public void notifySlotRemoval( int nIdSlot )
+        {
+            _listEvents.add( EVENT_REMOVAL + nIdSlot );
+        }
+
+        List<String> getEvents( )
+        {
+            synchronized( _listEvents )
+            {
+                return new ArrayList<>( _listEvents );
+            }
+        }
+    }
+
+    /**
+     * Listener notified in the thread that publishes the event
+     */
+    private static class SynchronousSlotListener extends RecordingSlotListener implements ISynchronousListener
+    {
+    }
+
+    /**
+     * Listener waiting before delivering its first event
+     */
+    private static class BlockingSlotListener extends RecordingSlotListener
+    {
+        private final CountDownLatch _started = new CountDownLatch( 1 );
+        private final CountDownLatch _release = new CountDownLatch( 1 );
+
+        @Override
+        public void notifySlotChange( int nIdSlot )
+        {
+            _started.countDown( );
+            try
+            {
+                _release.await( 10, TimeUnit.SECONDS );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+            super.notifySlotChange( nIdSlot );
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.lock;
+
+import java.time.LocalDateTime;
+
+import fr.paris.lutece.plugins.appointment.business.SlotTest;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.business.slot.SlotHold;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.FormServiceTest;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the holds of places on the slots
+ * 
+ */
+public class SlotHoldServiceTest extends LuteceTestCase
+{
+
+    public void testHoldAndExpire( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 3, 3, 0, 3,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+
+        // A hold of 0 minutes is expired at once
+        SlotHold slotHold1 = SlotHoldService.hold( slot.getIdSlot( ), 2, 0 );
+        SlotHold slotHold2 = SlotHoldService.hold( slot.getIdSlot( ), 1, 0 );
+        assertNotNull( slotHold1 );
+        assertNotNull( slotHold2 );
+        assertEquals( 0, SlotService.findSlotById( slot.getIdSlot( ) ).getNbPotentialRemainingPlaces( ) );
+
+        // The places of the two holds are given back in one update
+        SlotHoldService.purgeExpiredHolds( );
+        assertEquals( 3, SlotService.findSlotById( slot.getIdSlot( ) ).getNbPotentialRemainingPlaces( ) );
+        assertFalse( SlotHoldService.cancel( slotHold1.getIdSlotHold( ) ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    public void testCancel( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 3, 3, 0, 3,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+
+        SlotHold slotHold = SlotHoldService.hold( slot.getIdSlot( ), 2, 0 );
+        assertTrue( SlotHoldService.cancel( slotHold.getIdSlotHold( ) ) );
+
+        // A cancelled hold does not give back its places
+        SlotHoldService.purgeExpiredHolds( );
+        assertEquals( 1, SlotService.findSlotById( slot.getIdSlot( ) ).getNbPotentialRemainingPlaces( ) );
+        assertNull( SlotHoldService.hold( slot.getIdSlot( ), 0, 0 ) );
+
+        FormService.removeForm( nIdForm );
+    }
+}
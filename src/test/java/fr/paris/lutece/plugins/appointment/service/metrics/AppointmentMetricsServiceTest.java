@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the metrics of the plugin
+ * 
+ */
+public class AppointmentMetricsServiceTest extends LuteceTestCase
+{
+
+    private static final int ID_FORM = 999999;
+
+    public void testTimerAndCounter( ) throws IOException
+    {
+        AppointmentMetricsService.recordTime( AppointmentMetricsService.METRIC_SAVE_APPOINTMENT, ID_FORM, System.nanoTime( ) );
+        AppointmentMetricsService.incrementCounter( AppointmentMetricsService.METRIC_BOOKING_REJECTED, ID_FORM );
+
+        StringWriter writer = new StringWriter( );
+        AppointmentMetricsService.writeMetrics( writer );
+        String strMetrics = writer.toString( );
+        assertTrue( strMetrics.contains( "# TYPE appointment_save_appointment_seconds histogram" ) );
+        assertTrue( strMetrics.contains( "appointment_save_appointment_seconds_bucket{form=\"" + ID_FORM + "\",le=\"+Inf\"} 1" ) );
+        assertTrue( strMetrics.contains( "appointment_save_appointment_seconds_count{form=\"" + ID_FORM + "\"} 1" ) );
+        assertTrue( strMetrics.contains( "appointment_booking_rejected_total{form=\"" + ID_FORM + "\"} 1" ) );
+        assertEquals( Double.valueOf( 1 ), AppointmentMetricsService.getValues( ).get( "appointment_save_appointment_seconds{form=\"" + ID_FORM + "\"}_count" ) );
+    }
+
+    public void testInstrumentedDAO( )
+    {
+        ITestDAO dao = AppointmentMetricsService.instrument( nValue -> nValue * 2, ITestDAO.class, "test" );
+
+        assertEquals( 4, dao.compute( 2 ) );
+        assertEquals( Double.valueOf( 1 ), AppointmentMetricsService.getValues( ).get( "appointment_dao_query_seconds{dao=\"test\",method=\"compute\"}_count" ) );
+    }
+
+    public void testGauge( )
+    {
+        AppointmentMetricsService.registerGauge( "appointment_test_gauge", ( ) -> 42 );
+
+        assertEquals( Double.valueOf( 42 ), AppointmentMetricsService.getValues( ).get( "appointment_test_gauge" ) );
+    }
+
+    public void testRegisteredCounter( ) throws IOException
+    {
+        AppointmentMetricsService.registerCounter( "appointment_test_total", ( ) -> 7 );
+
+        StringWriter writer = new StringWriter( );
+        AppointmentMetricsService.writeMetrics( writer );
+        String strMetrics = writer.toString( );
+        assertTrue( strMetrics.contains( "# TYPE appointment_test_total counter" ) );
+        assertTrue( strMetrics.contains( "appointment_test_total 7" ) );
+    }
+
+    public void testUnregisterFormGauge( )
+    {
+        AppointmentMetricsService.registerGauge( "appointment_test_form_gauge", ID_FORM, ( ) -> 3 );
+        String strKey = "appointment_test_form_gauge{form=\"" + ID_FORM + "\"}";
+        assertEquals( Double.valueOf( 3 ), AppointmentMetricsService.getValues( ).get( strKey ) );
+
+        AppointmentMetricsService.unregisterGauge( "appointment_test_form_gauge", ID_FORM );
+        assertNull( AppointmentMetricsService.getValues( ).get( strKey ) );
+    }
+
+    /**
+     * DAO to instrument
+     */
+    public interface ITestDAO
+    {
+        /**
+         * Compute a value
+         * 
+         * @param nValue
+         *            the value
+         * @return the value computed
+         */
+        int compute( int nValue );
+    }
+}
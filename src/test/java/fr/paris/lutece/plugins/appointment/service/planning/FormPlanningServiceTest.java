@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.ClosingDayService;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.FormServiceTest;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.plugins.appointment.service.WeekDefinitionService;
+import fr.paris.lutece.plugins.appointment.web.dto.AppointmentFormDTO;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the Form Planning Service
+ *
+ */
+public class FormPlanningServiceTest extends LuteceTestCase
+{
+
+    /**
+     * The planning must follow the modifications of the week definitions and of the closing days
+     */
+    public void testPlanningUpToDate( )
+    {
+        AppointmentFormDTO appointmentForm = FormServiceTest.buildAppointmentForm( );
+        int nIdForm = FormService.createAppointmentForm( appointmentForm );
+
+        FormPlanning formPlanning = FormPlanningService.getInstance( ).getFormPlanning( nIdForm );
+        assertEquals( 1, formPlanning.getMapWeekDefinition( ).size( ) );
+        assertNotNull( formPlanning.getIndex( ).getWeekDefinition( LocalDate.now( ) ) );
+
+        AppointmentFormDTO appointmentForm2 = FormServiceTest.buildAppointmentForm( );
+        appointmentForm2.setIdForm( nIdForm );
+        appointmentForm2.setTimeEnd( "20:00" );
+        LocalDate dateOfModification = LocalDate.parse( "2028-06-20" );
+        FormService.updateAdvancedParameters( appointmentForm2, dateOfModification );
+
+        formPlanning = FormPlanningService.getInstance( ).getFormPlanning( nIdForm );
+        assertEquals( 2, formPlanning.getMapWeekDefinition( ).size( ) );
+        assertEquals( WeekDefinitionService.findWeekDefinitionByIdFormAndDateOfApply( nIdForm, dateOfModification ).getIdWeekDefinition( ), formPlanning
+                .getMapWeekDefinition( ).get( dateOfModification ).getIdWeekDefinition( ) );
+        assertFalse( formPlanning.getMapWeekDefinition( ).get( dateOfModification ).getListWorkingDay( ).isEmpty( ) );
+
+        LocalDate closingDay = LocalDate.parse( "2028-06-23" );
+        ClosingDayService.saveListClosingDay( nIdForm, Arrays.asList( closingDay ) );
+        formPlanning = FormPlanningService.getInstance( ).getFormPlanning( nIdForm );
+        assertTrue( formPlanning.getIndex( ).isClosingDay( closingDay ) );
+
+        ClosingDayService.removeClosingDay( ClosingDayService.findClosingDayByIdFormAndDateOfClosingDay( nIdForm, closingDay ) );
+        formPlanning = FormPlanningService.getInstance( ).getFormPlanning( nIdForm );
+        assertFalse( formPlanning.getIndex( ).isClosingDay( closingDay ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    /**
+     * The slots built with the planning must be the same as the slots built with the rules read from the database
+     */
+    public void testBuildListSlotWithPlanning( )
+    {
+        AppointmentFormDTO appointmentForm = FormServiceTest.buildAppointmentForm( );
+        appointmentForm.setDateStartValidity( Date.valueOf( LocalDate.parse( "2018-12-01" ) ) );
+        int nIdForm = FormService.createAppointmentForm( appointmentForm );
+        ClosingDayService.saveListClosingDay( nIdForm, Arrays.asList( LocalDate.parse( "2018-12-05" ) ) );
+
+        LocalDate startingDate = LocalDate.parse( "2018-12-03" );
+        LocalDate endingDate = LocalDate.parse( "2018-12-14" );
+        List<Slot> listSlotFromDatabase = SlotService.buildListSlot( nIdForm, WeekDefinitionService.findAllWeekDefinition( nIdForm ), startingDate,
+                endingDate );
+        List<Slot> listSlotFromPlanning = SlotService.buildListSlot( nIdForm, startingDate, endingDate );
+
+        assertEquals( listSlotFromDatabase.size( ), listSlotFromPlanning.size( ) );
+        for ( int i = 0; i < listSlotFromDatabase.size( ); i++ )
+        {
+            assertEquals( listSlotFromDatabase.get( i ).getStartingDateTime( ), listSlotFromPlanning.get( i ).getStartingDateTime( ) );
+            assertEquals( listSlotFromDatabase.get( i ).getIsOpen( ), listSlotFromPlanning.get( i ).getIsOpen( ) );
+            assertEquals( listSlotFromDatabase.get( i ).getMaxCapacity( ), listSlotFromPlanning.get( i ).getMaxCapacity( ) );
+        }
+
+        FormService.removeForm( nIdForm );
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.planning.TimeSlot;
+import fr.paris.lutece.plugins.appointment.business.planning.WeekDefinition;
+import fr.paris.lutece.plugins.appointment.business.planning.WorkingDay;
+import fr.paris.lutece.plugins.appointment.business.rule.ReservationRule;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the Planning Index
+ *
+ */
+public class PlanningIndexTest extends LuteceTestCase
+{
+
+    public void testFloorLookup( )
+    {
+        List<WeekDefinition> listWeekDefinition = new ArrayList<>( );
+        List<ReservationRule> listReservationRule = new ArrayList<>( );
+        for ( int i = 0; i < 500; i++ )
+        {
+            listWeekDefinition.add( buildWeekDefinition( i, LocalDate.parse( "2018-01-01" ).plusDays( 2L * i ) ) );
+            ReservationRule reservationRule = new ReservationRule( );
+            reservationRule.setIdReservationRule( i );
+            reservationRule.setDateOfApply( LocalDate.parse( "2018-01-01" ).plusDays( 2L * i ) );
+            listReservationRule.add( reservationRule );
+        }
+        PlanningIndex planningIndex = new PlanningIndex( listWeekDefinition, listReservationRule, Collections.emptyList( ) );
+
+        assertNull( planningIndex.getWeekDefinition( LocalDate.parse( "2017-12-31" ) ) );
+        assertEquals( 0, planningIndex.getClosestWeekDefinition( LocalDate.parse( "2017-12-31" ) ).getWeekDefinition( ).getIdWeekDefinition( ) );
+        assertEquals( 0, planningIndex.getWeekDefinition( LocalDate.parse( "2018-01-02" ) ).getWeekDefinition( ).getIdWeekDefinition( ) );
+        assertEquals( 1, planningIndex.getWeekDefinition( LocalDate.parse( "2018-01-03" ) ).getWeekDefinition( ).getIdWeekDefinition( ) );
+        assertEquals( 499, planningIndex.getReservationRule( LocalDate.parse( "2030-01-01" ) ).getIdReservationRule( ) );
+        assertEquals( LocalDate.parse( "2018-01-01" ), planningIndex.getFirstDateOfReservationRule( ) );
+    }
+
+    public void testWorkingDayAndTimeSlot( )
+    {
+        PlanningIndex planningIndex = new PlanningIndex( Arrays.asList( buildWeekDefinition( 1, LocalDate.parse( "2018-01-01" ) ) ),
+                Collections.emptyList( ), Collections.emptyList( ) );
+        PlanningIndex.IndexedWeekDefinition weekDefinition = planningIndex.getWeekDefinition( LocalDate.parse( "2018-12-03" ) );
+
+        assertNull( weekDefinition.getWorkingDay( DayOfWeek.SUNDAY ) );
+        PlanningIndex.IndexedWorkingDay workingDay = weekDefinition.getWorkingDay( DayOfWeek.MONDAY );
+        assertEquals( LocalTime.parse( "09:00" ), workingDay.getMinStartingTime( ) );
+        assertEquals( LocalTime.parse( "12:00" ), workingDay.getMaxEndingTime( ) );
+        assertEquals( 30, workingDay.getMinDuration( ) );
+        assertEquals( LocalTime.parse( "10:30" ), workingDay.getTimeSlot( LocalTime.parse( "10:00" ) ).getEndingTime( ) );
+        assertNull( workingDay.getTimeSlot( LocalTime.parse( "10:15" ) ) );
+        assertEquals( 30, weekDefinition.getMinDuration( ) );
+    }
+
+    public void testClosingDays( )
+    {
+        PlanningIndex planningIndex = new PlanningIndex( Collections.emptyList( ), Collections.emptyList( ),
+                Arrays.asList( LocalDate.parse( "2018-12-31" ), LocalDate.parse( "2019-01-01" ) ) );
+
+        assertTrue( planningIndex.isClosingDay( LocalDate.parse( "2018-12-31" ) ) );
+        assertTrue( planningIndex.isClosingDay( LocalDate.parse( "2019-01-01" ) ) );
+        assertFalse( planningIndex.isClosingDay( LocalDate.parse( "2019-12-31" ) ) );
+        assertFalse( planningIndex.isClosingDay( LocalDate.parse( "2020-01-01" ) ) );
+    }
+
+    /**
+     * Build a week definition open from Monday to Friday, from 9:00 to 12:00 with 30 minutes time slots
+     * 
+     * @param nIdWeekDefinition
+     *            the week definition id
+     * @param dateOfApply
+     *            the date of apply
+     * @return the week definition
+     */
+    private static WeekDefinition buildWeekDefinition( int nIdWeekDefinition, LocalDate dateOfApply )
+    {
+        WeekDefinition weekDefinition = new WeekDefinition( );
+        weekDefinition.setIdWeekDefinition( nIdWeekDefinition );
+        weekDefinition.setDateOfApply( dateOfApply );
+        List<WorkingDay> listWorkingDay = new ArrayList<>( );
+        for ( DayOfWeek dayOfWeek : Arrays.asList( DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY ) )
+        {
+            WorkingDay workingDay = new WorkingDay( );
+            workingDay.setDayOfWeek( dayOfWeek.getValue( ) );
+            List<TimeSlot> listTimeSlot = new ArrayList<>( );
+            for ( LocalTime time = LocalTime.parse( "09:00" ); time.isBefore( LocalTime.parse( "12:00" ) ); time = time.plusMinutes( 30 ) )
+            {
+                TimeSlot timeSlot = new TimeSlot( );
+                timeSlot.setStartingTime( time );
+                timeSlot.setEndingTime( time.plusMinutes( 30 ) );
+                timeSlot.setIsOpen( true );
+                listTimeSlot.add( timeSlot );
+            }
+            workingDay.setListTimeSlot( listTimeSlot );
+            listWorkingDay.add( workingDay );
+        }
+        weekDefinition.setListWorkingDay( listWorkingDay );
+        return weekDefinition;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.planning;
+
+import java.time.LocalDateTime;
+
+import fr.paris.lutece.plugins.appointment.business.slot.Period;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the creation of the slots in background
+ *
+ */
+public class SlotMaterializationServiceTest extends LuteceTestCase
+{
+    private static final LocalDateTime STARTING_DATE_TIME = LocalDateTime.parse( "2018-12-03T09:00" );
+
+    public void testIsUnused( )
+    {
+        assertTrue( SlotMaterializationService.isUnused( buildSlot( 30, 3, 3, 3, 0, true, false ) ) );
+        // Modified in the back office
+        assertFalse( SlotMaterializationService.isUnused( buildSlot( 30, 3, 3, 3, 0, true, true ) ) );
+        // Place taken
+        assertFalse( SlotMaterializationService.isUnused( buildSlot( 30, 3, 2, 2, 1, true, false ) ) );
+        // Place held by a user filling the form
+        assertFalse( SlotMaterializationService.isUnused( buildSlot( 30, 3, 3, 2, 0, true, false ) ) );
+    }
+
+    public void testMatches( )
+    {
+        Slot slot = buildSlot( 30, 3, 3, 3, 0, true, false );
+
+        assertTrue( SlotMaterializationService.matches( slot, buildSlot( 30, 3, 3, 3, 0, true, false ) ) );
+        assertFalse( SlotMaterializationService.matches( slot, null ) );
+        assertFalse( SlotMaterializationService.matches( slot, buildSlot( 45, 3, 3, 3, 0, true, false ) ) );
+        assertFalse( SlotMaterializationService.matches( slot, buildSlot( 30, 5, 5, 5, 0, true, false ) ) );
+        assertFalse( SlotMaterializationService.matches( slot, buildSlot( 30, 3, 3, 3, 0, false, false ) ) );
+    }
+
+    private static Slot buildSlot( int nDuration, int nMaxCapacity, int nNbRemainingPlaces, int nNbPotentialRemainingPlaces, int nNbPlacesTaken,
+            boolean bIsOpen, boolean bIsSpecific )
+    {
+        return SlotService.buildSlot( 1, new Period( STARTING_DATE_TIME, STARTING_DATE_TIME.plusMinutes( nDuration ) ), nMaxCapacity, nNbRemainingPlaces,
+                nNbPotentialRemainingPlaces, nNbPlacesTaken, bIsOpen, bIsSpecific );
+    }
+}
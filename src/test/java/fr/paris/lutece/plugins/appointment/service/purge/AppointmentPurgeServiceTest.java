@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.purge;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+import fr.paris.lutece.plugins.appointment.business.AppointmentTest;
+import fr.paris.lutece.plugins.appointment.business.SlotTest;
+import fr.paris.lutece.plugins.appointment.business.slot.Slot;
+import fr.paris.lutece.plugins.appointment.service.AppointmentService;
+import fr.paris.lutece.plugins.appointment.service.FormService;
+import fr.paris.lutece.plugins.appointment.service.FormServiceTest;
+import fr.paris.lutece.plugins.appointment.service.SlotService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the mass removals of appointments
+ * 
+ */
+public class AppointmentPurgeServiceTest extends LuteceTestCase
+{
+
+    public void testPurgeAppointments( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 3, 3, 0, 3,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+
+        int nIdAppointment1 = AppointmentService.saveAppointment( AppointmentTest.buildAppointmentDTO( slot, "jean.dupont@mdp.fr", "Jean", "Dupont",
+                LocalTime.parse( "10:00" ), LocalTime.parse( "10:30" ), 1 ) );
+        int nIdAppointment2 = AppointmentService.saveAppointment( AppointmentTest.buildAppointmentDTO( slot, "jean.martin@mdp.fr", "Jean", "Martin",
+                LocalTime.parse( "10:00" ), LocalTime.parse( "10:30" ), 2 ) );
+        assertEquals( 0, SlotService.findSlotById( slot.getIdSlot( ) ).getNbRemainingPlaces( ) );
+
+        // The places of the two appointments are given back in one update
+        AppointmentPurgeService.purgeAppointments( Arrays.asList( nIdAppointment1, nIdAppointment2 ), 0 );
+        assertNull( AppointmentService.findAppointmentById( nIdAppointment1 ) );
+        assertNull( AppointmentService.findAppointmentById( nIdAppointment2 ) );
+        slot = SlotService.findSlotById( slot.getIdSlot( ) );
+        assertEquals( 3, slot.getNbRemainingPlaces( ) );
+        assertEquals( 3, slot.getNbPotentialRemainingPlaces( ) );
+        assertEquals( 0, slot.getNbPlacesTaken( ) );
+
+        FormService.removeForm( nIdForm );
+    }
+
+    public void testPurgeAppointmentsOfForm( )
+    {
+        int nIdForm = FormService.createAppointmentForm( FormServiceTest.buildAppointmentForm( ) );
+        Slot slot = SlotTest.buildSlot( nIdForm, LocalDateTime.parse( "2018-12-03T10:00" ), LocalDateTime.parse( "2018-12-03T10:30" ), 3, 3, 0, 3,
+                Boolean.TRUE, Boolean.TRUE );
+        slot = SlotService.saveSlot( slot );
+        int nIdAppointment = AppointmentService.saveAppointment( AppointmentTest.buildAppointmentDTO( slot, "jean.dupont@mdp.fr", "Jean", "Dupont",
+                LocalTime.parse( "10:00" ), LocalTime.parse( "10:30" ), 1 ) );
+
+        AppointmentPurgeJob job = new AppointmentPurgeJob( nIdForm, "Form", 1 );
+        AppointmentPurgeService.purgeAppointmentsOfForm( nIdForm, 0, job );
+        assertEquals( 1, job.getNbAppointmentsPurged( ) );
+        assertNull( AppointmentService.findAppointmentById( nIdAppointment ) );
+
+        FormService.removeForm( nIdForm );
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2002-2018, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.appointment.service.workflow;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItem;
+import fr.paris.lutece.plugins.appointment.business.workflow.WorkflowQueueItemHome;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Test Class for the queue of the workflow actions
+ * 
+ */
+public class WorkflowQueueServiceTest extends LuteceTestCase
+{
+
+    private static final int ID_APPOINTMENT = 999999;
+
+    public void testOrderByAppointment( )
+    {
+        WorkflowQueueService.enqueue( ID_APPOINTMENT, 1, 1 );
+        WorkflowQueueService.enqueue( ID_APPOINTMENT, 1, 1 );
+
+        // Only the oldest item of the appointment can be processed
+        List<WorkflowQueueItem> listReadyItems = WorkflowQueueItemHome.findReady( LocalDateTime.now( ), 100 );
+        WorkflowQueueItem firstItem = null;
+        int nNbItemsOfAppointment = 0;
+        for ( WorkflowQueueItem workflowQueueItem : listReadyItems )
+        {
+            if ( workflowQueueItem.getIdAppointment( ) == ID_APPOINTMENT )
+            {
+                firstItem = workflowQueueItem;
+                nNbItemsOfAppointment++;
+            }
+        }
+        assertEquals( 1, nNbItemsOfAppointment );
+
+        // An item can be claimed only once
+        assertTrue( WorkflowQueueItemHome.claim( firstItem, LocalDateTime.now( ).plusMinutes( 10 ) ) );
+        assertFalse( WorkflowQueueItemHome.claim( firstItem, LocalDateTime.now( ).plusMinutes( 10 ) ) );
+        WorkflowQueueItemHome.delete( firstItem.getIdWorkflowQueueItem( ) );
+
+        // Once the first item is processed, the second one can be processed,
+        // and it is dropped as the appointment does not exist
+        assertEquals( 1, WorkflowQueueItemHome.findByIdAppointment( ID_APPOINTMENT ).size( ) );
+        WorkflowQueueService.processReadyItems( );
+        assertTrue( WorkflowQueueItemHome.findByIdAppointment( ID_APPOINTMENT ).isEmpty( ) );
+    }
+
+    public void testDeleteWithAppointment( )
+    {
+        WorkflowQueueService.enqueue( ID_APPOINTMENT, 1, 1 );
+        WorkflowQueueService.enqueue( ID_APPOINTMENT + 1, 1, 1 );
+        WorkflowQueueItemHome.deleteByIdAppointment( ID_APPOINTMENT );
+        assertTrue( WorkflowQueueItemHome.findByIdAppointment( ID_APPOINTMENT ).isEmpty( ) );
+        assertEquals( 1, WorkflowQueueItemHome.findByIdAppointment( ID_APPOINTMENT + 1 ).size( ) );
+
+        WorkflowQueueService.enqueue( ID_APPOINTMENT, 1, 1 );
+        WorkflowQueueItemHome.deleteByListIdAppointment( Arrays.asList( ID_APPOINTMENT, ID_APPOINTMENT + 1 ) );
+        assertTrue( WorkflowQueueItemHome.findByIdAppointment( ID_APPOINTMENT ).isEmpty( ) );
+        assertTrue( WorkflowQueueItemHome.findByIdAppointment( ID_APPOINTMENT + 1 ).isEmpty( ) );
+    }
+}